@@ -0,0 +1,80 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.comcast.viper.hlsparserj.PlaylistFactory;
+import com.comcast.viper.hlsparserj.PlaylistVersion;
+import com.comcast.viper.hlsparserj.tags.UnparsedTag;
+import com.comcast.viper.hlsparserj.tags.master.StreamInf;
+import com.comcast.viper.hlsparserj.v12.MasterPlaylistV12;
+
+/**
+ * Measures access to the model of a parsed master playlist.  Each
+ * operation builds a new playlist over tags parsed during setup, so the
+ * parsed tag caches of the playlist start out empty.  Run with
+ * {@code -prof gc} to report allocations per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MasterPlaylistBenchmark {
+
+    @Param({"5", "20", "50"})
+    public int variantCount;
+
+    private List<UnparsedTag> tags;
+    private int targetBitrate;
+
+    @Setup
+    public void setup() {
+        tags = PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE,
+                PlaylistFixtures.masterPlaylist(variantCount)).getTags();
+        targetBitrate = PlaylistFixtures.middleBandwidth(variantCount);
+    }
+
+    @Benchmark
+    public List<StreamInf> getVariantStreams() {
+        return new MasterPlaylistV12(tags).getVariantStreams();
+    }
+
+    @Benchmark
+    public StreamInf variantStreamClosestToBitrate() {
+        return new MasterPlaylistV12(tags).variantStreamClosestToBitrate(targetBitrate);
+    }
+
+    @Benchmark
+    public String toPlaylistString() {
+        return new MasterPlaylistV12(tags).toString();
+    }
+}
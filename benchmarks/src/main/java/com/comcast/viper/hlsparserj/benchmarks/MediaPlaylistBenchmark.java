@@ -0,0 +1,77 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.comcast.viper.hlsparserj.PlaylistFactory;
+import com.comcast.viper.hlsparserj.PlaylistVersion;
+import com.comcast.viper.hlsparserj.tags.UnparsedTag;
+import com.comcast.viper.hlsparserj.tags.media.ExtInf;
+import com.comcast.viper.hlsparserj.v12.MediaPlaylistV12;
+
+/**
+ * Measures access to the model of a parsed media playlist.  Each
+ * operation builds a new playlist over tags parsed during setup, so the
+ * parsed tag caches of the playlist start out empty and the benchmark
+ * measures the first access.  Run with {@code -prof gc} to report
+ * allocations per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MediaPlaylistBenchmark {
+
+    @Param({"10", "1000", "50000", "200000"})
+    public int segmentCount;
+
+    @Param({PlaylistFixtures.NONE, PlaylistFixtures.ALL})
+    public String features;
+
+    private List<UnparsedTag> tags;
+
+    @Setup
+    public void setup() {
+        tags = PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE,
+                PlaylistFixtures.mediaPlaylist(segmentCount, features)).getTags();
+    }
+
+    @Benchmark
+    public List<ExtInf> getSegments() {
+        return new MediaPlaylistV12(tags).getSegments();
+    }
+
+    @Benchmark
+    public String toPlaylistString() {
+        return new MediaPlaylistV12(tags).toString();
+    }
+}
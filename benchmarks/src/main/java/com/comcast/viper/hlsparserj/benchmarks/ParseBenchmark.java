@@ -0,0 +1,181 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.comcast.viper.hlsparserj.ParseOptions;
+import com.comcast.viper.hlsparserj.PlaylistParser;
+import com.comcast.viper.hlsparserj.tags.TagNames;
+import com.comcast.viper.hlsparserj.tags.UnparsedTag;
+
+/**
+ * Measures {@link PlaylistParser} on media and master playlists of
+ * different sizes.  Run with {@code -prof gc} to report allocations per
+ * operation.  The reused variants parse with one parser per thread that is
+ * reset between operations, the way a poller reparses the same channel;
+ * comparing their {@code gc.alloc.rate.norm} with the fresh-parser variants
+ * shows the allocations saved by the recycled buffers.  The filtered
+ * variants keep only the segment durations or the header tags of a media
+ * playlist, for comparison with a full parse.  The tail variant decodes
+ * only the header and the last few segments.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    private static final ParseOptions DURATIONS_ONLY = ParseOptions.tags(TagNames.EXTINF);
+    private static final int TAIL_SEGMENT_COUNT = 5;
+    private static final ParseOptions HEADER_ONLY = ParseOptions.tags(TagNames.EXTXMEDIASEQUENCE,
+            TagNames.EXTXTARGETDURATION);
+
+    /**
+     * Media playlist text, as a string and as UTF-8 bytes.
+     */
+    @State(Scope.Benchmark)
+    public static class MediaState {
+
+        @Param({"10", "1000", "50000", "200000"})
+        public int segmentCount;
+
+        @Param({PlaylistFixtures.NONE, PlaylistFixtures.BYTERANGE, PlaylistFixtures.KEY,
+                PlaylistFixtures.DATETIME, PlaylistFixtures.ALL})
+        public String features;
+
+        String playlist;
+        byte[] playlistBytes;
+
+        @Setup
+        public void setup() {
+            playlist = PlaylistFixtures.mediaPlaylist(segmentCount, features);
+            playlistBytes = playlist.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Master playlist text, as a string and as UTF-8 bytes.
+     */
+    @State(Scope.Benchmark)
+    public static class MasterState {
+
+        @Param({"5", "20", "50"})
+        public int variantCount;
+
+        String playlist;
+        byte[] playlistBytes;
+
+        @Setup
+        public void setup() {
+            playlist = PlaylistFixtures.masterPlaylist(variantCount);
+            playlistBytes = playlist.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Parser reused by one benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class ParserState {
+
+        final PlaylistParser parser = new PlaylistParser();
+    }
+
+    @Benchmark
+    public List<UnparsedTag> parseMediaString(final MediaState state) {
+        final PlaylistParser parser = new PlaylistParser();
+        parser.parse(state.playlist);
+        return parser.getTags();
+    }
+
+    @Benchmark
+    public List<UnparsedTag> parseMediaInputStream(final MediaState state) throws IOException {
+        final PlaylistParser parser = new PlaylistParser();
+        parser.parse(new ByteArrayInputStream(state.playlistBytes));
+        return parser.getTags();
+    }
+
+    @Benchmark
+    public List<UnparsedTag> parseMediaStringReused(final MediaState state, final ParserState parserState) {
+        final PlaylistParser parser = parserState.parser;
+        parser.reset();
+        parser.parse(state.playlist);
+        return parser.getTags();
+    }
+
+    @Benchmark
+    public List<UnparsedTag> parseMediaInputStreamReused(final MediaState state, final ParserState parserState)
+            throws IOException {
+        final PlaylistParser parser = parserState.parser;
+        parser.reset();
+        parser.parse(new ByteArrayInputStream(state.playlistBytes));
+        return parser.getTags();
+    }
+
+    @Benchmark
+    public List<UnparsedTag> parseMediaInputStreamDurationsOnly(final MediaState state) throws IOException {
+        final PlaylistParser parser = new PlaylistParser(DURATIONS_ONLY);
+        parser.parse(new ByteArrayInputStream(state.playlistBytes));
+        return parser.getTags();
+    }
+
+    @Benchmark
+    public List<UnparsedTag> parseMediaInputStreamHeaderOnly(final MediaState state) throws IOException {
+        final PlaylistParser parser = new PlaylistParser(HEADER_ONLY);
+        parser.parse(new ByteArrayInputStream(state.playlistBytes));
+        return parser.getTags();
+    }
+
+    @Benchmark
+    public List<UnparsedTag> parseMediaTail(final MediaState state) throws IOException {
+        final PlaylistParser parser = new PlaylistParser();
+        parser.parseTail(ByteBuffer.wrap(state.playlistBytes), TAIL_SEGMENT_COUNT);
+        return parser.getTags();
+    }
+
+    @Benchmark
+    public List<UnparsedTag> parseMasterString(final MasterState state) {
+        final PlaylistParser parser = new PlaylistParser();
+        parser.parse(state.playlist);
+        return parser.getTags();
+    }
+
+    @Benchmark
+    public List<UnparsedTag> parseMasterInputStream(final MasterState state) throws IOException {
+        final PlaylistParser parser = new PlaylistParser();
+        parser.parse(new ByteArrayInputStream(state.playlistBytes));
+        return parser.getTags();
+    }
+}
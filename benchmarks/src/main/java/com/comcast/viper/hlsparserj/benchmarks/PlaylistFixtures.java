@@ -0,0 +1,87 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.benchmarks;
+
+import com.comcast.viper.hlsparserj.generator.MasterPlaylistGenerator;
+import com.comcast.viper.hlsparserj.generator.MediaPlaylistGenerator;
+
+/**
+ * Builds playlists of realistic shape and size for the benchmarks.
+ */
+final class PlaylistFixtures {
+
+    // Segment features that a media playlist can be built with
+    static final String NONE = "none";
+    static final String BYTERANGE = "byterange";
+    static final String KEY = "key";
+    static final String DATETIME = "datetime";
+    static final String ALL = "all";
+
+    private static final long SEED = 20150101L;
+    private static final int KEY_ROTATION = 100;
+    private static final int MIN_BANDWIDTH = 200000;
+    private static final int MAX_BANDWIDTH = 20000000;
+
+    private PlaylistFixtures() {
+    }
+
+    /**
+     * Returns a VOD media playlist with segments of about six seconds.
+     * @param segmentCount number of segments
+     * @param features one of NONE, BYTERANGE, KEY, DATETIME or ALL
+     * @return playlist text
+     */
+    static String mediaPlaylist(final int segmentCount, final String features) {
+        final MediaPlaylistGenerator generator = new MediaPlaylistGenerator(SEED).setSegmentCount(segmentCount);
+        if (BYTERANGE.equals(features) || ALL.equals(features)) {
+            generator.setByteRanges(true);
+        }
+        if (KEY.equals(features) || ALL.equals(features)) {
+            generator.setKeyRotationInterval(KEY_ROTATION);
+        }
+        if (DATETIME.equals(features) || ALL.equals(features)) {
+            generator.setProgramDateTime(1420070400000L);
+        }
+        return generator.generate();
+    }
+
+    /**
+     * Returns a master playlist with a bitrate ladder, audio renditions and
+     * an I-frame stream per variant.
+     * @param variantCount number of variant streams
+     * @return playlist text
+     */
+    static String masterPlaylist(final int variantCount) {
+        return masterGenerator(variantCount).generate();
+    }
+
+    /**
+     * Returns a bandwidth in the middle of the ladder of
+     * {@link #masterPlaylist(int)}, between two variants.
+     * @param variantCount number of variant streams
+     * @return bandwidth (bps)
+     */
+    static int middleBandwidth(final int variantCount) {
+        return masterGenerator(variantCount).getBandwidth(variantCount / 2) + 1;
+    }
+
+    private static MasterPlaylistGenerator masterGenerator(final int variantCount) {
+        return new MasterPlaylistGenerator(SEED)
+                .setVariants(variantCount, MIN_BANDWIDTH, MAX_BANDWIDTH)
+                .setAudioLanguages("en", "es")
+                .setIFrameStreams(true);
+    }
+}
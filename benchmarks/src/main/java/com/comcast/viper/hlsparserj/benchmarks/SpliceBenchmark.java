@@ -0,0 +1,84 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.benchmarks;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.comcast.viper.hlsparserj.MediaPlaylist;
+import com.comcast.viper.hlsparserj.PlaylistFactory;
+import com.comcast.viper.hlsparserj.PlaylistVersion;
+import com.comcast.viper.hlsparserj.splice.AdBreak;
+import com.comcast.viper.hlsparserj.splice.AdPod;
+import com.comcast.viper.hlsparserj.splice.SpliceEngine;
+
+/**
+ * Measures {@link SpliceEngine} writing personalized manifests: a frozen
+ * content playlist shared by every operation, with an ad pod spliced in
+ * every 50 segments.  The throughput is the number of manifests per second
+ * and thread.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SpliceBenchmark {
+
+    private static final int BREAK_INTERVAL = 50;
+
+    @Param({"10", "1000"})
+    public int segmentCount;
+
+    @Param({PlaylistFixtures.NONE, PlaylistFixtures.ALL})
+    public String features;
+
+    private MediaPlaylist content;
+    private List<AdBreak> breaks;
+
+    @Setup
+    public void setup() {
+        content = ((MediaPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE,
+                PlaylistFixtures.mediaPlaylist(segmentCount, features))).snapshot();
+        final MediaPlaylist ad = (MediaPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE,
+                PlaylistFixtures.mediaPlaylist(4, PlaylistFixtures.NONE));
+        final AdPod pod = new AdPod(ad, URI.create("http://ads.example.com/pods/pod.m3u8"));
+        breaks = new ArrayList<AdBreak>();
+        for (int i = segmentCount / 2 % BREAK_INTERVAL; i < content.getSegmentCount(); i += BREAK_INTERVAL) {
+            breaks.add(AdBreak.insert(i, pod));
+        }
+    }
+
+    @Benchmark
+    public String splice() {
+        return SpliceEngine.splice(content, breaks);
+    }
+}
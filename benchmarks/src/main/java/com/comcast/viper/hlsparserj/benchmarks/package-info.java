@@ -0,0 +1,5 @@
+/**
+ * JMH benchmarks for parsing playlists and accessing the parsed model.
+ */
+
+package com.comcast.viper.hlsparserj.benchmarks;
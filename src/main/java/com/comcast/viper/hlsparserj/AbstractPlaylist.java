@@ -16,9 +16,12 @@
 package com.comcast.viper.hlsparserj;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.comcast.viper.hlsparserj.jfr.FlightRecorderEvents;
 import com.comcast.viper.hlsparserj.tags.Tag;
 import com.comcast.viper.hlsparserj.tags.TagFactory;
 import com.comcast.viper.hlsparserj.tags.TagNames;
@@ -37,6 +40,12 @@ import com.comcast.viper.hlsparserj.tags.Version;
  *
  * If a tag entry is single valued (ex. #EXT-X-VERSION), once it's parsed,
  * it is cached in parsedTagCache.
+ *
+ * A playlist can be frozen once it is fully built.  A frozen playlist
+ * rejects modification and can be shared between threads.
+ *
+ * A parsed playlist carries the fingerprint of the body it was parsed
+ * from, so unchanged bodies can be recognized without parsing them.
  */
 public abstract class AbstractPlaylist implements IPlaylist {
 
@@ -60,6 +69,14 @@ public abstract class AbstractPlaylist implements IPlaylist {
      */
     protected PlaylistVersion version;
 
+    /**
+     * Set once the playlist has been frozen.
+     */
+    protected volatile boolean frozen;
+
+    private volatile long fingerprint;
+    private volatile boolean fingerprintKnown;
+
     /**
      * Constructor.
      * @param version playlist version
@@ -89,11 +106,139 @@ public abstract class AbstractPlaylist implements IPlaylist {
                     tagList.add(tag);
                 }
             }
-            parsedTagListCache.put(tagName, tagList);
+            tagList = cacheTagList(tagName, tagList);
         }
         return tagList;
     }
 
+    /**
+     * Puts a parsed tag list in the cache, unless another thread has cached
+     * one first, and returns the cached list.  Lists cached by a frozen
+     * playlist are unmodifiable.
+     * @param tagName tag name
+     * @param tagList parsed tag list
+     * @return cached tag list
+     */
+    protected List<Tag> cacheTagList(final String tagName, final List<Tag> tagList) {
+        final List<Tag> cacheList = frozen ? Collections.unmodifiableList(tagList) : tagList;
+        final List<Tag> existing = parsedTagListCache.putIfAbsent(tagName, cacheList);
+        return existing == null ? cacheList : existing;
+    }
+
+    /**
+     * Freezes the playlist.  The tag list, the parsed tag lists and the
+     * unparsed tags become unmodifiable, and methods that modify the
+     * playlist, such as {@link MasterPlaylist#removeVariantStream}, throw
+     * UnsupportedOperationException.  A frozen playlist can be shared between
+     * threads.
+     * @return this playlist
+     */
+    public synchronized AbstractPlaylist freeze() {
+        if (!frozen) {
+            for (UnparsedTag tag : tags) {
+                tag.freeze();
+            }
+            tags = Collections.unmodifiableList(tags);
+            for (Map.Entry<String, List<Tag>> entry : parsedTagListCache.entrySet()) {
+                entry.setValue(Collections.unmodifiableList(entry.getValue()));
+            }
+            frozen = true;
+        }
+        return this;
+    }
+
+    /**
+     * Returns true if the playlist has been frozen.
+     * @return boolean
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Returns the fingerprint of the playlist: the {@link XxHash64} hash of
+     * the body it was parsed from.  A playlist that was not parsed from a
+     * body, such as one derived from another playlist, or whose variant
+     * streams have been removed, is fingerprinted as the UTF-8 encoding of
+     * {@link #toString()}.  Changes made directly to its unparsed tags are
+     * not reflected.
+     * @return fingerprint
+     */
+    public long getFingerprint() {
+        if (!fingerprintKnown) {
+            setFingerprint(XxHash64.hashUtf8(toString()));
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Sets the fingerprint of the body the playlist was parsed from.
+     * @param fingerprint fingerprint
+     */
+    void setFingerprint(final long fingerprint) {
+        this.fingerprint = fingerprint;
+        fingerprintKnown = true;
+    }
+
+    /**
+     * Takes over the fingerprint of a playlist with the same content, if it
+     * is known.
+     * @param source playlist with the same content
+     */
+    void inheritFingerprint(final AbstractPlaylist source) {
+        if (source.fingerprintKnown) {
+            setFingerprint(source.fingerprint);
+        }
+    }
+
+    /**
+     * Forgets the fingerprint of the playlist after it has been modified.
+     */
+    void clearFingerprint() {
+        fingerprintKnown = false;
+    }
+
+    /**
+     * Returns an immutable snapshot of the playlist: the playlist itself if it
+     * is frozen, otherwise a frozen copy of it.  Later changes to this
+     * playlist do not affect the copy.
+     * @return frozen playlist
+     */
+    public AbstractPlaylist snapshot() {
+        if (frozen) {
+            return this;
+        }
+        final List<UnparsedTag> copies = new ArrayList<UnparsedTag>(tags.size());
+        for (UnparsedTag tag : tags) {
+            copies.add(new UnparsedTag(tag));
+        }
+        final AbstractPlaylist snapshot = PlaylistFactory.createPlaylist(version, isMasterPlaylist(), copies);
+        snapshot.inheritFingerprint(this);
+        return snapshot.freeze();
+    }
+
+    /**
+     * Returns a frozen playlist of the same version and type as this one
+     * with the given tags.  The tags must be frozen, or not used elsewhere.
+     * Used by copy-on-write methods, which share the unchanged tags of a
+     * snapshot with the playlists they derive from it.
+     * @param derivedTags tags of the new playlist
+     * @return frozen playlist
+     */
+    protected AbstractPlaylist derive(final List<UnparsedTag> derivedTags) {
+        return PlaylistFactory.createPlaylist(version, isMasterPlaylist(), derivedTags).freeze();
+    }
+
+    /**
+     * Throws UnsupportedOperationException if the playlist has been frozen.
+     * Called by methods that modify the playlist.
+     */
+    protected void checkNotFrozen() {
+        if (frozen) {
+            throw new UnsupportedOperationException("Playlist is frozen");
+        }
+    }
+
     /**
      * Returns the tag that matches the tag name.  If it is still unparsed, it would
      * proceed with the parsing and return it.
@@ -131,6 +276,7 @@ public abstract class AbstractPlaylist implements IPlaylist {
 
     @Override
     public String toString() {
+        final Object event = FlightRecorderEvents.beginSerialize();
         final StringBuilder builder = new StringBuilder();
         for (UnparsedTag tag : tags) {
             builder.append(tag.getRawTag());
@@ -140,6 +286,7 @@ public abstract class AbstractPlaylist implements IPlaylist {
             }
             builder.append("\n");
         }
+        FlightRecorderEvents.commitSerialize(event, tags.size(), builder.length(), isMasterPlaylist());
         return builder.toString();
     }
 }
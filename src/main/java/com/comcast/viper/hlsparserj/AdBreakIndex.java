@@ -0,0 +1,387 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.comcast.viper.hlsparserj.tags.TagNames;
+import com.comcast.viper.hlsparserj.tags.UnparsedTag;
+import com.comcast.viper.hlsparserj.tags.media.CueOut;
+import com.comcast.viper.hlsparserj.tags.media.CueOutCont;
+import com.comcast.viper.hlsparserj.tags.media.DateRange;
+
+/**
+ * Ad breaks of a media playlist, with the media segments they cover.
+ *
+ * Breaks are found from the ad markers of the playlist in a single pass
+ * over its tags.  A break starts at an EXT-X-CUE-OUT tag or at an
+ * EXT-X-DATERANGE tag with an SCTE35-OUT attribute, and ends at the next
+ * EXT-X-CUE-IN tag, EXT-X-DATERANGE tag with an SCTE35-IN attribute, or
+ * start of a break.  An EXT-X-CUE-OUT-CONT tag outside of a break starts
+ * one: the playlist window begins in the middle of that break.  A CUE-OUT
+ * and a DATERANGE that mark the same segment describe the same break.  Only
+ * the marker tags are parsed; segment durations are read from the EXTINF
+ * tags directly.
+ *
+ * Breaks are kept in playlist order, with their segment ranges and start
+ * times in sorted arrays, so the break of a segment or of a time offset is
+ * found by binary search.
+ *
+ * Segment ranges are half open: the start segment is inclusive and the end
+ * segment exclusive.  Times are in seconds from the start of the first
+ * segment of the playlist.
+ */
+public final class AdBreakIndex {
+
+    /**
+     * An ad break.
+     */
+    public static final class Break {
+
+        private final int startSegment;
+        private final int endSegment;
+        private final double startTime;
+        private final double duration;
+        private final double plannedDuration;
+        private final String id;
+        private final UnparsedTag startTag;
+        private final UnparsedTag endTag;
+        private final boolean continued;
+
+        private Break(final Builder builder, final int endSegment, final double endTime,
+                final UnparsedTag endTag) {
+            this.startSegment = builder.startSegment;
+            this.endSegment = endSegment;
+            this.startTime = builder.startTime;
+            this.duration = endTime - builder.startTime;
+            this.plannedDuration = builder.plannedDuration;
+            this.id = builder.id;
+            this.startTag = builder.startTag;
+            this.endTag = endTag;
+            this.continued = builder.continued;
+        }
+
+        /**
+         * Returns the index of the first segment of the break.
+         * @return segment index
+         */
+        public int getStartSegment() {
+            return startSegment;
+        }
+
+        /**
+         * Returns the index after the last segment of the break.
+         * @return segment index
+         */
+        public int getEndSegment() {
+            return endSegment;
+        }
+
+        /**
+         * Returns the number of segments of the break in the playlist.
+         * @return segment count
+         */
+        public int getSegmentCount() {
+            return endSegment - startSegment;
+        }
+
+        /**
+         * Returns the start time of the break.
+         * @return seconds from the start of the playlist
+         */
+        public double getStartTime() {
+            return startTime;
+        }
+
+        /**
+         * Returns the total EXTINF duration of the segments of the break in
+         * the playlist.
+         * @return duration in seconds
+         */
+        public double getDuration() {
+            return duration;
+        }
+
+        /**
+         * Returns the duration announced by the ad markers: the CUE-OUT
+         * duration, the CUE-OUT-CONT duration, or the DATERANGE DURATION or
+         * PLANNED-DURATION.
+         * @return duration in seconds, or NaN if no marker has one
+         */
+        public double getPlannedDuration() {
+            return plannedDuration;
+        }
+
+        /**
+         * Returns the ID of the DATERANGE tag that started the break.
+         * @return ID, or null
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Returns the tag that started the break: an EXT-X-CUE-OUT,
+         * EXT-X-CUE-OUT-CONT or EXT-X-DATERANGE tag.
+         * @return tag
+         */
+        public UnparsedTag getStartTag() {
+            return startTag;
+        }
+
+        /**
+         * Returns the tag that ended the break: an EXT-X-CUE-IN or
+         * EXT-X-DATERANGE tag.
+         * @return tag, or null if the break was ended by the next break or
+         * by the end of the playlist
+         */
+        public UnparsedTag getEndTag() {
+            return endTag;
+        }
+
+        /**
+         * Returns true if the break started before the first segment of the
+         * playlist, that is, it was started by an EXT-X-CUE-OUT-CONT tag.
+         * @return boolean
+         */
+        public boolean isContinued() {
+            return continued;
+        }
+
+        /**
+         * Returns true if the end of the break is not in the playlist yet.
+         * @return boolean
+         */
+        public boolean isOpen() {
+            return endTag == null;
+        }
+
+        @Override
+        public String toString() {
+            return "Break[segments " + startSegment + "-" + endSegment + ", " + duration + "s"
+                    + (id == null ? "" : ", " + id) + "]";
+        }
+    }
+
+    private static final AdBreakIndex EMPTY = new AdBreakIndex(new ArrayList<Break>());
+
+    private final List<Break> breaks;
+    private final int[] startSegments;
+    private final double[] startTimes;
+
+    private AdBreakIndex(final List<Break> breaks) {
+        this.breaks = Collections.unmodifiableList(breaks);
+        startSegments = new int[breaks.size()];
+        startTimes = new double[breaks.size()];
+        for (int i = 0; i < breaks.size(); i++) {
+            startSegments[i] = breaks.get(i).startSegment;
+            startTimes[i] = breaks.get(i).startTime;
+        }
+    }
+
+    /**
+     * Builds the index of the given playlist tags.
+     * @param tags tags of a media playlist
+     * @return index
+     */
+    static AdBreakIndex build(final List<UnparsedTag> tags) {
+        final List<Break> breaks = new ArrayList<Break>();
+        Builder open = null;
+        int segment = 0;
+        double time = 0;
+        double segmentDuration = 0;
+
+        for (int i = 0; i < tags.size(); i++) {
+            final UnparsedTag tag = tags.get(i);
+            final String tagName = tag.getTagName();
+            if (tagName.equals(TagNames.EXTINF)) {
+                segmentDuration = MediaPlaylist.segmentDuration(tag);
+            }
+
+            if (MediaPlaylist.isSegmentEnd(tag)) {
+                segment++;
+                time += segmentDuration;
+                segmentDuration = 0;
+            } else if (tagName.equals(TagNames.EXTXCUEOUT)) {
+                if (open != null) {
+                    breaks.add(new Break(open, segment, time, null));
+                }
+                final CueOut cueOut = new CueOut();
+                cueOut.setTag(tag);
+                open = new Builder(tag, segment, time, false);
+                open.plan(cueOut::getDuration, false);
+            } else if (tagName.equals(TagNames.EXTXCUEOUTCONT)) {
+                final CueOutCont cueOutCont = new CueOutCont();
+                cueOutCont.setTag(tag);
+                if (open == null) {
+                    open = new Builder(tag, segment, time, true);
+                }
+                open.plan(cueOutCont::getDuration, false);
+            } else if (tagName.equals(TagNames.EXTXCUEIN)) {
+                if (open != null) {
+                    breaks.add(new Break(open, segment, time, tag));
+                    open = null;
+                }
+            } else if (tagName.equals(TagNames.EXTXDATERANGE)) {
+                final DateRange dateRange = new DateRange();
+                dateRange.setTag(tag);
+                if (dateRange.getSCTE35Out() != null) {
+                    // A CUE-OUT of the same segment describes the same break
+                    if (open != null && (open.startSegment != segment || open.id != null)) {
+                        breaks.add(new Break(open, segment, time, null));
+                        open = null;
+                    }
+                    if (open == null) {
+                        open = new Builder(tag, segment, time, false);
+                    }
+                    open.id = dateRange.getId();
+                    open.plan(dateRange::getDuration, true);
+                    open.plan(dateRange::getPlannedDuration, false);
+                } else if (dateRange.getSCTE35In() != null && open != null) {
+                    breaks.add(new Break(open, segment, time, tag));
+                    open = null;
+                }
+            }
+        }
+        if (open != null) {
+            breaks.add(new Break(open, segment, time, null));
+        }
+        return breaks.isEmpty() ? EMPTY : new AdBreakIndex(breaks);
+    }
+
+    /**
+     * Returns the number of breaks.
+     * @return break count
+     */
+    public int size() {
+        return breaks.size();
+    }
+
+    /**
+     * Returns the breaks in playlist order.
+     * @return unmodifiable list of breaks
+     */
+    public List<Break> getBreaks() {
+        return breaks;
+    }
+
+    /**
+     * Returns the break that contains the given segment.
+     * @param segmentIndex segment index
+     * @return break, or null if the segment is not part of a break
+     */
+    public Break findBySegment(final int segmentIndex) {
+        // Breaks do not overlap, so only the last one that starts at or
+        // before the segment can contain it
+        int low = 0;
+        int high = startSegments.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (startSegments[mid] <= segmentIndex) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high >= 0 && segmentIndex < breaks.get(high).endSegment ? breaks.get(high) : null;
+    }
+
+    /**
+     * Returns the break that is playing at the given time.
+     * @param time seconds from the start of the playlist
+     * @return break, or null if the time is not part of a break
+     */
+    public Break findByTime(final double time) {
+        int low = 0;
+        int high = startTimes.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (startTimes[mid] <= time) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (high < 0) {
+            return null;
+        }
+        final Break adBreak = breaks.get(high);
+        return time < adBreak.startTime + adBreak.duration ? adBreak : null;
+    }
+
+    /**
+     * Returns the first break that starts at or after the given segment.
+     * @param segmentIndex segment index
+     * @return break, or null if there is none
+     */
+    public Break nextBreak(final int segmentIndex) {
+        int low = 0;
+        int high = startSegments.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (startSegments[mid] < segmentIndex) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < breaks.size() ? breaks.get(low) : null;
+    }
+
+    /**
+     * A break whose end has not been found yet.
+     */
+    private static final class Builder {
+
+        private final UnparsedTag startTag;
+        private final int startSegment;
+        private final double startTime;
+        private final boolean continued;
+        private double plannedDuration = Double.NaN;
+        private String id;
+
+        Builder(final UnparsedTag startTag, final int startSegment, final double startTime,
+                final boolean continued) {
+            this.startTag = startTag;
+            this.startSegment = startSegment;
+            this.startTime = startTime;
+            this.continued = continued;
+        }
+
+        /**
+         * Sets the planned duration of the break.
+         * Durations that can not be read are ignored.
+         * @param duration duration getter of a marker tag
+         * @param replace true to replace a planned duration that is already set
+         */
+        void plan(final Supplier<Float> duration, final boolean replace) {
+            if (replace || Double.isNaN(plannedDuration)) {
+                try {
+                    final Float value = duration.get();
+                    if (value != null) {
+                        plannedDuration = value;
+                    }
+                } catch (NumberFormatException ex) {
+                    return;
+                }
+            }
+        }
+    }
+}
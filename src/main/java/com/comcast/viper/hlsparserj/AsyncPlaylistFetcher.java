@@ -0,0 +1,276 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.methods.AsyncByteConsumer;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.protocol.HttpContext;
+
+import com.comcast.viper.hlsparserj.jfr.FlightRecorderEvents;
+import com.comcast.viper.hlsparserj.metrics.ParseListener;
+
+/**
+ * Fetches and parses playlists without blocking a thread for the network
+ * round trip.
+ *
+ * Requests are executed by a non-blocking HTTP client on a small, fixed
+ * set of I/O threads.  The response body is handed to the playlist parser
+ * chunk by chunk as it arrives, so neither a thread nor a full copy of the
+ * body is held while waiting on a slow origin.  A single fetcher can have
+ * tens of thousands of requests in flight; requests above the connection
+ * limit wait for a free connection without occupying a thread.
+ *
+ * Instances are thread-safe and meant to be shared.  Close the fetcher to
+ * release its connections and I/O threads.
+ */
+public class AsyncPlaylistFetcher implements Closeable {
+
+    /**
+     * Default timeout (ms) for connecting, leasing a connection and waiting for data.
+     */
+    public static final int DEFAULT_TIMEOUT = 10000;
+
+    /**
+     * Default maximum number of open connections.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS = 10000;
+
+    private final CloseableHttpAsyncClient httpClient;
+    private final RequestConfig requestConfig;
+
+    /**
+     * Constructor.  Uses the default timeouts and connection limit, and one
+     * I/O thread per available processor.
+     */
+    public AsyncPlaylistFetcher() {
+        this(DEFAULT_TIMEOUT, DEFAULT_TIMEOUT, DEFAULT_TIMEOUT, DEFAULT_MAX_CONNECTIONS,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor.
+     * @param connectTimeout timeout (ms) until a connection with the server is established
+     * @param requestTimeout timeout (ms) used when requesting a connection from the connection manager
+     * @param socketTimeout timeout (ms) waiting for data or a max period inactivity between 2 consecutive data packets
+     * @param maxConnections maximum number of open connections, in total and per host
+     * @param ioThreads number of I/O dispatch threads
+     */
+    public AsyncPlaylistFetcher(final int connectTimeout, final int requestTimeout,
+            final int socketTimeout, final int maxConnections, final int ioThreads) {
+
+        RequestConfig.Builder requestBuilder = RequestConfig.custom();
+        requestBuilder = requestBuilder.setConnectTimeout(connectTimeout);
+        requestBuilder = requestBuilder.setConnectionRequestTimeout(requestTimeout);
+        requestBuilder = requestBuilder.setSocketTimeout(socketTimeout);
+
+        final IOReactorConfig reactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(ioThreads)
+                .setConnectTimeout(connectTimeout)
+                .setSoTimeout(socketTimeout)
+                .build();
+
+        requestConfig = requestBuilder.build();
+        final HttpAsyncClientBuilder builder = HttpAsyncClientBuilder.create();
+        builder.setDefaultRequestConfig(requestConfig);
+        builder.setDefaultIOReactorConfig(reactorConfig);
+        builder.setMaxConnTotal(maxConnections);
+        builder.setMaxConnPerRoute(maxConnections);
+        builder.setThreadFactory(new DaemonThreadFactory());
+
+        httpClient = builder.build();
+        httpClient.start();
+    }
+
+    /**
+     * Fetches and parses the playlist at the given URL.  The returned future
+     * completes with the parsed playlist, or exceptionally with an
+     * IOException if the request fails or returns a status other than 200.
+     * Cancelling the future aborts the request.  The fetch is reported to the
+     * parse listener installed in {@link PlaylistFactory}; the connect time
+     * is not measured.
+     *
+     * @param playlistVersion version of the playlist (V12 is the default)
+     * @param playlistURL URL pointing to a playlist
+     * @return future parsed playlist
+     */
+    public CompletableFuture<AbstractPlaylist> fetchAndParse(final PlaylistVersion playlistVersion,
+            final URL playlistURL) {
+        return fetchAndParse(playlistVersion, playlistURL, requestConfig.getSocketTimeout());
+    }
+
+    /**
+     * Fetches and parses the playlist at the given URL, waiting up to the
+     * given time for data instead of the fetcher's socket timeout.  Meant
+     * for requests the server may hold open, such as blocking playlist
+     * reloads.  See {@link #fetchAndParse(PlaylistVersion, URL)}.
+     *
+     * @param playlistVersion version of the playlist (V12 is the default)
+     * @param playlistURL URL pointing to a playlist
+     * @param socketTimeout timeout (ms) waiting for data or a max period inactivity between 2 consecutive data packets
+     * @return future parsed playlist
+     */
+    public CompletableFuture<AbstractPlaylist> fetchAndParse(final PlaylistVersion playlistVersion,
+            final URL playlistURL, final int socketTimeout) {
+        final HttpGet get = new HttpGet(playlistURL.toString());
+        if (socketTimeout != requestConfig.getSocketTimeout()) {
+            get.setConfig(RequestConfig.copy(requestConfig).setSocketTimeout(socketTimeout).build());
+        }
+
+        final CompletableFuture<AbstractPlaylist> result = new CompletableFuture<AbstractPlaylist>();
+        final ParseListener listener = PlaylistFactory.getParseListener();
+        final PlaylistConsumer consumer = new PlaylistConsumer(playlistVersion, playlistURL, listener);
+
+        final Future<AbstractPlaylist> request = httpClient.execute(
+                HttpAsyncMethods.create(get),
+                consumer,
+                new FutureCallback<AbstractPlaylist>() {
+                    @Override
+                    public void completed(final AbstractPlaylist playlist) {
+                        result.complete(playlist);
+                    }
+
+                    @Override
+                    public void failed(final Exception ex) {
+                        consumer.commitEvent();
+                        listener.fetchFailed(playlistURL, ex);
+                        result.completeExceptionally(ex);
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        result.cancel(false);
+                    }
+                });
+
+        result.whenComplete((playlist, ex) -> {
+            if (result.isCancelled()) {
+                request.cancel(true);
+            }
+        });
+
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    /**
+     * Response consumer that feeds the body to a playlist parser as it
+     * arrives.
+     */
+    private static class PlaylistConsumer extends AsyncByteConsumer<AbstractPlaylist> {
+
+        private final PlaylistVersion playlistVersion;
+        private final URL playlistURL;
+        private final ParseListener listener;
+        private final boolean listening;
+        private final PlaylistParser parser;
+        private final long startTime;
+        private final Object event;
+        private long headersTime;
+        private int statusCode;
+
+        PlaylistConsumer(final PlaylistVersion playlistVersion, final URL playlistURL,
+                final ParseListener listener) {
+            this.playlistVersion = playlistVersion;
+            this.playlistURL = playlistURL;
+            this.listener = listener;
+            this.listening = listener != ParseListener.NONE;
+            this.parser = new PlaylistParser(listener);
+            this.startTime = listening ? System.nanoTime() : 0;
+            this.event = FlightRecorderEvents.beginFetch();
+        }
+
+        /**
+         * Commits the flight recorder event of the fetch.
+         */
+        void commitEvent() {
+            FlightRecorderEvents.commitFetch(event, playlistURL, statusCode, parser.getByteCount());
+        }
+
+        @Override
+        protected void onResponseReceived(final HttpResponse response) throws IOException {
+            if (listening) {
+                headersTime = System.nanoTime();
+            }
+            statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode != HttpStatus.SC_OK) {
+                throw new IOException("Request returned a status code of " + statusCode);
+            }
+        }
+
+        @Override
+        protected void onByteReceived(final ByteBuffer buf, final IOControl ioctrl) throws IOException {
+            try {
+                parser.parseChunk(buf);
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+        }
+
+        @Override
+        protected AbstractPlaylist buildResult(final HttpContext context) throws IOException {
+            try {
+                parser.finish();
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            commitEvent();
+            if (listening) {
+                listener.fetchCompleted(playlistURL, HttpStatus.SC_OK, -1, headersTime - startTime,
+                        System.nanoTime() - headersTime);
+            }
+            return PlaylistFactory.getVersionSpecificPlaylist(parser, playlistVersion);
+        }
+    }
+
+    /**
+     * Creates daemon threads so an idle fetcher does not keep the JVM alive.
+     */
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final ThreadFactory delegate = Executors.defaultThreadFactory();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = delegate.newThread(runnable);
+            thread.setName("hlsparserj-" + thread.getName());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,458 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.comcast.viper.hlsparserj.tags.media.DateRange;
+
+/**
+ * Date ranges of a media playlist, indexed for time window queries.
+ *
+ * EXT-X-DATERANGE tags with the same ID describe the same range; they are
+ * merged into one {@link Range}.  The end of a range is its END-DATE, or
+ * its start plus its DURATION, or, with END-ON-NEXT, the start of the next
+ * range of the same CLASS.  A range without any of these ends at its start
+ * plus its PLANNED-DURATION if it has one, and is a single instant
+ * otherwise; either way it is reported as open.  Ranges without a valid
+ * START-DATE can not be placed in time and are left out.
+ *
+ * A range overlaps the window [from, to) if it starts before to and ends
+ * after from; an instant overlaps it if it lies within it.  The ranges
+ * that overlap a window are those that start within it, found by binary
+ * search over the start times, and those that start before it and contain
+ * from, found with a centered interval tree.  Both take O(log n + k) for k
+ * ranges reported, besides sorting the ranges found in the tree by start
+ * time; no work or allocation grows with the ranges before the window.
+ *
+ * Times are in milliseconds since the epoch.
+ */
+public final class DateRangeIndex {
+
+    /**
+     * A date range, merged from the tags with its ID.
+     */
+    public static final class Range {
+
+        private final String id;
+        private final String dateRangeClass;
+        private final long startTime;
+        private final ArrayList<DateRange> tags;
+        private long endTime;
+        private boolean open;
+        private boolean endOnNext;
+
+        private Range(final DateRange tag, final long startTime) {
+            this.id = tag.getId();
+            this.dateRangeClass = tag.getDateRangeClass();
+            this.startTime = startTime;
+            this.tags = new ArrayList<DateRange>(1);
+            this.tags.add(tag);
+        }
+
+        /**
+         * Returns the ID of the range.
+         * @return ID, or null if the tag does not have one
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Returns the CLASS of the range.
+         * @return class, or null
+         */
+        public String getDateRangeClass() {
+            return dateRangeClass;
+        }
+
+        /**
+         * Returns the start of the range.
+         * @return milliseconds since the epoch
+         */
+        public long getStartTime() {
+            return startTime;
+        }
+
+        /**
+         * Returns the end of the range.  For an open range this is the
+         * planned end, or the start time.
+         * @return milliseconds since the epoch
+         */
+        public long getEndTime() {
+            return endTime;
+        }
+
+        /**
+         * Returns true if the end of the range is not known yet.
+         * @return boolean
+         */
+        public boolean isOpen() {
+            return open;
+        }
+
+        /**
+         * Returns the tags that describe the range, in playlist order.
+         * @return unmodifiable list of tags
+         */
+        public List<DateRange> getTags() {
+            return Collections.unmodifiableList(tags);
+        }
+
+        /**
+         * Returns the value of a client-defined attribute of the range.  If
+         * several tags of the range have it, the last one wins.
+         * @param name attribute name, beginning with "X-"
+         * @return value, or null
+         */
+        public String getClientAttribute(final String name) {
+            for (int i = tags.size() - 1; i >= 0; i--) {
+                final String value = tags.get(i).getClientAttribute(name);
+                if (value != null) {
+                    return value;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "Range[" + id + ", " + startTime + "-" + endTime + (open ? ", open" : "") + "]";
+        }
+
+        /**
+         * Sets the end from the attributes of the merged tags.
+         */
+        private void resolveEnd() {
+            Long end = null;
+            Float planned = null;
+            for (DateRange tag : tags) {
+                if (tag.getEndTime() != null) {
+                    end = tag.getEndTime();
+                } else if (tag.getDuration() != null) {
+                    end = startTime + Math.round(tag.getDuration() * 1000.0);
+                }
+                if (tag.getPlannedDuration() != null) {
+                    planned = tag.getPlannedDuration();
+                }
+                endOnNext |= tag.getEndOnNext();
+            }
+            if (end != null) {
+                endTime = Math.max(end, startTime);
+                endOnNext = false;
+            } else {
+                endTime = planned == null ? startTime : startTime + Math.round(planned * 1000.0);
+                open = true;
+            }
+        }
+    }
+
+    private static final DateRangeIndex EMPTY = new DateRangeIndex(new ArrayList<Range>());
+
+    private final List<Range> ranges;
+    private final long[] startTimes;
+    private final Node root;
+
+    private DateRangeIndex(final List<Range> ranges) {
+        this.ranges = Collections.unmodifiableList(ranges);
+        startTimes = new long[ranges.size()];
+        final int[] byStart = new int[ranges.size()];
+        for (int i = 0; i < ranges.size(); i++) {
+            startTimes[i] = ranges.get(i).startTime;
+            byStart[i] = i;
+        }
+        root = Node.build(this.ranges, byStart, byStart.length);
+    }
+
+    /**
+     * Builds the index of the given date range tags.
+     * @param tags date range tags in playlist order
+     * @return index
+     */
+    static DateRangeIndex build(final List<DateRange> tags) {
+        final Map<String, Range> rangesById = new LinkedHashMap<String, Range>();
+        final List<Range> ranges = new ArrayList<Range>();
+        for (DateRange tag : tags) {
+            final String id = tag.getId();
+            final Range range = id == null ? null : rangesById.get(id);
+            if (range != null) {
+                range.tags.add(tag);
+            } else if (tag.getStartTime() != null) {
+                final Range created = new Range(tag, tag.getStartTime());
+                ranges.add(created);
+                if (id != null) {
+                    rangesById.put(id, created);
+                }
+            }
+        }
+        if (ranges.isEmpty()) {
+            return EMPTY;
+        }
+
+        Collections.sort(ranges, new Comparator<Range>() {
+            @Override
+            public int compare(final Range range, final Range other) {
+                return Long.compare(range.startTime, other.startTime);
+            }
+        });
+
+        // END-ON-NEXT ranges end where the next range of their class starts
+        final Map<String, Range> lastByClass = new HashMap<String, Range>();
+        for (Range range : ranges) {
+            range.resolveEnd();
+            if (range.dateRangeClass != null) {
+                final Range previous = lastByClass.put(range.dateRangeClass, range);
+                if (previous != null && previous.endOnNext) {
+                    previous.endTime = Math.max(range.startTime, previous.startTime);
+                    previous.open = false;
+                }
+            }
+        }
+        for (Range range : ranges) {
+            range.tags.trimToSize();
+        }
+        return new DateRangeIndex(ranges);
+    }
+
+    /**
+     * Returns the number of ranges.
+     * @return range count
+     */
+    public int size() {
+        return ranges.size();
+    }
+
+    /**
+     * Returns the ranges, ordered by start time.
+     * @return unmodifiable list of ranges
+     */
+    public List<Range> getRanges() {
+        return ranges;
+    }
+
+    /**
+     * Returns the range with the given ID.  Takes O(n).
+     * @param id ID
+     * @return range, or null
+     */
+    public Range findById(final String id) {
+        for (Range range : ranges) {
+            if (id.equals(range.id)) {
+                return range;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the ranges that overlap the window [from, to), ordered by
+     * start time.
+     * @param from start of the window, inclusive
+     * @param to end of the window, exclusive
+     * @return ranges
+     */
+    public List<Range> findOverlapping(final long from, final long to) {
+        if (to <= from || ranges.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final int firstInWindow = firstStartingAtOrAfter(from);
+        final int endOfWindow = firstStartingAtOrAfter(to);
+
+        // Ranges that start before the window and contain its start
+        final Hits containing = new Hits();
+        if (root != null) {
+            root.stab(from, containing, startTimes);
+        }
+        Arrays.sort(containing.indexes, 0, containing.count);
+
+        final List<Range> found = new ArrayList<Range>(containing.count + endOfWindow - firstInWindow);
+        for (int i = 0; i < containing.count; i++) {
+            found.add(ranges.get(containing.indexes[i]));
+        }
+        for (int i = firstInWindow; i < endOfWindow; i++) {
+            found.add(ranges.get(i));
+        }
+        return found;
+    }
+
+    /**
+     * Returns the ranges that contain the given time, ordered by start time.
+     * A range contains the times from its start, inclusive, to its end,
+     * exclusive; an instant contains its start time only.
+     * @param time milliseconds since the epoch
+     * @return ranges
+     */
+    public List<Range> findAt(final long time) {
+        return findOverlapping(time, time + 1);
+    }
+
+    /**
+     * Returns the index of the first range that starts at or after the given
+     * time.
+     * @param time milliseconds since the epoch
+     * @return range index, or the number of ranges
+     */
+    private int firstStartingAtOrAfter(final long time) {
+        int low = 0;
+        int high = startTimes.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (startTimes[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Node of a centered interval tree.  Holds the ranges that contain its
+     * center, ordered by start and by end; ranges that end before the center
+     * are in the left subtree, and ranges that start after it in the right.
+     */
+    private static final class Node {
+
+        private final long center;
+        private final int[] byStart;
+        private final long[] endsByEnd;
+        private final int[] byEnd;
+        private final Node left;
+        private final Node right;
+
+        private Node(final long center, final int[] byStart, final int[] byEnd, final long[] endsByEnd,
+                final Node left, final Node right) {
+            this.center = center;
+            this.byStart = byStart;
+            this.byEnd = byEnd;
+            this.endsByEnd = endsByEnd;
+            this.left = left;
+            this.right = right;
+        }
+
+        /**
+         * Builds the tree of the given ranges.
+         * @param ranges all ranges, ordered by start time
+         * @param indexes indexes of the ranges of the subtree, in ascending order
+         * @param count number of indexes
+         * @return node, or null if there are no ranges
+         */
+        static Node build(final List<Range> ranges, final int[] indexes, final int count) {
+            if (count == 0) {
+                return null;
+            }
+
+            // The center is the median end point, which keeps the tree balanced
+            final long[] points = new long[count * 2];
+            for (int i = 0; i < count; i++) {
+                final Range range = ranges.get(indexes[i]);
+                points[i * 2] = range.startTime;
+                points[i * 2 + 1] = range.endTime;
+            }
+            Arrays.sort(points);
+            final long center = points[count];
+
+            final int[] leftIndexes = new int[count];
+            final int[] rightIndexes = new int[count];
+            final Integer[] centerIndexes = new Integer[count];
+            int leftCount = 0;
+            int rightCount = 0;
+            int centerCount = 0;
+            for (int i = 0; i < count; i++) {
+                final Range range = ranges.get(indexes[i]);
+                if (range.endTime < center) {
+                    leftIndexes[leftCount++] = indexes[i];
+                } else if (range.startTime > center) {
+                    rightIndexes[rightCount++] = indexes[i];
+                } else {
+                    centerIndexes[centerCount++] = indexes[i];
+                }
+            }
+
+            final int[] byStart = new int[centerCount];
+            for (int i = 0; i < centerCount; i++) {
+                byStart[i] = centerIndexes[i];
+            }
+            final Integer[] sortedByEnd = Arrays.copyOf(centerIndexes, centerCount);
+            Arrays.sort(sortedByEnd, new Comparator<Integer>() {
+                @Override
+                public int compare(final Integer index, final Integer other) {
+                    return Long.compare(ranges.get(other).endTime, ranges.get(index).endTime);
+                }
+            });
+            final int[] byEnd = new int[centerCount];
+            final long[] endsByEnd = new long[centerCount];
+            for (int i = 0; i < centerCount; i++) {
+                byEnd[i] = sortedByEnd[i];
+                endsByEnd[i] = ranges.get(byEnd[i]).endTime;
+            }
+
+            return new Node(center, byStart, byEnd, endsByEnd,
+                    build(ranges, leftIndexes, leftCount), build(ranges, rightIndexes, rightCount));
+        }
+
+        /**
+         * Finds the ranges that start before the given time and end after it.
+         * @param time milliseconds since the epoch
+         * @param found receives the indexes of the ranges found
+         * @param startTimes start times of all ranges
+         */
+        void stab(final long time, final Hits found, final long[] startTimes) {
+            Node node = this;
+            while (node != null) {
+                if (time < node.center) {
+                    // Every range of the node ends at or after the center
+                    for (int i = 0; i < node.byStart.length && startTimes[node.byStart[i]] < time; i++) {
+                        found.add(node.byStart[i]);
+                    }
+                    node = node.left;
+                } else {
+                    // Every range of the node starts at or before the center
+                    for (int i = 0; i < node.byEnd.length && node.endsByEnd[i] > time; i++) {
+                        if (startTimes[node.byEnd[i]] < time) {
+                            found.add(node.byEnd[i]);
+                        }
+                    }
+                    node = time == node.center ? null : node.right;
+                }
+            }
+        }
+    }
+
+    /**
+     * Indexes of the ranges found by a query, in a buffer that grows with
+     * the number of hits rather than the number of ranges.
+     */
+    private static final class Hits {
+
+        private int[] indexes = new int[8];
+        private int count;
+
+        void add(final int index) {
+            if (count == indexes.length) {
+                indexes = Arrays.copyOf(indexes, count * 2);
+            }
+            indexes[count++] = index;
+        }
+    }
+}
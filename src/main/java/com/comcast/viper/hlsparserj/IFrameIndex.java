@@ -0,0 +1,271 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.comcast.viper.hlsparserj.tags.TagNames;
+import com.comcast.viper.hlsparserj.tags.UnparsedTag;
+
+/**
+ * I-frames of an EXT-X-I-FRAMES-ONLY playlist, with their byte ranges and
+ * presentation times, for trick play and scrubbing thumbnails.
+ *
+ * Each media segment of an I-frame playlist is one I-frame, usually a
+ * byte range of a larger resource.  The index resolves each range to an
+ * absolute offset and length, held as longs so resources over 2 GB are
+ * addressed correctly.  A range without an offset starts at the byte
+ * after the range of the previous I-frame, as RFC 8216 section 4.3.2.2
+ * prescribes.  The start time of each I-frame is the sum of the EXTINF
+ * durations before it, so the I-frame to show at a time position is found
+ * by binary search.
+ *
+ * Building the index takes one pass over the tags; the EXTINF and
+ * EXT-X-BYTERANGE values are read without parsing the tags, and the
+ * I-frames are held in primitive arrays.  Segments of other playlists are
+ * indexed the same way.
+ */
+public final class IFrameIndex {
+
+    private final int size;
+    private final String[] uris;
+    private final long[] offsets;
+    private final long[] lengths;
+    private final double[] startTimes;
+
+    private IFrameIndex(final int size, final String[] uris, final long[] offsets, final long[] lengths,
+            final double[] startTimes) {
+        this.size = size;
+        this.uris = uris;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.startTimes = startTimes;
+    }
+
+    /**
+     * Builds the index of the given playlist tags.
+     * @param tags tags of a media playlist
+     * @return index
+     */
+    static IFrameIndex build(final List<UnparsedTag> tags) {
+        final int headerEnd = MediaPlaylist.headerEnd(tags);
+        int capacity = 16;
+        String[] uris = new String[capacity];
+        long[] offsets = new long[capacity];
+        long[] lengths = new long[capacity];
+
+        // startTimes[i] is the start of I-frame i; the entry after the last
+        // I-frame is the end of the playlist
+        double[] startTimes = new double[capacity + 1];
+        int size = 0;
+        double time = 0;
+        double duration = 0;
+        long length = -1;
+        long offset = -1;
+        for (int i = headerEnd; i < tags.size(); i++) {
+            final UnparsedTag tag = tags.get(i);
+            final String tagName = tag.getTagName();
+            if (tagName.equals(TagNames.EXTINF)) {
+                duration = MediaPlaylist.segmentDuration(tag);
+            } else if (tagName.equals(TagNames.EXTXBYTERANGE)) {
+                final String range = byteRange(tag);
+                final int at = range == null ? -1 : range.indexOf('@');
+                length = parseLong(at < 0 ? range : range.substring(0, at));
+                offset = at < 0 ? -1 : parseLong(range.substring(at + 1));
+            }
+            if (!MediaPlaylist.isSegmentEnd(tag)) {
+                continue;
+            }
+
+            if (size == capacity) {
+                capacity *= 2;
+                uris = Arrays.copyOf(uris, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                startTimes = Arrays.copyOf(startTimes, capacity + 1);
+            }
+            final String uri = tag.getURI();
+            if (length < 0) {
+                offset = 0;
+            } else if (offset < 0) {
+                // Continues the range of the previous I-frame of the same resource
+                offset = size > 0 && lengths[size - 1] >= 0 && uri.equals(uris[size - 1])
+                        ? offsets[size - 1] + lengths[size - 1] : 0;
+            }
+            uris[size] = uri;
+            offsets[size] = offset;
+            lengths[size] = length;
+            startTimes[size] = time;
+            size++;
+            time += duration;
+            duration = 0;
+            length = -1;
+            offset = -1;
+        }
+        startTimes[size] = time;
+        return new IFrameIndex(size, uris, offsets, lengths, startTimes);
+    }
+
+    /**
+     * Returns the number of I-frames.
+     * @return I-frame count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the URI of the resource that holds an I-frame.
+     * @param index I-frame index
+     * @return URI, as it appears in the playlist
+     */
+    public String getURI(final int index) {
+        return uris[checkIndex(index)];
+    }
+
+    /**
+     * Returns the offset of an I-frame in its resource.
+     * @param index I-frame index
+     * @return byte offset, 0 if the I-frame is the entire resource
+     */
+    public long getOffset(final int index) {
+        return offsets[checkIndex(index)];
+    }
+
+    /**
+     * Returns the length of an I-frame.
+     * @param index I-frame index
+     * @return length in bytes, or -1 if the I-frame is the entire resource
+     */
+    public long getLength(final int index) {
+        return lengths[checkIndex(index)];
+    }
+
+    /**
+     * Returns the presentation time of an I-frame.
+     * @param index I-frame index
+     * @return seconds from the start of the playlist
+     */
+    public double getStartTime(final int index) {
+        return startTimes[checkIndex(index)];
+    }
+
+    /**
+     * Returns the time from an I-frame to the next one, or to the end of the
+     * playlist for the last one.
+     * @param index I-frame index
+     * @return duration in seconds
+     */
+    public double getDuration(final int index) {
+        return startTimes[checkIndex(index) + 1] - startTimes[index];
+    }
+
+    /**
+     * Returns the duration of the playlist.
+     * @return sum of the I-frame durations in seconds
+     */
+    public double getTotalDuration() {
+        return startTimes[size];
+    }
+
+    /**
+     * Returns the I-frame that is displayed at the given time: the last one
+     * that starts at or before it.
+     * @param time seconds from the start of the playlist
+     * @return I-frame index, or -1 if the time is before the first I-frame
+     * or after the end of the playlist
+     */
+    public int findByTime(final double time) {
+        final int index = lastStartAtOrBefore(time);
+        return index >= 0 && time < startTimes[index + 1] ? index : -1;
+    }
+
+    /**
+     * Returns the I-frame whose presentation time is closest to the given
+     * time, preferring the earlier one of two that are equally close.  A time
+     * outside of the playlist gives the first or last I-frame.
+     * @param time seconds from the start of the playlist
+     * @return I-frame index, or -1 if the playlist has no I-frames
+     */
+    public int nearestIFrame(final double time) {
+        if (size == 0) {
+            return -1;
+        }
+        final int index = lastStartAtOrBefore(time);
+        if (index < 0) {
+            return 0;
+        }
+        if (index + 1 < size && startTimes[index + 1] - time < time - startTimes[index]) {
+            return index + 1;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the last I-frame that starts at or before the given time.
+     * @param time seconds from the start of the playlist
+     * @return I-frame index, or -1 if there is none
+     */
+    private int lastStartAtOrBefore(final double time) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (startTimes[mid] <= time) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    private int checkIndex(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("I-frame " + index + " of " + size);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the value of an EXT-X-BYTERANGE tag, read without parsing its
+     * attributes when the raw tag is available.
+     * @param tag EXT-X-BYTERANGE tag
+     * @return value, such as 1000@2000, or null
+     */
+    private static String byteRange(final UnparsedTag tag) {
+        final String rawTag = tag.getRawTag();
+        final int start = rawTag == null ? 0 : rawTag.indexOf(':') + 1;
+        return start > 0 ? rawTag.substring(start) : tag.getAttributes().get("NONAME0");
+    }
+
+    /**
+     * Parses a decimal-integer.
+     * @param value value
+     * @return number, or -1 if the value is null or not a number
+     */
+    private static long parseLong(final String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+}
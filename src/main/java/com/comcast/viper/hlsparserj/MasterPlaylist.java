@@ -71,17 +71,22 @@ public abstract class MasterPlaylist extends AbstractPlaylist {
     /**
      * Removes a given variant stream from the playlist.
      * @param variantStream variant stream
+     * @throws UnsupportedOperationException if the playlist is frozen
      */
     public void removeVariantStream(final StreamInf variantStream) {
+        checkNotFrozen();
         tags.remove(variantStream.getTag());
         parsedTagListCache.get(TagNames.EXTXSTREAMINF).remove(variantStream);
+        clearFingerprint();
     }
 
     /**
      * Removes all variant streams except the one closest to a given bitrate.
      * @param bitrate bitrate
+     * @throws UnsupportedOperationException if the playlist is frozen
      */
     public void keepVariantStreamClosestToBitrate(final int bitrate) {
+        checkNotFrozen();
         final StreamInf variantStreamToKeep = variantStreamClosestToBitrate(bitrate);
 
         final List<StreamInf> variantStreams = getVariantStreams();
@@ -118,6 +123,49 @@ public abstract class MasterPlaylist extends AbstractPlaylist {
         return closestVariant;
     }
 
+    @Override
+    public MasterPlaylist snapshot() {
+        return (MasterPlaylist) super.snapshot();
+    }
+
+    /**
+     * Returns a frozen copy of the playlist without the given variant
+     * stream.  This playlist is not modified, and the copy shares the other
+     * tags with its snapshot.
+     * @param variantStream variant stream of this playlist
+     * @return frozen playlist
+     */
+    public MasterPlaylist withoutVariantStream(final StreamInf variantStream) {
+        final MasterPlaylist snapshot = snapshot();
+        final List<UnparsedTag> derivedTags = new ArrayList<UnparsedTag>(tags.size());
+        for (int i = 0; i < tags.size(); i++) {
+            if (tags.get(i) != variantStream.getTag()) {
+                derivedTags.add(snapshot.tags.get(i));
+            }
+        }
+        return (MasterPlaylist) snapshot.derive(derivedTags);
+    }
+
+    /**
+     * Returns a frozen copy of the playlist without the variant streams
+     * other than the one closest to a given bitrate.  This playlist is not
+     * modified, and the copy shares the other tags with its snapshot.
+     * @param bitrate bitrate
+     * @return frozen playlist
+     */
+    public MasterPlaylist withVariantStreamClosestToBitrate(final int bitrate) {
+        final StreamInf variantStreamToKeep = variantStreamClosestToBitrate(bitrate);
+        final MasterPlaylist snapshot = snapshot();
+        final List<UnparsedTag> derivedTags = new ArrayList<UnparsedTag>(tags.size());
+        for (int i = 0; i < tags.size(); i++) {
+            final UnparsedTag tag = tags.get(i);
+            if (!tag.getTagName().equals(TagNames.EXTXSTREAMINF) || tag == variantStreamToKeep.getTag()) {
+                derivedTags.add(snapshot.tags.get(i));
+            }
+        }
+        return (MasterPlaylist) snapshot.derive(derivedTags);
+    }
+
     @Override
     public boolean isMasterPlaylist() {
         return true;
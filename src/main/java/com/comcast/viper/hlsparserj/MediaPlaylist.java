@@ -16,6 +16,7 @@
 package com.comcast.viper.hlsparserj;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import com.comcast.viper.hlsparserj.tags.Tag;
@@ -24,11 +25,18 @@ import com.comcast.viper.hlsparserj.tags.TagNames;
 import com.comcast.viper.hlsparserj.tags.UnparsedTag;
 import com.comcast.viper.hlsparserj.tags.media.AllowCache;
 import com.comcast.viper.hlsparserj.tags.media.ByteRange;
+import com.comcast.viper.hlsparserj.tags.media.DateRange;
 import com.comcast.viper.hlsparserj.tags.media.ExtInf;
 import com.comcast.viper.hlsparserj.tags.media.Key;
 import com.comcast.viper.hlsparserj.tags.media.MediaSequence;
+import com.comcast.viper.hlsparserj.tags.media.Part;
+import com.comcast.viper.hlsparserj.tags.media.PartInf;
 import com.comcast.viper.hlsparserj.tags.media.PlaylistType;
+import com.comcast.viper.hlsparserj.tags.media.PreloadHint;
+import com.comcast.viper.hlsparserj.tags.media.RenditionReport;
 import com.comcast.viper.hlsparserj.tags.media.Segment;
+import com.comcast.viper.hlsparserj.tags.media.ServerControl;
+import com.comcast.viper.hlsparserj.tags.media.Skip;
 import com.comcast.viper.hlsparserj.tags.media.TargetDuration;
 
 /**
@@ -36,6 +44,22 @@ import com.comcast.viper.hlsparserj.tags.media.TargetDuration;
  */
 public abstract class MediaPlaylist extends AbstractPlaylist {
 
+    /**
+     * Shared tag store of a snapshot made by {@link #sharingSegmentsWith},
+     * or null.
+     */
+    private SegmentStore segmentStore;
+
+    private volatile int segmentCount = -1;
+
+    private volatile AdBreakIndex adBreakIndex;
+
+    private volatile DateRangeIndex dateRangeIndex;
+
+    private volatile PartIndex partIndex;
+
+    private volatile IFrameIndex iFrameIndex;
+
     /**
      * Constructor.
      * @param version version
@@ -120,6 +144,658 @@ public abstract class MediaPlaylist extends AbstractPlaylist {
         return (PlaylistType) getTag(TagNames.EXTXPLAYLISTTYPE);
     }
 
+    /**
+     * Returns the number of media segments in the playlist: the EXTINF and
+     * EXT-X-BYTERANGE tags followed by a URI.  A parsed playlist, and the
+     * snapshots and copies made from it, carry the count taken by the
+     * parser, so it is returned without visiting the tags.  Other playlists
+     * count their tags without parsing them, and keep the count once they
+     * are frozen.  Changes made directly to the unparsed tags are not
+     * reflected.
+     * @return segment count
+     */
+    public int getSegmentCount() {
+        int count = segmentCount;
+        if (count < 0) {
+            count = 0;
+            for (int i = 0; i < tags.size(); i++) {
+                if (isSegmentEnd(tags.get(i))) {
+                    count++;
+                }
+            }
+            if (frozen) {
+                segmentCount = count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Sets the number of media segments, as counted by the parser.
+     * @param segmentCount segment count
+     */
+    void setSegmentCount(final int segmentCount) {
+        this.segmentCount = segmentCount;
+    }
+
+    /**
+     * Return list of partial segment tags in the media playlist, in playlist
+     * order.  The partial segments of a media segment are also returned by
+     * {@link Segment#getParts()}; those after the last media segment belong
+     * to the segment that is being produced.
+     *
+     * Tag key: EXT-X-PART.
+     *
+     * @return list of partial segment tags
+     */
+    @SuppressWarnings("unchecked")
+    public List<Part> getParts() {
+        return (List<Part>) getTagList(TagNames.EXTXPART);
+    }
+
+    /**
+     * Returns the partial segments of the playlist, indexed by media
+     * sequence number and part index.  Like the tag lists, the index is
+     * built on first use and kept.
+     * @return part index
+     */
+    public PartIndex getPartIndex() {
+        PartIndex index = partIndex;
+        if (index == null) {
+            index = PartIndex.build(tags, getParts());
+            partIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the partial segment information tag.
+     *
+     * Tag key: EXT-X-PART-INF.
+     *
+     * @return part information tag, or null
+     */
+    public PartInf getPartInf() {
+        return (PartInf) getTag(TagNames.EXTXPARTINF);
+    }
+
+    /**
+     * Returns the server control tag, which describes the delivery
+     * directives the server supports.
+     *
+     * Tag key: EXT-X-SERVER-CONTROL.
+     *
+     * @return server control tag, or null
+     */
+    public ServerControl getServerControl() {
+        return (ServerControl) getTag(TagNames.EXTXSERVERCONTROL);
+    }
+
+    /**
+     * Returns the skip tag of a playlist delta update, which stands in for
+     * the skipped older segments.  See {@link PlaylistDeltaMerger}.
+     *
+     * Tag key: EXT-X-SKIP.
+     *
+     * @return skip tag, or null if this is not a delta update
+     */
+    public Skip getSkip() {
+        return (Skip) getTag(TagNames.EXTXSKIP);
+    }
+
+    /**
+     * Return list of preload hint tags in the media playlist.
+     *
+     * Tag key: EXT-X-PRELOAD-HINT.
+     *
+     * @return list of preload hint tags
+     */
+    @SuppressWarnings("unchecked")
+    public List<PreloadHint> getPreloadHints() {
+        return (List<PreloadHint>) getTagList(TagNames.EXTXPRELOADHINT);
+    }
+
+    /**
+     * Return list of rendition report tags in the media playlist.
+     *
+     * Tag key: EXT-X-RENDITION-REPORT.
+     *
+     * @return list of rendition report tags
+     */
+    @SuppressWarnings("unchecked")
+    public List<RenditionReport> getRenditionReports() {
+        return (List<RenditionReport>) getTagList(TagNames.EXTXRENDITIONREPORT);
+    }
+
+    /**
+     * Return list of date range tags in the media playlist.
+     *
+     * Tag key: EXT-X-DATERANGE.
+     *
+     * @return list of date range tags
+     */
+    @SuppressWarnings("unchecked")
+    public List<DateRange> getDateRanges() {
+        return (List<DateRange>) getTagList(TagNames.EXTXDATERANGE);
+    }
+
+    /**
+     * Returns the date ranges of the playlist, indexed for time window
+     * queries.  Like the tag lists, the index is built on first use and
+     * kept.
+     * @return date range index
+     */
+    public DateRangeIndex getDateRangeIndex() {
+        DateRangeIndex index = dateRangeIndex;
+        if (index == null) {
+            index = DateRangeIndex.build(getDateRanges());
+            dateRangeIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the ad breaks of the playlist, marked by EXT-X-CUE-OUT,
+     * EXT-X-CUE-OUT-CONT, EXT-X-CUE-IN and SCTE-35 EXT-X-DATERANGE tags.
+     * Like the tag lists, the index is built on first use and kept; breaks
+     * are then looked up by segment or time in O(log n).
+     * @return ad break index
+     */
+    public AdBreakIndex getAdBreaks() {
+        AdBreakIndex index = adBreakIndex;
+        if (index == null) {
+            index = AdBreakIndex.build(tags);
+            adBreakIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the index, in {@link #getTags()}, of the first tag that
+     * belongs to a media segment.  The tags before it form the playlist
+     * header.
+     * @return index, or the number of tags if the playlist has no segments
+     */
+    public int getHeaderEnd() {
+        return headerEnd(tags);
+    }
+
+    /**
+     * Returns the index, in {@link #getTags()}, after the last media
+     * segment.  The tags from it on, such as EXT-X-ENDLIST, form the
+     * playlist trailer.
+     * @return index, or {@link #getHeaderEnd()} if the playlist has no segments
+     */
+    public int getSegmentsEnd() {
+        return segmentsEnd(tags, headerEnd(tags));
+    }
+
+    @Override
+    public MediaPlaylist snapshot() {
+        final MediaPlaylist snapshot = (MediaPlaylist) super.snapshot();
+        if (snapshot.segmentCount < 0) {
+            snapshot.segmentCount = segmentCount;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns a frozen copy of the playlist with only the media segments from
+     * fromIndex, inclusive, to toIndex, exclusive.  A media segment is an
+     * EXTINF or EXT-X-BYTERANGE tag with a URI, together with the tags that
+     * precede it up to the previous segment.
+     *
+     * The tags before the first segment and after the last one, such as
+     * EXT-X-ENDLIST, are kept.  The media sequence and discontinuity
+     * sequence numbers are adjusted for the removed leading segments, the
+     * last key and the last EXT-X-MAP of the removed segments are carried
+     * over to the first kept segment, unless it has its own, and an
+     * EXT-X-BYTERANGE of the first kept segment that continues the range of
+     * a removed segment is given an explicit offset.  This playlist is not
+     * modified, and the copy shares the unchanged tags with its snapshot.
+     *
+     * @param fromIndex index of the first segment to keep
+     * @param toIndex index after the last segment to keep
+     * @return frozen playlist
+     */
+    public MediaPlaylist withSegments(final int fromIndex, final int toIndex) {
+        final MediaPlaylist snapshot = snapshot();
+        final List<UnparsedTag> source = snapshot.tags;
+
+        // Boundaries of the header, the segments and the trailer
+        int headerEnd = -1;
+        final List<Integer> segmentEnds = new ArrayList<Integer>();
+        for (int i = 0; i < source.size(); i++) {
+            final UnparsedTag tag = source.get(i);
+            final String tagName = tag.getTagName();
+            if (headerEnd < 0 && isSegmentTag(tagName)) {
+                headerEnd = i;
+            }
+            if ((tagName.equals(TagNames.EXTINF) || tagName.equals(TagNames.EXTXBYTERANGE)) && tag.getURI() != null) {
+                segmentEnds.add(i + 1);
+            }
+        }
+        if (fromIndex < 0 || toIndex > segmentEnds.size() || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("Segment range " + fromIndex + " to " + toIndex
+                    + " is outside of 0 to " + segmentEnds.size());
+        }
+        if (segmentEnds.isEmpty()) {
+            return snapshot;
+        }
+
+        // Discontinuities, key and map of the removed leading segments
+        final int keptStart = fromIndex == 0 ? headerEnd : segmentEnds.get(fromIndex - 1);
+        final int keptEnd = toIndex == 0 ? headerEnd : segmentEnds.get(toIndex - 1);
+        final int trailerStart = segmentEnds.get(segmentEnds.size() - 1);
+        int removedDiscontinuities = 0;
+        int lastKey = -1;
+        int lastMap = -1;
+        for (int i = headerEnd; i < keptStart; i++) {
+            final String tagName = source.get(i).getTagName();
+            if (tagName.equals(TagNames.EXTXDISCONTINUITY)) {
+                removedDiscontinuities++;
+            } else if (tagName.equals(TagNames.EXTXKEY)) {
+                lastKey = i;
+            } else if (tagName.equals(TagNames.EXTXMAP)) {
+                lastMap = i;
+            }
+        }
+        final int firstSegmentEnd = fromIndex < toIndex ? segmentEnds.get(fromIndex) : keptStart;
+        int range = -1;
+        for (int i = keptStart; i < firstSegmentEnd; i++) {
+            final String tagName = source.get(i).getTagName();
+            if (tagName.equals(TagNames.EXTXKEY)) {
+                lastKey = -1;
+            } else if (tagName.equals(TagNames.EXTXMAP)) {
+                lastMap = -1;
+            } else if (tagName.equals(TagNames.EXTXBYTERANGE)) {
+                range = i;
+            }
+        }
+        final UnparsedTag resolvedRange = range >= 0
+                ? resolveByteRange(source, headerEnd, keptStart, source.get(range), source.get(firstSegmentEnd - 1))
+                : null;
+
+        final List<UnparsedTag> derivedTags = new ArrayList<UnparsedTag>(
+                headerEnd + (keptEnd - keptStart) + (source.size() - trailerStart) + 4);
+        derivedTags.addAll(source.subList(0, headerEnd));
+        adjustSequenceNumbers(derivedTags, fromIndex, removedDiscontinuities);
+        if (lastMap >= 0 && lastMap < lastKey) {
+            derivedTags.add(source.get(lastMap));
+            lastMap = -1;
+        }
+        if (lastKey >= 0) {
+            derivedTags.add(source.get(lastKey));
+        }
+        if (lastMap >= 0) {
+            derivedTags.add(source.get(lastMap));
+        }
+        if (resolvedRange != null) {
+            derivedTags.addAll(source.subList(keptStart, range));
+            derivedTags.add(resolvedRange);
+            derivedTags.addAll(source.subList(range + 1, keptEnd));
+        } else {
+            derivedTags.addAll(source.subList(keptStart, keptEnd));
+        }
+        derivedTags.addAll(source.subList(trailerStart, source.size()));
+        final MediaPlaylist derived = (MediaPlaylist) snapshot.derive(derivedTags);
+        derived.segmentCount = toIndex - fromIndex;
+        return derived;
+    }
+
+    /**
+     * Returns a copy of the EXT-X-BYTERANGE tag of a segment with its offset
+     * written out, if the range has no offset and continues the ranges of
+     * segments that are being removed.  The lengths of the ranges of the
+     * same resource before the segment are added up back to the last one
+     * with an offset.
+     * @param tags tags of a playlist
+     * @param headerEnd index of the first segment tag
+     * @param segmentStart index of the first tag of the segment
+     * @param range EXT-X-BYTERANGE tag of the segment
+     * @param segmentEnd last tag of the segment
+     * @return EXT-X-BYTERANGE tag, or null if the range needs no offset
+     */
+    static UnparsedTag resolveByteRange(final List<UnparsedTag> tags, final int headerEnd, final int segmentStart,
+            final UnparsedTag range, final UnparsedTag segmentEnd) {
+        final long length = byteRangeLength(range);
+        if (segmentStart <= headerEnd || length < 0 || byteRangeOffset(range) >= 0) {
+            return null;
+        }
+        final String uri = segmentEnd.getURI();
+        long offset = 0;
+        int end = segmentStart;
+        while (end > headerEnd && uri.equals(tags.get(end - 1).getURI())) {
+            UnparsedTag previousRange = null;
+            int i = end - 1;
+            do {
+                if (previousRange == null && tags.get(i).getTagName().equals(TagNames.EXTXBYTERANGE)) {
+                    previousRange = tags.get(i);
+                }
+                i--;
+            } while (i >= headerEnd && !isSegmentEnd(tags.get(i)));
+            if (previousRange == null) {
+                break;
+            }
+            offset += Math.max(byteRangeLength(previousRange), 0);
+            final long previousOffset = byteRangeOffset(previousRange);
+            if (previousOffset >= 0) {
+                offset += previousOffset;
+                break;
+            }
+            end = i + 1;
+        }
+        final UnparsedTag resolved = new UnparsedTag("#" + TagNames.EXTXBYTERANGE + ":" + length + "@" + offset);
+        if (range.getURILine() != null) {
+            resolved.setURI(range.getURILine());
+        }
+        return resolved;
+    }
+
+    /**
+     * Returns a frozen snapshot of this playlist that shares its segments
+     * with the previous snapshot of the same live playlist.  The segment
+     * tags that the two have in common, found by their media sequence
+     * numbers and compared by their text and URI, are taken from the
+     * predecessor, and when the predecessor was itself made by this method,
+     * so are the chunks that hold them.  Only the new segments at the end
+     * and the header are added; the segments that expired from the head are
+     * dropped.  A history of snapshots made this way holds each segment once
+     * instead of once per snapshot.
+     *
+     * A predecessor that is null or not frozen is not shared with; the
+     * snapshot then starts a new history.
+     *
+     * @param predecessor previous frozen snapshot of the playlist, or null
+     * @return frozen playlist with the same tags as this one
+     */
+    public MediaPlaylist sharingSegmentsWith(final MediaPlaylist predecessor) {
+        final int headerEnd = headerEnd(tags);
+        final int segmentsEnd = segmentsEnd(tags, headerEnd);
+
+        // Segment tags of this playlist that the predecessor already holds
+        int sharedStart = 0;
+        int sharedCount = 0;
+        SegmentStore predecessorStore = null;
+        if (predecessor != null && predecessor.isFrozen()) {
+            final List<UnparsedTag> previousTags = predecessor.tags;
+            predecessorStore = predecessor.segmentStore;
+            final int previousHeaderEnd = predecessorStore != null ? predecessorStore.getHeaderSize()
+                    : headerEnd(previousTags);
+            final int previousSegmentsEnd = predecessorStore != null
+                    ? previousHeaderEnd + predecessorStore.getSegmentTagCount()
+                    : segmentsEnd(previousTags, previousHeaderEnd);
+            final long expired = sequenceNumber(tags, headerEnd, TagNames.EXTXMEDIASEQUENCE)
+                    - sequenceNumber(previousTags, previousHeaderEnd, TagNames.EXTXMEDIASEQUENCE);
+
+            int start = previousHeaderEnd;
+            for (long segment = 0; segment < expired && start < previousSegmentsEnd; start++) {
+                if (isSegmentEnd(previousTags.get(start))) {
+                    segment++;
+                }
+            }
+            if (expired >= 0 && start <= previousSegmentsEnd) {
+                while (headerEnd + sharedCount < segmentsEnd && start + sharedCount < previousSegmentsEnd
+                        && sameTag(tags.get(headerEnd + sharedCount), previousTags.get(start + sharedCount))) {
+                    sharedCount++;
+                }
+            }
+            sharedStart = start - previousHeaderEnd;
+            if (predecessorStore == null) {
+                predecessorStore = SegmentStore.of(Collections.<UnparsedTag>emptyList(),
+                        previousTags.subList(previousHeaderEnd, previousSegmentsEnd),
+                        Collections.<UnparsedTag>emptyList());
+            }
+        }
+
+        final List<UnparsedTag> header = frozenTags(0, headerEnd);
+        final List<UnparsedTag> appended = frozenTags(headerEnd + sharedCount, segmentsEnd);
+        final List<UnparsedTag> trailer = frozenTags(segmentsEnd, tags.size());
+        final SegmentStore store = sharedCount > 0
+                ? predecessorStore.share(header, sharedStart, sharedStart + sharedCount, appended, trailer)
+                : SegmentStore.of(header, appended, trailer);
+
+        final MediaPlaylist playlist = fromStore(version, store);
+        playlist.inheritFingerprint(this);
+        playlist.segmentCount = segmentCount;
+        return playlist;
+    }
+
+    /**
+     * Returns a frozen playlist over a shared tag store.
+     * @param version playlist version
+     * @param store tag store
+     * @return frozen playlist
+     */
+    static MediaPlaylist fromStore(final PlaylistVersion version, final SegmentStore store) {
+        final MediaPlaylist playlist = (MediaPlaylist) PlaylistFactory.createPlaylist(version, false, store);
+        playlist.segmentStore = store;
+        playlist.freeze();
+        return playlist;
+    }
+
+    /**
+     * Returns the shared tag store of a snapshot made by
+     * {@link #sharingSegmentsWith}, or null.
+     * @return segment store
+     */
+    SegmentStore getSegmentStore() {
+        return segmentStore;
+    }
+
+    /**
+     * Returns a range of the tags of this playlist that can be put in a
+     * frozen playlist: the tags themselves if this playlist is frozen,
+     * otherwise copies of them.
+     * @param fromIndex index of the first tag
+     * @param toIndex index after the last tag
+     * @return tags
+     */
+    private List<UnparsedTag> frozenTags(final int fromIndex, final int toIndex) {
+        if (frozen) {
+            return tags.subList(fromIndex, toIndex);
+        }
+        final List<UnparsedTag> copies = new ArrayList<UnparsedTag>(toIndex - fromIndex);
+        for (int i = fromIndex; i < toIndex; i++) {
+            copies.add(new UnparsedTag(tags.get(i)));
+        }
+        return copies;
+    }
+
+    /**
+     * Returns the index of the first segment tag, or the number of tags if
+     * there is none.
+     * @param tags tags of a playlist
+     * @return index
+     */
+    static int headerEnd(final List<UnparsedTag> tags) {
+        for (int i = 0; i < tags.size(); i++) {
+            if (isSegmentTag(tags.get(i).getTagName())) {
+                return i;
+            }
+        }
+        return tags.size();
+    }
+
+    /**
+     * Returns the index after the last media segment, or headerEnd if there
+     * is none.
+     * @param tags tags of a playlist
+     * @param headerEnd index of the first segment tag
+     * @return index
+     */
+    static int segmentsEnd(final List<UnparsedTag> tags, final int headerEnd) {
+        for (int i = tags.size() - 1; i >= headerEnd; i--) {
+            if (isSegmentEnd(tags.get(i))) {
+                return i + 1;
+            }
+        }
+        return headerEnd;
+    }
+
+    /**
+     * Returns true if the tag is the last tag of a media segment.
+     * @param tag tag
+     * @return boolean
+     */
+    static boolean isSegmentEnd(final UnparsedTag tag) {
+        final String tagName = tag.getTagName();
+        return (tagName.equals(TagNames.EXTINF) || tagName.equals(TagNames.EXTXBYTERANGE)) && tag.getURI() != null;
+    }
+
+    /**
+     * Returns the length of an EXT-X-BYTERANGE tag, read without parsing its
+     * attributes.
+     * @param tag EXT-X-BYTERANGE tag
+     * @return length in bytes, or -1 if it can not be read
+     */
+    static long byteRangeLength(final UnparsedTag tag) {
+        final String rawTag = tag.getRawTag();
+        final int colon = rawTag.indexOf(':');
+        final int at = rawTag.indexOf('@', colon + 1);
+        return colon < 0 ? -1 : parseLong(rawTag, colon + 1, at < 0 ? rawTag.length() : at);
+    }
+
+    /**
+     * Returns the offset of an EXT-X-BYTERANGE tag, read without parsing its
+     * attributes.
+     * @param tag EXT-X-BYTERANGE tag
+     * @return offset in bytes, or -1 if the tag has none
+     */
+    static long byteRangeOffset(final UnparsedTag tag) {
+        final String rawTag = tag.getRawTag();
+        final int at = rawTag.indexOf('@', rawTag.indexOf(':') + 1);
+        return at < 0 ? -1 : parseLong(rawTag, at + 1, rawTag.length());
+    }
+
+    /**
+     * Returns the decimal-integer between two indexes of a string, or -1 if
+     * there is none.
+     */
+    private static long parseLong(final String value, final int start, final int end) {
+        try {
+            return Long.parseLong(value.substring(start, end).trim());
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the duration of an EXTINF tag, read without parsing its
+     * attributes.
+     * @param tag EXTINF tag
+     * @return duration in seconds, or 0 if it can not be read
+     */
+    static double segmentDuration(final UnparsedTag tag) {
+        final String rawTag = tag.getRawTag();
+        final int start = rawTag == null ? 0 : rawTag.indexOf(':') + 1;
+        if (start <= 0) {
+            return 0;
+        }
+        int end = rawTag.indexOf(',', start);
+        if (end < 0) {
+            end = rawTag.length();
+        }
+        try {
+            return Double.parseDouble(rawTag.substring(start, end).trim());
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns a sequence number in a playlist header, such as the media
+     * sequence number, or 0 if the header does not have it.
+     * @param tags tags of a playlist
+     * @param headerEnd index of the first segment tag
+     * @param tagName name of the sequence number tag
+     * @return sequence number, or -1 if it can not be read
+     */
+    static long sequenceNumber(final List<UnparsedTag> tags, final int headerEnd, final String tagName) {
+        for (int i = 0; i < headerEnd; i++) {
+            final UnparsedTag tag = tags.get(i);
+            if (tag.getTagName().equals(tagName)) {
+                try {
+                    return Long.parseLong(tag.getAttributes().get("NONAME0").trim());
+                } catch (RuntimeException ex) {
+                    return -1;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns true if two tags have the same text and URI.
+     * @param tag tag
+     * @param other other tag
+     * @return boolean
+     */
+    private static boolean sameTag(final UnparsedTag tag, final UnparsedTag other) {
+        final String uri = tag.getURI();
+        return tag.getRawTag().equals(other.getRawTag())
+                && (uri == null ? other.getURI() == null : uri.equals(other.getURI()));
+    }
+
+    /**
+     * Adjusts the media sequence and discontinuity sequence tags of a
+     * playlist header for removed leading segments.  Tags that are missing
+     * are added at the end of the header when their value is not 0.  Changed
+     * tags are replaced by new tags; the header's tags are not modified.
+     * @param header tags of the playlist header
+     * @param removedSegments number of removed segments
+     * @param removedDiscontinuities number of discontinuities in the removed segments
+     */
+    static void adjustSequenceNumbers(final List<UnparsedTag> header, final int removedSegments,
+            final int removedDiscontinuities) {
+        boolean hasMediaSequence = false;
+        boolean hasDiscontinuitySequence = false;
+        for (int i = 0; i < header.size(); i++) {
+            final UnparsedTag tag = header.get(i);
+            if (tag.getTagName().equals(TagNames.EXTXMEDIASEQUENCE)) {
+                hasMediaSequence = true;
+                header.set(i, sequenceTag(tag, removedSegments));
+            } else if (tag.getTagName().equals(TagNames.EXTXDISCONTINUITYSEQUENCE)) {
+                hasDiscontinuitySequence = true;
+                header.set(i, sequenceTag(tag, removedDiscontinuities));
+            }
+        }
+        if (!hasMediaSequence && removedSegments > 0) {
+            header.add(new UnparsedTag("#" + TagNames.EXTXMEDIASEQUENCE + ":" + removedSegments));
+        }
+        if (!hasDiscontinuitySequence && removedDiscontinuities > 0) {
+            header.add(new UnparsedTag("#" + TagNames.EXTXDISCONTINUITYSEQUENCE + ":" + removedDiscontinuities));
+        }
+    }
+
+    /**
+     * Returns true if the tag belongs to the media segment that follows it.
+     * @param tagName tag name
+     * @return boolean
+     */
+    static boolean isSegmentTag(final String tagName) {
+        return tagName.equals(TagNames.EXTINF) || tagName.equals(TagNames.EXTXBYTERANGE)
+                || tagName.equals(TagNames.EXTXKEY) || tagName.equals(TagNames.EXTXDISCONTINUITY)
+                || tagName.equals(TagNames.EXTXPROGRAMDATETIME) || tagName.equals(TagNames.EXTXCUEOUT)
+                || tagName.equals(TagNames.EXTXCUEOUTCONT) || tagName.equals(TagNames.EXTXCUEIN)
+                || tagName.equals(TagNames.EXTXDATERANGE) || tagName.equals(TagNames.EXTXPART)
+                || tagName.equals(TagNames.EXTXSKIP);
+    }
+
+    /**
+     * Returns a copy of a sequence number tag with its value increased.
+     * @param tag sequence number tag
+     * @param increment amount to add
+     * @return tag, or the same tag if the increment is 0
+     */
+    private static UnparsedTag sequenceTag(final UnparsedTag tag, final int increment) {
+        if (increment == 0) {
+            return tag;
+        }
+        final long sequenceNumber = Long.parseLong(tag.getAttributes().get("NONAME0").trim()) + increment;
+        return new UnparsedTag("#" + tag.getTagName() + ":" + sequenceNumber);
+    }
+
     @Override
     public boolean isMasterPlaylist() {
         return false;
@@ -139,6 +815,9 @@ public abstract class MediaPlaylist extends AbstractPlaylist {
             boolean discontinuity = false;
             String programDateTime = null;
             Key key = null;
+            List<Part> parts = null;
+            int partStart = 0;
+            int partEnd = 0;
 
             for (UnparsedTag unparsedTag : tags) {
                 final String tagName = unparsedTag.getTagName();
@@ -149,19 +828,28 @@ public abstract class MediaPlaylist extends AbstractPlaylist {
                 } else if (tagName.equals(TagNames.EXTXKEY)) {
                     key = new Key();
                     key.setTag(unparsedTag);
+                } else if (tagName.equals(TagNames.EXTXPART)) {
+                    partEnd++;
                 } else if (unparsedTag.getTagName().equals(segmentTagName)) {
                     final Segment segment = (Segment) TagFactory.createTag(segmentTagName);
                     segment.setTag(unparsedTag);
                     segment.setDiscontinuity(discontinuity);
                     segment.setKey(key);
                     segment.setDateTime(programDateTime);
+                    if (partEnd > partStart) {
+                        if (parts == null) {
+                            parts = getParts();
+                        }
+                        segment.setParts(parts.subList(partStart, partEnd));
+                        partStart = partEnd;
+                    }
                     tagList.add(segment);
                     discontinuity = false;
                     programDateTime = null;
                 }
             }
 
-            parsedTagListCache.put(segmentTagName, tagList);
+            tagList = cacheTagList(segmentTagName, tagList);
         }
         return tagList;
     }
@@ -177,4 +865,37 @@ public abstract class MediaPlaylist extends AbstractPlaylist {
         }
         return true;
     }
+
+    /**
+     * Returns the I-frames of an I-frame playlist, with their resolved byte
+     * ranges and presentation times.  Like the tag lists, the index is built
+     * on first use and kept.
+     * @return I-frame index
+     */
+    public IFrameIndex getIFrameIndex() {
+        IFrameIndex index = iFrameIndex;
+        if (index == null) {
+            index = IFrameIndex.build(tags);
+            iFrameIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Return boolean to indicate if this playlist has an end list tag, meaning
+     * no more media segments will be added to it.
+     *
+     * Tag key: EXT-X-ENDLIST.
+     *
+     * @return boolean flag
+     */
+    public boolean getEndList() {
+        // The end list tag is normally the last tag, so search from the end
+        for (int i = tags.size() - 1; i >= 0; i--) {
+            if (tags.get(i).getTagName().equals(TagNames.EXTXENDLIST)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
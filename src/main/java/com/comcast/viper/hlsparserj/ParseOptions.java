@@ -0,0 +1,155 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.comcast.viper.hlsparserj.tags.TagNames;
+
+/**
+ * Options that select the tags kept by {@link PlaylistParser}.
+ *
+ * A parser with a tag filter checks the name of each tag line before
+ * decoding it, and drops the tags that were not asked for along with their
+ * URI lines.  The tags a media segment takes its context from (key,
+ * discontinuity and program date time) are kept whenever segment tags are,
+ * so the segments of a filtered media playlist still carry the right key,
+ * discontinuity flag and date.  A master playlist is recognized even when
+ * its variant stream tags are dropped.
+ *
+ * Instances are immutable.
+ */
+public final class ParseOptions {
+
+    /**
+     * Options that keep every tag.
+     */
+    public static final ParseOptions ALL = new ParseOptions(null);
+
+    private final Set<String> tagNames;
+    private final byte[][] tagNameBytes;
+
+    private ParseOptions(final Set<String> tagNames) {
+        this.tagNames = tagNames == null ? null : Collections.unmodifiableSet(tagNames);
+        if (tagNames == null) {
+            tagNameBytes = null;
+        } else {
+            tagNameBytes = new byte[tagNames.size()][];
+            int i = 0;
+            for (String tagName : tagNames) {
+                tagNameBytes[i++] = tagName.getBytes(StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    /**
+     * Returns options that keep only the given tags, plus the tags that
+     * segments take their context from when EXTINF or EXT-X-BYTERANGE is
+     * one of them.
+     * @param tagNames names of the tags to keep, e.g. {@link TagNames#EXTINF}
+     * @return parse options
+     */
+    public static ParseOptions tags(final String... tagNames) {
+        final Set<String> names = new LinkedHashSet<String>(Arrays.asList(tagNames));
+        if (names.contains(TagNames.EXTINF) || names.contains(TagNames.EXTXBYTERANGE)) {
+            names.add(TagNames.EXTXKEY);
+            names.add(TagNames.EXTXDISCONTINUITY);
+            names.add(TagNames.EXTXPROGRAMDATETIME);
+        }
+        return new ParseOptions(names);
+    }
+
+    /**
+     * Returns true if every tag is kept.
+     * @return boolean
+     */
+    public boolean includesAllTags() {
+        return tagNames == null;
+    }
+
+    /**
+     * Returns true if tags with the given name are kept.
+     * @param tagName tag name
+     * @return boolean
+     */
+    public boolean includes(final String tagName) {
+        return tagNames == null || tagNames.contains(tagName);
+    }
+
+    /**
+     * Returns the names of the kept tags, including the context tags, or
+     * null if every tag is kept.
+     * @return set of tag names
+     */
+    public Set<String> getTagNames() {
+        return tagNames;
+    }
+
+    /**
+     * Returns true if tags with the name in the given range of a line are
+     * kept.
+     * @param line playlist line
+     * @param start start of the tag name
+     * @param end end of the tag name (exclusive)
+     * @return boolean
+     */
+    boolean includes(final String line, final int start, final int end) {
+        if (tagNames == null) {
+            return true;
+        }
+        final int length = end - start;
+        for (String tagName : tagNames) {
+            if (tagName.length() == length && line.regionMatches(start, tagName, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if tags with the name in the given range of bytes are
+     * kept.
+     * @param bytes playlist bytes
+     * @param start start of the tag name
+     * @param end end of the tag name (exclusive)
+     * @return boolean
+     */
+    boolean includes(final byte[] bytes, final int start, final int end) {
+        if (tagNameBytes == null) {
+            return true;
+        }
+        final int length = end - start;
+        for (byte[] tagName : tagNameBytes) {
+            if (tagName.length == length && regionMatches(bytes, start, tagName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean regionMatches(final byte[] bytes, final int start, final byte[] tagName) {
+        for (int i = 0; i < tagName.length; i++) {
+            if (bytes[start + i] != tagName[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.comcast.viper.hlsparserj.tags.TagNames;
+import com.comcast.viper.hlsparserj.tags.UnparsedTag;
+import com.comcast.viper.hlsparserj.tags.media.Part;
+
+/**
+ * Partial segments of a low-latency media playlist, indexed by media
+ * sequence number and part index.
+ *
+ * The parts of a media segment precede its EXTINF tag, and the parts after
+ * the last media segment belong to the segment that is being produced,
+ * whose media sequence number follows that of the last segment.  The index
+ * holds the position of the first part of each segment in the playlist's
+ * part list, so a part is found in O(1).  Building it takes one pass over
+ * the tags and allocates a single int array; the parts themselves are the
+ * cached {@link MediaPlaylist#getParts()} tags.
+ */
+public final class PartIndex {
+
+    private final List<Part> parts;
+    private final long firstMsn;
+    private final int segmentCount;
+    private final int[] partStarts;
+
+    private PartIndex(final List<Part> parts, final long firstMsn, final int segmentCount,
+            final int[] partStarts) {
+        this.parts = parts;
+        this.firstMsn = firstMsn;
+        this.segmentCount = segmentCount;
+        this.partStarts = partStarts;
+    }
+
+    /**
+     * Builds the index of the given playlist tags.
+     * @param tags tags of a media playlist
+     * @param parts partial segment tags of the playlist, in playlist order
+     * @return index
+     */
+    static PartIndex build(final List<UnparsedTag> tags, final List<Part> parts) {
+        final int headerEnd = MediaPlaylist.headerEnd(tags);
+        final long firstMsn = Math.max(MediaPlaylist.sequenceNumber(tags, headerEnd,
+                TagNames.EXTXMEDIASEQUENCE), 0);
+
+        // partStarts[s] is the index of the first part of segment s; the
+        // entry after the segment being produced is the number of parts
+        int[] partStarts = new int[16];
+        int segment = 0;
+        int partCount = 0;
+        for (int i = headerEnd; i < tags.size(); i++) {
+            final UnparsedTag tag = tags.get(i);
+            if (tag.getTagName().equals(TagNames.EXTXPART)) {
+                partCount++;
+            } else if (MediaPlaylist.isSegmentEnd(tag)) {
+                segment++;
+                if (segment + 2 > partStarts.length) {
+                    partStarts = Arrays.copyOf(partStarts, partStarts.length * 2);
+                }
+                partStarts[segment] = partCount;
+            }
+        }
+        partStarts[segment + 1] = partCount;
+        return new PartIndex(parts, firstMsn, segment, partStarts);
+    }
+
+    /**
+     * Returns the number of partial segments.
+     * @return part count
+     */
+    public int size() {
+        return partStarts[segmentCount + 1];
+    }
+
+    /**
+     * Returns the partial segment with the given media sequence number and
+     * part index.
+     * @param msn media sequence number of the parent segment
+     * @param part part index within the parent segment
+     * @return partial segment, or null if the playlist does not have it
+     */
+    public Part getPart(final long msn, final int part) {
+        final long segment = msn - firstMsn;
+        if (segment < 0 || segment > segmentCount || part < 0) {
+            return null;
+        }
+        final int index = partStarts[(int) segment] + part;
+        return index < partStarts[(int) segment + 1] ? parts.get(index) : null;
+    }
+
+    /**
+     * Returns the number of partial segments of a media segment.
+     * @param msn media sequence number of the segment
+     * @return part count, 0 if the playlist does not have the segment
+     */
+    public int getPartCount(final long msn) {
+        final long segment = msn - firstMsn;
+        if (segment < 0 || segment > segmentCount) {
+            return 0;
+        }
+        return partStarts[(int) segment + 1] - partStarts[(int) segment];
+    }
+
+    /**
+     * Returns the media sequence number of the first segment.
+     * @return media sequence number
+     */
+    public long getFirstMsn() {
+        return firstMsn;
+    }
+
+    /**
+     * Returns the media sequence number of the last segment, complete or
+     * not: the segment being produced if it has parts, and otherwise the
+     * last complete segment.
+     * @return media sequence number, or the first one minus 1 if the
+     * playlist is empty
+     */
+    public long getLastMsn() {
+        return getPartCount(firstMsn + segmentCount) > 0 ? firstMsn + segmentCount : firstMsn + segmentCount - 1;
+    }
+
+    /**
+     * Returns the part index of the last partial segment of the last
+     * segment, see {@link #getLastMsn()}.
+     * @return part index, or -1 if the last segment has no parts
+     */
+    public int getLastPart() {
+        return getPartCount(getLastMsn()) - 1;
+    }
+}
@@ -0,0 +1,228 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.comcast.viper.hlsparserj.tags.TagNames;
+import com.comcast.viper.hlsparserj.tags.UnparsedTag;
+import com.comcast.viper.hlsparserj.tags.media.DateRange;
+import com.comcast.viper.hlsparserj.tags.media.Skip;
+
+/**
+ * Merges low-latency playlist delta updates into full playlists.
+ *
+ * A delta update, requested with _HLS_skip=YES, has an EXT-X-SKIP tag in
+ * place of its older segments.  The skipped segments are the
+ * SKIPPED-SEGMENTS segments that follow the delta's media sequence number,
+ * and are taken from a prior playlist of the same rendition.  The merged
+ * playlist has the header, the remaining segments and the trailer of the
+ * delta, with the skipped segments of the prior playlist in place of the
+ * EXT-X-SKIP tag.  The key and EXT-X-MAP of the first skipped segment are
+ * carried over if they were given before an earlier segment of the prior
+ * playlist, an EXT-X-BYTERANGE of it that continues the range of an
+ * earlier segment is given an explicit offset, and date ranges listed in
+ * RECENTLY-REMOVED-DATERANGES are left out.
+ *
+ * The merged playlist is frozen and holds the prior playlist's tags, not
+ * copies of them.  Like {@link MediaPlaylist#sharingSegmentsWith}, it
+ * reuses the chunks of the prior playlist's tag store, so merging a delta
+ * into the previous merge result costs in proportion to the delta, and a
+ * history of merged playlists holds each segment tag once.
+ */
+public final class PlaylistDeltaMerger {
+
+    private PlaylistDeltaMerger() {
+    }
+
+    /**
+     * Returns true if the playlist is a delta update.
+     * @param playlist media playlist
+     * @return boolean
+     */
+    public static boolean isDeltaUpdate(final MediaPlaylist playlist) {
+        return skipIndex(playlist.tags, MediaPlaylist.headerEnd(playlist.tags)) >= 0;
+    }
+
+    /**
+     * Merges a delta update into a prior playlist of the same rendition.  A
+     * delta that is a full playlist is returned as a frozen snapshot that
+     * shares its unchanged segments with the prior playlist.
+     * @param prior prior full playlist, or the result of an earlier merge
+     * @param delta playlist delta update
+     * @return frozen full playlist
+     * @throws IllegalArgumentException if the prior playlist does not have
+     * the skipped segments
+     */
+    public static MediaPlaylist merge(final MediaPlaylist prior, final MediaPlaylist delta) {
+        final MediaPlaylist previous = prior.snapshot();
+        final MediaPlaylist current = delta.snapshot();
+        final List<UnparsedTag> deltaTags = current.tags;
+        final int deltaHeaderEnd = MediaPlaylist.headerEnd(deltaTags);
+        final int skipIndex = skipIndex(deltaTags, deltaHeaderEnd);
+        if (skipIndex < 0) {
+            return current.sharingSegmentsWith(previous);
+        }
+        final int deltaSegmentsEnd = Math.max(MediaPlaylist.segmentsEnd(deltaTags, deltaHeaderEnd), skipIndex + 1);
+
+        final Skip skip = new Skip();
+        skip.setTag(deltaTags.get(skipIndex));
+        final int skipped = skip.getSkippedSegments();
+        final Set<String> removedDateRanges = new HashSet<String>(skip.getRecentlyRemovedDateRanges());
+
+        // Segment tags of the prior playlist
+        final List<UnparsedTag> priorTags = previous.tags;
+        SegmentStore store = previous.getSegmentStore();
+        final int priorHeaderEnd = store != null ? store.getHeaderSize() : MediaPlaylist.headerEnd(priorTags);
+        final int priorSegmentsEnd = store != null ? priorHeaderEnd + store.getSegmentTagCount()
+                : MediaPlaylist.segmentsEnd(priorTags, priorHeaderEnd);
+
+        final long deltaSequence = MediaPlaylist.sequenceNumber(deltaTags, deltaHeaderEnd,
+                TagNames.EXTXMEDIASEQUENCE);
+        final long priorSequence = MediaPlaylist.sequenceNumber(priorTags, priorHeaderEnd,
+                TagNames.EXTXMEDIASEQUENCE);
+        final long expired = deltaSequence - priorSequence;
+        if (deltaSequence < 0 || priorSequence < 0 || expired < 0) {
+            throw new IllegalArgumentException("Delta update starts at media sequence " + deltaSequence
+                    + ", before the prior playlist at " + priorSequence);
+        }
+
+        // Skip the expired segments, remembering the last key and map they set
+        int carriedKey = -1;
+        int carriedMap = -1;
+        int start = priorHeaderEnd;
+        for (long segment = 0; segment < expired && start < priorSegmentsEnd; start++) {
+            final UnparsedTag tag = priorTags.get(start);
+            if (tag.getTagName().equals(TagNames.EXTXKEY)) {
+                carriedKey = start;
+            } else if (tag.getTagName().equals(TagNames.EXTXMAP)) {
+                carriedMap = start;
+            } else if (MediaPlaylist.isSegmentEnd(tag)) {
+                segment++;
+            }
+        }
+
+        // Find the end of the skipped segments
+        int end = start;
+        boolean removesDateRange = false;
+        int range = -1;
+        UnparsedTag resolvedRange = null;
+        int segment = 0;
+        for (; segment < skipped && end < priorSegmentsEnd; end++) {
+            final UnparsedTag tag = priorTags.get(end);
+            final String tagName = tag.getTagName();
+            if (tagName.equals(TagNames.EXTXKEY) && segment == 0) {
+                carriedKey = -1;
+            } else if (tagName.equals(TagNames.EXTXMAP) && segment == 0) {
+                carriedMap = -1;
+            } else if (tagName.equals(TagNames.EXTXBYTERANGE) && segment == 0) {
+                range = end;
+            } else if (tagName.equals(TagNames.EXTXDATERANGE) && !removedDateRanges.isEmpty()) {
+                removesDateRange |= removedDateRanges.contains(dateRangeId(tag));
+            }
+            if (MediaPlaylist.isSegmentEnd(tag)) {
+                if (segment == 0 && range >= 0) {
+                    // The first segment may continue the byte range of an expired one
+                    resolvedRange = MediaPlaylist.resolveByteRange(priorTags, priorHeaderEnd, start,
+                            priorTags.get(range), tag);
+                }
+                segment++;
+            }
+        }
+        if (segment < skipped) {
+            throw new IllegalArgumentException("Delta update skips " + skipped + " segments from media sequence "
+                    + deltaSequence + ", but the prior playlist has " + segment);
+        }
+        if (skipped == 0) {
+            carriedKey = -1;
+            carriedMap = -1;
+        }
+
+        final List<UnparsedTag> header = deltaTags.subList(0, deltaHeaderEnd);
+        final List<UnparsedTag> appended = deltaTags.subList(skipIndex + 1, deltaSegmentsEnd);
+        final List<UnparsedTag> trailer = deltaTags.subList(deltaSegmentsEnd, deltaTags.size());
+        final SegmentStore merged;
+        if (carriedKey < 0 && carriedMap < 0 && resolvedRange == null && !removesDateRange
+                && skipIndex == deltaHeaderEnd) {
+            if (store == null) {
+                store = SegmentStore.of(Collections.<UnparsedTag>emptyList(),
+                        priorTags.subList(priorHeaderEnd, priorSegmentsEnd), Collections.<UnparsedTag>emptyList());
+            }
+            merged = store.share(header, start - priorHeaderEnd, end - priorHeaderEnd, appended, trailer);
+        } else {
+            final List<UnparsedTag> segmentTags = new ArrayList<UnparsedTag>(end - start + appended.size() + 2);
+            segmentTags.addAll(deltaTags.subList(deltaHeaderEnd, skipIndex));
+            if (carriedMap >= 0 && carriedMap < carriedKey) {
+                segmentTags.add(priorTags.get(carriedMap));
+                carriedMap = -1;
+            }
+            if (carriedKey >= 0) {
+                segmentTags.add(priorTags.get(carriedKey));
+            }
+            if (carriedMap >= 0) {
+                segmentTags.add(priorTags.get(carriedMap));
+            }
+            for (int i = start; i < end; i++) {
+                final UnparsedTag tag = priorTags.get(i);
+                if (i == range && resolvedRange != null) {
+                    segmentTags.add(resolvedRange);
+                } else if (!removesDateRange || !tag.getTagName().equals(TagNames.EXTXDATERANGE)
+                        || !removedDateRanges.contains(dateRangeId(tag))) {
+                    segmentTags.add(tag);
+                }
+            }
+            segmentTags.addAll(appended);
+            merged = SegmentStore.of(header, segmentTags, trailer);
+        }
+        final MediaPlaylist playlist = MediaPlaylist.fromStore(current.version, merged);
+        playlist.setSegmentCount(skipped + current.getSegmentCount());
+        return playlist;
+    }
+
+    /**
+     * Returns the index of the EXT-X-SKIP tag, or -1 if there is none.
+     * @param tags tags of a media playlist
+     * @param headerEnd index of the first segment tag
+     * @return index
+     */
+    private static int skipIndex(final List<UnparsedTag> tags, final int headerEnd) {
+        for (int i = headerEnd; i < tags.size(); i++) {
+            final String tagName = tags.get(i).getTagName();
+            if (tagName.equals(TagNames.EXTXSKIP)) {
+                return i;
+            } else if (tagName.equals(TagNames.EXTINF) || tagName.equals(TagNames.EXTXBYTERANGE)) {
+                // The skip tag precedes the remaining segments
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the ID of a date range tag.
+     * @param tag EXT-X-DATERANGE tag
+     * @return ID
+     */
+    private static String dateRangeId(final UnparsedTag tag) {
+        final DateRange dateRange = new DateRange();
+        dateRange.setTag(tag);
+        return dateRange.getId();
+    }
+}
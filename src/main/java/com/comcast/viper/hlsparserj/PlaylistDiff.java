@@ -0,0 +1,368 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.comcast.viper.hlsparserj.tags.TagNames;
+import com.comcast.viper.hlsparserj.tags.UnparsedTag;
+
+/**
+ * Differences between two reloads of a live media playlist.
+ *
+ * The playlists are aligned by their EXT-X-MEDIA-SEQUENCE numbers: segment
+ * n of a playlist has the sequence number of the playlist plus n.  The
+ * segments that expired from the head of the previous playlist and the
+ * segments that were added at the end of the current one follow from the
+ * sequence numbers and segment counts alone, so segments are not compared
+ * with each other.  Only the removed and added segments and the header
+ * and trailer tags are visited.
+ *
+ * The segment counts are taken by the parser as it reads a playlist, and
+ * are carried by its snapshots, by {@link MediaPlaylist#withSegments} and
+ * by {@link PlaylistDeltaMerger}, so they are not counted again, see
+ * {@link MediaPlaylist#getSegmentCount()}.  The cost of a diff is
+ * therefore proportional to the header and trailer tags of the playlists
+ * and the tags of the removed and added segments.  Only if the added
+ * segments carry an EXT-X-KEY is the key in effect before them searched
+ * for backwards, up to the previous EXT-X-KEY, which may reach back to the
+ * first segment.
+ *
+ * Sequence ranges are half open: from is inclusive, to is exclusive.
+ */
+public final class PlaylistDiff {
+
+    /**
+     * Irregularities in the sequence numbers of two reloads.
+     */
+    public enum Anomaly {
+        /**
+         * The media sequence number went backwards.  The ranges describe the
+         * playlists as given, but the stream has most likely restarted.
+         */
+        REWIND,
+        /**
+         * Segments were lost: the current playlist starts after the end of the
+         * previous one.
+         */
+        GAP,
+        /**
+         * No segment was added, and the playlist has not ended.
+         */
+        STALL,
+        /**
+         * The discontinuity sequence number does not match the discontinuities
+         * that expired with the removed segments.
+         */
+        DISCONTINUITY_SEQUENCE
+    }
+
+    private final long removedFrom;
+    private final long removedTo;
+    private final long addedFrom;
+    private final long addedTo;
+    private final List<String> addedURIs;
+    private final boolean discontinuityAdded;
+    private final boolean keyChanged;
+    private final Set<String> changedTags;
+    private final Set<Anomaly> anomalies;
+
+    private PlaylistDiff(final long removedFrom, final long removedTo, final long addedFrom, final long addedTo,
+            final List<String> addedURIs, final boolean discontinuityAdded, final boolean keyChanged,
+            final Set<String> changedTags, final Set<Anomaly> anomalies) {
+        this.removedFrom = removedFrom;
+        this.removedTo = removedTo;
+        this.addedFrom = addedFrom;
+        this.addedTo = addedTo;
+        this.addedURIs = Collections.unmodifiableList(addedURIs);
+        this.discontinuityAdded = discontinuityAdded;
+        this.keyChanged = keyChanged;
+        this.changedTags = Collections.unmodifiableSet(changedTags);
+        this.anomalies = Collections.unmodifiableSet(anomalies);
+    }
+
+    /**
+     * Computes the differences between two reloads of a media playlist.
+     * Proportional to the changes and the header and trailer tags, see the
+     * class documentation.
+     * @param previous playlist of the earlier reload
+     * @param current playlist of the later reload
+     * @return differences
+     */
+    public static PlaylistDiff compute(final MediaPlaylist previous, final MediaPlaylist current) {
+        final List<UnparsedTag> previousTags = previous.getTags();
+        final List<UnparsedTag> currentTags = current.getTags();
+        final int previousHeaderEnd = MediaPlaylist.headerEnd(previousTags);
+        final int currentHeaderEnd = MediaPlaylist.headerEnd(currentTags);
+        final long previousStart = MediaPlaylist.sequenceNumber(previousTags, previousHeaderEnd,
+                TagNames.EXTXMEDIASEQUENCE);
+        final long currentStart = MediaPlaylist.sequenceNumber(currentTags, currentHeaderEnd,
+                TagNames.EXTXMEDIASEQUENCE);
+        final long previousEnd = previousStart + previous.getSegmentCount();
+        final long currentEnd = currentStart + current.getSegmentCount();
+
+        final Set<Anomaly> anomalies = EnumSet.noneOf(Anomaly.class);
+        if (currentStart < previousStart) {
+            anomalies.add(Anomaly.REWIND);
+        } else if (currentStart > previousEnd) {
+            anomalies.add(Anomaly.GAP);
+        }
+
+        final long removedTo = Math.min(Math.max(currentStart, previousStart), previousEnd);
+        final long addedFrom = Math.min(Math.max(previousEnd, currentStart), currentEnd);
+        if (addedFrom == currentEnd && !current.getEndList() && !anomalies.contains(Anomaly.REWIND)) {
+            anomalies.add(Anomaly.STALL);
+        }
+
+        // Added segments, found by walking back from the end of the current playlist
+        final int currentSegmentsEnd = MediaPlaylist.segmentsEnd(currentTags, currentHeaderEnd);
+        final long addedCount = currentEnd - addedFrom;
+        int addedStart = currentSegmentsEnd;
+        long segments = 0;
+        while (addedStart > currentHeaderEnd) {
+            if (MediaPlaylist.isSegmentEnd(currentTags.get(addedStart - 1)) && segments++ == addedCount) {
+                break;
+            }
+            addedStart--;
+        }
+
+        final List<String> addedURIs = new ArrayList<String>((int) addedCount);
+        boolean discontinuityAdded = false;
+        boolean keyChanged = false;
+        UnparsedTag key = null;
+        boolean keyFound = false;
+        for (int i = addedStart; i < currentSegmentsEnd; i++) {
+            final UnparsedTag tag = currentTags.get(i);
+            final String tagName = tag.getTagName();
+            if (MediaPlaylist.isSegmentEnd(tag)) {
+                addedURIs.add(tag.getURI());
+            } else if (tagName.equals(TagNames.EXTXDISCONTINUITY)) {
+                discontinuityAdded = true;
+            } else if (tagName.equals(TagNames.EXTXKEY)) {
+                if (!keyFound) {
+                    key = keyBefore(currentTags, currentHeaderEnd, addedStart);
+                    keyFound = true;
+                }
+                keyChanged |= key == null || !key.getRawTag().equals(tag.getRawTag());
+                key = tag;
+            }
+        }
+
+        // Discontinuities that expired with the removed segments
+        if (anomalies.isEmpty() || anomalies.equals(EnumSet.of(Anomaly.STALL))) {
+            int discontinuities = 0;
+            long removed = 0;
+            for (int i = previousHeaderEnd; removed < removedTo - previousStart && i < previousTags.size(); i++) {
+                final UnparsedTag tag = previousTags.get(i);
+                if (tag.getTagName().equals(TagNames.EXTXDISCONTINUITY)) {
+                    discontinuities++;
+                } else if (MediaPlaylist.isSegmentEnd(tag)) {
+                    removed++;
+                }
+            }
+            final long expected = MediaPlaylist.sequenceNumber(previousTags, previousHeaderEnd,
+                    TagNames.EXTXDISCONTINUITYSEQUENCE) + discontinuities;
+            if (MediaPlaylist.sequenceNumber(currentTags, currentHeaderEnd,
+                    TagNames.EXTXDISCONTINUITYSEQUENCE) != expected) {
+                anomalies.add(Anomaly.DISCONTINUITY_SEQUENCE);
+            }
+        }
+
+        final Set<String> changedTags = changedPlaylistTags(previousTags, previousHeaderEnd,
+                MediaPlaylist.segmentsEnd(previousTags, previousHeaderEnd), currentTags, currentHeaderEnd,
+                currentSegmentsEnd);
+
+        return new PlaylistDiff(previousStart, removedTo, addedFrom, currentEnd, addedURIs, discontinuityAdded,
+                keyChanged, changedTags, anomalies);
+    }
+
+    /**
+     * Returns the first sequence number of the removed segments.
+     * @return sequence number
+     */
+    public long getRemovedFrom() {
+        return removedFrom;
+    }
+
+    /**
+     * Returns the sequence number after the last removed segment.
+     * @return sequence number
+     */
+    public long getRemovedTo() {
+        return removedTo;
+    }
+
+    /**
+     * Returns the number of segments of the previous playlist that are no
+     * longer in the current one.
+     * @return removed segment count
+     */
+    public long getRemovedCount() {
+        return removedTo - removedFrom;
+    }
+
+    /**
+     * Returns the first sequence number of the added segments.
+     * @return sequence number
+     */
+    public long getAddedFrom() {
+        return addedFrom;
+    }
+
+    /**
+     * Returns the sequence number after the last added segment.
+     * @return sequence number
+     */
+    public long getAddedTo() {
+        return addedTo;
+    }
+
+    /**
+     * Returns the number of segments of the current playlist that were not
+     * in the previous one.
+     * @return added segment count
+     */
+    public long getAddedCount() {
+        return addedTo - addedFrom;
+    }
+
+    /**
+     * Returns the URIs of the added segments, in order.
+     * @return unmodifiable list of URIs
+     */
+    public List<String> getAddedURIs() {
+        return addedURIs;
+    }
+
+    /**
+     * Returns true if the added segments include an EXT-X-DISCONTINUITY.
+     * @return boolean
+     */
+    public boolean isDiscontinuityAdded() {
+        return discontinuityAdded;
+    }
+
+    /**
+     * Returns true if the added segments include an EXT-X-KEY that differs
+     * from the key in effect before it.
+     * @return boolean
+     */
+    public boolean isKeyChanged() {
+        return keyChanged;
+    }
+
+    /**
+     * Returns the names of the playlist tags, before the first segment or
+     * after the last one, that were added, removed or changed.  The media
+     * sequence and discontinuity sequence tags are left out, as they are
+     * covered by the sequence ranges and anomalies.
+     * @return unmodifiable set of tag names
+     */
+    public Set<String> getChangedTags() {
+        return changedTags;
+    }
+
+    /**
+     * Returns the sequence number anomalies found.
+     * @return unmodifiable set of anomalies
+     */
+    public Set<Anomaly> getAnomalies() {
+        return anomalies;
+    }
+
+    /**
+     * Returns true if no segment or playlist tag changed and no anomaly was
+     * found other than a stall.
+     * @return boolean
+     */
+    public boolean isUnchanged() {
+        return getRemovedCount() == 0 && getAddedCount() == 0 && changedTags.isEmpty()
+                && !anomalies.contains(Anomaly.REWIND) && !anomalies.contains(Anomaly.DISCONTINUITY_SEQUENCE);
+    }
+
+    /**
+     * Returns the last key tag before an index, stopping at the header.
+     * @param tags tags of a playlist
+     * @param headerEnd index of the first segment tag
+     * @param index index to search back from
+     * @return key tag, or null
+     */
+    private static UnparsedTag keyBefore(final List<UnparsedTag> tags, final int headerEnd, final int index) {
+        for (int i = index - 1; i >= headerEnd; i--) {
+            if (tags.get(i).getTagName().equals(TagNames.EXTXKEY)) {
+                return tags.get(i);
+            }
+        }
+        return null;
+    }
+
+    private static Set<String> changedPlaylistTags(final List<UnparsedTag> previousTags,
+            final int previousHeaderEnd, final int previousSegmentsEnd, final List<UnparsedTag> currentTags,
+            final int currentHeaderEnd, final int currentSegmentsEnd) {
+        final Map<String, List<String>> previousValues = playlistTags(previousTags, previousHeaderEnd,
+                previousSegmentsEnd);
+        final Map<String, List<String>> currentValues = playlistTags(currentTags, currentHeaderEnd,
+                currentSegmentsEnd);
+        final Set<String> changed = new LinkedHashSet<String>();
+        for (Map.Entry<String, List<String>> entry : currentValues.entrySet()) {
+            if (!entry.getValue().equals(previousValues.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (String tagName : previousValues.keySet()) {
+            if (!currentValues.containsKey(tagName)) {
+                changed.add(tagName);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns the raw text of the header and trailer tags of a playlist,
+     * by tag name.
+     */
+    private static Map<String, List<String>> playlistTags(final List<UnparsedTag> tags, final int headerEnd,
+            final int segmentsEnd) {
+        final Map<String, List<String>> values = new LinkedHashMap<String, List<String>>();
+        for (int i = 0; i < tags.size(); i++) {
+            if (i == headerEnd) {
+                i = segmentsEnd;
+                if (i >= tags.size()) {
+                    break;
+                }
+            }
+            final UnparsedTag tag = tags.get(i);
+            final String tagName = tag.getTagName();
+            if (tagName.equals(TagNames.EXTXMEDIASEQUENCE) || tagName.equals(TagNames.EXTXDISCONTINUITYSEQUENCE)) {
+                continue;
+            }
+            List<String> tagValues = values.get(tagName);
+            if (tagValues == null) {
+                tagValues = new ArrayList<String>(1);
+                values.put(tagName, tagValues);
+            }
+            tagValues.add(tag.getURI() == null ? tag.getRawTag() : tag.getRawTag() + "\n" + tag.getURI());
+        }
+        return values;
+    }
+}
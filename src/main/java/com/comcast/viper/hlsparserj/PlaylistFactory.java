@@ -22,15 +22,31 @@ package com.comcast.viper.hlsparserj;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.BasicHttpClientConnectionManager;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
 
+import com.comcast.viper.hlsparserj.jfr.FlightRecorderEvents;
+import com.comcast.viper.hlsparserj.metrics.ParseListener;
+import com.comcast.viper.hlsparserj.tags.UnparsedTag;
 import com.comcast.viper.hlsparserj.v12.MasterPlaylistV12;
 import com.comcast.viper.hlsparserj.v12.MediaPlaylistV12;
 
@@ -47,6 +63,25 @@ public class PlaylistFactory {
         }
     }
 
+    private static volatile ParseListener parseListener = ParseListener.NONE;
+
+    /**
+     * Installs the listener that receives the measurements of every playlist
+     * fetched and parsed by this factory and by {@link AsyncPlaylistFetcher}.
+     * @param listener parse listener, or null to stop listening
+     */
+    public static void setParseListener(final ParseListener listener) {
+        parseListener = listener == null ? ParseListener.NONE : listener;
+    }
+
+    /**
+     * Returns the installed parse listener.
+     * @return parse listener; {@link ParseListener#NONE} if none is installed
+     */
+    public static ParseListener getParseListener() {
+        return parseListener;
+    }
+
     /**
      * Factory method to generate a playlist object. This method performs no
      * HTTP actions. It uses the playlistStream parameter as the playlist.
@@ -58,11 +93,82 @@ public class PlaylistFactory {
      */
     public static AbstractPlaylist parsePlaylist(final PlaylistVersion playlistVersion,
             final InputStream playlistStream) throws IOException {
-        final PlaylistParser parser = new PlaylistParser();
+        return parsePlaylist(playlistVersion, playlistStream, ParseOptions.ALL);
+    }
+
+    /**
+     * Factory method to generate a playlist object with only the tags
+     * selected by the parse options.  This method performs no HTTP actions.
+     * It uses the playlistStream parameter as the playlist.
+     *
+     * @param playlistVersion version of the playlist (V12 is the default)
+     * @param playlistStream inputStream containing a correctly formatted playlist
+     * @param options parse options
+     * @return parsed playlist
+     * @throws IOException on parsing exception
+     */
+    public static AbstractPlaylist parsePlaylist(final PlaylistVersion playlistVersion,
+            final InputStream playlistStream, final ParseOptions options) throws IOException {
+        final PlaylistParser parser = new PlaylistParser(parseListener, options);
         parser.parse(playlistStream);
         return getVersionSpecificPlaylist(parser, playlistVersion);
     }
 
+    /**
+     * Factory method to generate a playlist object, reusing a previously
+     * parsed version of the playlist if the body has not changed.  The
+     * stream is read into memory and fingerprinted as it is read; if the
+     * fingerprint matches the fingerprint of the previous playlist, the
+     * previous playlist is returned without tokenizing the body.  This method
+     * performs no HTTP actions.
+     *
+     * @param playlistVersion version of the playlist (V12 is the default)
+     * @param playlistStream inputStream containing a correctly formatted playlist
+     * @param previous playlist previously parsed from the same source, or null
+     * @return previous playlist, or the parsed playlist
+     * @throws IOException on reading or parsing exception
+     */
+    public static AbstractPlaylist parsePlaylistIfChanged(final PlaylistVersion playlistVersion,
+            final InputStream playlistStream, final AbstractPlaylist previous) throws IOException {
+        final XxHash64 fingerprint = new XxHash64();
+        byte[] body = new byte[8192];
+        int length = 0;
+        int count;
+        while ((count = playlistStream.read(body, length, body.length - length)) >= 0) {
+            fingerprint.update(body, length, count);
+            length += count;
+            if (length == body.length) {
+                body = Arrays.copyOf(body, body.length * 2);
+            }
+        }
+        if (previous != null && previous.getFingerprint() == fingerprint.getValue()) {
+            return previous;
+        }
+        return parseBody(playlistVersion, body, length);
+    }
+
+    /**
+     * Factory method to generate a playlist object, reusing a previously
+     * parsed version of the playlist if the body has not changed.  The body
+     * is fingerprinted first; if the fingerprint matches the fingerprint of
+     * the previous playlist, the previous playlist is returned without
+     * tokenizing the body.  This method performs no HTTP actions.
+     *
+     * @param playlistVersion version of the playlist (V12 is the default)
+     * @param playlistBody UTF-8 bytes of a correctly formatted playlist
+     * @param previous playlist previously parsed from the same source, or null
+     * @return previous playlist, or the parsed playlist
+     * @throws IOException if the body is not valid UTF-8
+     */
+    public static AbstractPlaylist parsePlaylistIfChanged(final PlaylistVersion playlistVersion,
+            final byte[] playlistBody, final AbstractPlaylist previous) throws IOException {
+        if (previous != null
+                && previous.getFingerprint() == XxHash64.hash(playlistBody, 0, playlistBody.length)) {
+            return previous;
+        }
+        return parseBody(playlistVersion, playlistBody, playlistBody.length);
+    }
+
     /**
      * Factory method to generate playlist object.  This method performs no
      * HTTP actions. It uses the playlistString parameter as the playlist.
@@ -73,11 +179,85 @@ public class PlaylistFactory {
      */
     public static AbstractPlaylist parsePlaylist(final PlaylistVersion playlistVersion,
             final String playlistString) {
-        final PlaylistParser parser = new PlaylistParser();
+        return parsePlaylist(playlistVersion, playlistString, ParseOptions.ALL);
+    }
+
+    /**
+     * Factory method to generate playlist object with only the tags selected
+     * by the parse options.  This method performs no HTTP actions. It uses
+     * the playlistString parameter as the playlist.
+     *
+     * @param playlistVersion version of the playlist (V12 is the default)
+     * @param playlistString string containing a correctly formatted playlist
+     * @param options parse options
+     * @return parsed playlist
+     */
+    public static AbstractPlaylist parsePlaylist(final PlaylistVersion playlistVersion,
+            final String playlistString, final ParseOptions options) {
+        final PlaylistParser parser = new PlaylistParser(parseListener, options);
         parser.parse(playlistString);
         return getVersionSpecificPlaylist(parser, playlistVersion);
     }
 
+    /**
+     * Factory method to generate a playlist object, reusing a previously
+     * parsed version of the playlist if the body has not changed.  If the
+     * fingerprint of the body matches the fingerprint of the previous
+     * playlist, the previous playlist is returned without tokenizing the
+     * body.  This method performs no HTTP actions.
+     *
+     * @param playlistVersion version of the playlist (V12 is the default)
+     * @param playlistString string containing a correctly formatted playlist
+     * @param previous playlist previously parsed from the same source, or null
+     * @return previous playlist, or the parsed playlist
+     */
+    public static AbstractPlaylist parsePlaylistIfChanged(final PlaylistVersion playlistVersion,
+            final String playlistString, final AbstractPlaylist previous) {
+        if (previous != null && previous.getFingerprint() == XxHash64.hashUtf8(playlistString)) {
+            return previous;
+        }
+        return parsePlaylist(playlistVersion, playlistString);
+    }
+
+    /**
+     * Factory method to generate a playlist object from the header and the
+     * last segments of a media playlist held in a buffer, such as a fully
+     * received response body.  Only the header and the kept segments are
+     * decoded; see {@link PlaylistParser#parseTail(ByteBuffer, int)}.
+     *
+     * @param playlistVersion version of the playlist (V12 is the default)
+     * @param playlistBuffer buffer holding a correctly formatted playlist
+     * @param segmentCount number of segments to keep
+     * @return parsed playlist
+     * @throws IOException on parsing exception
+     */
+    public static AbstractPlaylist parsePlaylistTail(final PlaylistVersion playlistVersion,
+            final ByteBuffer playlistBuffer, final int segmentCount) throws IOException {
+        final PlaylistParser parser = new PlaylistParser(parseListener);
+        parser.parseTail(playlistBuffer, segmentCount);
+        return getVersionSpecificPlaylist(parser, playlistVersion);
+    }
+
+    /**
+     * Factory method to generate a playlist object from the header and the
+     * last segments of a media playlist file.  The file is mapped into
+     * memory, so only the pages holding the header, the kept segments and
+     * the scanned bytes are read.
+     *
+     * @param playlistVersion version of the playlist (V12 is the default)
+     * @param playlistFile file containing a correctly formatted playlist
+     * @param segmentCount number of segments to keep
+     * @return parsed playlist
+     * @throws IOException on reading and parsing exceptions
+     */
+    public static AbstractPlaylist parsePlaylistTail(final PlaylistVersion playlistVersion,
+            final Path playlistFile, final int segmentCount) throws IOException {
+        try (FileChannel channel = FileChannel.open(playlistFile, StandardOpenOption.READ)) {
+            final ByteBuffer playlistBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return parsePlaylistTail(playlistVersion, playlistBuffer, segmentCount);
+        }
+    }
+
     /**
      * Factory method to generate playlist object. This method uses a very
      * simple HTTP client to download the URL passed by the playlistURL
@@ -103,21 +283,91 @@ public class PlaylistFactory {
         requestBuilder = requestBuilder.setConnectionRequestTimeout(requestTimeout);
         requestBuilder = requestBuilder.setSocketTimeout(socketTimeout);
 
+        final ParseListener listener = parseListener;
+        final boolean listening = listener != ParseListener.NONE;
         final HttpClientBuilder builder = HttpClientBuilder.create();
         builder.setDefaultRequestConfig(requestBuilder.build());
+        if (listening) {
+            builder.setConnectionManager(
+                    new BasicHttpClientConnectionManager(TimedConnectionSocketFactory.createRegistry()));
+        }
         final CloseableHttpClient httpClient = builder.build();
-        final PlaylistParser parser = new PlaylistParser();
+        final PlaylistParser parser = new PlaylistParser(listener);
+        final HttpContext context = new BasicHttpContext();
+        final Object event = FlightRecorderEvents.beginFetch();
 
         try {
-            final InputStream playlistStream = getPlaylistInputStream(httpClient, playlistURL);
+            final long startTime = listening ? System.nanoTime() : 0;
+            final InputStream playlistStream = getPlaylistInputStream(httpClient, playlistURL, context);
+            final long headersTime = listening ? System.nanoTime() : 0;
             parser.parse(playlistStream);
+            if (listening) {
+                final Long connectNanos = (Long) context.getAttribute(TimedConnectionSocketFactory.CONNECT_NANOS);
+                listener.fetchCompleted(playlistURL, HttpStatus.SC_OK, connectNanos == null ? -1 : connectNanos,
+                        headersTime - startTime, System.nanoTime() - headersTime);
+            }
+        } catch (IOException ex) {
+            listener.fetchFailed(playlistURL, ex);
+            throw ex;
         } finally {
+            final HttpResponse response = HttpCoreContext.adapt(context).getResponse();
+            FlightRecorderEvents.commitFetch(event, playlistURL,
+                    response == null ? 0 : response.getStatusLine().getStatusCode(), parser.getByteCount());
             httpClient.close();
         }
 
         return getVersionSpecificPlaylist(parser, playlistVersion);
     }
 
+    /**
+     * Factory method to fetch and parse a playlist without blocking the
+     * calling thread.  The playlist is downloaded by a shared, non-blocking
+     * HTTP client and parsed as its body arrives.  Applications that need
+     * their own timeouts or connection limits should create and share an
+     * {@link AsyncPlaylistFetcher} instead.
+     *
+     * @param playlistVersion version of the playlist (V12 is the default)
+     * @param playlistURL URL pointing to a playlist
+     * @return future parsed playlist, completed exceptionally with an
+     * IOException on connection and parsing exceptions
+     */
+    public static CompletableFuture<AbstractPlaylist> fetchAndParseAsync(
+            final PlaylistVersion playlistVersion, final URL playlistURL) {
+        return SharedFetcherHolder.FETCHER.fetchAndParse(playlistVersion, playlistURL);
+    }
+
+    /**
+     * Factory method to fetch and parse a playlist of the default version
+     * without blocking the calling thread.
+     *
+     * @param playlistURL URL pointing to a playlist
+     * @return future parsed playlist
+     * @see #fetchAndParseAsync(PlaylistVersion, URL)
+     */
+    public static CompletableFuture<AbstractPlaylist> fetchAndParseAsync(final URL playlistURL) {
+        return fetchAndParseAsync(PlaylistVersion.DEFAULT, playlistURL);
+    }
+
+    /**
+     * Parses a playlist body held in memory.
+     * @param playlistVersion version of the playlist
+     * @param body buffer holding the body
+     * @param length length of the body
+     * @return parsed playlist
+     * @throws IOException if the body is not valid UTF-8
+     */
+    private static AbstractPlaylist parseBody(final PlaylistVersion playlistVersion, final byte[] body,
+            final int length) throws IOException {
+        final PlaylistParser parser = new PlaylistParser(parseListener);
+        try {
+            parser.parseChunk(ByteBuffer.wrap(body, 0, length));
+            parser.finish();
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        return getVersionSpecificPlaylist(parser, playlistVersion);
+    }
+
     /**
      * Returns a playlist that represents a specific object version of the playlist.
      * Currently, only V12 is supported.
@@ -125,18 +375,43 @@ public class PlaylistFactory {
      * @param playlistVersion preferred playlist version
      * @return playlist
      */
-    private static AbstractPlaylist getVersionSpecificPlaylist(final PlaylistParser parser,
+    static AbstractPlaylist getVersionSpecificPlaylist(final PlaylistParser parser,
             final PlaylistVersion playlistVersion) {
+        final ParseListener listener = parseListener;
+        final long startTime = listener != ParseListener.NONE ? System.nanoTime() : 0;
+        final AbstractPlaylist playlist = createPlaylist(playlistVersion, parser.isMasterPlaylist(),
+                parser.getTags());
+        playlist.setFingerprint(parser.getFingerprint());
+        if (playlist instanceof MediaPlaylist) {
+            ((MediaPlaylist) playlist).setSegmentCount(parser.getSegmentCount());
+        }
+
+        if (listener != ParseListener.NONE) {
+            listener.modelBuilt(playlist.isMasterPlaylist(), System.nanoTime() - startTime);
+        }
+        return playlist;
+    }
+
+    /**
+     * Returns a playlist object of a specific version over a list of tags.
+     * Currently, only V12 is supported.
+     * @param playlistVersion preferred playlist version
+     * @param masterPlaylist true for a master playlist
+     * @param tags list of tags
+     * @return playlist
+     */
+    static AbstractPlaylist createPlaylist(final PlaylistVersion playlistVersion, final boolean masterPlaylist,
+            final List<UnparsedTag> tags) {
         AbstractPlaylist playlist = null;
 
         switch (playlistVersion) {
         case TWELVE:
         case DEFAULT:
         default:
-            if (parser.isMasterPlaylist()) {
-                playlist = new MasterPlaylistV12(parser.getTags());
+            if (masterPlaylist) {
+                playlist = new MasterPlaylistV12(tags);
             } else {
-                playlist = new MediaPlaylistV12(parser.getTags());
+                playlist = new MediaPlaylistV12(tags);
             }
 
             break;
@@ -149,14 +424,15 @@ public class PlaylistFactory {
      * Returns a playlist inputStream given an httpClient and a URL.
      * @param httpClient http client
      * @param url URL to a playlist
+     * @param context HTTP context of the request
      * @return inputStream
      * @throws IOException on HTTP connection exception
      */
     private static InputStream getPlaylistInputStream(final CloseableHttpClient httpClient,
-            final URL url) throws IOException {
+            final URL url, final HttpContext context) throws IOException {
         final HttpGet get = new HttpGet(url.toString());
         CloseableHttpResponse response = null;
-        response = httpClient.execute(get);
+        response = httpClient.execute(get, context);
         if (response == null) {
             throw new IOException("Request returned a null response");
         }
@@ -168,4 +444,13 @@ public class PlaylistFactory {
 
         return response.getEntity().getContent();
     }
+
+    /**
+     * Holds the fetcher used by fetchAndParseAsync.  It is created on first
+     * use so that applications that never fetch asynchronously do not start
+     * its I/O threads.
+     */
+    private static class SharedFetcherHolder {
+        private static final AsyncPlaylistFetcher FETCHER = new AsyncPlaylistFetcher();
+    }
 }
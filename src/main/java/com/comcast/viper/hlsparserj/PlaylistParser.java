@@ -15,36 +15,137 @@
  */
 package com.comcast.viper.hlsparserj;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.StringTokenizer;
 
+import com.comcast.viper.hlsparserj.jfr.FlightRecorderEvents;
+import com.comcast.viper.hlsparserj.metrics.ParseListener;
+import com.comcast.viper.hlsparserj.tags.TagFactory;
 import com.comcast.viper.hlsparserj.tags.TagNames;
 import com.comcast.viper.hlsparserj.tags.UnparsedTag;
 
 /**
  * Class to parse playlists.  Capable to parse playlist string or inputStream.
+ *
+ * A parser can be reused for another playlist after calling
+ * {@link #reset()}.  Input streams are read through a read buffer and a
+ * line buffer that are kept per thread and recycled between parses, so
+ * repeated parsing allocates little beyond the tags themselves.
+ *
+ * Playlist bytes are decoded as UTF-8.  Lines of ASCII characters, the
+ * usual case, are turned into strings directly; other lines go through a
+ * strict UTF-8 decoder, and a line that is not valid UTF-8 fails the parse.
+ *
+ * A parser created with {@link ParseOptions} that name the tags of
+ * interest drops the other tags, and the URIs that follow them, before
+ * they are decoded.
+ *
+ * {@link #parseTail(ByteBuffer, int)} parses only the header and the last
+ * segments of a media playlist held in memory or in a mapped file.
+ *
+ * Every byte passed to the parser, including the bytes of tags that are
+ * dropped or skipped, is hashed with {@link XxHash64} as it is read, giving
+ * a fingerprint of the playlist body.
  */
 public class PlaylistParser {
 
-    private InputStream playlistStream;
+    private static final String TAGPREFIX = "#EXT";
+    private static final byte[] TAGPREFIX_BYTES = TAGPREFIX.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] STREAMINF_BYTES = TagNames.EXTXSTREAMINF.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] KEY_BYTES = TagNames.EXTXKEY.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DISCONTINUITY_BYTES = TagNames.EXTXDISCONTINUITY.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MAP_BYTES = TagNames.EXTXMAP.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BYTERANGE_BYTES = TagNames.EXTXBYTERANGE.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[][] SEGMENT_TAG_BYTES = {
+        TagNames.EXTINF.getBytes(StandardCharsets.US_ASCII),
+        BYTERANGE_BYTES,
+        KEY_BYTES,
+        DISCONTINUITY_BYTES,
+        TagNames.EXTXPROGRAMDATETIME.getBytes(StandardCharsets.US_ASCII),
+        TagNames.EXTXCUEOUT.getBytes(StandardCharsets.US_ASCII),
+        TagNames.EXTXCUEOUTCONT.getBytes(StandardCharsets.US_ASCII),
+        TagNames.EXTXCUEIN.getBytes(StandardCharsets.US_ASCII),
+        TagNames.EXTXDATERANGE.getBytes(StandardCharsets.US_ASCII),
+        TagNames.EXTXPART.getBytes(StandardCharsets.US_ASCII),
+        TagNames.EXTXSKIP.getBytes(StandardCharsets.US_ASCII),
+    };
+
+    private static final int INITIAL_LINE_BUFFER_SIZE = 256;
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final int MAX_RETAINED_LINE_BUFFER_SIZE = 65536;
 
-    private final List<UnparsedTag> tags;
+    private static final ThreadLocal<ScratchBuffers> SCRATCH_BUFFERS = new ThreadLocal<ScratchBuffers>() {
+        @Override
+        protected ScratchBuffers initialValue() {
+            return new ScratchBuffers();
+        }
+    };
 
-    private static final String TAGPATTERN = "^#EXT.*";
-    private static final String URIPATTERN = "^[^#].*";
+    private List<UnparsedTag> tags;
 
     private boolean isMasterPlaylist = false;
 
+    private byte[] lineBuffer;
+    private int lineLength;
+    private UnparsedTag lastTag;
+    private boolean chunkStarted;
+    private CharsetDecoder utf8Decoder;
+
+    private final ParseListener listener;
+    private final boolean listening;
+    private final ParseOptions options;
+    private long parseStartTime;
+    private long byteCount;
+    private int lineCount;
+    private int segmentCount;
+    private Object chunkEvent;
+    private final XxHash64 fingerprint = new XxHash64();
+
     /**
      * Constructor.
      */
     public PlaylistParser() {
+        this(ParseListener.NONE);
+    }
+
+    /**
+     * Constructor for a parser that reports its measurements to a listener.
+     * @param listener parse listener
+     */
+    public PlaylistParser(final ParseListener listener) {
+        this(listener, ParseOptions.ALL);
+    }
+
+    /**
+     * Constructor for a parser that keeps only the tags selected by the
+     * options.
+     * @param options parse options
+     */
+    public PlaylistParser(final ParseOptions options) {
+        this(ParseListener.NONE, options);
+    }
+
+    /**
+     * Constructor for a parser that keeps only the tags selected by the
+     * options and reports its measurements to a listener.  Dropped tags are
+     * not reported to the listener.
+     * @param listener parse listener
+     * @param options parse options
+     */
+    public PlaylistParser(final ParseListener listener, final ParseOptions options) {
         tags = new ArrayList<UnparsedTag>();
+        this.listener = listener;
+        this.listening = listener != ParseListener.NONE;
+        this.options = options;
     }
 
     /**
@@ -52,7 +153,15 @@ public class PlaylistParser {
      * @param playlist playlist string
      */
     public void parse(final String playlist) {
+        final Object event = FlightRecorderEvents.beginParse();
+        if (listening) {
+            parseStartTime = System.nanoTime();
+        }
+        byteCount = playlist.length();
+        fingerprint.updateUtf8(playlist);
         parseString(playlist);
+        FlightRecorderEvents.commitParse(event, tags, isMasterPlaylist);
+        parseCompleted();
     }
 
     /**
@@ -61,8 +170,269 @@ public class PlaylistParser {
      * @throws IOException on connection and parsing exception
      */
     public void parse(final InputStream inputStream) throws IOException {
-        this.playlistStream = inputStream;
-        parseInputStream();
+        final Object event = FlightRecorderEvents.beginParse();
+        if (listening) {
+            parseStartTime = System.nanoTime();
+        }
+        parseInputStream(inputStream);
+        FlightRecorderEvents.commitParse(event, tags, isMasterPlaylist);
+        parseCompleted();
+    }
+
+    /**
+     * Parse the header and the last segments of a media playlist.  Only the
+     * header, up to the first segment tag, and the last segmentCount
+     * segments with the tags that follow them are decoded.  The segments in
+     * between are passed over by a backward scan of the bytes that counts
+     * them and their discontinuities and finds the key and map in effect, so
+     * the result is the same as parsing the playlist and keeping its last
+     * segments with {@link MediaPlaylist#withSegments(int, int)}: the media
+     * sequence and discontinuity sequence numbers are adjusted, the key
+     * and EXT-X-MAP of the skipped segments are carried over to the first
+     * kept segment, and an EXT-X-BYTERANGE of the first kept segment that
+     * continues the range of a skipped segment is given an explicit offset.
+     *
+     * A playlist without segments, such as a master playlist, is parsed in
+     * full.  The position of the buffer is not changed.
+     *
+     * @param playlist buffer holding the complete playlist, from its position to its limit
+     * @param segmentCount number of segments to keep
+     * @throws IOException if a decoded line is not valid UTF-8
+     */
+    public void parseTail(final ByteBuffer playlist, final int segmentCount) throws IOException {
+        if (segmentCount < 0) {
+            throw new IllegalArgumentException("segmentCount must not be negative");
+        }
+        final Object event = FlightRecorderEvents.beginParse();
+        if (listening) {
+            parseStartTime = System.nanoTime();
+        }
+        if (lineBuffer == null) {
+            lineBuffer = new byte[INITIAL_LINE_BUFFER_SIZE];
+        }
+        final int start = playlist.position();
+        final int limit = playlist.limit();
+        byteCount += limit - start;
+        fingerprint.update(playlist);
+
+        // Header, up to the first tag that belongs to a segment
+        int headerEnd = limit;
+        int lineStart = start;
+        while (lineStart < limit) {
+            final int lineEnd = lineEnd(playlist, lineStart, limit);
+            if (isSegmentTagLine(playlist, lineStart, lineEnd)) {
+                headerEnd = lineStart;
+                break;
+            }
+            processLine(playlist, lineStart, lineEnd);
+            lineStart = lineEnd + 1;
+        }
+
+        // Backward scan to the start of the tail, counting what is skipped
+        int uriCount = 0;
+        int tailStart = headerEnd;
+        int skippedDiscontinuities = 0;
+        int keyStart = -1;
+        int keyEnd = -1;
+        int mapStart = -1;
+        int mapEnd = -1;
+        int tailURIStart = -1;
+        int tailURIEnd = -1;
+        int rangeStart = -1;
+        int rangeEnd = -1;
+        long rangeOffset = -1;
+        long skippedLength = 0;
+        boolean skippedRange = false;
+        int nextLineEnd = limit;
+        for (int i = limit - 1; i >= headerEnd - 1; i--) {
+            if (i >= headerEnd && playlist.get(i) != '\n') {
+                continue;
+            }
+            final int lineEnd = trimLine(playlist, i + 1, nextLineEnd);
+            if (lineEnd > i + 1) {
+                if (playlist.get(i + 1) != '#') {
+                    uriCount++;
+                    if (uriCount == segmentCount) {
+                        tailURIStart = i + 1;
+                        tailURIEnd = lineEnd;
+                    } else if (uriCount == segmentCount + 1) {
+                        tailStart = Math.min(nextLineEnd + 1, limit);
+                    }
+                    if (uriCount > segmentCount && rangeStart >= 0 && rangeOffset < 0
+                            && (uriCount > segmentCount + 1 && !skippedRange
+                                || !sameLine(playlist, i + 1, lineEnd, tailURIStart, tailURIEnd))) {
+                        // The ranges continued from start after this segment
+                        rangeOffset = skippedLength;
+                    }
+                    skippedRange = false;
+                } else if (uriCount == segmentCount && segmentCount > 0) {
+                    if (rangeStart < 0 && isTagLine(playlist, i + 1, lineEnd, BYTERANGE_BYTES)
+                            && indexOf(playlist, i + 1, lineEnd, (byte) '@') < 0) {
+                        rangeStart = i + 1;
+                        rangeEnd = lineEnd;
+                    }
+                } else if (uriCount > segmentCount) {
+                    if (rangeStart >= 0 && rangeOffset < 0 && !skippedRange
+                            && isTagLine(playlist, i + 1, lineEnd, BYTERANGE_BYTES)) {
+                        skippedRange = true;
+                        final int at = indexOf(playlist, i + 1, lineEnd, (byte) '@');
+                        final int lengthStart = i + 3 + BYTERANGE_BYTES.length;
+                        skippedLength += Math.max(decimal(playlist, lengthStart, at < 0 ? lineEnd : at), 0);
+                        if (at >= 0) {
+                            rangeOffset = Math.max(decimal(playlist, at + 1, lineEnd), 0) + skippedLength;
+                        }
+                    }
+                    if (isTagLine(playlist, i + 1, lineEnd, DISCONTINUITY_BYTES)) {
+                        skippedDiscontinuities++;
+                    } else if (keyStart < 0 && isTagLine(playlist, i + 1, lineEnd, KEY_BYTES)) {
+                        keyStart = i + 1;
+                        keyEnd = lineEnd;
+                    } else if (mapStart < 0 && isTagLine(playlist, i + 1, lineEnd, MAP_BYTES)) {
+                        mapStart = i + 1;
+                        mapEnd = lineEnd;
+                    }
+                }
+            }
+            nextLineEnd = i;
+        }
+
+        if (headerEnd < limit) {
+            MediaPlaylist.adjustSequenceNumbers(tags, Math.max(uriCount - segmentCount, 0), skippedDiscontinuities);
+            if (uriCount <= segmentCount) {
+                rangeStart = -1;
+            } else if (rangeOffset < 0) {
+                // The ranges continued from start with the first segment
+                rangeOffset = skippedLength;
+            }
+
+            // The tail's first segment may have a key or map of its own
+            lineStart = tailStart;
+            while ((keyStart >= 0 || mapStart >= 0) && lineStart < limit) {
+                final int rawLineEnd = lineEnd(playlist, lineStart, limit);
+                final int lineEnd = trimLine(playlist, lineStart, rawLineEnd);
+                if (lineEnd > lineStart && playlist.get(lineStart) != '#') {
+                    break;
+                } else if (isTagLine(playlist, lineStart, lineEnd, KEY_BYTES)) {
+                    keyStart = -1;
+                } else if (isTagLine(playlist, lineStart, lineEnd, MAP_BYTES)) {
+                    mapStart = -1;
+                }
+                lineStart = rawLineEnd + 1;
+            }
+            if (mapStart >= 0 && mapStart < keyStart) {
+                processLine(playlist, mapStart, mapEnd);
+                mapStart = -1;
+            }
+            if (keyStart >= 0) {
+                processLine(playlist, keyStart, keyEnd);
+            }
+            if (mapStart >= 0) {
+                processLine(playlist, mapStart, mapEnd);
+            }
+
+            lineStart = tailStart;
+            while (lineStart < limit) {
+                final int lineEnd = lineEnd(playlist, lineStart, limit);
+                final long length = lineStart == rangeStart
+                        ? decimal(playlist, rangeStart + 1 + BYTERANGE_BYTES.length + 1, rangeEnd) : -1;
+                if (length >= 0) {
+                    final byte[] range = ("#" + TagNames.EXTXBYTERANGE + ":" + length + "@" + rangeOffset)
+                            .getBytes(StandardCharsets.US_ASCII);
+                    processLine(range, 0, range.length);
+                } else {
+                    processLine(playlist, lineStart, lineEnd);
+                }
+                lineStart = lineEnd + 1;
+            }
+        }
+        lastTag = null;
+
+        FlightRecorderEvents.commitParse(event, tags, isMasterPlaylist);
+        parseCompleted();
+    }
+
+    /**
+     * Parse the next chunk of a playlist as it is received.  Chunks may split
+     * a line at any byte; the incomplete remainder is held until the next
+     * chunk completes it.  The chunk is consumed up to its limit.  Call
+     * {@link #finish()} once the last chunk has been passed in.
+     * @param chunk buffer containing the next bytes of the playlist
+     * @throws UncheckedIOException if a line is not valid UTF-8
+     */
+    public void parseChunk(final ByteBuffer chunk) {
+        if (!chunkStarted) {
+            chunkStarted = true;
+            if (lineBuffer == null) {
+                lineBuffer = new byte[INITIAL_LINE_BUFFER_SIZE];
+            }
+            chunkEvent = FlightRecorderEvents.beginParse();
+            if (listening) {
+                parseStartTime = System.nanoTime();
+            }
+        }
+        byteCount += chunk.remaining();
+        try {
+            if (chunk.hasArray()) {
+                final int offset = chunk.arrayOffset();
+                fingerprint.update(chunk.array(), offset + chunk.position(), chunk.remaining());
+                scanLines(chunk.array(), offset + chunk.position(), offset + chunk.limit());
+                chunk.position(chunk.limit());
+            } else {
+                final ScratchBuffers scratch = ScratchBuffers.acquire();
+                try {
+                    while (chunk.hasRemaining()) {
+                        final int count = Math.min(chunk.remaining(), scratch.readBuffer.length);
+                        chunk.get(scratch.readBuffer, 0, count);
+                        fingerprint.update(scratch.readBuffer, 0, count);
+                        scanLines(scratch.readBuffer, 0, count);
+                    }
+                } finally {
+                    scratch.release();
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Completes a playlist passed in with {@link #parseChunk(ByteBuffer)}.
+     * A final line without a trailing line feed is processed here.
+     * @throws UncheckedIOException if the final line is not valid UTF-8
+     */
+    public void finish() {
+        if (lineLength > 0) {
+            final int length = lineLength;
+            lineLength = 0;
+            try {
+                processLine(lineBuffer, 0, length);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        chunkStarted = false;
+        lastTag = null;
+        FlightRecorderEvents.commitParse(chunkEvent, tags, isMasterPlaylist);
+        chunkEvent = null;
+        parseCompleted();
+    }
+
+    /**
+     * Prepares the parser for another playlist.  The tag list of the previous
+     * playlist is left to its owner and a new one is started; the read and
+     * line buffers are kept.
+     */
+    public void reset() {
+        tags = new ArrayList<UnparsedTag>(Math.max(tags.size(), 10));
+        isMasterPlaylist = false;
+        lineLength = 0;
+        lastTag = null;
+        chunkStarted = false;
+        chunkEvent = null;
+        byteCount = 0;
+        lineCount = 0;
+        segmentCount = 0;
+        fingerprint.reset();
     }
 
     /**
@@ -73,6 +443,34 @@ public class PlaylistParser {
         return isMasterPlaylist;
     }
 
+    /**
+     * Returns the number of bytes parsed, or characters for a playlist
+     * parsed from a string.
+     * @return byte count
+     */
+    long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Returns the XXH64 hash of the bytes parsed since the parser was created
+     * or last reset.  A string playlist is hashed as its UTF-8 encoding.
+     * @return fingerprint
+     */
+    public long getFingerprint() {
+        return fingerprint.getValue();
+    }
+
+    /**
+     * Returns the number of media segments parsed since the parser was
+     * created or last reset: the EXTINF and EXT-X-BYTERANGE tags that were
+     * given a URI.
+     * @return segment count
+     */
+    int getSegmentCount() {
+        return segmentCount;
+    }
+
     /**
      * Returns list of unparsed tags.
      * @return list of tags
@@ -82,32 +480,405 @@ public class PlaylistParser {
     }
 
     /**
-     * Parse a given playlist string.
+     * Reports the measurements of a completed parse to the listener.
+     */
+    private void parseCompleted() {
+        if (listening) {
+            listener.parseCompleted(byteCount, lineCount, tags.size(), System.nanoTime() - parseStartTime);
+        }
+    }
+
+    /**
+     * Parse a given playlist string.  Empty lines are skipped and a
+     * trailing carriage return is dropped from each line.
      * @param playlist playlist string
      */
     private void parseString(final String playlist) {
-        final StringTokenizer tokenizer = new StringTokenizer(playlist, "\n");
-
-        String line;
-        UnparsedTag lastTag = null;
-        while (tokenizer.hasMoreElements()) {
-            line = tokenizer.nextToken();
-            lastTag = processLine(line, lastTag);
+        final int length = playlist.length();
+        int start = 0;
+        while (start < length) {
+            int end = playlist.indexOf('\n', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end > start) {
+                final int lineEnd = playlist.charAt(end - 1) == '\r' ? end - 1 : end;
+                if (options.includesAllTags() || !skipLine(playlist, start, lineEnd)) {
+                    lastTag = processLine(playlist.substring(start, lineEnd), lastTag);
+                }
+            }
+            start = end + 1;
         }
+        lastTag = null;
     }
 
     /**
-     * Parse a given inputStream to a valid playlist.
+     * Parse a given inputStream to a valid playlist.  The stream is read
+     * into the read buffer of the current thread; lines that span reads are
+     * collected in its line buffer.
+     * @param inputStream inputStream
      * @throws IOException on reading the inputStream
      */
-    private void parseInputStream() throws IOException {
-        final InputStreamReader isReader = new InputStreamReader(playlistStream);
-        final BufferedReader bufReader = new BufferedReader(isReader);
+    private void parseInputStream(final InputStream inputStream) throws IOException {
+        final ScratchBuffers scratch = ScratchBuffers.acquire();
+        lineBuffer = scratch.lineBuffer;
+        try {
+            final byte[] readBuffer = scratch.readBuffer;
+            int count;
+            while ((count = inputStream.read(readBuffer, 0, readBuffer.length)) >= 0) {
+                byteCount += count;
+                fingerprint.update(readBuffer, 0, count);
+                scanLines(readBuffer, 0, count);
+            }
+            if (lineLength > 0) {
+                processLine(lineBuffer, 0, lineLength);
+                lineLength = 0;
+            }
+        } finally {
+            if (lineBuffer.length <= MAX_RETAINED_LINE_BUFFER_SIZE) {
+                scratch.lineBuffer = lineBuffer;
+            }
+            scratch.release();
+            lineBuffer = null;
+            lineLength = 0;
+            lastTag = null;
+        }
+    }
 
-        UnparsedTag lastTag = null;
-        String line;
-        while ((line = bufReader.readLine()) != null) {
-            lastTag = processLine(line, lastTag);
+    /**
+     * Processes the complete lines in a range of bytes.  Lines that lie
+     * entirely within the range are decoded in place; the incomplete line at
+     * the end of the range is held in the line buffer until a later range
+     * completes it.
+     * @param bytes bytes of the playlist
+     * @param offset start of the range
+     * @param end end of the range (exclusive)
+     * @throws IOException if a line is not valid UTF-8
+     */
+    private void scanLines(final byte[] bytes, final int offset, final int end) throws IOException {
+        int start = offset;
+        for (int i = offset; i < end; i++) {
+            if (bytes[i] == '\n') {
+                if (lineLength == 0) {
+                    processLine(bytes, start, i - start);
+                } else {
+                    appendToLine(bytes, start, i - start);
+                    processLine(lineBuffer, 0, lineLength);
+                    lineLength = 0;
+                }
+                start = i + 1;
+            }
+        }
+        appendToLine(bytes, start, end - start);
+    }
+
+    /**
+     * Appends bytes to the line buffer, growing it if needed.
+     * @param bytes bytes to append
+     * @param offset offset of the first byte
+     * @param length number of bytes
+     */
+    private void appendToLine(final byte[] bytes, final int offset, final int length) {
+        if (lineLength + length > lineBuffer.length) {
+            lineBuffer = Arrays.copyOf(lineBuffer, Math.max(lineBuffer.length * 2, lineLength + length));
+        }
+        System.arraycopy(bytes, offset, lineBuffer, lineLength, length);
+        lineLength += length;
+    }
+
+    /**
+     * Decodes a line of UTF-8 bytes and processes it.  A trailing carriage
+     * return is dropped, as BufferedReader.readLine does.
+     * @param bytes bytes of the line
+     * @param offset offset of the line
+     * @param length length of the line, without the line feed
+     * @throws IOException if the line is not valid UTF-8
+     */
+    private void processLine(final byte[] bytes, final int offset, final int length) throws IOException {
+        int lineEnd = length;
+        if (lineEnd > 0 && bytes[offset + lineEnd - 1] == '\r') {
+            lineEnd--;
+        }
+        if (!options.includesAllTags() && skipLine(bytes, offset, offset + lineEnd)) {
+            return;
+        }
+        final String line;
+        if (isAscii(bytes, offset, lineEnd)) {
+            // ASCII is a subset of both UTF-8 and Latin-1, and Latin-1 bytes
+            // are copied into the string without decoding
+            line = new String(bytes, offset, lineEnd, StandardCharsets.ISO_8859_1);
+        } else {
+            line = decodeUtf8(bytes, offset, lineEnd);
+        }
+        lastTag = processLine(line, lastTag);
+    }
+
+    /**
+     * Processes a line of a buffer.  The line is decoded in place if the
+     * buffer is backed by an array, or copied to the line buffer first.
+     * @param playlist playlist buffer
+     * @param start start of the line
+     * @param end end of the line (exclusive)
+     * @throws IOException if the line is not valid UTF-8
+     */
+    private void processLine(final ByteBuffer playlist, final int start, final int end) throws IOException {
+        if (playlist.hasArray()) {
+            processLine(playlist.array(), playlist.arrayOffset() + start, end - start);
+        } else {
+            if (end - start > lineBuffer.length) {
+                lineBuffer = new byte[Math.max(lineBuffer.length * 2, end - start)];
+            }
+            for (int i = start; i < end; i++) {
+                lineBuffer[i - start] = playlist.get(i);
+            }
+            processLine(lineBuffer, 0, end - start);
+        }
+    }
+
+    /**
+     * Returns the index of the line feed that ends the line, or the limit.
+     * @param playlist playlist buffer
+     * @param start start of the line
+     * @param limit end of the playlist
+     * @return end of the line
+     */
+    private static int lineEnd(final ByteBuffer playlist, final int start, final int limit) {
+        int i = start;
+        while (i < limit && playlist.get(i) != '\n') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the end of a line without its trailing carriage return.
+     * @param playlist playlist buffer
+     * @param start start of the line
+     * @param end end of the line
+     * @return end of the line content
+     */
+    private static int trimLine(final ByteBuffer playlist, final int start, final int end) {
+        return end > start && playlist.get(end - 1) == '\r' ? end - 1 : end;
+    }
+
+    /**
+     * Returns true if the line is a tag that belongs to the segment after it.
+     * @param playlist playlist buffer
+     * @param start start of the line
+     * @param end end of the line
+     * @return boolean
+     */
+    private static boolean isSegmentTagLine(final ByteBuffer playlist, final int start, final int end) {
+        final int lineEnd = trimLine(playlist, start, end);
+        for (byte[] tagName : SEGMENT_TAG_BYTES) {
+            if (isTagLine(playlist, start, lineEnd, tagName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if two lines hold the same bytes.
+     * @param playlist playlist buffer
+     * @param start1 start of the first line
+     * @param end1 end of the first line content
+     * @param start2 start of the second line
+     * @param end2 end of the second line content
+     * @return boolean
+     */
+    private static boolean sameLine(final ByteBuffer playlist, final int start1, final int end1, final int start2,
+            final int end2) {
+        if (end1 - start1 != end2 - start2) {
+            return false;
+        }
+        for (int i = 0; i < end1 - start1; i++) {
+            if (playlist.get(start1 + i) != playlist.get(start2 + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the position of a byte in a line, or -1 if it is not there.
+     * @param playlist playlist buffer
+     * @param start start of the line
+     * @param end end of the line content
+     * @param value byte to find
+     * @return position
+     */
+    private static int indexOf(final ByteBuffer playlist, final int start, final int end, final byte value) {
+        for (int i = start; i < end; i++) {
+            if (playlist.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the decimal-integer between two positions of a buffer.
+     * @param playlist playlist buffer
+     * @param start start of the number
+     * @param end end of the number
+     * @return number, or -1 if there is no number
+     */
+    private static long decimal(final ByteBuffer playlist, final int start, final int end) {
+        long value = -1;
+        for (int i = start; i < end; i++) {
+            final byte digit = playlist.get(i);
+            if (digit < '0' || digit > '9') {
+                return -1;
+            }
+            value = Math.max(value, 0) * 10 + digit - '0';
+        }
+        return value;
+    }
+
+    /**
+     * Returns true if the line is a tag with the given name.
+     * @param playlist playlist buffer
+     * @param start start of the line
+     * @param end end of the line content
+     * @param tagName tag name
+     * @return boolean
+     */
+    private static boolean isTagLine(final ByteBuffer playlist, final int start, final int end,
+            final byte[] tagName) {
+        final int nameEnd = start + 1 + tagName.length;
+        if (nameEnd > end || playlist.get(start) != '#') {
+            return false;
+        }
+        for (int i = 0; i < tagName.length; i++) {
+            if (playlist.get(start + 1 + i) != tagName[i]) {
+                return false;
+            }
+        }
+        return nameEnd == end || playlist.get(nameEnd) == ':';
+    }
+
+    /**
+     * Drops the line if it is a tag that the options do not select, or the
+     * URI of a dropped tag.
+     * @param playlist playlist string
+     * @param start start of the line
+     * @param end end of the line (exclusive)
+     * @return true if the line was dropped
+     */
+    private boolean skipLine(final String playlist, final int start, final int end) {
+        if (playlist.startsWith(TAGPREFIX, start)) {
+            int nameEnd = start + TAGPREFIX.length();
+            while (nameEnd < end && playlist.charAt(nameEnd) != ':') {
+                nameEnd++;
+            }
+            if (options.includes(playlist, start + 1, nameEnd)) {
+                return false;
+            }
+            skipTag(nameEnd - start - 1 == TagNames.EXTXSTREAMINF.length()
+                    && playlist.regionMatches(start + 1, TagNames.EXTXSTREAMINF, 0, nameEnd - start - 1));
+            return true;
+        }
+        return skipURI(end > start && playlist.charAt(start) != '#');
+    }
+
+    /**
+     * Drops the line if it is a tag that the options do not select, or the
+     * URI of a dropped tag.
+     * @param bytes playlist bytes
+     * @param start start of the line
+     * @param end end of the line (exclusive)
+     * @return true if the line was dropped
+     */
+    private boolean skipLine(final byte[] bytes, final int start, final int end) {
+        if (startsWith(bytes, start, end, TAGPREFIX_BYTES)) {
+            int nameEnd = start + TAGPREFIX_BYTES.length;
+            while (nameEnd < end && bytes[nameEnd] != ':') {
+                nameEnd++;
+            }
+            if (options.includes(bytes, start + 1, nameEnd)) {
+                return false;
+            }
+            skipTag(nameEnd - start - 1 == STREAMINF_BYTES.length && startsWith(bytes, start + 1, nameEnd,
+                    STREAMINF_BYTES));
+            return true;
+        }
+        return skipURI(end > start && bytes[start] != '#');
+    }
+
+    /**
+     * Counts a dropped tag line.  URIs that follow it are dropped too.
+     * @param variantStream true if the tag is a variant stream tag
+     */
+    private void skipTag(final boolean variantStream) {
+        lineCount++;
+        lastTag = null;
+        if (variantStream) {
+            isMasterPlaylist = true;
+        }
+    }
+
+    /**
+     * Counts a URI line that follows a dropped tag.
+     * @param uriLine true if the line is a URI
+     * @return true if the line was dropped
+     */
+    private boolean skipURI(final boolean uriLine) {
+        if (uriLine && lastTag == null) {
+            lineCount++;
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean startsWith(final byte[] bytes, final int start, final int end, final byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[start + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if none of the bytes has its high bit set.
+     * @param bytes bytes
+     * @param offset offset of the first byte
+     * @param length number of bytes
+     * @return boolean
+     */
+    private static boolean isAscii(final byte[] bytes, final int offset, final int length) {
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            if (bytes[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes UTF-8 bytes, rejecting malformed input rather than replacing
+     * it.
+     * @param bytes bytes
+     * @param offset offset of the first byte
+     * @param length number of bytes
+     * @return decoded string
+     * @throws IOException if the bytes are not valid UTF-8
+     */
+    private String decodeUtf8(final byte[] bytes, final int offset, final int length) throws IOException {
+        if (utf8Decoder == null) {
+            utf8Decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+        }
+        try {
+            return utf8Decoder.decode(ByteBuffer.wrap(bytes, offset, length)).toString();
+        } catch (CharacterCodingException ex) {
+            throw new IOException("Playlist line " + (lineCount + 1) + " is not valid UTF-8", ex);
         }
     }
 
@@ -124,10 +895,15 @@ public class PlaylistParser {
      * @return unparsed tag
      */
     private UnparsedTag processLine(final String line, final UnparsedTag lastTag) {
+        lineCount++;
 
-        if (line.matches(TAGPATTERN)) {
+        if (line.startsWith(TAGPREFIX)) {
             final UnparsedTag newUnparsedTag = new UnparsedTag(line);
             tags.add(newUnparsedTag);
+            if (listening) {
+                final String tagName = newUnparsedTag.getTagName();
+                listener.tagParsed(tagName, TagFactory.isKnownTag(tagName));
+            }
 
             // Check if this tag specifies a variant stream. If so, this is
             // a master playlist
@@ -136,9 +912,13 @@ public class PlaylistParser {
             }
 
             return newUnparsedTag;
-        } else if (line.matches(URIPATTERN) && (lastTag != null)) {
+        } else if (!line.isEmpty() && line.charAt(0) != '#' && (lastTag != null)) {
             // If a line doesn't start with a # it is a URI associated with the
             // last tag
+            if (lastTag.getURI() == null && (lastTag.getTagName().equals(TagNames.EXTINF)
+                    || lastTag.getTagName().equals(TagNames.EXTXBYTERANGE))) {
+                segmentCount++;
+            }
             lastTag.setURI(line);
             return lastTag;
         }
@@ -146,4 +926,29 @@ public class PlaylistParser {
         // Unexpected situation
         return lastTag;
     }
+
+    /**
+     * Read and line buffers of a thread.  A parse that starts while the
+     * buffers of its thread are in use, such as a parse started from a
+     * listener callback, gets buffers of its own.
+     */
+    private static final class ScratchBuffers {
+
+        private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+        private byte[] lineBuffer = new byte[INITIAL_LINE_BUFFER_SIZE];
+        private boolean inUse;
+
+        static ScratchBuffers acquire() {
+            final ScratchBuffers scratch = SCRATCH_BUFFERS.get();
+            if (scratch.inUse) {
+                return new ScratchBuffers();
+            }
+            scratch.inUse = true;
+            return scratch;
+        }
+
+        void release() {
+            inUse = false;
+        }
+    }
 }
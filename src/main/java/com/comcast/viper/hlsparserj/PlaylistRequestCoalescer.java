@@ -0,0 +1,189 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent requests for the same playlist URL into a single
+ * fetch.
+ *
+ * The first caller for a URL performs the fetch and parse.  Callers that
+ * ask for the same URL while that request is in flight wait for it and
+ * receive the same playlist instance.  Once the request completes, the next
+ * caller for the URL starts a new one; results are not cached.  Playlists
+ * are frozen before they are handed out, since every waiting caller shares
+ * them.  A failure is reported to every caller that waited on the request.
+ *
+ * URLs are compared by their string form.
+ */
+public class PlaylistRequestCoalescer {
+
+    /**
+     * Loads the playlist for a URL.  The coalescer calls it for the first
+     * caller of a URL only.
+     */
+    public interface Loader {
+
+        /**
+         * Starts loading a playlist.  A blocking loader may load the playlist
+         * in the calling thread and return a completed future.
+         * @param playlistURL URL pointing to a playlist
+         * @return future parsed playlist
+         */
+        CompletableFuture<AbstractPlaylist> load(URL playlistURL);
+    }
+
+    private final Loader loader;
+    private final ConcurrentHashMap<String, CompletableFuture<AbstractPlaylist>> inFlightRequests =
+            new ConcurrentHashMap<String, CompletableFuture<AbstractPlaylist>>();
+    private final LongAdder executedCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+
+    /**
+     * Constructor.
+     * @param loader loader of the playlists
+     */
+    public PlaylistRequestCoalescer(final Loader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Constructor for a coalescer that loads playlists with
+     * {@link PlaylistFactory#parsePlaylist(PlaylistVersion, URL, int, int, int)}
+     * in the thread of the first caller.
+     * @param playlistVersion version of the playlist (V12 is the default)
+     * @param connectTimeout timeout (ms) until a connection with the server is established
+     * @param requestTimeout timeout (ms) used when requesting a connection from the connection manager
+     * @param socketTimeout timeout (ms) waiting for data or a max period inactivity between 2 consecutive data packets
+     */
+    public PlaylistRequestCoalescer(final PlaylistVersion playlistVersion, final int connectTimeout,
+            final int requestTimeout, final int socketTimeout) {
+        this(playlistURL -> {
+            final CompletableFuture<AbstractPlaylist> result = new CompletableFuture<AbstractPlaylist>();
+            try {
+                result.complete(PlaylistFactory.parsePlaylist(playlistVersion, playlistURL,
+                        connectTimeout, requestTimeout, socketTimeout));
+            } catch (IOException | RuntimeException ex) {
+                result.completeExceptionally(ex);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Constructor for a coalescer that loads playlists with an
+     * {@link AsyncPlaylistFetcher}.
+     * @param fetcher fetcher
+     * @param playlistVersion version of the playlist (V12 is the default)
+     */
+    public PlaylistRequestCoalescer(final AsyncPlaylistFetcher fetcher, final PlaylistVersion playlistVersion) {
+        this(playlistURL -> fetcher.fetchAndParse(playlistVersion, playlistURL));
+    }
+
+    /**
+     * Returns the playlist at the given URL, joining a request for the same
+     * URL that is already in flight.  Cancelling the returned future does not
+     * affect other callers.
+     * @param playlistURL URL pointing to a playlist
+     * @return future frozen playlist
+     */
+    public CompletableFuture<AbstractPlaylist> fetchAndParse(final URL playlistURL) {
+        final String key = playlistURL.toString();
+        final CompletableFuture<AbstractPlaylist> request = new CompletableFuture<AbstractPlaylist>();
+        final CompletableFuture<AbstractPlaylist> inFlight = inFlightRequests.putIfAbsent(key, request);
+        if (inFlight != null) {
+            coalescedCount.increment();
+            return inFlight.thenApply(playlist -> playlist);
+        }
+
+        executedCount.increment();
+        CompletableFuture<AbstractPlaylist> loaded;
+        try {
+            loaded = loader.load(playlistURL);
+        } catch (RuntimeException ex) {
+            loaded = new CompletableFuture<AbstractPlaylist>();
+            loaded.completeExceptionally(ex);
+        }
+        loaded.whenComplete((playlist, ex) -> {
+            inFlightRequests.remove(key, request);
+            if (ex instanceof CompletionException && ex.getCause() != null) {
+                request.completeExceptionally(ex.getCause());
+            } else if (ex != null) {
+                request.completeExceptionally(ex);
+            } else {
+                request.complete(playlist.freeze());
+            }
+        });
+        return request.thenApply(playlist -> playlist);
+    }
+
+    /**
+     * Returns the playlist at the given URL, blocking until it is available.
+     * If a request for the URL is already in flight, waits for it instead of
+     * starting another one.
+     * @param playlistURL URL pointing to a playlist
+     * @return frozen playlist
+     * @throws IOException on connection and parsing exceptions
+     */
+    public AbstractPlaylist parsePlaylist(final URL playlistURL) throws IOException {
+        try {
+            return fetchAndParse(playlistURL).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + playlistURL);
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Returns the number of requests that were passed to the loader.
+     * @return executed request count
+     */
+    public long getExecutedCount() {
+        return executedCount.sum();
+    }
+
+    /**
+     * Returns the number of requests that joined a request already in flight.
+     * @return coalesced request count
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    /**
+     * Returns the number of URLs with a request in flight.
+     * @return in-flight request count
+     */
+    public int getInFlightCount() {
+        return inFlightRequests.size();
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import com.comcast.viper.hlsparserj.tags.UnparsedTag;
+
+/**
+ * Persistent tag list of a media playlist, shared between successive
+ * snapshots of a live playlist.
+ *
+ * The list has three parts: the header, up to the first segment tag, the
+ * segment tags, and the trailer after the last segment.  The header and
+ * trailer are small and held in arrays of their own.  The segment tags are
+ * held in fixed-size chunks.  A store derived from another one with
+ * {@link #share} reuses the chunks that hold the segments the two have in
+ * common: expired segments are dropped by moving the start offset past
+ * them, and new segments are added in new chunks.  Only the chunk array and
+ * the partly filled chunk at the end of the shared range are copied, so a
+ * history of snapshots holds each segment tag once, in one chunk, however
+ * many snapshots contain it.
+ *
+ * A chunk may still refer to up to CHUNK_SIZE - 1 expired tags before the
+ * offset of a store that uses it.  Stores are immutable and hold frozen
+ * tags only.
+ */
+final class SegmentStore extends AbstractList<UnparsedTag> implements RandomAccess {
+
+    static final int CHUNK_SHIFT = 5;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final UnparsedTag[] NO_TAGS = new UnparsedTag[0];
+    private static final UnparsedTag[][] NO_CHUNKS = new UnparsedTag[0][];
+    private static final SegmentStore EMPTY = new SegmentStore(NO_TAGS, NO_CHUNKS, 0, 0, NO_TAGS);
+
+    private final UnparsedTag[] header;
+    private final UnparsedTag[][] chunks;
+    private final int offset;
+    private final int segmentTagCount;
+    private final UnparsedTag[] trailer;
+
+    private SegmentStore(final UnparsedTag[] header, final UnparsedTag[][] chunks, final int offset,
+            final int segmentTagCount, final UnparsedTag[] trailer) {
+        this.header = header;
+        this.chunks = chunks;
+        this.offset = offset;
+        this.segmentTagCount = segmentTagCount;
+        this.trailer = trailer;
+    }
+
+    /**
+     * Returns a store that shares nothing with another store.
+     * @param header frozen header tags
+     * @param segmentTags frozen segment tags
+     * @param trailer frozen trailer tags
+     * @return store
+     */
+    static SegmentStore of(final List<UnparsedTag> header, final List<UnparsedTag> segmentTags,
+            final List<UnparsedTag> trailer) {
+        return EMPTY.share(header, 0, 0, segmentTags, trailer);
+    }
+
+    /**
+     * Returns a store whose segment tags are the segment tags of this store
+     * from fromIndex, inclusive, to toIndex, exclusive, followed by the
+     * appended tags.  The chunks holding the shared segment tags are reused.
+     * @param newHeader frozen header tags of the new store
+     * @param fromIndex index of the first shared segment tag
+     * @param toIndex index after the last shared segment tag
+     * @param appended frozen segment tags that follow the shared ones
+     * @param newTrailer frozen trailer tags of the new store
+     * @return store
+     */
+    SegmentStore share(final List<UnparsedTag> newHeader, final int fromIndex, final int toIndex,
+            final List<UnparsedTag> appended, final List<UnparsedTag> newTrailer) {
+        if (fromIndex < 0 || toIndex > segmentTagCount || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("Segment tag range " + fromIndex + " to " + toIndex
+                    + " is outside of 0 to " + segmentTagCount);
+        }
+        final int sharedCount = toIndex - fromIndex;
+        final int start = offset + fromIndex;
+        final int firstChunk = start >>> CHUNK_SHIFT;
+        final int newOffset = sharedCount == 0 ? 0 : start & CHUNK_MASK;
+        final int sharedEnd = newOffset + sharedCount;
+        final int newCount = sharedCount + appended.size();
+        final UnparsedTag[][] newChunks = new UnparsedTag[(newOffset + newCount + CHUNK_MASK) >>> CHUNK_SHIFT][];
+
+        // Chunks of the shared range; a partly used last chunk is copied
+        // if new tags follow it, since its free slots may be in use elsewhere
+        for (int i = 0; i < (sharedEnd + CHUNK_MASK) >>> CHUNK_SHIFT; i++) {
+            newChunks[i] = chunks[firstChunk + i];
+        }
+        if ((sharedEnd & CHUNK_MASK) != 0 && !appended.isEmpty()) {
+            final int last = sharedEnd >>> CHUNK_SHIFT;
+            final UnparsedTag[] copy = new UnparsedTag[CHUNK_SIZE];
+            System.arraycopy(newChunks[last], 0, copy, 0, sharedEnd & CHUNK_MASK);
+            newChunks[last] = copy;
+        }
+
+        int position = sharedEnd;
+        for (int i = 0; i < appended.size(); i++) {
+            final int chunk = position >>> CHUNK_SHIFT;
+            if (newChunks[chunk] == null) {
+                newChunks[chunk] = new UnparsedTag[CHUNK_SIZE];
+            }
+            newChunks[chunk][position & CHUNK_MASK] = appended.get(i);
+            position++;
+        }
+
+        return new SegmentStore(newHeader.toArray(NO_TAGS), newChunks, newOffset, newCount,
+                newTrailer.toArray(NO_TAGS));
+    }
+
+    @Override
+    public UnparsedTag get(final int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " is outside of 0 to " + size());
+        }
+        if (index < header.length) {
+            return header[index];
+        }
+        final int segmentIndex = index - header.length;
+        if (segmentIndex < segmentTagCount) {
+            final int position = offset + segmentIndex;
+            return chunks[position >>> CHUNK_SHIFT][position & CHUNK_MASK];
+        }
+        return trailer[segmentIndex - segmentTagCount];
+    }
+
+    @Override
+    public int size() {
+        return header.length + segmentTagCount + trailer.length;
+    }
+
+    /**
+     * Returns the number of header tags.
+     * @return header size
+     */
+    int getHeaderSize() {
+        return header.length;
+    }
+
+    /**
+     * Returns the number of segment tags.
+     * @return segment tag count
+     */
+    int getSegmentTagCount() {
+        return segmentTagCount;
+    }
+
+    /**
+     * Returns the chunks of the store.  The array must not be modified.
+     * @return chunks
+     */
+    UnparsedTag[][] getChunks() {
+        return chunks;
+    }
+}
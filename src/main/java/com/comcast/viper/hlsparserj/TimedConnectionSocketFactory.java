@@ -0,0 +1,88 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import org.apache.http.HttpHost;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Connection socket factory that measures how long connecting takes.  The
+ * duration (ns), including the TLS handshake for secure connections, is
+ * stored in the HTTP context of the request under {@link #CONNECT_NANOS}.
+ */
+class TimedConnectionSocketFactory implements LayeredConnectionSocketFactory {
+
+    /**
+     * Context attribute holding the connect duration (ns) as a Long.
+     */
+    static final String CONNECT_NANOS = "hlsparserj.connect-nanos";
+
+    private final ConnectionSocketFactory delegate;
+
+    /**
+     * Constructor.
+     * @param delegate factory that creates and connects the sockets
+     */
+    TimedConnectionSocketFactory(final ConnectionSocketFactory delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Returns a registry of timed socket factories for http and https.
+     * @return registry
+     */
+    static Registry<ConnectionSocketFactory> createRegistry() {
+        return RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", new TimedConnectionSocketFactory(PlainConnectionSocketFactory.getSocketFactory()))
+                .register("https", new TimedConnectionSocketFactory(SSLConnectionSocketFactory.getSocketFactory()))
+                .build();
+    }
+
+    @Override
+    public Socket createSocket(final HttpContext context) throws IOException {
+        return delegate.createSocket(context);
+    }
+
+    @Override
+    public Socket connectSocket(final int connectTimeout, final Socket sock, final HttpHost host,
+            final InetSocketAddress remoteAddress, final InetSocketAddress localAddress,
+            final HttpContext context) throws IOException {
+        final long start = System.nanoTime();
+        final Socket socket = delegate.connectSocket(connectTimeout, sock, host, remoteAddress, localAddress,
+                context);
+        context.setAttribute(CONNECT_NANOS, System.nanoTime() - start);
+        return socket;
+    }
+
+    @Override
+    public Socket createLayeredSocket(final Socket socket, final String target, final int port,
+            final HttpContext context) throws IOException {
+        if (!(delegate instanceof LayeredConnectionSocketFactory)) {
+            throw new IOException("Socket factory does not support layering");
+        }
+        return ((LayeredConnectionSocketFactory) delegate).createLayeredSocket(socket, target, port, context);
+    }
+}
@@ -0,0 +1,270 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Streaming implementation of the XXH64 hash function.
+ *
+ * XXH64 is a fast non-cryptographic hash with good dispersion.  It is used
+ * to fingerprint playlist bodies: two bodies with the same fingerprint can
+ * be taken to be identical, so an unchanged playlist does not have to be
+ * parsed again.  It must not be relied on to detect deliberate tampering.
+ *
+ * Bytes are hashed as they are passed to {@link #update}, so a body can be
+ * fingerprinted while it is read.  Instances are not thread-safe.
+ */
+public final class XxHash64 {
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private static final int STRIPE_LENGTH = 32;
+
+    private final long seed;
+    private final byte[] buffer = new byte[STRIPE_LENGTH];
+    private int bufferLength;
+    private long totalLength;
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+
+    /**
+     * Constructor for a hash with a seed of 0.
+     */
+    public XxHash64() {
+        this(0);
+    }
+
+    /**
+     * Constructor.
+     * @param seed seed
+     */
+    public XxHash64(final long seed) {
+        this.seed = seed;
+        reset();
+    }
+
+    /**
+     * Returns the hash of a range of bytes.
+     * @param bytes bytes
+     * @param offset offset of the first byte
+     * @param length number of bytes
+     * @return hash
+     */
+    public static long hash(final byte[] bytes, final int offset, final int length) {
+        final XxHash64 hash = new XxHash64();
+        hash.update(bytes, offset, length);
+        return hash.getValue();
+    }
+
+    /**
+     * Returns the hash of the UTF-8 encoding of a string.
+     * @param string string
+     * @return hash
+     */
+    public static long hashUtf8(final CharSequence string) {
+        final XxHash64 hash = new XxHash64();
+        hash.updateUtf8(string);
+        return hash.getValue();
+    }
+
+    /**
+     * Starts a new hash.
+     */
+    public void reset() {
+        v1 = seed + PRIME1 + PRIME2;
+        v2 = seed + PRIME2;
+        v3 = seed;
+        v4 = seed - PRIME1;
+        bufferLength = 0;
+        totalLength = 0;
+    }
+
+    /**
+     * Adds a range of bytes to the hash.
+     * @param bytes bytes
+     * @param offset offset of the first byte
+     * @param length number of bytes
+     */
+    public void update(final byte[] bytes, final int offset, final int length) {
+        totalLength += length;
+        int position = offset;
+        final int end = offset + length;
+
+        if (bufferLength > 0) {
+            final int count = Math.min(STRIPE_LENGTH - bufferLength, length);
+            System.arraycopy(bytes, position, buffer, bufferLength, count);
+            bufferLength += count;
+            position += count;
+            if (bufferLength < STRIPE_LENGTH) {
+                return;
+            }
+            processStripe(buffer, 0);
+            bufferLength = 0;
+        }
+
+        while (end - position >= STRIPE_LENGTH) {
+            processStripe(bytes, position);
+            position += STRIPE_LENGTH;
+        }
+
+        if (position < end) {
+            bufferLength = end - position;
+            System.arraycopy(bytes, position, buffer, 0, bufferLength);
+        }
+    }
+
+    /**
+     * Adds the bytes of a buffer, from its position to its limit, to the
+     * hash.  The position of the buffer is not changed.
+     * @param bytes buffer
+     */
+    public void update(final ByteBuffer bytes) {
+        if (bytes.hasArray()) {
+            update(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+            return;
+        }
+        final ByteBuffer source = bytes.duplicate();
+        final byte[] chunk = new byte[Math.min(source.remaining(), 8192)];
+        while (source.hasRemaining()) {
+            final int count = Math.min(source.remaining(), chunk.length);
+            source.get(chunk, 0, count);
+            update(chunk, 0, count);
+        }
+    }
+
+    /**
+     * Adds the UTF-8 encoding of a string to the hash, without encoding the
+     * whole string first.  Unpaired surrogates are encoded as '?', as
+     * String.getBytes does.
+     * @param string string
+     */
+    public void updateUtf8(final CharSequence string) {
+        final byte[] chunk = new byte[256];
+        int count = 0;
+        final int length = string.length();
+        for (int i = 0; i < length; i++) {
+            if (count > chunk.length - 4) {
+                update(chunk, 0, count);
+                count = 0;
+            }
+            final char c = string.charAt(i);
+            if (c < 0x80) {
+                chunk[count++] = (byte) c;
+            } else if (c < 0x800) {
+                chunk[count++] = (byte) (0xC0 | (c >> 6));
+                chunk[count++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(string.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, string.charAt(++i));
+                chunk[count++] = (byte) (0xF0 | (codePoint >> 18));
+                chunk[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                chunk[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                chunk[count++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                chunk[count++] = '?';
+            } else {
+                chunk[count++] = (byte) (0xE0 | (c >> 12));
+                chunk[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                chunk[count++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        update(chunk, 0, count);
+    }
+
+    /**
+     * Returns the hash of the bytes added so far.  More bytes can be added
+     * afterwards.
+     * @return hash
+     */
+    public long getValue() {
+        long hash;
+        if (totalLength >= STRIPE_LENGTH) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12)
+                    + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = seed + PRIME5;
+        }
+        hash += totalLength;
+
+        int position = 0;
+        while (position + 8 <= bufferLength) {
+            hash ^= round(0, getLong(buffer, position));
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+            position += 8;
+        }
+        if (position + 4 <= bufferLength) {
+            hash ^= (getInt(buffer, position) & 0xFFFFFFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+            position += 4;
+        }
+        while (position < bufferLength) {
+            hash ^= (buffer[position] & 0xFFL) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+            position++;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    private void processStripe(final byte[] bytes, final int offset) {
+        v1 = round(v1, getLong(bytes, offset));
+        v2 = round(v2, getLong(bytes, offset + 8));
+        v3 = round(v3, getLong(bytes, offset + 16));
+        v4 = round(v4, getLong(bytes, offset + 24));
+    }
+
+    private static long round(final long accumulator, final long input) {
+        return Long.rotateLeft(accumulator + input * PRIME2, 31) * PRIME1;
+    }
+
+    private static long mergeRound(final long hash, final long value) {
+        return (hash ^ round(0, value)) * PRIME1 + PRIME4;
+    }
+
+    private static long getLong(final byte[] bytes, final int offset) {
+        return (bytes[offset] & 0xFFL)
+                | (bytes[offset + 1] & 0xFFL) << 8
+                | (bytes[offset + 2] & 0xFFL) << 16
+                | (bytes[offset + 3] & 0xFFL) << 24
+                | (bytes[offset + 4] & 0xFFL) << 32
+                | (bytes[offset + 5] & 0xFFL) << 40
+                | (bytes[offset + 6] & 0xFFL) << 48
+                | (bytes[offset + 7] & 0xFFL) << 56;
+    }
+
+    private static int getInt(final byte[] bytes, final int offset) {
+        return (bytes[offset] & 0xFF)
+                | (bytes[offset + 1] & 0xFF) << 8
+                | (bytes[offset + 2] & 0xFF) << 16
+                | (bytes[offset + 3] & 0xFF) << 24;
+    }
+}
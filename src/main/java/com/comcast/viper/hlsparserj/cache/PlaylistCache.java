@@ -0,0 +1,434 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.cache;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import com.comcast.viper.hlsparserj.AbstractPlaylist;
+import com.comcast.viper.hlsparserj.MediaPlaylist;
+import com.comcast.viper.hlsparserj.PlaylistFactory;
+import com.comcast.viper.hlsparserj.PlaylistVersion;
+import com.comcast.viper.hlsparserj.XxHash64;
+import com.comcast.viper.hlsparserj.tags.UnparsedTag;
+import com.comcast.viper.hlsparserj.tags.media.PlaylistType;
+import com.comcast.viper.hlsparserj.tags.media.TargetDuration;
+
+/**
+ * Bounded cache of parsed playlists, keyed by URL.
+ *
+ * The cache is bounded both by the number of entries and by their total
+ * weight, which is an estimate of the memory held by each playlist.  When
+ * either bound is exceeded the least recently used entries are evicted.
+ *
+ * Every entry also expires after a time to live that depends on the
+ * playlist: master playlists and media playlists that will not change (a
+ * PLAYLIST-TYPE of VOD, or an ENDLIST tag) live for the VOD time to live,
+ * while live media playlists expire after their target duration, which is
+ * when the origin may publish a new version.
+ *
+ * When a playlist body is parsed through the cache, the fingerprint of the
+ * body is kept with the entry.  A later body for the same URL with the same
+ * fingerprint reuses the cached playlist instead of parsing it again, even
+ * if the entry had expired.
+ *
+ * The entries are spread over independently locked segments, so threads
+ * working on different URLs rarely contend.  The bounds are divided evenly
+ * between the segments.  Cached playlists are frozen and can be shared
+ * between threads.
+ */
+public class PlaylistCache {
+
+    /**
+     * Default time to live (ms) of master and VOD playlists.
+     */
+    public static final long DEFAULT_VOD_TTL = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Default number of independently locked segments.
+     */
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    /**
+     * Time to live (ms) of live playlists without a target duration.
+     */
+    static final long DEFAULT_LIVE_TTL = 1000;
+
+    private static final int PLAYLIST_OVERHEAD = 128;
+    private static final int TAG_OVERHEAD = 160;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final int maxSegmentEntries;
+    private final long maxSegmentWeight;
+    private final long vodTimeToLiveNanos;
+    private final LongSupplier clock;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder expirationCount = new LongAdder();
+
+    /**
+     * Constructor.  Uses the default VOD time to live and concurrency level.
+     * @param maxEntries maximum number of cached playlists
+     * @param maxWeight maximum total estimated size (bytes) of the cached playlists
+     */
+    public PlaylistCache(final int maxEntries, final long maxWeight) {
+        this(maxEntries, maxWeight, DEFAULT_VOD_TTL, TimeUnit.MILLISECONDS, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Constructor.
+     * @param maxEntries maximum number of cached playlists
+     * @param maxWeight maximum total estimated size (bytes) of the cached playlists
+     * @param vodTimeToLive time to live of master and VOD playlists
+     * @param unit unit of the VOD time to live
+     * @param concurrencyLevel number of independently locked segments; rounded up to a power of two
+     */
+    public PlaylistCache(final int maxEntries, final long maxWeight, final long vodTimeToLive,
+            final TimeUnit unit, final int concurrencyLevel) {
+        this(maxEntries, maxWeight, vodTimeToLive, unit, concurrencyLevel, System::nanoTime);
+    }
+
+    /**
+     * Constructor with a custom clock, for tests.
+     * @param maxEntries maximum number of cached playlists
+     * @param maxWeight maximum total estimated size (bytes) of the cached playlists
+     * @param vodTimeToLive time to live of master and VOD playlists
+     * @param unit unit of the VOD time to live
+     * @param concurrencyLevel number of independently locked segments; rounded up to a power of two
+     * @param clock source of the current time (ns)
+     */
+    PlaylistCache(final int maxEntries, final long maxWeight, final long vodTimeToLive,
+            final TimeUnit unit, final int concurrencyLevel, final LongSupplier clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be greater than 0");
+        }
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("maxWeight must be greater than 0");
+        }
+        if (concurrencyLevel <= 0 || concurrencyLevel > (1 << 16)) {
+            throw new IllegalArgumentException("concurrencyLevel must be between 1 and 2^16");
+        }
+
+        int segmentCount = 1;
+        while (segmentCount < concurrencyLevel && segmentCount < maxEntries) {
+            segmentCount <<= 1;
+        }
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment();
+        }
+        segmentMask = segmentCount - 1;
+        maxSegmentEntries = maxEntries / segmentCount + (maxEntries % segmentCount == 0 ? 0 : 1);
+        maxSegmentWeight = maxWeight / segmentCount + (maxWeight % segmentCount == 0 ? 0 : 1);
+        vodTimeToLiveNanos = unit.toNanos(vodTimeToLive);
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the cached playlist for the given URL, or null if there is none
+     * or it has expired.
+     * @param playlistURL URL of the playlist
+     * @return frozen playlist, or null
+     */
+    public AbstractPlaylist get(final URL playlistURL) {
+        final String key = playlistURL.toString();
+        final Segment segment = segmentFor(key);
+        final long now = clock.getAsLong();
+        synchronized (segment) {
+            final Entry entry = segment.map.get(key);
+            if (entry != null) {
+                if (entry.expiresAt - now > 0) {
+                    hitCount.increment();
+                    return entry.playlist;
+                }
+                segment.remove(key);
+                expirationCount.increment();
+            }
+        }
+        missCount.increment();
+        return null;
+    }
+
+    /**
+     * Caches a playlist for the given URL, replacing any playlist cached for
+     * it.  The playlist is frozen.  A playlist that is heavier than its share
+     * of the weight bound is not cached.
+     * @param playlistURL URL of the playlist
+     * @param playlist playlist
+     * @return the frozen playlist
+     */
+    public AbstractPlaylist put(final URL playlistURL, final AbstractPlaylist playlist) {
+        return put(playlistURL, playlist, false, 0);
+    }
+
+    /**
+     * Returns the parsed playlist for a body downloaded from the given URL.
+     * If the body has the same hash as the body of the playlist cached for
+     * the URL, the cached playlist is returned and its time to live starts
+     * over.  Otherwise the body is parsed and the result is cached.
+     * @param playlistVersion version of the playlist (V12 is the default)
+     * @param playlistURL URL the body was downloaded from
+     * @param playlistString playlist body
+     * @return frozen playlist
+     */
+    public AbstractPlaylist parsePlaylist(final PlaylistVersion playlistVersion, final URL playlistURL,
+            final String playlistString) {
+        final AbstractPlaylist cached = getUnchanged(playlistURL, XxHash64.hashUtf8(playlistString));
+        if (cached != null) {
+            return cached;
+        }
+        final AbstractPlaylist playlist = PlaylistFactory.parsePlaylist(playlistVersion, playlistString);
+        return put(playlistURL, playlist, true, playlist.getFingerprint());
+    }
+
+    /**
+     * Returns the parsed playlist for a body downloaded from the given URL.
+     * If the body has the same fingerprint as the body of the playlist cached
+     * for the URL, the cached playlist is returned, without decoding the
+     * body, and its time to live starts over.  Otherwise the body is parsed
+     * and the result is cached.
+     * @param playlistVersion version of the playlist (V12 is the default)
+     * @param playlistURL URL the body was downloaded from
+     * @param playlistBody UTF-8 bytes of the playlist body
+     * @return frozen playlist
+     * @throws IOException if the body is not valid UTF-8
+     */
+    public AbstractPlaylist parsePlaylist(final PlaylistVersion playlistVersion, final URL playlistURL,
+            final byte[] playlistBody) throws IOException {
+        final AbstractPlaylist cached = getUnchanged(playlistURL,
+                XxHash64.hash(playlistBody, 0, playlistBody.length));
+        if (cached != null) {
+            return cached;
+        }
+        final AbstractPlaylist playlist = PlaylistFactory.parsePlaylistIfChanged(playlistVersion, playlistBody, null);
+        return put(playlistURL, playlist, true, playlist.getFingerprint());
+    }
+
+    /**
+     * Removes the playlist cached for the given URL, if any.
+     * @param playlistURL URL of the playlist
+     */
+    public void invalidate(final URL playlistURL) {
+        final String key = playlistURL.toString();
+        final Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.remove(key);
+        }
+    }
+
+    /**
+     * Removes every cached playlist.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.map.clear();
+                segment.weight = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of cached playlists, including expired playlists
+     * that have not been removed yet.
+     * @return entry count
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.map.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the total estimated size (bytes) of the cached playlists.
+     * @return weight
+     */
+    public long getWeight() {
+        long weight = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                weight += segment.weight;
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * Returns the hit, miss, eviction and expiration counts of the cache.
+     * @return statistics
+     */
+    public CacheStats getStats() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum(), expirationCount.sum());
+    }
+
+    /**
+     * Returns an estimate of the memory (bytes) held by a playlist.  The
+     * estimate counts the text of each tag and a fixed overhead per tag and
+     * does not parse any attributes.
+     * @param playlist playlist
+     * @return estimated size
+     */
+    public static long estimateWeight(final AbstractPlaylist playlist) {
+        final List<UnparsedTag> tags = playlist.getTags();
+        long weight = PLAYLIST_OVERHEAD;
+        for (int i = 0; i < tags.size(); i++) {
+            final UnparsedTag tag = tags.get(i);
+            weight += TAG_OVERHEAD;
+            if (tag.getRawTag() != null) {
+                weight += 2L * tag.getRawTag().length();
+            }
+            if (tag.getURI() != null) {
+                weight += 2L * tag.getURI().length();
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * Returns the time to live (ns) of a playlist.
+     * @param playlist playlist
+     * @return time to live
+     */
+    long timeToLive(final AbstractPlaylist playlist) {
+        if (playlist.isMasterPlaylist()) {
+            return vodTimeToLiveNanos;
+        }
+        final MediaPlaylist mediaPlaylist = (MediaPlaylist) playlist;
+        final PlaylistType playlistType = mediaPlaylist.getPlaylistType();
+        if ((playlistType != null && "VOD".equals(playlistType.getType())) || mediaPlaylist.getEndList()) {
+            return vodTimeToLiveNanos;
+        }
+        final TargetDuration targetDuration = mediaPlaylist.getTargetDuration();
+        if (targetDuration == null) {
+            return TimeUnit.MILLISECONDS.toNanos(DEFAULT_LIVE_TTL);
+        }
+        return TimeUnit.SECONDS.toNanos(targetDuration.getDuration());
+    }
+
+    /**
+     * Returns the playlist cached for the given URL if it was parsed from a
+     * body with the given fingerprint, and starts its time to live over.
+     * Counts a hit or a miss.
+     * @param playlistURL URL of the playlist
+     * @param fingerprint fingerprint of the new body
+     * @return frozen playlist, or null
+     */
+    private AbstractPlaylist getUnchanged(final URL playlistURL, final long fingerprint) {
+        final String key = playlistURL.toString();
+        final Segment segment = segmentFor(key);
+        synchronized (segment) {
+            final Entry entry = segment.map.get(key);
+            if (entry != null && entry.hasContentHash && entry.contentHash == fingerprint) {
+                entry.expiresAt = clock.getAsLong() + timeToLive(entry.playlist);
+                hitCount.increment();
+                return entry.playlist;
+            }
+        }
+        missCount.increment();
+        return null;
+    }
+
+    private AbstractPlaylist put(final URL playlistURL, final AbstractPlaylist playlist,
+            final boolean hasContentHash, final long contentHash) {
+        playlist.freeze();
+        final String key = playlistURL.toString();
+        final Segment segment = segmentFor(key);
+        final long weight = estimateWeight(playlist);
+        final long expiresAt = clock.getAsLong() + timeToLive(playlist);
+        synchronized (segment) {
+            segment.remove(key);
+            if (weight <= maxSegmentWeight) {
+                segment.map.put(key, new Entry(playlist, weight, expiresAt, hasContentHash, contentHash));
+                segment.weight += weight;
+                evict(segment);
+            }
+        }
+        return playlist;
+    }
+
+    /**
+     * Removes least recently used entries from a segment until it is within
+     * its bounds.  Called with the segment lock held.
+     * @param segment segment
+     */
+    private void evict(final Segment segment) {
+        final Iterator<Entry> iterator = segment.map.values().iterator();
+        while ((segment.map.size() > maxSegmentEntries || segment.weight > maxSegmentWeight)
+                && iterator.hasNext()) {
+            final Entry entry = iterator.next();
+            iterator.remove();
+            segment.weight -= entry.weight;
+            evictionCount.increment();
+        }
+    }
+
+    private Segment segmentFor(final String key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return segments[hash & segmentMask];
+    }
+
+    /**
+     * Cached playlist and its bookkeeping.
+     */
+    private static final class Entry {
+
+        private final AbstractPlaylist playlist;
+        private final long weight;
+        private final boolean hasContentHash;
+        private final long contentHash;
+        private long expiresAt;
+
+        Entry(final AbstractPlaylist playlist, final long weight, final long expiresAt,
+                final boolean hasContentHash, final long contentHash) {
+            this.playlist = playlist;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+            this.hasContentHash = hasContentHash;
+            this.contentHash = contentHash;
+        }
+    }
+
+    /**
+     * Independently locked part of the cache.  The map is kept in access
+     * order, so its first entry is the least recently used.
+     */
+    private static final class Segment {
+
+        private final Map<String, Entry> map = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+        private long weight;
+
+        void remove(final String key) {
+            final Entry entry = map.remove(key);
+            if (entry != null) {
+                weight -= entry.weight;
+            }
+        }
+    }
+}
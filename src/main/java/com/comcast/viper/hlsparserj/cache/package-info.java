@@ -0,0 +1,5 @@
+/**
+ * Classes for caching parsed playlists.
+ */
+
+package com.comcast.viper.hlsparserj.cache;
@@ -0,0 +1,176 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.generator;
+
+import java.io.IOException;
+
+/**
+ * Generates spec-valid master playlists for load tests and benchmarks.
+ *
+ * The variant streams form a ladder whose bandwidths grow geometrically
+ * from the minimum to the maximum bandwidth, each moved up or down by up to
+ * 5% by the seeded random values.  Resolutions follow the ladder from 180p
+ * to 1080p.  The output is fully determined by the seed and the settings,
+ * and is written line by line to an {@link Appendable}.
+ *
+ * By default a ladder of 5 variants from 200 kbps to 8 Mbps with an English
+ * audio rendition is generated.
+ */
+public class MasterPlaylistGenerator {
+
+    private static final int BANDWIDTH_STREAM = 1;
+
+    private final SeededValues values;
+    private int variantCount = 5;
+    private int minBandwidth = 200000;
+    private int maxBandwidth = 8000000;
+    private String[] audioLanguages = {"en"};
+    private boolean iFrameStreams;
+    private String uriPrefix = "";
+
+    /**
+     * Constructor.
+     * @param seed seed of the generated values
+     */
+    public MasterPlaylistGenerator(final long seed) {
+        values = new SeededValues(seed);
+    }
+
+    /**
+     * Sets the variant ladder.
+     * @param variantCount number of variant streams
+     * @param minBandwidth bandwidth (bps) of the lowest variant
+     * @param maxBandwidth bandwidth (bps) of the highest variant
+     * @return this generator
+     */
+    public MasterPlaylistGenerator setVariants(final int variantCount, final int minBandwidth,
+            final int maxBandwidth) {
+        if (variantCount <= 0) {
+            throw new IllegalArgumentException("variantCount must be greater than 0");
+        }
+        if (minBandwidth <= 0 || maxBandwidth < minBandwidth) {
+            throw new IllegalArgumentException("bandwidths must be positive and in order");
+        }
+        this.variantCount = variantCount;
+        this.minBandwidth = minBandwidth;
+        this.maxBandwidth = maxBandwidth;
+        return this;
+    }
+
+    /**
+     * Sets the languages of the audio renditions.  The first one is the
+     * default.  With no languages, the variants carry their own audio.
+     * @param audioLanguages language tags
+     * @return this generator
+     */
+    public MasterPlaylistGenerator setAudioLanguages(final String... audioLanguages) {
+        this.audioLanguages = audioLanguages.clone();
+        return this;
+    }
+
+    /**
+     * Adds an EXT-X-I-FRAME-STREAM-INF tag for every variant.
+     * @param iFrameStreams true for I-frame streams
+     * @return this generator
+     */
+    public MasterPlaylistGenerator setIFrameStreams(final boolean iFrameStreams) {
+        this.iFrameStreams = iFrameStreams;
+        return this;
+    }
+
+    /**
+     * Sets the prefix of the media playlist URIs.
+     * @param uriPrefix URI prefix, such as "http://example.com/"
+     * @return this generator
+     */
+    public MasterPlaylistGenerator setURIPrefix(final String uriPrefix) {
+        this.uriPrefix = uriPrefix;
+        return this;
+    }
+
+    /**
+     * Returns the bandwidth (bps) of a variant.
+     * @param index index of the variant in the ladder, from the lowest
+     * @return bandwidth
+     */
+    public int getBandwidth(final int index) {
+        final double position = variantCount == 1 ? 0 : (double) index / (variantCount - 1);
+        final double ladder = minBandwidth * Math.pow((double) maxBandwidth / minBandwidth, position);
+        final double jitter = 0.95 + 0.1 * values.nextDouble(BANDWIDTH_STREAM, index);
+        return (int) Math.min(ladder * jitter, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the generated playlist as a string.
+     * @return playlist
+     */
+    public String generate() {
+        final StringBuilder builder = new StringBuilder(variantCount * 256 + 512);
+        try {
+            write(builder);
+        } catch (IOException ex) {
+            // StringBuilder does not throw
+            throw new IllegalStateException(ex);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Writes the generated playlist.
+     * @param out destination
+     * @throws IOException if the destination throws
+     */
+    public void write(final Appendable out) throws IOException {
+        out.append("#EXTM3U\n");
+        out.append("#EXT-X-VERSION:").append(iFrameStreams ? "4" : "3").append('\n');
+
+        for (int i = 0; i < audioLanguages.length; i++) {
+            final String language = audioLanguages[i];
+            out.append("#EXT-X-MEDIA:TYPE=AUDIO,GROUP-ID=\"aac\",LANGUAGE=\"").append(language)
+                    .append("\",NAME=\"").append(language).append("\",DEFAULT=").append(i == 0 ? "YES" : "NO")
+                    .append(",AUTOSELECT=YES,URI=\"").append(uriPrefix).append("audio_").append(language)
+                    .append("/index.m3u8\"\n");
+        }
+
+        for (int i = 0; i < variantCount; i++) {
+            final int bandwidth = getBandwidth(i);
+            out.append("#EXT-X-STREAM-INF:PROGRAM-ID=1,BANDWIDTH=").append(String.valueOf(bandwidth))
+                    .append(",CODECS=\"avc1.4d401f,mp4a.40.2\",RESOLUTION=");
+            appendResolution(out, i);
+            if (audioLanguages.length > 0) {
+                out.append(",AUDIO=\"aac\"");
+            }
+            out.append('\n');
+            out.append(uriPrefix).append("video_").append(String.valueOf(i)).append("/index.m3u8\n");
+        }
+
+        if (iFrameStreams) {
+            for (int i = 0; i < variantCount; i++) {
+                out.append("#EXT-X-I-FRAME-STREAM-INF:BANDWIDTH=").append(String.valueOf(getBandwidth(i) / 10))
+                        .append(",CODECS=\"avc1.4d401f\",RESOLUTION=");
+                appendResolution(out, i);
+                out.append(",URI=\"").append(uriPrefix).append("video_").append(String.valueOf(i))
+                        .append("/iframes.m3u8\"\n");
+            }
+        }
+    }
+
+    private void appendResolution(final Appendable out, final int index) throws IOException {
+        final int height = variantCount == 1 ? 1080 : 180 + (900 * index) / (variantCount - 1) / 2 * 2;
+        final int width = (height * 16 / 9) / 2 * 2;
+        out.append(String.valueOf(width)).append('x').append(String.valueOf(height));
+    }
+}
@@ -0,0 +1,333 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.generator;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Generates spec-valid media playlists for load tests and benchmarks.
+ *
+ * The output is fully determined by the seed and the settings, so a corpus
+ * can be reproduced from its seeds alone.  Segment durations and sizes are
+ * drawn per segment index, so the segments of a live window are the same
+ * segments that appear in the VOD playlist with the same seed and in the
+ * windows before and after it.
+ *
+ * The playlist is written line by line to an {@link Appendable}; nothing but
+ * the settings is held in memory, so playlists of any size can be streamed
+ * to a file or socket.
+ *
+ * By default a VOD playlist of 10 segments of about 6 seconds is generated.
+ */
+public class MediaPlaylistGenerator {
+
+    private static final int DURATION_STREAM = 1;
+    private static final int SIZE_STREAM = 2;
+    private static final int IFRAME_STREAM = 3;
+
+    private final SeededValues values;
+    private int segmentCount = 10;
+    private int targetDuration = 6;
+    private double durationVariance = 0.1;
+    private int bitrate = 2000000;
+    private int discontinuityInterval;
+    private int keyRotationInterval;
+    private boolean byteRanges;
+    private boolean programDateTime;
+    private long startTime;
+    private boolean iFramesOnly;
+    private boolean live;
+    private long mediaSequence;
+    private String uriPrefix = "segment";
+    private String keyURIPrefix = "https://keys.example.com/key";
+
+    /**
+     * Constructor.
+     * @param seed seed of the generated values
+     */
+    public MediaPlaylistGenerator(final long seed) {
+        values = new SeededValues(seed);
+    }
+
+    /**
+     * Sets the number of segments of a VOD playlist, or the window size of a
+     * live playlist.
+     * @param segmentCount number of segments
+     * @return this generator
+     */
+    public MediaPlaylistGenerator setSegmentCount(final int segmentCount) {
+        if (segmentCount < 0) {
+            throw new IllegalArgumentException("segmentCount must not be negative");
+        }
+        this.segmentCount = segmentCount;
+        return this;
+    }
+
+    /**
+     * Sets the target duration.  Segment durations are drawn between
+     * targetDuration * (1 - durationVariance) and targetDuration.
+     * @param targetDuration target duration (s)
+     * @param durationVariance fraction of the target duration by which segments may be shorter
+     * @return this generator
+     */
+    public MediaPlaylistGenerator setTargetDuration(final int targetDuration, final double durationVariance) {
+        if (targetDuration <= 0) {
+            throw new IllegalArgumentException("targetDuration must be greater than 0");
+        }
+        if (durationVariance < 0 || durationVariance >= 1) {
+            throw new IllegalArgumentException("durationVariance must be in [0, 1)");
+        }
+        this.targetDuration = targetDuration;
+        this.durationVariance = durationVariance;
+        return this;
+    }
+
+    /**
+     * Sets the bitrate used to derive segment sizes for byte ranges.
+     * @param bitrate bitrate (bps)
+     * @return this generator
+     */
+    public MediaPlaylistGenerator setBitrate(final int bitrate) {
+        this.bitrate = bitrate;
+        return this;
+    }
+
+    /**
+     * Inserts an EXT-X-DISCONTINUITY tag before every segment whose index is
+     * a multiple of the interval.
+     * @param discontinuityInterval interval (segments); 0 for none
+     * @return this generator
+     */
+    public MediaPlaylistGenerator setDiscontinuityInterval(final int discontinuityInterval) {
+        this.discontinuityInterval = discontinuityInterval;
+        return this;
+    }
+
+    /**
+     * Encrypts the segments with AES-128, rotating to a new key before every
+     * segment whose index is a multiple of the interval.
+     * @param keyRotationInterval interval (segments); 0 for no encryption
+     * @return this generator
+     */
+    public MediaPlaylistGenerator setKeyRotationInterval(final int keyRotationInterval) {
+        this.keyRotationInterval = keyRotationInterval;
+        return this;
+    }
+
+    /**
+     * Addresses the segments as byte ranges of a single resource.
+     * @param byteRanges true for byte ranges
+     * @return this generator
+     */
+    public MediaPlaylistGenerator setByteRanges(final boolean byteRanges) {
+        this.byteRanges = byteRanges;
+        return this;
+    }
+
+    /**
+     * Adds an EXT-X-PROGRAM-DATE-TIME tag to every segment.
+     * @param startTime date and time (ms since the epoch) of the first segment of the stream
+     * @return this generator
+     */
+    public MediaPlaylistGenerator setProgramDateTime(final long startTime) {
+        this.programDateTime = true;
+        this.startTime = startTime;
+        return this;
+    }
+
+    /**
+     * Generates an I-frame playlist: one I-frame per segment, addressed as a
+     * byte range of the segment.
+     * @param iFramesOnly true for an I-frame playlist
+     * @return this generator
+     */
+    public MediaPlaylistGenerator setIFramesOnly(final boolean iFramesOnly) {
+        this.iFramesOnly = iFramesOnly;
+        return this;
+    }
+
+    /**
+     * Generates a live sliding window instead of a VOD playlist.  The window
+     * holds the segment count segments starting at the media sequence
+     * number, and has no EXT-X-ENDLIST tag.
+     * @param mediaSequence index of the first segment of the window
+     * @return this generator
+     */
+    public MediaPlaylistGenerator setLiveWindow(final long mediaSequence) {
+        if (mediaSequence < 0) {
+            throw new IllegalArgumentException("mediaSequence must not be negative");
+        }
+        this.live = true;
+        this.mediaSequence = mediaSequence;
+        return this;
+    }
+
+    /**
+     * Sets the prefix of the segment URIs.  Segment URIs are the prefix
+     * followed by "_" and the segment index and ".ts", or the prefix and
+     * ".ts" for byte ranges.
+     * @param uriPrefix URI prefix
+     * @return this generator
+     */
+    public MediaPlaylistGenerator setURIPrefix(final String uriPrefix) {
+        this.uriPrefix = uriPrefix;
+        return this;
+    }
+
+    /**
+     * Sets the prefix of the key URIs.  Key URIs are the prefix followed by
+     * "?id=" and the key index.
+     * @param keyURIPrefix key URI prefix
+     * @return this generator
+     */
+    public MediaPlaylistGenerator setKeyURIPrefix(final String keyURIPrefix) {
+        this.keyURIPrefix = keyURIPrefix;
+        return this;
+    }
+
+    /**
+     * Returns the generated playlist as a string.
+     * @return playlist
+     */
+    public String generate() {
+        final StringBuilder builder = new StringBuilder(segmentCount * 64 + 256);
+        try {
+            write(builder);
+        } catch (IOException ex) {
+            // StringBuilder does not throw
+            throw new IllegalStateException(ex);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Writes the generated playlist.
+     * @param out destination
+     * @throws IOException if the destination throws
+     */
+    public void write(final Appendable out) throws IOException {
+        final long first = live ? mediaSequence : 0;
+        final long end = first + segmentCount;
+
+        // Durations and sizes only depend on the index, so the state at the
+        // start of a live window is found by walking the segments before it.
+        long elapsedMillis = 0;
+        long offset = 0;
+        for (long i = 0; i < first; i++) {
+            elapsedMillis += durationMillis(i);
+            offset += segmentBytes(i);
+        }
+
+        out.append("#EXTM3U\n");
+        out.append("#EXT-X-VERSION:").append(String.valueOf(byteRanges || iFramesOnly ? 4 : 3)).append('\n');
+        out.append("#EXT-X-TARGETDURATION:").append(String.valueOf(targetDuration)).append('\n');
+        out.append("#EXT-X-MEDIA-SEQUENCE:").append(String.valueOf(first)).append('\n');
+        if (live && discontinuityInterval > 0) {
+            out.append("#EXT-X-DISCONTINUITY-SEQUENCE:")
+                    .append(String.valueOf(Math.max(first - 1, 0) / discontinuityInterval)).append('\n');
+        }
+        if (!live) {
+            out.append("#EXT-X-PLAYLIST-TYPE:VOD\n");
+        }
+        if (iFramesOnly) {
+            out.append("#EXT-X-I-FRAMES-ONLY\n");
+        }
+
+        for (long i = first; i < end; i++) {
+            if (discontinuityInterval > 0 && i > 0 && i % discontinuityInterval == 0) {
+                out.append("#EXT-X-DISCONTINUITY\n");
+            }
+            if (keyRotationInterval > 0 && (i % keyRotationInterval == 0 || i == first)) {
+                writeKey(out, i / keyRotationInterval);
+            }
+            if (programDateTime) {
+                out.append("#EXT-X-PROGRAM-DATE-TIME:")
+                        .append(Instant.ofEpochMilli(startTime + elapsedMillis).toString()).append('\n');
+            }
+
+            final long duration = durationMillis(i);
+            out.append("#EXTINF:");
+            appendMillis(out, duration);
+            out.append(",\n");
+
+            final long size = segmentBytes(i);
+            if (iFramesOnly) {
+                final long iFrameOffset = 188 * (long) (values.nextDouble(IFRAME_STREAM, i) * 8);
+                out.append("#EXT-X-BYTERANGE:").append(String.valueOf(size / 20)).append('@')
+                        .append(String.valueOf(iFrameOffset)).append('\n');
+                out.append(uriPrefix).append('_').append(String.valueOf(i)).append(".ts\n");
+            } else if (byteRanges) {
+                out.append("#EXT-X-BYTERANGE:").append(String.valueOf(size)).append('@')
+                        .append(String.valueOf(offset)).append('\n');
+                out.append(uriPrefix).append(".ts\n");
+            } else {
+                out.append(uriPrefix).append('_').append(String.valueOf(i)).append(".ts\n");
+            }
+
+            elapsedMillis += duration;
+            offset += size;
+        }
+
+        if (!live) {
+            out.append("#EXT-X-ENDLIST\n");
+        }
+    }
+
+    private void writeKey(final Appendable out, final long keyIndex) throws IOException {
+        final String iv = Long.toHexString(keyIndex);
+        out.append("#EXT-X-KEY:METHOD=AES-128,URI=\"").append(keyURIPrefix).append("?id=")
+                .append(String.valueOf(keyIndex)).append("\",IV=0x");
+        for (int i = iv.length(); i < 32; i++) {
+            out.append('0');
+        }
+        out.append(iv).append('\n');
+    }
+
+    /**
+     * Returns the duration (ms) of a segment, a multiple of 1 ms.
+     * @param index segment index
+     * @return duration
+     */
+    private long durationMillis(final long index) {
+        final double fraction = 1.0 - durationVariance * values.nextDouble(DURATION_STREAM, index);
+        return (long) (targetDuration * 1000 * fraction);
+    }
+
+    /**
+     * Returns the size (bytes) of a segment: its duration at the bitrate,
+     * give or take 20%, rounded to whole transport stream packets.
+     * @param index segment index
+     * @return size
+     */
+    private long segmentBytes(final long index) {
+        final double factor = 0.8 + 0.4 * values.nextDouble(SIZE_STREAM, index);
+        final long bytes = (long) (durationMillis(index) * (bitrate / 8000.0) * factor);
+        return Math.max(bytes / 188, 1) * 188;
+    }
+
+    private static void appendMillis(final Appendable out, final long millis) throws IOException {
+        out.append(String.valueOf(millis / 1000)).append('.');
+        final long fraction = millis % 1000;
+        if (fraction < 100) {
+            out.append('0');
+        }
+        if (fraction < 10) {
+            out.append('0');
+        }
+        out.append(String.valueOf(fraction));
+    }
+}
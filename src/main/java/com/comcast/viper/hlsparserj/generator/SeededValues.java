@@ -0,0 +1,73 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.generator;
+
+/**
+ * Deterministic pseudo-random values derived from a seed and an index.
+ *
+ * Each value depends only on the seed, the index and the stream it is drawn
+ * for, not on the values drawn before it.  A generator can therefore start
+ * anywhere in a playlist, such as at the first segment of a live window, and
+ * produce the same segments it would have produced had it started at the
+ * beginning.
+ */
+final class SeededValues {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+
+    private final long seed;
+
+    /**
+     * Constructor.
+     * @param seed seed
+     */
+    SeededValues(final long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Returns a value uniformly distributed in [0, 1).
+     * @param stream identifies what the value is used for
+     * @param index index of the item the value is for
+     * @return value
+     */
+    double nextDouble(final int stream, final long index) {
+        return (nextLong(stream, index) >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * Returns a value uniformly distributed over all longs.
+     * @param stream identifies what the value is used for
+     * @param index index of the item the value is for
+     * @return value
+     */
+    long nextLong(final int stream, final long index) {
+        return mix(seed + mix(index * GOLDEN_GAMMA + stream) * GOLDEN_GAMMA);
+    }
+
+    /**
+     * SplitMix64 finalizer.
+     * @param value value to mix
+     * @return mixed value
+     */
+    private static long mix(final long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * Classes for generating synthetic playlists for load tests and benchmarks.
+ */
+
+package com.comcast.viper.hlsparserj.generator;
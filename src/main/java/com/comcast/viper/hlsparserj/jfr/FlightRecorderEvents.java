@@ -0,0 +1,183 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.jfr;
+
+import java.net.URL;
+import java.util.List;
+
+import com.comcast.viper.hlsparserj.tags.TagNames;
+import com.comcast.viper.hlsparserj.tags.UnparsedTag;
+
+/**
+ * Emits the flight recorder events of the library.
+ *
+ * The library runs on Java 8 runtimes that do not have the jdk.jfr module,
+ * so the event classes are only loaded if it is present.  Each begin method
+ * returns an opaque event handle, or null if flight recorder is missing or
+ * the event is not enabled in any recording; the matching commit method
+ * ignores null.  When no recording is running, an event costs one
+ * allocation that usually does not escape and a check of a flag.
+ */
+public final class FlightRecorderEvents {
+
+    private static final boolean AVAILABLE = isFlightRecorderAvailable();
+
+    private FlightRecorderEvents() {
+    }
+
+    /**
+     * Begins a fetch event.
+     * @return event handle, or null
+     */
+    public static Object beginFetch() {
+        return AVAILABLE ? Events.beginFetch() : null;
+    }
+
+    /**
+     * Commits a fetch event.
+     * @param handle event handle returned by {@link #beginFetch()}
+     * @param playlistURL URL of the playlist
+     * @param statusCode HTTP status code, or 0 if no response was received
+     * @param bytes bytes of the body that were read
+     */
+    public static void commitFetch(final Object handle, final URL playlistURL, final int statusCode,
+            final long bytes) {
+        if (handle != null) {
+            Events.commitFetch(handle, playlistURL, statusCode, bytes);
+        }
+    }
+
+    /**
+     * Begins a parse event.
+     * @return event handle, or null
+     */
+    public static Object beginParse() {
+        return AVAILABLE ? Events.beginParse() : null;
+    }
+
+    /**
+     * Commits a parse event.  The segments are counted here, only when the
+     * event is recorded.
+     * @param handle event handle returned by {@link #beginParse()}
+     * @param tags parsed tags
+     * @param masterPlaylist true for a master playlist
+     */
+    public static void commitParse(final Object handle, final List<UnparsedTag> tags,
+            final boolean masterPlaylist) {
+        if (handle != null) {
+            Events.commitParse(handle, tags, masterPlaylist);
+        }
+    }
+
+    /**
+     * Begins a serialize event.
+     * @return event handle, or null
+     */
+    public static Object beginSerialize() {
+        return AVAILABLE ? Events.beginSerialize() : null;
+    }
+
+    /**
+     * Commits a serialize event.
+     * @param handle event handle returned by {@link #beginSerialize()}
+     * @param tagCount number of tags written
+     * @param characters number of characters written
+     * @param masterPlaylist true for a master playlist
+     */
+    public static void commitSerialize(final Object handle, final int tagCount, final long characters,
+            final boolean masterPlaylist) {
+        if (handle != null) {
+            Events.commitSerialize(handle, tagCount, characters, masterPlaylist);
+        }
+    }
+
+    private static boolean isFlightRecorderAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Code that touches the event classes.  It is only loaded once flight
+     * recorder is known to be available.
+     */
+    private static final class Events {
+
+        static Object beginFetch() {
+            return begin(new PlaylistFetchEvent());
+        }
+
+        static Object beginParse() {
+            return begin(new PlaylistParseEvent());
+        }
+
+        static Object beginSerialize() {
+            return begin(new PlaylistSerializeEvent());
+        }
+
+        private static Object begin(final jdk.jfr.Event event) {
+            if (!event.isEnabled()) {
+                return null;
+            }
+            event.begin();
+            return event;
+        }
+
+        static void commitFetch(final Object handle, final URL playlistURL, final int statusCode,
+                final long bytes) {
+            final PlaylistFetchEvent event = (PlaylistFetchEvent) handle;
+            event.end();
+            if (event.shouldCommit()) {
+                event.url = String.valueOf(playlistURL);
+                event.statusCode = statusCode;
+                event.bytes = bytes;
+                event.commit();
+            }
+        }
+
+        static void commitParse(final Object handle, final List<UnparsedTag> tags, final boolean masterPlaylist) {
+            final PlaylistParseEvent event = (PlaylistParseEvent) handle;
+            event.end();
+            if (event.shouldCommit()) {
+                int segmentCount = 0;
+                for (int i = 0; i < tags.size(); i++) {
+                    if (TagNames.EXTINF.equals(tags.get(i).getTagName())) {
+                        segmentCount++;
+                    }
+                }
+                event.tagCount = tags.size();
+                event.segmentCount = segmentCount;
+                event.masterPlaylist = masterPlaylist;
+                event.commit();
+            }
+        }
+
+        static void commitSerialize(final Object handle, final int tagCount, final long characters,
+                final boolean masterPlaylist) {
+            final PlaylistSerializeEvent event = (PlaylistSerializeEvent) handle;
+            event.end();
+            if (event.shouldCommit()) {
+                event.tagCount = tagCount;
+                event.characters = characters;
+                event.masterPlaylist = masterPlaylist;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for the download of a playlist, from sending the
+ * request until the body has been read and parsed.
+ */
+@Name("com.comcast.viper.hlsparserj.PlaylistFetch")
+@Label("Playlist Fetch")
+@Category("HLS Parser")
+@Description("Download of a playlist, including parsing the body as it arrives")
+@StackTrace(false)
+public class PlaylistFetchEvent extends Event {
+
+    @Label("URL")
+    String url;
+
+    @Label("Status Code")
+    @Description("HTTP status code, or 0 if no response was received")
+    int statusCode;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+}
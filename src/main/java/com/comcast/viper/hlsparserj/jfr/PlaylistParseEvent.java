@@ -0,0 +1,44 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for splitting a playlist into tags.
+ */
+@Name("com.comcast.viper.hlsparserj.PlaylistParse")
+@Label("Playlist Parse")
+@Category("HLS Parser")
+@Description("Splitting of a playlist into tags")
+@StackTrace(false)
+public class PlaylistParseEvent extends Event {
+
+    @Label("Tag Count")
+    int tagCount;
+
+    @Label("Segment Count")
+    @Description("Number of EXTINF tags")
+    int segmentCount;
+
+    @Label("Master Playlist")
+    boolean masterPlaylist;
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for writing a playlist back out as text.
+ */
+@Name("com.comcast.viper.hlsparserj.PlaylistSerialize")
+@Label("Playlist Serialize")
+@Category("HLS Parser")
+@Description("Writing of a playlist as text")
+@StackTrace(false)
+public class PlaylistSerializeEvent extends Event {
+
+    @Label("Tag Count")
+    int tagCount;
+
+    @Label("Characters")
+    long characters;
+
+    @Label("Master Playlist")
+    boolean masterPlaylist;
+}
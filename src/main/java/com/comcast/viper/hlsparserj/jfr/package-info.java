@@ -0,0 +1,5 @@
+/**
+ * Classes for recording playlist work with JDK Flight Recorder.
+ */
+
+package com.comcast.viper.hlsparserj.jfr;
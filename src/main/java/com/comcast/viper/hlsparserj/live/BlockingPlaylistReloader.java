@@ -0,0 +1,204 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.live;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import com.comcast.viper.hlsparserj.AbstractPlaylist;
+import com.comcast.viper.hlsparserj.AsyncPlaylistFetcher;
+import com.comcast.viper.hlsparserj.MediaPlaylist;
+import com.comcast.viper.hlsparserj.PartIndex;
+import com.comcast.viper.hlsparserj.PlaylistDeltaMerger;
+import com.comcast.viper.hlsparserj.PlaylistVersion;
+import com.comcast.viper.hlsparserj.tags.media.ServerControl;
+import com.comcast.viper.hlsparserj.tags.media.TargetDuration;
+
+/**
+ * Reloads low-latency live media playlists with blocking playlist reload
+ * requests.
+ *
+ * When the current playlist's EXT-X-SERVER-CONTROL tag has
+ * CAN-BLOCK-RELOAD=YES, the reload asks for the playlist that follows it
+ * with the _HLS_msn and _HLS_part delivery directives, and the server
+ * holds the request until it has that playlist.  The reload is issued at
+ * once and completes as soon as the server answers, instead of after a
+ * polling delay.  The next part is asked for when the playlist has parts
+ * and the PART-HOLD-BACK that goes with them; otherwise the next media
+ * segment is.  When the server has CAN-SKIP-UNTIL, the _HLS_skip directive
+ * asks for a playlist delta update, which is merged into the current
+ * playlist with {@link PlaylistDeltaMerger}.
+ *
+ * The server may hold a blocking request for up to three target durations
+ * before it gives up, so the request waits that long plus
+ * {@link #TIMEOUT_MARGIN} for data.  A playlist without CAN-BLOCK-RELOAD is
+ * reloaded with a plain request, which the caller should issue on the
+ * usual schedule, such as the one of {@link LivePlaylistMonitor}.
+ *
+ * Instances are thread-safe.
+ */
+public class BlockingPlaylistReloader {
+
+    /**
+     * Time (ms) a blocking reload waits for data beyond three target
+     * durations.
+     */
+    public static final int TIMEOUT_MARGIN = 1000;
+
+    private final AsyncPlaylistFetcher fetcher;
+    private final PlaylistVersion playlistVersion;
+    private final boolean deltaUpdates;
+
+    /**
+     * Constructor for a reloader that asks for delta updates when the
+     * server can produce them.
+     * @param fetcher fetcher
+     * @param playlistVersion version of the playlist (V12 is the default)
+     */
+    public BlockingPlaylistReloader(final AsyncPlaylistFetcher fetcher, final PlaylistVersion playlistVersion) {
+        this(fetcher, playlistVersion, true);
+    }
+
+    /**
+     * Constructor.
+     * @param fetcher fetcher
+     * @param playlistVersion version of the playlist (V12 is the default)
+     * @param deltaUpdates true to ask for playlist delta updates when the
+     * server can produce them
+     */
+    public BlockingPlaylistReloader(final AsyncPlaylistFetcher fetcher, final PlaylistVersion playlistVersion,
+            final boolean deltaUpdates) {
+        this.fetcher = fetcher;
+        this.playlistVersion = playlistVersion;
+        this.deltaUpdates = deltaUpdates;
+    }
+
+    /**
+     * Reloads a live media playlist.  The returned future completes with the
+     * next playlist, frozen and sharing its unchanged segments with the
+     * current one, or exceptionally with an IOException if the request fails
+     * or times out.  Cancelling the future aborts the request.
+     * @param playlistURL URL of the playlist, without delivery directives
+     * @param current current playlist, as last loaded from the URL
+     * @return future next playlist
+     */
+    public CompletableFuture<MediaPlaylist> reload(final URL playlistURL, final MediaPlaylist current) {
+        final URL reloadURL;
+        try {
+            reloadURL = reloadURL(playlistURL, current, deltaUpdates);
+        } catch (MalformedURLException ex) {
+            final CompletableFuture<MediaPlaylist> failed = new CompletableFuture<MediaPlaylist>();
+            failed.completeExceptionally(ex);
+            return failed;
+        }
+
+        final int timeout = blockingTimeout(current);
+        final CompletableFuture<AbstractPlaylist> request = timeout > 0
+                ? fetcher.fetchAndParse(playlistVersion, reloadURL, timeout)
+                : fetcher.fetchAndParse(playlistVersion, reloadURL);
+        final CompletableFuture<MediaPlaylist> result = request.thenApply(playlist -> {
+            if (!(playlist instanceof MediaPlaylist)) {
+                throw new CompletionException(new IOException("Expected a media playlist but got a master playlist"));
+            }
+            return PlaylistDeltaMerger.merge(current, (MediaPlaylist) playlist);
+        });
+        result.whenComplete((playlist, ex) -> {
+            if (result.isCancelled()) {
+                request.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns the URL that reloads the given playlist: the playlist URL with
+     * the delivery directives for the playlist that follows the current one.
+     * Without CAN-BLOCK-RELOAD, only the _HLS_skip directive is added.
+     * @param playlistURL URL of the playlist, without delivery directives
+     * @param current current playlist
+     * @param deltaUpdate true to ask for a delta update if the server can
+     * produce one
+     * @return reload URL
+     * @throws MalformedURLException if the reload URL is not valid
+     */
+    public static URL reloadURL(final URL playlistURL, final MediaPlaylist current, final boolean deltaUpdate)
+            throws MalformedURLException {
+        final ServerControl serverControl = current.getServerControl();
+        if (serverControl == null) {
+            return playlistURL;
+        }
+
+        final StringBuilder directives = new StringBuilder();
+        if (serverControl.getCanBlockReload()) {
+            final PartIndex parts = current.getPartIndex();
+            final long segmentEnd = parts.getFirstMsn() + current.getSegmentCount();
+            if (parts.size() > 0 && serverControl.getPartHoldBack() != null) {
+
+                // The part after the last one, which starts the next
+                // segment if the last one is complete
+                final long lastMsn = parts.getLastMsn();
+                if (lastMsn == segmentEnd) {
+                    appendDirective(directives, "_HLS_msn", Long.toString(lastMsn));
+                    appendDirective(directives, "_HLS_part", Integer.toString(parts.getLastPart() + 1));
+                } else {
+                    appendDirective(directives, "_HLS_msn", Long.toString(segmentEnd));
+                    appendDirective(directives, "_HLS_part", "0");
+                }
+            } else {
+                appendDirective(directives, "_HLS_msn", Long.toString(segmentEnd));
+            }
+        }
+        if (deltaUpdate && serverControl.getCanSkipUntil() != null) {
+            appendDirective(directives, "_HLS_skip", serverControl.getCanSkipDateRanges() ? "v2" : "YES");
+        }
+        if (directives.length() == 0) {
+            return playlistURL;
+        }
+
+        String spec = playlistURL.toString();
+        final int fragmentStart = spec.indexOf('#');
+        if (fragmentStart >= 0) {
+            spec = spec.substring(0, fragmentStart);
+        }
+        return new URL(spec + (playlistURL.getQuery() == null ? '?' : '&') + directives);
+    }
+
+    /**
+     * Returns the time a blocking reload of the given playlist waits for
+     * data: three target durations plus {@link #TIMEOUT_MARGIN}.
+     * @param current current playlist
+     * @return timeout (ms), or 0 if the reload does not block or the
+     * playlist has no target duration
+     */
+    static int blockingTimeout(final MediaPlaylist current) {
+        final ServerControl serverControl = current.getServerControl();
+        final TargetDuration targetDuration = current.getTargetDuration();
+        if (serverControl == null || !serverControl.getCanBlockReload() || targetDuration == null) {
+            return 0;
+        }
+        return 3 * 1000 * targetDuration.getDuration() + TIMEOUT_MARGIN;
+    }
+
+    private static void appendDirective(final StringBuilder directives, final String name, final String value) {
+        if (directives.length() > 0) {
+            directives.append('&');
+        }
+        directives.append(name).append('=').append(value);
+    }
+}
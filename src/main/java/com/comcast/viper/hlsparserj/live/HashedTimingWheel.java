@@ -0,0 +1,238 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.live;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timer that schedules large numbers of short tasks at a coarse resolution.
+ *
+ * Time is divided into ticks, and the wheel has one bucket per tick.  A
+ * task is placed in the bucket of the tick it expires on, along with the
+ * number of full wheel rotations left before it is due.  Scheduling and
+ * cancelling are O(1), and the single worker thread only visits the bucket
+ * of the current tick, so the cost does not grow with the number of
+ * scheduled tasks the way a priority queue does.
+ *
+ * Tasks run on the worker thread and must not block; hand longer work to
+ * an executor.  Tasks may fire up to one tick late.
+ */
+final class HashedTimingWheel implements ReloadTimer {
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<Timeout>();
+    private final Thread worker;
+    private final long startTime;
+    private volatile boolean closed;
+    private long tick;
+
+    /**
+     * Constructor.  Starts the worker thread.
+     * @param tickDuration duration of one tick
+     * @param unit unit of the tick duration
+     * @param ticksPerWheel number of buckets; rounded up to a power of two
+     * @param threadName name of the worker thread
+     */
+    HashedTimingWheel(final long tickDuration, final TimeUnit unit, final int ticksPerWheel,
+            final String threadName) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be greater than 0");
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+            throw new IllegalArgumentException("ticksPerWheel must be between 1 and 2^30");
+        }
+
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        mask = size - 1;
+        tickNanos = unit.toNanos(tickDuration);
+        startTime = System.nanoTime();
+
+        worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runWorker();
+            }
+        }, threadName);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Schedules a task to run once after the given delay.
+     * @param task task to run on the worker thread
+     * @param delay delay
+     * @param unit unit of the delay
+     * @return handle that can cancel the task
+     */
+    @Override
+    public Timeout schedule(final Runnable task, final long delay, final TimeUnit unit) {
+        if (closed) {
+            throw new IllegalStateException("Timing wheel is closed");
+        }
+        final long deadline = System.nanoTime() - startTime + unit.toNanos(Math.max(delay, 0));
+        final Timeout timeout = new Timeout(task, deadline);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the worker thread.  Tasks that have not run yet are dropped.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        worker.interrupt();
+    }
+
+    private void runWorker() {
+        while (!closed) {
+            final long deadline = tickNanos * (tick + 1);
+            final long sleepNanos = deadline - (System.nanoTime() - startTime);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException ex) {
+                    continue;
+                }
+            }
+
+            transferPending();
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    /**
+     * Moves newly scheduled tasks into the buckets of the ticks they expire on.
+     */
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            final long expiryTick = Math.max(timeout.deadline / tickNanos, tick);
+            timeout.remainingRounds = (expiryTick - tick) / wheel.length;
+            wheel[(int) (expiryTick & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * Handle to a scheduled task.
+     */
+    static final class Timeout {
+
+        private final Runnable task;
+        private final long deadline;
+        private volatile boolean cancelled;
+        private long remainingRounds;
+        private Timeout next;
+        private Timeout prev;
+
+        /**
+         * Constructor.
+         * @param task task to run
+         * @param deadline time the task is due (ns), relative to the start of the wheel
+         */
+        Timeout(final Runnable task, final long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the task.  The task is removed from the wheel when its
+         * bucket is next visited.
+         */
+        void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Returns true if the task has been cancelled.
+         * @return boolean
+         */
+        boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * Doubly linked list of the tasks that expire on one tick.  Only accessed
+     * by the worker thread.
+     */
+    private static final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(final Timeout timeout) {
+            if (head == null) {
+                head = timeout;
+                tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                final Timeout next = timeout.next;
+                if (timeout.cancelled) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    try {
+                        timeout.task.run();
+                    } catch (RuntimeException ex) {
+                        ex.printStackTrace();
+                    }
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        private void remove(final Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.next = null;
+            timeout.prev = null;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.live;
+
+import com.comcast.viper.hlsparserj.MediaPlaylist;
+
+/**
+ * Receives the snapshots of a live media playlist followed by a
+ * {@link LivePlaylistMonitor}.
+ *
+ * Calls for one subscription are made one at a time and in order, but
+ * calls for different subscriptions may be made concurrently.
+ */
+public interface LivePlaylistListener {
+
+    /**
+     * Called when a reload returns a playlist that differs from the previous
+     * snapshot, including the first successful load.  If the playlist has an
+     * end list tag, the subscription ends after this call.
+     * @param subscription subscription that was reloaded
+     * @param playlist new frozen playlist snapshot
+     */
+    void playlistUpdated(LiveSubscription subscription, MediaPlaylist playlist);
+
+    /**
+     * Called when a reload fails.  The reload is retried after half the
+     * target duration.
+     * @param subscription subscription that failed to reload
+     * @param cause cause of the failure
+     */
+    void reloadFailed(LiveSubscription subscription, Throwable cause);
+}
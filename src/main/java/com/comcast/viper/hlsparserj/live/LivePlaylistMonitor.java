@@ -0,0 +1,342 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.live;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.comcast.viper.hlsparserj.AbstractPlaylist;
+import com.comcast.viper.hlsparserj.AsyncPlaylistFetcher;
+import com.comcast.viper.hlsparserj.MediaPlaylist;
+import com.comcast.viper.hlsparserj.PlaylistVersion;
+import com.comcast.viper.hlsparserj.tags.UnparsedTag;
+import com.comcast.viper.hlsparserj.tags.media.TargetDuration;
+
+/**
+ * Follows many live media playlists, reloading each one as RFC 8216
+ * section 6.3.4 prescribes and delivering every new snapshot to the
+ * subscription's listener.
+ *
+ * After a reload that changed the playlist, the next reload is scheduled
+ * one target duration later.  After a reload that returned an unchanged
+ * playlist, or failed, it is scheduled half a target duration later.  A
+ * random jitter is added to every delay so that streams subscribed at the
+ * same moment drift apart and spread their load on the origin.  A playlist
+ * with an end list tag is delivered and then no longer reloaded.
+ *
+ * Delivered snapshots are frozen, and each one shares the segments it has
+ * in common with the previous snapshot (see
+ * {@link MediaPlaylist#sharingSegmentsWith}), so listeners can keep a
+ * history of snapshots at little more than the cost of its distinct
+ * segments.
+ *
+ * Reloads are scheduled on a hashed timing wheel and fetched with an
+ * {@link AsyncPlaylistFetcher}, so no thread is held per stream and tens
+ * of thousands of streams can be followed by one monitor.  Listeners are
+ * called on a separate executor and must not rely on running on any
+ * particular thread.
+ */
+public class LivePlaylistMonitor implements Closeable {
+
+    /**
+     * Default jitter, as a fraction of the reload delay.
+     */
+    public static final double DEFAULT_JITTER = 0.1;
+
+    private static final long TICK_MILLIS = 20;
+    private static final int TICKS_PER_WHEEL = 1024;
+    private static final long DEFAULT_RELOAD_MILLIS = 1000;
+
+    private final AsyncPlaylistFetcher fetcher;
+    private final PlaylistVersion playlistVersion;
+    private final Executor listenerExecutor;
+    private final ExecutorService ownedExecutor;
+    private final double jitter;
+    private final ReloadTimer timer;
+    private final Set<LiveSubscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    /**
+     * Constructor.  Uses the default playlist version and jitter, and calls
+     * listeners on an internal pool with one thread per available processor.
+     * @param fetcher fetcher used to reload the playlists
+     */
+    public LivePlaylistMonitor(final AsyncPlaylistFetcher fetcher) {
+        this(fetcher, PlaylistVersion.DEFAULT, null, DEFAULT_JITTER);
+    }
+
+    /**
+     * Constructor.
+     * @param fetcher fetcher used to reload the playlists
+     * @param playlistVersion version of the playlists
+     * @param listenerExecutor executor that calls the listeners, or null to use
+     * an internal pool with one thread per available processor
+     * @param jitter maximum random deviation of each reload delay, as a fraction
+     * of the delay (0 for none)
+     */
+    public LivePlaylistMonitor(final AsyncPlaylistFetcher fetcher, final PlaylistVersion playlistVersion,
+            final Executor listenerExecutor, final double jitter) {
+        this(fetcher, playlistVersion, listenerExecutor, checkJitter(jitter),
+                new HashedTimingWheel(TICK_MILLIS, TimeUnit.MILLISECONDS, TICKS_PER_WHEEL, "hlsparserj-live-timer"));
+    }
+
+    /**
+     * Constructor.
+     * @param fetcher fetcher used to reload the playlists
+     * @param playlistVersion version of the playlists
+     * @param listenerExecutor executor that calls the listeners, or null to use
+     * an internal pool with one thread per available processor
+     * @param jitter maximum random deviation of each reload delay, as a fraction
+     * of the delay (0 for none)
+     * @param timer timer that schedules the reloads; closed with the monitor
+     */
+    LivePlaylistMonitor(final AsyncPlaylistFetcher fetcher, final PlaylistVersion playlistVersion,
+            final Executor listenerExecutor, final double jitter, final ReloadTimer timer) {
+        this.fetcher = fetcher;
+        this.playlistVersion = playlistVersion;
+        this.jitter = checkJitter(jitter);
+        if (listenerExecutor == null) {
+            ownedExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+                final Thread thread = new Thread(runnable, "hlsparserj-live-listener");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.listenerExecutor = ownedExecutor;
+        } else {
+            ownedExecutor = null;
+            this.listenerExecutor = listenerExecutor;
+        }
+        this.timer = timer;
+    }
+
+    /**
+     * Starts following a live media playlist.  The playlist is loaded right
+     * away and then reloaded until the subscription is cancelled, the
+     * playlist ends or the monitor is closed.
+     * @param url URL of the media playlist
+     * @param listener listener of the playlist snapshots
+     * @return subscription
+     */
+    public LiveSubscription subscribe(final URL url, final LivePlaylistListener listener) {
+        if (closed) {
+            throw new IllegalStateException("Monitor is closed");
+        }
+        final LiveSubscription subscription = new LiveSubscription(this, url, listener);
+        subscriptions.add(subscription);
+        reload(subscription);
+        return subscription;
+    }
+
+    /**
+     * Returns the number of playlists being followed.
+     * @return subscription count
+     */
+    public int getSubscriptionCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Cancels every subscription and stops the timer and the internal
+     * listener pool.  The fetcher is not closed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (LiveSubscription subscription : subscriptions) {
+            subscription.cancel();
+        }
+        timer.close();
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Removes a cancelled subscription.
+     * @param subscription subscription
+     */
+    void remove(final LiveSubscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    /**
+     * Fetches the playlist of a subscription and hands the result to the
+     * listener executor.
+     * @param subscription subscription
+     */
+    private void reload(final LiveSubscription subscription) {
+        if (subscription.isCancelled()) {
+            return;
+        }
+        fetcher.fetchAndParse(playlistVersion, subscription.getURL()).whenComplete((playlist, ex) -> {
+            try {
+                listenerExecutor.execute(() -> reloaded(subscription, playlist, ex));
+            } catch (RejectedExecutionException rex) {
+                // The monitor is closing
+                subscription.cancel();
+            }
+        });
+    }
+
+    /**
+     * Delivers the result of a reload and schedules the next one.
+     * @param subscription subscription
+     * @param playlist reloaded playlist, or null if the reload failed
+     * @param failure cause of the failure, or null
+     */
+    private void reloaded(final LiveSubscription subscription, final AbstractPlaylist playlist,
+            final Throwable failure) {
+        if (subscription.isCancelled()) {
+            return;
+        }
+
+        final LivePlaylistListener listener = subscription.getListener();
+        final MediaPlaylist lastPlaylist = subscription.getLastPlaylist();
+        long delay;
+
+        if (failure != null) {
+            notifyFailed(subscription, failure);
+            delay = targetDurationMillis(lastPlaylist) / 2;
+        } else if (playlist.isMasterPlaylist()) {
+            notifyFailed(subscription, new IOException("Expected a media playlist but got a master playlist"));
+            subscription.cancel();
+            return;
+        } else {
+            final MediaPlaylist reloadedPlaylist = (MediaPlaylist) playlist;
+            if (lastPlaylist != null && sameContent(lastPlaylist, reloadedPlaylist)) {
+                delay = targetDurationMillis(reloadedPlaylist) / 2;
+            } else {
+                final MediaPlaylist mediaPlaylist = reloadedPlaylist.sharingSegmentsWith(lastPlaylist);
+                subscription.setLastPlaylist(mediaPlaylist);
+                // Cancel before notifying, so the listener sees the final
+                // playlist on a subscription that has already ended
+                final boolean endList = mediaPlaylist.getEndList();
+                if (endList) {
+                    subscription.cancel();
+                }
+                try {
+                    listener.playlistUpdated(subscription, mediaPlaylist);
+                } catch (RuntimeException ex) {
+                    ex.printStackTrace();
+                }
+                if (endList) {
+                    return;
+                }
+                delay = targetDurationMillis(mediaPlaylist);
+            }
+        }
+
+        scheduleReload(subscription, delay);
+    }
+
+    /**
+     * Schedules the next reload of a subscription after the given delay plus
+     * a random jitter.
+     * @param subscription subscription
+     * @param delay delay (ms)
+     */
+    private void scheduleReload(final LiveSubscription subscription, final long delay) {
+        final long jittered = delay + (long) (delay * jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1));
+        try {
+            subscription.setNextReload(timer.schedule(() -> reload(subscription), jittered, TimeUnit.MILLISECONDS));
+        } catch (IllegalStateException ex) {
+            // The monitor is closing
+            subscription.cancel();
+            return;
+        }
+        if (subscription.isCancelled()) {
+            // Cancelled while scheduling; make sure the reload does not run
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * Checks that a jitter is valid, before a timer thread is started for it.
+     * @param jitter jitter
+     * @return jitter
+     */
+    private static double checkJitter(final double jitter) {
+        if (jitter < 0 || jitter >= 1) {
+            throw new IllegalArgumentException("jitter must be at least 0 and less than 1");
+        }
+        return jitter;
+    }
+
+    private void notifyFailed(final LiveSubscription subscription, final Throwable cause) {
+        try {
+            subscription.getListener().reloadFailed(subscription, cause);
+        } catch (RuntimeException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the target duration of a playlist in milliseconds, or a default
+     * if it is unknown.
+     * @param playlist playlist, or null
+     * @return target duration (ms)
+     */
+    private static long targetDurationMillis(final MediaPlaylist playlist) {
+        if (playlist != null) {
+            final TargetDuration targetDuration = playlist.getTargetDuration();
+            if (targetDuration != null && targetDuration.getDuration() > 0) {
+                return TimeUnit.SECONDS.toMillis(targetDuration.getDuration());
+            }
+        }
+        return DEFAULT_RELOAD_MILLIS;
+    }
+
+    /**
+     * Returns true if two playlists have the same tags and URIs.  Playlists
+     * parsed from identical bodies are recognized by their fingerprints.
+     * @param previous previous snapshot
+     * @param current current snapshot
+     * @return boolean
+     */
+    static boolean sameContent(final AbstractPlaylist previous, final AbstractPlaylist current) {
+        if (previous.getFingerprint() == current.getFingerprint()) {
+            return true;
+        }
+        final List<UnparsedTag> previousTags = previous.getTags();
+        final List<UnparsedTag> currentTags = current.getTags();
+        if (previousTags.size() != currentTags.size()) {
+            return false;
+        }
+        // Live playlists change at the end, so compare from the end
+        for (int i = currentTags.size() - 1; i >= 0; i--) {
+            final UnparsedTag previousTag = previousTags.get(i);
+            final UnparsedTag currentTag = currentTags.get(i);
+            if (!previousTag.getRawTag().equals(currentTag.getRawTag())) {
+                return false;
+            }
+            final String uri = currentTag.getURI();
+            if (uri == null ? previousTag.getURI() != null : !uri.equals(previousTag.getURI())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
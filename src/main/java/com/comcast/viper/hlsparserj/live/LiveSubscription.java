@@ -0,0 +1,97 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.live;
+
+import java.net.URL;
+
+import com.comcast.viper.hlsparserj.MediaPlaylist;
+
+/**
+ * A live media playlist followed by a {@link LivePlaylistMonitor}.
+ */
+public class LiveSubscription {
+
+    private final LivePlaylistMonitor monitor;
+    private final URL url;
+    private final LivePlaylistListener listener;
+    private volatile MediaPlaylist lastPlaylist;
+    private volatile HashedTimingWheel.Timeout nextReload;
+    private volatile boolean cancelled;
+
+    /**
+     * Constructor.
+     * @param monitor monitor that reloads the playlist
+     * @param url URL of the media playlist
+     * @param listener listener of the playlist snapshots
+     */
+    LiveSubscription(final LivePlaylistMonitor monitor, final URL url,
+            final LivePlaylistListener listener) {
+        this.monitor = monitor;
+        this.url = url;
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the URL of the media playlist.
+     * @return URL
+     */
+    public URL getURL() {
+        return url;
+    }
+
+    /**
+     * Returns the most recent playlist snapshot, or null if the playlist has
+     * not been loaded yet.
+     * @return playlist snapshot
+     */
+    public MediaPlaylist getLastPlaylist() {
+        return lastPlaylist;
+    }
+
+    /**
+     * Stops reloading the playlist.  A reload that is already in flight
+     * completes, but its result is not delivered.
+     */
+    public void cancel() {
+        cancelled = true;
+        final HashedTimingWheel.Timeout timeout = nextReload;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        monitor.remove(this);
+    }
+
+    /**
+     * Returns true if the subscription has been cancelled, or has ended
+     * because the playlist has an end list tag.
+     * @return boolean
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    LivePlaylistListener getListener() {
+        return listener;
+    }
+
+    void setLastPlaylist(final MediaPlaylist lastPlaylist) {
+        this.lastPlaylist = lastPlaylist;
+    }
+
+    void setNextReload(final HashedTimingWheel.Timeout nextReload) {
+        this.nextReload = nextReload;
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.live;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules the reloads of a {@link LivePlaylistMonitor}.  The monitor uses a
+ * {@link HashedTimingWheel}; tests pass a timer that runs the reloads on
+ * demand.
+ */
+interface ReloadTimer extends Closeable {
+
+    /**
+     * Schedules a task to run once after the given delay.
+     * @param task task to run
+     * @param delay delay
+     * @param unit unit of the delay
+     * @return handle that can cancel the task
+     * @throws IllegalStateException if the timer is closed
+     */
+    HashedTimingWheel.Timeout schedule(Runnable task, long delay, TimeUnit unit);
+
+    /**
+     * Stops the timer.  Tasks that have not run yet are dropped.
+     */
+    @Override
+    void close();
+}
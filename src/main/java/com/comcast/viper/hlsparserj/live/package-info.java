@@ -0,0 +1,5 @@
+/**
+ * Classes for following live playlists as they are updated.
+ */
+
+package com.comcast.viper.hlsparserj.live;
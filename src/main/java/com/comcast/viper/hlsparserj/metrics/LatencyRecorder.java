@@ -0,0 +1,187 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies with a fixed relative precision, in the
+ * style of HdrHistogram.
+ *
+ * Values below 128 are counted exactly.  Larger values are counted in
+ * buckets that split every power of two into 64 sub-buckets, so a value is
+ * reported with an error of less than 1.6% of itself.  The whole range of
+ * positive longs fits in under 4,000 counters, allocated once; recording a
+ * value is a few arithmetic instructions and two atomic increments.
+ *
+ * Percentiles and the mean are computed from a snapshot of the counters
+ * that may be slightly inconsistent while values are being recorded.
+ */
+public class LatencyRecorder {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_HALF_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKET_HALF_COUNT * 2;
+    private static final int COUNTER_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_HALF_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(COUNTER_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * Records a value.  Negative values are recorded as 0.
+     * @param value value, such as a duration in nanoseconds
+     */
+    public void record(final long value) {
+        final long recorded = Math.max(value, 0);
+        counts.incrementAndGet(index(recorded));
+        totalCount.incrementAndGet();
+        long max;
+        while (recorded > (max = maxValue.get()) && !maxValue.compareAndSet(max, recorded)) {
+            continue;
+        }
+    }
+
+    /**
+     * Records a duration.
+     * @param duration duration
+     * @param unit unit of the duration
+     */
+    public void record(final long duration, final TimeUnit unit) {
+        record(unit.toNanos(duration));
+    }
+
+    /**
+     * Returns the number of recorded values.
+     * @return count
+     */
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * Returns the largest recorded value, exactly.
+     * @return maximum, or 0 if nothing was recorded
+     */
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    /**
+     * Returns the mean of the recorded values, computed from the bucket
+     * midpoints.
+     * @return mean, or 0 if nothing was recorded
+     */
+    public double getMean() {
+        long count = 0;
+        double sum = 0;
+        for (int i = 0; i < COUNTER_COUNT; i++) {
+            final long bucketCount = counts.get(i);
+            if (bucketCount > 0) {
+                count += bucketCount;
+                sum += bucketCount * ((lowestValue(i) + (double) highestValue(i)) / 2);
+            }
+        }
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * Returns the value at a percentile: the highest value of the bucket
+     * holding the given fraction of the recorded values, capped at the
+     * maximum.
+     * @param percentile percentile, from 0 to 100
+     * @return value, or 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(final double percentile) {
+        long count = 0;
+        for (int i = 0; i < COUNTER_COUNT; i++) {
+            count += counts.get(i);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        final double fraction = Math.min(Math.max(percentile, 0), 100) / 100;
+        final long target = Math.max((long) Math.ceil(fraction * count), 1);
+        long seen = 0;
+        for (int i = 0; i < COUNTER_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestValue(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Clears the recorded values.  Values recorded concurrently may be lost
+     * or kept.
+     */
+    public void reset() {
+        for (int i = 0; i < COUNTER_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        maxValue.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyRecorder[count=" + getCount() + ", p50=" + getValueAtPercentile(50)
+                + ", p99=" + getValueAtPercentile(99) + ", max=" + getMax() + "]";
+    }
+
+    /**
+     * Returns the counter index of a value.
+     * @param value non-negative value
+     * @return index
+     */
+    static int index(final long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) (value >>> shift) - SUB_BUCKET_HALF_COUNT;
+    }
+
+    /**
+     * Returns the lowest value counted by a counter.
+     * @param index counter index
+     * @return value
+     */
+    static long lowestValue(final int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        final int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        final long subBucket = (index & (SUB_BUCKET_HALF_COUNT - 1)) + SUB_BUCKET_HALF_COUNT;
+        return subBucket << shift;
+    }
+
+    /**
+     * Returns the highest value counted by a counter.
+     * @param index counter index
+     * @return value
+     */
+    static long highestValue(final int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        final int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        return lowestValue(index) + (1L << shift) - 1;
+    }
+}
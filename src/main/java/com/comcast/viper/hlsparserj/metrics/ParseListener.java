@@ -0,0 +1,91 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.metrics;
+
+import java.net.URL;
+
+/**
+ * Receives measurements of playlist fetching and parsing.
+ *
+ * A listener is installed with
+ * {@link com.comcast.viper.hlsparserj.PlaylistFactory#setParseListener(ParseListener)}
+ * or passed to a {@link com.comcast.viper.hlsparserj.PlaylistParser}.
+ * Methods are called on the thread doing the work, some of them once per
+ * tag, so implementations must be thread-safe and cheap.  Every method does
+ * nothing by default, and the parser skips the measurements entirely when
+ * the listener is {@link #NONE}.
+ *
+ * Durations are in nanoseconds.
+ */
+public interface ParseListener {
+
+    /**
+     * Listener that ignores every measurement.  This is the default.
+     */
+    ParseListener NONE = new ParseListener() {
+    };
+
+    /**
+     * Called for every tag line of a playlist.
+     * @param tagName tag name
+     * @param known false if the tag name has not been registered with the
+     * {@link com.comcast.viper.hlsparserj.tags.TagFactory}
+     */
+    default void tagParsed(final String tagName, final boolean known) {
+    }
+
+    /**
+     * Called when a playlist has been split into tags.
+     * @param bytes bytes read; characters for playlists parsed from a string
+     * @param lines lines read, including blank lines and comments
+     * @param tags tags found
+     * @param durationNanos time spent parsing
+     */
+    default void parseCompleted(final long bytes, final int lines, final int tags, final long durationNanos) {
+    }
+
+    /**
+     * Called when a playlist object has been built from the parsed tags.
+     * @param masterPlaylist true for a master playlist
+     * @param durationNanos time spent building the playlist
+     */
+    default void modelBuilt(final boolean masterPlaylist, final long durationNanos) {
+    }
+
+    /**
+     * Called when a playlist has been downloaded.
+     * @param playlistURL URL of the playlist
+     * @param statusCode HTTP status code
+     * @param connectNanos time spent opening the connection, or -1 if a
+     * pooled connection was used or the time is not known
+     * @param firstByteNanos time from sending the request, including the
+     * connect time, until the response headers were received
+     * @param bodyNanos time from receiving the response headers until the
+     * body was read; the body is parsed as it is read, so this includes the
+     * parse time
+     */
+    default void fetchCompleted(final URL playlistURL, final int statusCode, final long connectNanos,
+            final long firstByteNanos, final long bodyNanos) {
+    }
+
+    /**
+     * Called when downloading a playlist failed.
+     * @param playlistURL URL of the playlist
+     * @param cause failure
+     */
+    default void fetchFailed(final URL playlistURL, final Throwable cause) {
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.metrics;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Parse listener that aggregates the measurements it receives: counters of
+ * bytes, lines, playlists and tags by name, and latency histograms of
+ * parsing, building and fetching.  Recording only increments counters, so
+ * an instance can be installed permanently in production.
+ */
+public class PlaylistMetrics implements ParseListener {
+
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder lines = new LongAdder();
+    private final LongAdder masterPlaylists = new LongAdder();
+    private final LongAdder mediaPlaylists = new LongAdder();
+    private final LongAdder fetchFailures = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> tagCounts = new ConcurrentHashMap<String, LongAdder>();
+    private final ConcurrentHashMap<String, LongAdder> unknownTagCounts = new ConcurrentHashMap<String, LongAdder>();
+    private final LatencyRecorder parseLatency = new LatencyRecorder();
+    private final LatencyRecorder modelBuildLatency = new LatencyRecorder();
+    private final LatencyRecorder connectLatency = new LatencyRecorder();
+    private final LatencyRecorder firstByteLatency = new LatencyRecorder();
+    private final LatencyRecorder bodyLatency = new LatencyRecorder();
+
+    @Override
+    public void tagParsed(final String tagName, final boolean known) {
+        increment(known ? tagCounts : unknownTagCounts, tagName);
+    }
+
+    @Override
+    public void parseCompleted(final long byteCount, final int lineCount, final int tagCount,
+            final long durationNanos) {
+        bytes.add(byteCount);
+        lines.add(lineCount);
+        parseLatency.record(durationNanos);
+    }
+
+    @Override
+    public void modelBuilt(final boolean masterPlaylist, final long durationNanos) {
+        if (masterPlaylist) {
+            masterPlaylists.increment();
+        } else {
+            mediaPlaylists.increment();
+        }
+        modelBuildLatency.record(durationNanos);
+    }
+
+    @Override
+    public void fetchCompleted(final URL playlistURL, final int statusCode, final long connectNanos,
+            final long firstByteNanos, final long bodyNanos) {
+        if (connectNanos >= 0) {
+            connectLatency.record(connectNanos);
+        }
+        firstByteLatency.record(firstByteNanos);
+        bodyLatency.record(bodyNanos);
+    }
+
+    @Override
+    public void fetchFailed(final URL playlistURL, final Throwable cause) {
+        fetchFailures.increment();
+    }
+
+    /**
+     * Returns the number of bytes parsed; characters for playlists parsed
+     * from a string.
+     * @return byte count
+     */
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    /**
+     * Returns the number of lines parsed.
+     * @return line count
+     */
+    public long getLines() {
+        return lines.sum();
+    }
+
+    /**
+     * Returns the number of master playlists built.
+     * @return master playlist count
+     */
+    public long getMasterPlaylists() {
+        return masterPlaylists.sum();
+    }
+
+    /**
+     * Returns the number of media playlists built.
+     * @return media playlist count
+     */
+    public long getMediaPlaylists() {
+        return mediaPlaylists.sum();
+    }
+
+    /**
+     * Returns the number of failed fetches.
+     * @return failure count
+     */
+    public long getFetchFailures() {
+        return fetchFailures.sum();
+    }
+
+    /**
+     * Returns the number of times each registered tag was parsed.
+     * @return counts by tag name, sorted by name
+     */
+    public Map<String, Long> getTagCounts() {
+        return snapshot(tagCounts);
+    }
+
+    /**
+     * Returns the number of times each tag that is not registered with the
+     * tag factory was parsed.
+     * @return counts by tag name, sorted by name
+     */
+    public Map<String, Long> getUnknownTagCounts() {
+        return snapshot(unknownTagCounts);
+    }
+
+    /**
+     * Returns the histogram of parse durations (ns).
+     * @return latency recorder
+     */
+    public LatencyRecorder getParseLatency() {
+        return parseLatency;
+    }
+
+    /**
+     * Returns the histogram of model build durations (ns).
+     * @return latency recorder
+     */
+    public LatencyRecorder getModelBuildLatency() {
+        return modelBuildLatency;
+    }
+
+    /**
+     * Returns the histogram of connect durations (ns).
+     * @return latency recorder
+     */
+    public LatencyRecorder getConnectLatency() {
+        return connectLatency;
+    }
+
+    /**
+     * Returns the histogram of times to the response headers (ns).
+     * @return latency recorder
+     */
+    public LatencyRecorder getFirstByteLatency() {
+        return firstByteLatency;
+    }
+
+    /**
+     * Returns the histogram of body download and parse durations (ns).
+     * @return latency recorder
+     */
+    public LatencyRecorder getBodyLatency() {
+        return bodyLatency;
+    }
+
+    private static void increment(final ConcurrentHashMap<String, LongAdder> counts, final String tagName) {
+        LongAdder count = counts.get(tagName);
+        if (count == null) {
+            final LongAdder newCount = new LongAdder();
+            count = counts.putIfAbsent(tagName, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.increment();
+    }
+
+    private static Map<String, Long> snapshot(final ConcurrentHashMap<String, LongAdder> counts) {
+        final Map<String, Long> snapshot = new TreeMap<String, Long>();
+        for (Map.Entry<String, LongAdder> entry : counts.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().sum());
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * Classes for collecting parse and fetch metrics.
+ */
+
+package com.comcast.viper.hlsparserj.metrics;
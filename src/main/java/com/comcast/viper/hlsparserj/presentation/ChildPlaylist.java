@@ -0,0 +1,103 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.presentation;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import com.comcast.viper.hlsparserj.MediaPlaylist;
+import com.comcast.viper.hlsparserj.tags.Tag;
+
+/**
+ * A media playlist referenced by a master playlist, together with the
+ * outcome of loading it.
+ */
+public class ChildPlaylist {
+
+    private final Tag tag;
+    private final URL url;
+    private final MediaPlaylist playlist;
+    private final Throwable failure;
+    private final long latencyNanos;
+
+    /**
+     * Constructor.
+     * @param tag master playlist tag referencing the playlist
+     * @param url resolved URL of the playlist, or null if it could not be resolved
+     * @param playlist loaded playlist, or null if loading failed
+     * @param failure cause of the failure, or null if the playlist was loaded
+     * @param latencyNanos time taken to fetch and parse the playlist (ns)
+     */
+    ChildPlaylist(final Tag tag, final URL url, final MediaPlaylist playlist,
+            final Throwable failure, final long latencyNanos) {
+        this.tag = tag;
+        this.url = url;
+        this.playlist = playlist;
+        this.failure = failure;
+        this.latencyNanos = latencyNanos;
+    }
+
+    /**
+     * Returns the master playlist tag that references the playlist: a
+     * StreamInf, Media or IFrameStreamInf.
+     * @return tag
+     */
+    public Tag getTag() {
+        return tag;
+    }
+
+    /**
+     * Returns the URL of the playlist, resolved against the master playlist URL.
+     * @return URL, or null if the URI could not be resolved
+     */
+    public URL getURL() {
+        return url;
+    }
+
+    /**
+     * Returns true if the playlist was loaded.
+     * @return boolean
+     */
+    public boolean isLoaded() {
+        return playlist != null;
+    }
+
+    /**
+     * Returns the loaded playlist.
+     * @return playlist, or null if loading failed
+     */
+    public MediaPlaylist getPlaylist() {
+        return playlist;
+    }
+
+    /**
+     * Returns the cause of the failure to load the playlist.
+     * @return failure, or null if the playlist was loaded
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Returns the time taken to fetch and parse the playlist, measured from
+     * the moment its request was started.
+     * @param unit unit of the returned latency
+     * @return latency
+     */
+    public long getLatency(final TimeUnit unit) {
+        return unit.convert(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+}
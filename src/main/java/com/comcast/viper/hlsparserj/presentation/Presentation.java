@@ -0,0 +1,140 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.presentation;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.comcast.viper.hlsparserj.MasterPlaylist;
+import com.comcast.viper.hlsparserj.tags.Tag;
+
+/**
+ * A master playlist together with the media playlists it references, as
+ * loaded by a {@link PresentationLoader}.
+ */
+public class Presentation {
+
+    private final URL masterURL;
+    private final MasterPlaylist masterPlaylist;
+    private final List<ChildPlaylist> variantStreams;
+    private final List<ChildPlaylist> alternateRenditions;
+    private final List<ChildPlaylist> iFrameStreams;
+    private final Map<Tag, ChildPlaylist> childrenByTag = new IdentityHashMap<Tag, ChildPlaylist>();
+    private volatile PresentationIndex variantIndex;
+
+    /**
+     * Constructor.
+     * @param masterURL URL of the master playlist
+     * @param masterPlaylist master playlist
+     * @param variantStreams playlists of the variant streams
+     * @param alternateRenditions playlists of the alternate renditions
+     * @param iFrameStreams playlists of the I-frame streams
+     */
+    Presentation(final URL masterURL, final MasterPlaylist masterPlaylist,
+            final List<ChildPlaylist> variantStreams, final List<ChildPlaylist> alternateRenditions,
+            final List<ChildPlaylist> iFrameStreams) {
+        this.masterURL = masterURL;
+        this.masterPlaylist = masterPlaylist;
+        this.variantStreams = Collections.unmodifiableList(variantStreams);
+        this.alternateRenditions = Collections.unmodifiableList(alternateRenditions);
+        this.iFrameStreams = Collections.unmodifiableList(iFrameStreams);
+        for (ChildPlaylist child : getChildPlaylists()) {
+            childrenByTag.put(child.getTag(), child);
+        }
+    }
+
+    /**
+     * Returns the URL of the master playlist.
+     * @return URL
+     */
+    public URL getMasterURL() {
+        return masterURL;
+    }
+
+    /**
+     * Returns the master playlist.
+     * @return master playlist
+     */
+    public MasterPlaylist getMasterPlaylist() {
+        return masterPlaylist;
+    }
+
+    /**
+     * Returns the playlists of the variant streams, in master playlist order.
+     * @return list of child playlists
+     */
+    public List<ChildPlaylist> getVariantStreams() {
+        return variantStreams;
+    }
+
+    /**
+     * Returns the playlists of the alternate renditions that have a URI, in
+     * master playlist order.
+     * @return list of child playlists
+     */
+    public List<ChildPlaylist> getAlternateRenditions() {
+        return alternateRenditions;
+    }
+
+    /**
+     * Returns the playlists of the I-frame streams, in master playlist order.
+     * @return list of child playlists
+     */
+    public List<ChildPlaylist> getIFrameStreams() {
+        return iFrameStreams;
+    }
+
+    /**
+     * Returns every child playlist: variant streams, then alternate
+     * renditions, then I-frame streams.
+     * @return list of child playlists
+     */
+    public List<ChildPlaylist> getChildPlaylists() {
+        final List<ChildPlaylist> children = new ArrayList<ChildPlaylist>(
+                variantStreams.size() + alternateRenditions.size() + iFrameStreams.size());
+        children.addAll(variantStreams);
+        children.addAll(alternateRenditions);
+        children.addAll(iFrameStreams);
+        return children;
+    }
+
+    /**
+     * Returns the segments of the variant streams, aligned for switching
+     * between them.  The index is built on first use and kept.
+     * @return index whose track i is variant stream i
+     */
+    public PresentationIndex getVariantIndex() {
+        PresentationIndex index = variantIndex;
+        if (index == null) {
+            index = PresentationIndex.build(this);
+            variantIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the child playlist referenced by a tag of the master playlist.
+     * @param tag StreamInf, Media or IFrameStreamInf of the master playlist
+     * @return child playlist, or null if the tag does not reference one
+     */
+    public ChildPlaylist getChildPlaylist(final Tag tag) {
+        return childrenByTag.get(tag);
+    }
+}
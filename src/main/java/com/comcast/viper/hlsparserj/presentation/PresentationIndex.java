@@ -0,0 +1,356 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.presentation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.comcast.viper.hlsparserj.MediaPlaylist;
+import com.comcast.viper.hlsparserj.tags.media.ExtInf;
+import com.comcast.viper.hlsparserj.tags.media.MediaSequence;
+import com.comcast.viper.hlsparserj.tags.media.TargetDuration;
+
+/**
+ * Media segments of several media playlists of one presentation, aligned
+ * so that a player or stitcher can switch between them.
+ *
+ * Each playlist is a track, and its segments are found by media sequence
+ * number, by time and by date and time:
+ * <ul>
+ * <li>A segment is found by its media sequence number in O(1).</li>
+ * <li>Times are seconds on a timeline shared by all tracks.  Segments with
+ * the same media sequence number start at the same time, as they hold the
+ * same content in the variant streams of a presentation, and time 0 is the
+ * start of the reference segment: the first segment of the track whose
+ * playlist starts latest, which every track has unless its playlist was
+ * loaded earlier than the others.  A track that ends before the reference
+ * segment is aligned as if its missing segments lasted one target
+ * duration each.</li>
+ * <li>Dates and times are milliseconds since the epoch, from the
+ * EXT-X-PROGRAM-DATE-TIME tags.  A segment without its own tag is dated
+ * from the one before it, or the first segment with a tag for the segments
+ * that precede it.  Dates are expected to increase along the track.</li>
+ * </ul>
+ * Finding a segment by time or by date and time is a binary search.
+ *
+ * The segments of all tracks are held in shared primitive arrays, one
+ * entry per segment, so an index of a presentation with many variants
+ * takes little more memory than their segment counts.  Building it takes
+ * the cached segment tags of each playlist.
+ */
+public final class PresentationIndex {
+
+    /**
+     * Date and time of a segment of a track without EXT-X-PROGRAM-DATE-TIME
+     * tags.
+     */
+    public static final long NO_DATE_TIME = Long.MIN_VALUE;
+
+    private final long[] firstMsns;
+    private final int[] trackStarts;
+    private final double[] trackEnds;
+    private final boolean[] datedTracks;
+    private final double[] startTimes;
+    private final long[] dateTimes;
+
+    private PresentationIndex(final long[] firstMsns, final int[] trackStarts, final double[] trackEnds,
+            final boolean[] datedTracks, final double[] startTimes, final long[] dateTimes) {
+        this.firstMsns = firstMsns;
+        this.trackStarts = trackStarts;
+        this.trackEnds = trackEnds;
+        this.datedTracks = datedTracks;
+        this.startTimes = startTimes;
+        this.dateTimes = dateTimes;
+    }
+
+    /**
+     * Builds the index of the variant streams of a presentation.  Track i is
+     * variant stream i; a variant whose playlist failed to load has no
+     * segments.
+     * @param presentation presentation
+     * @return index
+     */
+    public static PresentationIndex build(final Presentation presentation) {
+        final List<ChildPlaylist> variantStreams = presentation.getVariantStreams();
+        final List<MediaPlaylist> playlists = new ArrayList<MediaPlaylist>(variantStreams.size());
+        for (ChildPlaylist variantStream : variantStreams) {
+            playlists.add(variantStream.getPlaylist());
+        }
+        return build(playlists);
+    }
+
+    /**
+     * Builds the index of the given media playlists.  Track i is playlist i.
+     * @param playlists media playlists of one presentation; a null playlist
+     * is a track without segments
+     * @return index
+     */
+    public static PresentationIndex build(final List<MediaPlaylist> playlists) {
+        final int trackCount = playlists.size();
+        final long[] firstMsns = new long[trackCount];
+        final int[] trackStarts = new int[trackCount + 1];
+        final List<List<ExtInf>> trackSegments = new ArrayList<List<ExtInf>>(trackCount);
+        long referenceMsn = Long.MIN_VALUE;
+        int segmentCount = 0;
+        for (int track = 0; track < trackCount; track++) {
+            final MediaPlaylist playlist = playlists.get(track);
+            final List<ExtInf> segments = playlist == null ? Collections.<ExtInf>emptyList() : playlist.getSegments();
+            trackSegments.add(segments);
+            trackStarts[track] = segmentCount;
+            segmentCount += segments.size();
+            if (playlist != null) {
+                final MediaSequence mediaSequence = playlist.getMediaSequence();
+                firstMsns[track] = mediaSequence == null ? 0 : mediaSequence.getSequenceNumber();
+            }
+            if (!segments.isEmpty()) {
+                referenceMsn = Math.max(referenceMsn, firstMsns[track]);
+            }
+        }
+        trackStarts[trackCount] = segmentCount;
+
+        final double[] trackEnds = new double[trackCount];
+        final boolean[] datedTracks = new boolean[trackCount];
+        final double[] startTimes = new double[segmentCount];
+        final long[] dateTimes = new long[segmentCount];
+        for (int track = 0; track < trackCount; track++) {
+            final List<ExtInf> segments = trackSegments.get(track);
+            if (segments.isEmpty()) {
+                continue;
+            }
+            final int base = trackStarts[track];
+            final int count = segments.size();
+
+            // Times from the start of the track, dated from the last
+            // program date time
+            double time = 0;
+            int firstDated = -1;
+            for (int i = 0; i < count; i++) {
+                final ExtInf segment = segments.get(i);
+                startTimes[base + i] = time;
+                final Long dateTime = segment.getDateTimeMillis();
+                if (dateTime != null) {
+                    dateTimes[base + i] = dateTime;
+                    if (firstDated < 0) {
+                        firstDated = i;
+                    }
+                } else if (firstDated >= 0) {
+                    dateTimes[base + i] = dateTimes[base + i - 1] + Math.round((time - startTimes[base + i - 1]) * 1000);
+                } else {
+                    dateTimes[base + i] = NO_DATE_TIME;
+                }
+                time += duration(segment);
+            }
+            for (int i = firstDated - 1; i >= 0; i--) {
+                dateTimes[base + i] = dateTimes[base + i + 1]
+                        - Math.round((startTimes[base + i + 1] - startTimes[base + i]) * 1000);
+            }
+            datedTracks[track] = firstDated >= 0;
+
+            // Shift the track so that the reference segment starts at 0
+            final long referenceSegment = referenceMsn - firstMsns[track];
+            final double referenceTime;
+            if (referenceSegment < count) {
+                referenceTime = startTimes[base + (int) referenceSegment];
+            } else {
+                final TargetDuration targetDuration = playlists.get(track).getTargetDuration();
+                referenceTime = time + (referenceSegment - count)
+                        * (targetDuration == null ? 0 : targetDuration.getDuration());
+            }
+            for (int i = 0; i < count; i++) {
+                startTimes[base + i] -= referenceTime;
+            }
+            trackEnds[track] = time - referenceTime;
+        }
+        return new PresentationIndex(firstMsns, trackStarts, trackEnds, datedTracks, startTimes, dateTimes);
+    }
+
+    /**
+     * Returns the number of tracks.
+     * @return track count
+     */
+    public int getTrackCount() {
+        return firstMsns.length;
+    }
+
+    /**
+     * Returns the number of segments of a track.
+     * @param track track index
+     * @return segment count
+     */
+    public int getSegmentCount(final int track) {
+        return trackStarts[track + 1] - trackStarts[track];
+    }
+
+    /**
+     * Returns the media sequence number of the first segment of a track.
+     * @param track track index
+     * @return media sequence number
+     */
+    public long getFirstMediaSequence(final int track) {
+        return firstMsns[track];
+    }
+
+    /**
+     * Returns the start time of a segment.
+     * @param track track index
+     * @param segment segment index within the track
+     * @return seconds on the shared timeline
+     */
+    public double getStartTime(final int track, final int segment) {
+        return startTimes[position(track, segment)];
+    }
+
+    /**
+     * Returns the end time of a segment.
+     * @param track track index
+     * @param segment segment index within the track
+     * @return seconds on the shared timeline
+     */
+    public double getEndTime(final int track, final int segment) {
+        final int position = position(track, segment);
+        return position + 1 < trackStarts[track + 1] ? startTimes[position + 1] : trackEnds[track];
+    }
+
+    /**
+     * Returns the date and time of a segment.
+     * @param track track index
+     * @param segment segment index within the track
+     * @return milliseconds since the epoch, or {@link #NO_DATE_TIME} if the
+     * track has no program date times
+     */
+    public long getDateTime(final int track, final int segment) {
+        return dateTimes[position(track, segment)];
+    }
+
+    /**
+     * Returns the segment of a track with the given media sequence number.
+     * @param track track index
+     * @param msn media sequence number
+     * @return segment index, or -1 if the track does not have the segment
+     */
+    public int findByMediaSequence(final int track, final long msn) {
+        final long segment = msn - firstMsns[track];
+        return segment >= 0 && segment < getSegmentCount(track) ? (int) segment : -1;
+    }
+
+    /**
+     * Returns the segment of a track that is playing at the given time.
+     * @param track track index
+     * @param time seconds on the shared timeline
+     * @return segment index, or -1 if the time is outside of the track
+     */
+    public int findByTime(final int track, final double time) {
+        final int from = trackStarts[track];
+        final int to = trackStarts[track + 1];
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (startTimes[mid] <= time) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (high < from) {
+            return -1;
+        }
+        final double end = high + 1 < to ? startTimes[high + 1] : trackEnds[track];
+        return time < end ? high - from : -1;
+    }
+
+    /**
+     * Returns the segment of a track that is playing at the given date and
+     * time.
+     * @param track track index
+     * @param dateTime milliseconds since the epoch
+     * @return segment index, or -1 if the date and time is outside of the
+     * track or the track has no program date times
+     */
+    public int findByDateTime(final int track, final long dateTime) {
+        if (!datedTracks[track]) {
+            return -1;
+        }
+        final int from = trackStarts[track];
+        final int to = trackStarts[track + 1];
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (dateTimes[mid] <= dateTime) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (high < from) {
+            return -1;
+        }
+        final double end = high + 1 < to ? startTimes[high + 1] : trackEnds[track];
+        return dateTime < dateTimes[high] + Math.round((end - startTimes[high]) * 1000) ? high - from : -1;
+    }
+
+    /**
+     * Returns the segment of a track to switch to from a segment of another
+     * track: the segment with the same media sequence number if the target
+     * track has it, in O(1), and otherwise the segment that is playing at the
+     * start of the given segment, by date and time if both tracks have
+     * program date times and by time if not.
+     * @param fromTrack index of the track that is playing
+     * @param segment index of the segment that is playing
+     * @param toTrack index of the track to switch to
+     * @return segment index in the target track, or -1 if it has no matching
+     * segment
+     */
+    public int findSwitchSegment(final int fromTrack, final int segment, final int toTrack) {
+        final int position = position(fromTrack, segment);
+        final int sameSequence = findByMediaSequence(toTrack, firstMsns[fromTrack] + segment);
+        if (sameSequence >= 0) {
+            return sameSequence;
+        }
+        if (datedTracks[fromTrack] && datedTracks[toTrack]) {
+            return findByDateTime(toTrack, dateTimes[position]);
+        }
+        return findByTime(toTrack, startTimes[position]);
+    }
+
+    /**
+     * Returns the position of a segment in the segment arrays.
+     * @param track track index
+     * @param segment segment index within the track
+     * @return position
+     */
+    private int position(final int track, final int segment) {
+        if (segment < 0 || segment >= getSegmentCount(track)) {
+            throw new IndexOutOfBoundsException("Segment " + segment + " of track " + track);
+        }
+        return trackStarts[track] + segment;
+    }
+
+    /**
+     * Returns the duration of a segment.
+     * @param segment segment tag
+     * @return duration in seconds, 0 if it is not a number
+     */
+    private static double duration(final ExtInf segment) {
+        try {
+            return segment.getDuration();
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.presentation;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.comcast.viper.hlsparserj.AbstractPlaylist;
+import com.comcast.viper.hlsparserj.AsyncPlaylistFetcher;
+import com.comcast.viper.hlsparserj.MasterPlaylist;
+import com.comcast.viper.hlsparserj.MediaPlaylist;
+import com.comcast.viper.hlsparserj.PlaylistVersion;
+import com.comcast.viper.hlsparserj.tags.Tag;
+import com.comcast.viper.hlsparserj.tags.master.IFrameStreamInf;
+import com.comcast.viper.hlsparserj.tags.master.Media;
+import com.comcast.viper.hlsparserj.tags.master.StreamInf;
+
+/**
+ * Loads a master playlist and every media playlist it references.
+ *
+ * After the master playlist is loaded, the URIs of its variant streams,
+ * alternate renditions and I-frame streams are resolved against the master
+ * playlist URL, and the media playlists are fetched and parsed
+ * concurrently, with at most a fixed number of requests in flight for one
+ * presentation.  A URL referenced by several tags is fetched once.
+ *
+ * The presentation fails only if the master playlist can not be loaded.
+ * A media playlist that fails to load is reported in its
+ * {@link ChildPlaylist} and does not affect the others.  All playlists are
+ * frozen.
+ */
+public class PresentationLoader {
+
+    private final AsyncPlaylistFetcher fetcher;
+    private final PlaylistVersion playlistVersion;
+    private final int maxParallelism;
+
+    /**
+     * Constructor.
+     * @param fetcher fetcher used to load the playlists
+     * @param playlistVersion version of the playlists
+     * @param maxParallelism maximum number of media playlist requests in flight per presentation
+     */
+    public PresentationLoader(final AsyncPlaylistFetcher fetcher, final PlaylistVersion playlistVersion,
+            final int maxParallelism) {
+        if (maxParallelism < 1) {
+            throw new IllegalArgumentException("maxParallelism must be at least 1");
+        }
+        this.fetcher = fetcher;
+        this.playlistVersion = playlistVersion;
+        this.maxParallelism = maxParallelism;
+    }
+
+    /**
+     * Loads a master playlist and its media playlists.
+     * @param masterURL URL of the master playlist
+     * @return future presentation, completed exceptionally if the master
+     * playlist can not be loaded or is a media playlist
+     */
+    public CompletableFuture<Presentation> load(final URL masterURL) {
+        return fetcher.fetchAndParse(playlistVersion, masterURL).thenCompose(playlist -> {
+            if (!playlist.isMasterPlaylist()) {
+                final CompletableFuture<Presentation> failed = new CompletableFuture<Presentation>();
+                failed.completeExceptionally(new IOException("Expected a master playlist but got a media playlist"));
+                return failed;
+            }
+            return loadChildren(masterURL, (MasterPlaylist) playlist.freeze());
+        });
+    }
+
+    /**
+     * Loads the media playlists of a master playlist.
+     * @param masterURL URL of the master playlist
+     * @param master master playlist
+     * @return future presentation
+     */
+    private CompletableFuture<Presentation> loadChildren(final URL masterURL, final MasterPlaylist master) {
+        final Map<String, ChildLoad> loadsByURL = new HashMap<String, ChildLoad>();
+        final List<ChildLoad> variantStreams = new ArrayList<ChildLoad>();
+        final List<ChildLoad> alternateRenditions = new ArrayList<ChildLoad>();
+        final List<ChildLoad> iFrameStreams = new ArrayList<ChildLoad>();
+
+        for (StreamInf variant : master.getVariantStreams()) {
+            variantStreams.add(childLoad(masterURL, variant, variant.getURI(), loadsByURL));
+        }
+        for (Media rendition : master.getAlternateRenditions()) {
+            if (rendition.getURI() != null) {
+                alternateRenditions.add(childLoad(masterURL, rendition, rendition.getURI(), loadsByURL));
+            }
+        }
+        for (IFrameStreamInf iFrameStream : master.getIFrameStreams()) {
+            iFrameStreams.add(childLoad(masterURL, iFrameStream, iFrameStream.getURI(), loadsByURL));
+        }
+
+        final Queue<ChildLoad> queue = new ConcurrentLinkedQueue<ChildLoad>();
+        final List<CompletableFuture<Void>> fetches = new ArrayList<CompletableFuture<Void>>();
+        for (ChildLoad load : loadsByURL.values()) {
+            queue.add(load);
+            fetches.add(load.done);
+        }
+        for (int i = 0; i < maxParallelism; i++) {
+            startNext(queue);
+        }
+
+        return CompletableFuture.allOf(fetches.toArray(new CompletableFuture<?>[fetches.size()])).thenApply(done ->
+                new Presentation(masterURL, master, toChildPlaylists(variantStreams),
+                        toChildPlaylists(alternateRenditions), toChildPlaylists(iFrameStreams)));
+    }
+
+    /**
+     * Returns the load of the playlist referenced by a tag, sharing the load
+     * of another tag with the same URL.
+     */
+    private static ChildLoad childLoad(final URL masterURL, final Tag tag, final String uri,
+            final Map<String, ChildLoad> loadsByURL) {
+        URL url = null;
+        Throwable failure = null;
+        try {
+            if (uri == null) {
+                throw new MalformedURLException("Tag has no URI");
+            }
+            url = new URL(masterURL, uri);
+        } catch (MalformedURLException ex) {
+            failure = ex;
+        }
+
+        if (url == null) {
+            final ChildLoad load = new ChildLoad(tag, (URL) null);
+            load.complete(null, failure, 0);
+            return load;
+        }
+
+        ChildLoad load = loadsByURL.get(url.toString());
+        if (load == null) {
+            load = new ChildLoad(tag, url);
+            loadsByURL.put(url.toString(), load);
+            return load;
+        }
+        return new ChildLoad(tag, load);
+    }
+
+    /**
+     * Starts the next queued load, if any.  Each completed load starts the
+     * next one, so the number of loads in flight never exceeds the number of
+     * times this method is called directly.  Loads that complete while they
+     * are started, such as fetches that fail at once, are followed in a loop
+     * rather than by recursion.
+     * @param queue queued loads
+     */
+    private void startNext(final Queue<ChildLoad> queue) {
+        ChildLoad load;
+        while ((load = queue.poll()) != null) {
+            final CompletableFuture<?> loaded = start(load);
+            if (!loaded.isDone()) {
+                loaded.whenComplete((done, ex) -> startNext(queue));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Fetches the playlist of a load and completes the load with it.
+     * @param load load
+     * @return future that completes once the load is complete
+     */
+    private CompletableFuture<?> start(final ChildLoad load) {
+        final long start = System.nanoTime();
+        CompletableFuture<AbstractPlaylist> fetch;
+        try {
+            fetch = fetcher.fetchAndParse(playlistVersion, load.url);
+        } catch (RuntimeException ex) {
+            fetch = new CompletableFuture<AbstractPlaylist>();
+            fetch.completeExceptionally(ex);
+        }
+        return fetch.whenComplete((playlist, ex) -> {
+            final long latency = System.nanoTime() - start;
+            if (ex != null) {
+                load.complete(null, ex, latency);
+            } else if (playlist.isMasterPlaylist()) {
+                load.complete(null, new IOException("Expected a media playlist but got a master playlist"), latency);
+            } else {
+                load.complete((MediaPlaylist) playlist.freeze(), null, latency);
+            }
+        });
+    }
+
+    private static List<ChildPlaylist> toChildPlaylists(final List<ChildLoad> loads) {
+        final List<ChildPlaylist> children = new ArrayList<ChildPlaylist>(loads.size());
+        for (ChildLoad load : loads) {
+            children.add(load.toChildPlaylist());
+        }
+        return children;
+    }
+
+    /**
+     * State of the load of one child playlist.  A load for a tag whose URL
+     * is already being loaded for another tag shares that load's result.
+     */
+    private static class ChildLoad {
+
+        private final Tag tag;
+        private final URL url;
+        private final ChildLoad shared;
+        private final CompletableFuture<Void> done = new CompletableFuture<Void>();
+        private volatile MediaPlaylist playlist;
+        private volatile Throwable failure;
+        private volatile long latencyNanos;
+
+        ChildLoad(final Tag tag, final URL url) {
+            this.tag = tag;
+            this.url = url;
+            this.shared = null;
+        }
+
+        ChildLoad(final Tag tag, final ChildLoad shared) {
+            this.tag = tag;
+            this.url = shared.url;
+            this.shared = shared;
+        }
+
+        void complete(final MediaPlaylist loadedPlaylist, final Throwable loadFailure, final long latency) {
+            playlist = loadedPlaylist;
+            failure = loadFailure;
+            latencyNanos = latency;
+            done.complete(null);
+        }
+
+        ChildPlaylist toChildPlaylist() {
+            final ChildLoad source = shared == null ? this : shared;
+            return new ChildPlaylist(tag, url, source.playlist, source.failure, source.latencyNanos);
+        }
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * Classes for loading a master playlist together with its media playlists.
+ */
+
+package com.comcast.viper.hlsparserj.presentation;
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.splice;
+
+/**
+ * Ad pod placed at a cue point of a content playlist.
+ *
+ * The cue point is the index of a content segment: the pod is played
+ * before that segment, or after the last segment if the index equals the
+ * segment count.  The pod is either inserted between content segments, or
+ * replaces a number of them, as for a live cue-out of the same length.
+ */
+public final class AdBreak {
+
+    private final int segmentIndex;
+    private final int replacedSegmentCount;
+    private final AdPod pod;
+
+    private AdBreak(final int segmentIndex, final int replacedSegmentCount, final AdPod pod) {
+        if (segmentIndex < 0) {
+            throw new IllegalArgumentException("segmentIndex must not be negative");
+        }
+        if (replacedSegmentCount < 0) {
+            throw new IllegalArgumentException("replacedSegmentCount must not be negative");
+        }
+        if (pod == null) {
+            throw new IllegalArgumentException("pod must not be null");
+        }
+        this.segmentIndex = segmentIndex;
+        this.replacedSegmentCount = replacedSegmentCount;
+        this.pod = pod;
+    }
+
+    /**
+     * Returns a break that inserts a pod before a content segment.
+     * @param segmentIndex index of the content segment
+     * @param pod ad pod
+     * @return ad break
+     */
+    public static AdBreak insert(final int segmentIndex, final AdPod pod) {
+        return new AdBreak(segmentIndex, 0, pod);
+    }
+
+    /**
+     * Returns a break that replaces content segments with a pod.
+     * @param segmentIndex index of the first replaced content segment
+     * @param segmentCount number of replaced content segments
+     * @param pod ad pod
+     * @return ad break
+     */
+    public static AdBreak replace(final int segmentIndex, final int segmentCount, final AdPod pod) {
+        return new AdBreak(segmentIndex, segmentCount, pod);
+    }
+
+    /**
+     * Returns the index of the content segment the pod is played before.
+     * @return segment index
+     */
+    public int getSegmentIndex() {
+        return segmentIndex;
+    }
+
+    /**
+     * Returns the number of content segments the pod replaces.
+     * @return replaced segment count
+     */
+    public int getReplacedSegmentCount() {
+        return replacedSegmentCount;
+    }
+
+    /**
+     * Returns the ad pod.
+     * @return pod
+     */
+    public AdPod getPod() {
+        return pod;
+    }
+
+    /**
+     * Returns the number of segments the break adds to the content.  Once
+     * the break has expired from the head of a live window, add this to the
+     * media sequence offset passed to {@link SpliceEngine}.
+     * @return segment count difference
+     */
+    public int getSegmentDelta() {
+        return pod.getSegmentCount() - replacedSegmentCount;
+    }
+
+    /**
+     * Returns the number of EXT-X-DISCONTINUITY tags the break adds to the
+     * content: the boundaries before and after the pod and the
+     * discontinuities inside it.  Once the break has expired from the head
+     * of a live window, add this to the discontinuity sequence offset passed
+     * to {@link SpliceEngine}.
+     * @return discontinuity count
+     */
+    public int getDiscontinuityDelta() {
+        return (pod.startsWithDiscontinuity() ? 0 : 1) + pod.getDiscontinuityCount() + 1;
+    }
+}
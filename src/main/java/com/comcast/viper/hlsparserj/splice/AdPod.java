@@ -0,0 +1,218 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.splice;
+
+import java.net.URI;
+import java.util.List;
+
+import com.comcast.viper.hlsparserj.MediaPlaylist;
+import com.comcast.viper.hlsparserj.tags.TagNames;
+import com.comcast.viper.hlsparserj.tags.UnparsedTag;
+
+/**
+ * Ad media playlist prepared for splicing.
+ *
+ * The segments of the ad playlist, with their keys, discontinuities and
+ * initialization section, are rendered to text once, when the pod is
+ * created.  Relative URIs, including the URI attributes of EXT-X-KEY and
+ * EXT-X-MAP tags, are resolved against the base URI of the ad playlist, so
+ * the text can be inserted in a playlist served from anywhere.  A pod is
+ * immutable and can be spliced into any number of playlists, by any
+ * number of threads, without looking at its tags again.
+ */
+public final class AdPod {
+
+    private final String body;
+    private final int segmentCount;
+    private final int discontinuityCount;
+    private final boolean startsWithDiscontinuity;
+    private final boolean startsWithKey;
+    private final String lastKey;
+    private final boolean hasMap;
+    private final int targetDuration;
+    private final int version;
+
+    /**
+     * Constructor for an ad playlist whose URIs are used as they are.
+     * @param playlist ad media playlist
+     */
+    public AdPod(final MediaPlaylist playlist) {
+        this(playlist, null);
+    }
+
+    /**
+     * Constructor.
+     * @param playlist ad media playlist
+     * @param baseURI URI of the ad playlist, against which its relative URIs
+     * are resolved, or null to use them as they are
+     */
+    public AdPod(final MediaPlaylist playlist, final URI baseURI) {
+        final List<UnparsedTag> tags = playlist.getTags();
+        final int headerEnd = playlist.getHeaderEnd();
+        final int segmentsEnd = playlist.getSegmentsEnd();
+        final StringBuilder builder = new StringBuilder(64 * (segmentsEnd - headerEnd + 1));
+
+        int podTargetDuration = 0;
+        int podVersion = 0;
+        boolean map = false;
+        for (int i = 0; i < headerEnd; i++) {
+            final UnparsedTag tag = tags.get(i);
+            final String tagName = tag.getTagName();
+            if (tagName.equals(TagNames.EXTXTARGETDURATION)) {
+                podTargetDuration = (int) SpliceEngine.intValue(tag);
+            } else if (tagName.equals(TagNames.EXTXVERSION)) {
+                podVersion = (int) SpliceEngine.intValue(tag);
+            } else if (tagName.equals(TagNames.EXTXMAP)) {
+                builder.append(resolveAttribute(tag.getRawTag(), baseURI)).append('\n');
+                map = true;
+            }
+        }
+
+        int segments = 0;
+        int discontinuities = 0;
+        boolean leadingDiscontinuity = false;
+        boolean leadingKey = false;
+        String key = null;
+        for (int i = headerEnd; i < segmentsEnd; i++) {
+            final UnparsedTag tag = tags.get(i);
+            final String tagName = tag.getTagName();
+            String rawTag = tag.getRawTag();
+            if (tagName.equals(TagNames.EXTXDISCONTINUITY)) {
+                discontinuities++;
+                leadingDiscontinuity |= segments == 0;
+            } else if (tagName.equals(TagNames.EXTXKEY)) {
+                rawTag = resolveAttribute(rawTag, baseURI);
+                key = rawTag;
+                leadingKey |= segments == 0;
+            } else if (tagName.equals(TagNames.EXTXMAP)) {
+                rawTag = resolveAttribute(rawTag, baseURI);
+                map = true;
+            }
+            builder.append(rawTag).append('\n');
+            final String uri = tag.getURILine();
+            if (uri != null) {
+                builder.append(resolve(uri, baseURI)).append('\n');
+                if (tagName.equals(TagNames.EXTINF) || tagName.equals(TagNames.EXTXBYTERANGE)) {
+                    segments++;
+                }
+            }
+        }
+
+        body = builder.toString();
+        segmentCount = segments;
+        discontinuityCount = discontinuities;
+        startsWithDiscontinuity = leadingDiscontinuity;
+        startsWithKey = leadingKey;
+        lastKey = key;
+        hasMap = map;
+        targetDuration = podTargetDuration;
+        version = podVersion;
+    }
+
+    /**
+     * Returns the number of segments in the pod.
+     * @return segment count
+     */
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * Returns the number of EXT-X-DISCONTINUITY tags in the pod.
+     * @return discontinuity count
+     */
+    public int getDiscontinuityCount() {
+        return discontinuityCount;
+    }
+
+    /**
+     * Returns the target duration of the ad playlist, or 0 if it has none.
+     * @return target duration (s)
+     */
+    public int getTargetDuration() {
+        return targetDuration;
+    }
+
+    /**
+     * Returns the rendered segments of the pod.
+     * @return playlist text, one tag or URI per line
+     */
+    String getBody() {
+        return body;
+    }
+
+    boolean startsWithDiscontinuity() {
+        return startsWithDiscontinuity;
+    }
+
+    boolean startsWithKey() {
+        return startsWithKey;
+    }
+
+    /**
+     * Returns the last key tag of the pod, or null if it has none.
+     * @return raw key tag
+     */
+    String getLastKey() {
+        return lastKey;
+    }
+
+    boolean hasMap() {
+        return hasMap;
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * Resolves a URI against a base URI.  A URI that can not be parsed is
+     * returned as it is.
+     */
+    private static String resolve(final String uri, final URI baseURI) {
+        if (baseURI == null) {
+            return uri;
+        }
+        try {
+            return baseURI.resolve(uri).toString();
+        } catch (IllegalArgumentException ex) {
+            return uri;
+        }
+    }
+
+    /**
+     * Resolves the quoted URI attribute of a raw tag.
+     */
+    private static String resolveAttribute(final String rawTag, final URI baseURI) {
+        if (baseURI == null) {
+            return rawTag;
+        }
+        int start = rawTag.indexOf("URI=\"");
+        while (start > 0 && rawTag.charAt(start - 1) != ':' && rawTag.charAt(start - 1) != ',') {
+            start = rawTag.indexOf("URI=\"", start + 1);
+        }
+        if (start < 0) {
+            return rawTag;
+        }
+        final int valueStart = start + 5;
+        final int valueEnd = rawTag.indexOf('"', valueStart);
+        if (valueEnd < 0) {
+            return rawTag;
+        }
+        return rawTag.substring(0, valueStart) + resolve(rawTag.substring(valueStart, valueEnd), baseURI)
+                + rawTag.substring(valueEnd);
+    }
+}
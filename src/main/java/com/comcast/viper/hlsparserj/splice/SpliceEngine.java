@@ -0,0 +1,404 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.splice;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.comcast.viper.hlsparserj.MediaPlaylist;
+import com.comcast.viper.hlsparserj.tags.TagNames;
+import com.comcast.viper.hlsparserj.tags.UnparsedTag;
+
+/**
+ * Splices ad pods into a content media playlist.
+ *
+ * The merged playlist is written straight to an Appendable, tag by tag,
+ * from the unparsed tags of the content playlist and the prepared text of
+ * the pods; no segment objects are built, and a shared, frozen content
+ * playlist can be spliced with different pods for every viewer.
+ *
+ * Around every pod the engine:
+ * <ul>
+ * <li>writes an EXT-X-DISCONTINUITY before the pod, unless the pod starts
+ * with one, and another before the content that follows it;</li>
+ * <li>switches the key context: an unencrypted pod in encrypted content
+ * is preceded by an EXT-X-KEY with METHOD=NONE, and the content key in
+ * effect is written again after a pod that changed it;</li>
+ * <li>writes the content EXT-X-MAP again after a pod with one of its
+ * own;</li>
+ * <li>writes the offset of the first content segment after a pod if its
+ * EXT-X-BYTERANGE has none, as the range it continued from is no longer
+ * the previous segment.</li>
+ * </ul>
+ * Replaced content segments are dropped, but their discontinuities are
+ * written after the pod, and their keys, maps and byte ranges are tracked,
+ * so the discontinuity sequence, key context and byte ranges of the content
+ * that follows are unchanged.
+ *
+ * The target duration and version of the merged playlist are the largest
+ * of the content and the pods.  The media sequence and discontinuity
+ * sequence numbers are those of the content plus the given offsets, which
+ * account for breaks that have expired from the head of a live window;
+ * see {@link AdBreak#getSegmentDelta()} and
+ * {@link AdBreak#getDiscontinuityDelta()}.
+ */
+public final class SpliceEngine {
+
+    private static final String DISCONTINUITY = "#" + TagNames.EXTXDISCONTINUITY;
+    private static final String NO_KEY = "#" + TagNames.EXTXKEY + ":METHOD=NONE";
+    private static final String BYTERANGE = "#" + TagNames.EXTXBYTERANGE + ":";
+
+    private static final Comparator<AdBreak> BY_SEGMENT_INDEX = new Comparator<AdBreak>() {
+        @Override
+        public int compare(final AdBreak break1, final AdBreak break2) {
+            return Integer.compare(break1.getSegmentIndex(), break2.getSegmentIndex());
+        }
+    };
+
+    private SpliceEngine() {
+    }
+
+    /**
+     * Returns the content playlist with the ad breaks spliced in.
+     * @param content content media playlist
+     * @param breaks ad breaks, in any order
+     * @return merged playlist text
+     */
+    public static String splice(final MediaPlaylist content, final List<AdBreak> breaks) {
+        return splice(content, breaks, 0, 0);
+    }
+
+    /**
+     * Returns the content playlist with the ad breaks spliced in.
+     * @param content content media playlist
+     * @param breaks ad breaks, in any order
+     * @param mediaSequenceOffset amount added to the media sequence number
+     * @param discontinuitySequenceOffset amount added to the discontinuity sequence number
+     * @return merged playlist text
+     */
+    public static String splice(final MediaPlaylist content, final List<AdBreak> breaks,
+            final long mediaSequenceOffset, final long discontinuitySequenceOffset) {
+        int capacity = 48 * content.getTags().size();
+        for (int i = 0; i < breaks.size(); i++) {
+            capacity += breaks.get(i).getPod().getBody().length() + 64;
+        }
+        final StringBuilder builder = new StringBuilder(capacity);
+        try {
+            splice(content, breaks, mediaSequenceOffset, discontinuitySequenceOffset, builder);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Writes the content playlist with the ad breaks spliced in.
+     * @param content content media playlist
+     * @param breaks ad breaks, in any order
+     * @param mediaSequenceOffset amount added to the media sequence number
+     * @param discontinuitySequenceOffset amount added to the discontinuity sequence number
+     * @param out destination of the merged playlist text
+     * @throws IOException if writing to the destination fails
+     * @throws IllegalArgumentException if a break is beyond the last segment or
+     * overlaps the segments replaced by another break
+     */
+    public static void splice(final MediaPlaylist content, final List<AdBreak> breaks,
+            final long mediaSequenceOffset, final long discontinuitySequenceOffset, final Appendable out)
+            throws IOException {
+        final List<AdBreak> sorted = sortedBreaks(breaks, content.getSegmentCount());
+        new Splice(content, sorted, out).write(mediaSequenceOffset, discontinuitySequenceOffset);
+    }
+
+    /**
+     * Returns the breaks ordered by segment index, after checking that they
+     * fit the content.
+     */
+    private static List<AdBreak> sortedBreaks(final List<AdBreak> breaks, final int segmentCount) {
+        List<AdBreak> sorted = breaks;
+        for (int i = 1; i < breaks.size(); i++) {
+            if (breaks.get(i).getSegmentIndex() < breaks.get(i - 1).getSegmentIndex()) {
+                sorted = new ArrayList<AdBreak>(breaks);
+                Collections.sort(sorted, BY_SEGMENT_INDEX);
+                break;
+            }
+        }
+        int end = 0;
+        for (int i = 0; i < sorted.size(); i++) {
+            final AdBreak adBreak = sorted.get(i);
+            if (adBreak.getSegmentIndex() < end
+                    || adBreak.getSegmentIndex() + adBreak.getReplacedSegmentCount() > segmentCount) {
+                throw new IllegalArgumentException("Ad break at segment " + adBreak.getSegmentIndex()
+                        + " replacing " + adBreak.getReplacedSegmentCount()
+                        + " segments overlaps another break or the end of the " + segmentCount + " segments");
+            }
+            end = adBreak.getSegmentIndex() + adBreak.getReplacedSegmentCount();
+        }
+        return sorted;
+    }
+
+    /**
+     * Returns the integer value of a tag such as EXT-X-TARGETDURATION, or 0
+     * if it can not be read.
+     * @param tag tag
+     * @return value
+     */
+    static long intValue(final UnparsedTag tag) {
+        final String rawTag = tag.getRawTag();
+        final int colon = rawTag.indexOf(':');
+        if (colon < 0) {
+            return 0;
+        }
+        int end = colon + 1;
+        while (end < rawTag.length() && Character.isDigit(rawTag.charAt(end))) {
+            end++;
+        }
+        try {
+            return Long.parseLong(rawTag.substring(colon + 1, end));
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the decimal-integer between two indexes of a string, or -1 if
+     * there is none.
+     */
+    private static long longValue(final String value, final int start, final int end) {
+        try {
+            return Long.parseLong(value.substring(start, end).trim());
+        } catch (NumberFormatException | IndexOutOfBoundsException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * State of one splice.
+     */
+    private static final class Splice {
+
+        private final MediaPlaylist content;
+        private final List<AdBreak> breaks;
+        private final Appendable out;
+        private int nextBreak;
+        private String contentKey;
+        private String contentMap;
+        private int skippedSegments;
+        private boolean pendingBoundary;
+        private int pendingDiscontinuities;
+        private boolean pendingKey;
+        private boolean pendingMap;
+        private boolean pendingRange;
+        private boolean segmentRange;
+        private long rangeEnd = -1;
+
+        Splice(final MediaPlaylist content, final List<AdBreak> breaks, final Appendable out) {
+            this.content = content;
+            this.breaks = breaks;
+            this.out = out;
+        }
+
+        void write(final long mediaSequenceOffset, final long discontinuitySequenceOffset) throws IOException {
+            final List<UnparsedTag> tags = content.getTags();
+            final int headerEnd = content.getHeaderEnd();
+            final int segmentsEnd = content.getSegmentsEnd();
+
+            writeHeader(tags, headerEnd, mediaSequenceOffset, discontinuitySequenceOffset);
+
+            int segment = 0;
+            boolean segmentStart = true;
+            for (int i = headerEnd; i < segmentsEnd; i++) {
+                if (segmentStart) {
+                    writeBreaks(segment);
+                    segmentStart = false;
+                }
+                final UnparsedTag tag = tags.get(i);
+                final String tagName = tag.getTagName();
+                final String uri = tag.getURILine();
+                final boolean skipped = skippedSegments > 0;
+                final boolean segmentEnd = uri != null
+                        && (tagName.equals(TagNames.EXTINF) || tagName.equals(TagNames.EXTXBYTERANGE));
+                String line = tag.getRawTag();
+                if (tagName.equals(TagNames.EXTXBYTERANGE)) {
+                    line = byteRange(line);
+                }
+                if (segmentEnd) {
+                    if (!segmentRange) {
+                        rangeEnd = -1;
+                    }
+                    segmentRange = false;
+                }
+                if (tagName.equals(TagNames.EXTXKEY)) {
+                    contentKey = tag.getRawTag();
+                    pendingKey = skipped;
+                } else if (tagName.equals(TagNames.EXTXMAP)) {
+                    contentMap = tag.getRawTag();
+                    pendingMap = skipped;
+                } else if (tagName.equals(TagNames.EXTXDISCONTINUITY) && skipped) {
+                    pendingDiscontinuities++;
+                }
+                if (skipped) {
+                    if (segmentEnd) {
+                        skippedSegments--;
+                        segment++;
+                        segmentStart = true;
+                    }
+                    continue;
+                }
+
+                flushPending();
+                writeLine(line);
+                if (uri != null) {
+                    writeLine(uri);
+                    if (segmentEnd) {
+                        pendingRange = false;
+                        segment++;
+                        segmentStart = true;
+                    }
+                }
+            }
+            if (segmentStart) {
+                writeBreaks(segment);
+            }
+
+            for (int i = segmentsEnd; i < tags.size(); i++) {
+                final UnparsedTag tag = tags.get(i);
+                writeLine(tag.getRawTag());
+                if (tag.getURILine() != null) {
+                    writeLine(tag.getURILine());
+                }
+            }
+        }
+
+        private void writeHeader(final List<UnparsedTag> tags, final int headerEnd, final long mediaSequenceOffset,
+                final long discontinuitySequenceOffset) throws IOException {
+            long targetDuration = 0;
+            long version = 0;
+            for (int i = 0; i < breaks.size(); i++) {
+                targetDuration = Math.max(targetDuration, breaks.get(i).getPod().getTargetDuration());
+                version = Math.max(version, breaks.get(i).getPod().getVersion());
+            }
+
+            boolean mediaSequence = false;
+            boolean discontinuitySequence = false;
+            for (int i = 0; i < headerEnd; i++) {
+                final UnparsedTag tag = tags.get(i);
+                final String tagName = tag.getTagName();
+                if (tagName.equals(TagNames.EXTXTARGETDURATION)) {
+                    writeValue(tagName, Math.max(intValue(tag), targetDuration));
+                } else if (tagName.equals(TagNames.EXTXVERSION)) {
+                    writeValue(tagName, Math.max(intValue(tag), version));
+                } else if (tagName.equals(TagNames.EXTXMEDIASEQUENCE)) {
+                    writeValue(tagName, intValue(tag) + mediaSequenceOffset);
+                    mediaSequence = true;
+                } else if (tagName.equals(TagNames.EXTXDISCONTINUITYSEQUENCE)) {
+                    writeValue(tagName, intValue(tag) + discontinuitySequenceOffset);
+                    discontinuitySequence = true;
+                } else {
+                    if (tagName.equals(TagNames.EXTXMAP)) {
+                        contentMap = tag.getRawTag();
+                    }
+                    writeLine(tag.getRawTag());
+                }
+            }
+            if (!mediaSequence && mediaSequenceOffset != 0) {
+                writeValue(TagNames.EXTXMEDIASEQUENCE, mediaSequenceOffset);
+            }
+            if (!discontinuitySequence && discontinuitySequenceOffset != 0) {
+                writeValue(TagNames.EXTXDISCONTINUITYSEQUENCE, discontinuitySequenceOffset);
+            }
+        }
+
+        /**
+         * Writes the pods of the breaks at a content segment.
+         */
+        private void writeBreaks(final int segment) throws IOException {
+            while (nextBreak < breaks.size() && breaks.get(nextBreak).getSegmentIndex() == segment
+                    && skippedSegments == 0) {
+                final AdBreak adBreak = breaks.get(nextBreak++);
+                final AdPod pod = adBreak.getPod();
+                flushPending();
+
+                if (!pod.startsWithDiscontinuity()) {
+                    writeLine(DISCONTINUITY);
+                }
+                final boolean encrypted = contentKey != null && !contentKey.contains("METHOD=NONE");
+                if (encrypted && !pod.startsWithKey()) {
+                    writeLine(NO_KEY);
+                }
+                out.append(pod.getBody());
+
+                skippedSegments = adBreak.getReplacedSegmentCount();
+                pendingBoundary = true;
+                pendingKey = encrypted || pod.getLastKey() != null;
+                pendingMap = pod.hasMap() && contentMap != null;
+                pendingRange = true;
+            }
+        }
+
+        /**
+         * Tracks the byte range of a content segment, and returns the
+         * EXT-X-BYTERANGE line to write for it: the raw tag, or one with the
+         * offset written out if the range has none and follows a pod.
+         */
+        private String byteRange(final String rawTag) {
+            final int colon = rawTag.indexOf(':');
+            final int at = rawTag.indexOf('@', colon + 1);
+            final long length = longValue(rawTag, colon + 1, at < 0 ? rawTag.length() : at);
+            final long offset = at < 0 ? Math.max(rangeEnd, 0) : longValue(rawTag, at + 1, rawTag.length());
+            segmentRange = true;
+            if (colon < 0 || length < 0 || offset < 0) {
+                rangeEnd = -1;
+                return rawTag;
+            }
+            rangeEnd = offset + length;
+            return at < 0 && pendingRange ? BYTERANGE + length + "@" + offset : rawTag;
+        }
+
+        /**
+         * Writes what the content that follows a pod needs: the boundary, the
+         * discontinuities of replaced segments, and the content key and map.
+         */
+        private void flushPending() throws IOException {
+            if (pendingBoundary) {
+                writeLine(DISCONTINUITY);
+                pendingBoundary = false;
+            }
+            for (; pendingDiscontinuities > 0; pendingDiscontinuities--) {
+                writeLine(DISCONTINUITY);
+            }
+            if (pendingKey) {
+                writeLine(contentKey != null ? contentKey : NO_KEY);
+                pendingKey = false;
+            }
+            if (pendingMap) {
+                writeLine(contentMap);
+                pendingMap = false;
+            }
+        }
+
+        private void writeValue(final String tagName, final long value) throws IOException {
+            out.append('#').append(tagName).append(':').append(Long.toString(value)).append('\n');
+        }
+
+        private void writeLine(final String line) throws IOException {
+            out.append(line).append('\n');
+        }
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * Classes for splicing ad pods into media playlists.
+ */
+
+package com.comcast.viper.hlsparserj.splice;
@@ -16,6 +16,7 @@
 package com.comcast.viper.hlsparserj.tags;
 
 import java.lang.reflect.Constructor;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -25,6 +26,7 @@ import java.util.concurrent.ConcurrentHashMap;
 public class TagFactory {
 
     private static ConcurrentHashMap<String, Class<?>> tagMap = new ConcurrentHashMap<String, Class<?>>();
+    private static Set<String> tagNames = ConcurrentHashMap.<String>newKeySet();
 
     /**
      * Registers a tag.
@@ -33,6 +35,26 @@ public class TagFactory {
      */
     public static void registerTag(final String tagName, final Class<?> tagClass) {
         tagMap.put(tagName, tagClass);
+        tagNames.add(tagName);
+    }
+
+    /**
+     * Registers the name of a tag that has no tag class, such as a tag
+     * without attributes whose presence is all that matters.
+     * @param tagName tag name
+     */
+    public static void registerTagName(final String tagName) {
+        tagNames.add(tagName);
+    }
+
+    /**
+     * Returns true if the tag name has been registered, with or without a
+     * tag class.
+     * @param tagName tag name
+     * @return boolean
+     */
+    public static boolean isKnownTag(final String tagName) {
+        return tagNames.contains(tagName);
     }
 
     /**
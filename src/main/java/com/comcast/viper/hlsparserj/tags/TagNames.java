@@ -20,11 +20,21 @@ import com.comcast.viper.hlsparserj.tags.master.Media;
 import com.comcast.viper.hlsparserj.tags.master.StreamInf;
 import com.comcast.viper.hlsparserj.tags.media.AllowCache;
 import com.comcast.viper.hlsparserj.tags.media.ByteRange;
+import com.comcast.viper.hlsparserj.tags.media.CueIn;
+import com.comcast.viper.hlsparserj.tags.media.CueOut;
+import com.comcast.viper.hlsparserj.tags.media.CueOutCont;
+import com.comcast.viper.hlsparserj.tags.media.DateRange;
 import com.comcast.viper.hlsparserj.tags.media.ExtInf;
 import com.comcast.viper.hlsparserj.tags.media.IFramesOnly;
 import com.comcast.viper.hlsparserj.tags.media.Key;
 import com.comcast.viper.hlsparserj.tags.media.MediaSequence;
+import com.comcast.viper.hlsparserj.tags.media.Part;
+import com.comcast.viper.hlsparserj.tags.media.PartInf;
 import com.comcast.viper.hlsparserj.tags.media.PlaylistType;
+import com.comcast.viper.hlsparserj.tags.media.PreloadHint;
+import com.comcast.viper.hlsparserj.tags.media.RenditionReport;
+import com.comcast.viper.hlsparserj.tags.media.ServerControl;
+import com.comcast.viper.hlsparserj.tags.media.Skip;
 import com.comcast.viper.hlsparserj.tags.media.TargetDuration;
 
 /**
@@ -32,6 +42,21 @@ import com.comcast.viper.hlsparserj.tags.media.TargetDuration;
  */
 public class TagNames {
 
+    /**
+     * Playlist header tag.  It MUST be the first line of every playlist.
+     *
+     * No header class is required.
+     *
+     * <pre>
+     * Format:
+     *   #EXTM3U
+     * </pre>
+     */
+    public static final String EXTM3U = "EXTM3U";
+    static {
+        TagFactory.registerTagName(EXTM3U);
+    }
+
     /**
      * Version tag.
      *
@@ -151,6 +176,40 @@ public class TagNames {
      * No discontinuity class is required.
      */
     public static final String EXTXDISCONTINUITY = "EXT-X-DISCONTINUITY";
+    static {
+        TagFactory.registerTagName(EXTXDISCONTINUITY);
+    }
+
+    /**
+     * Discontinuity sequence tag.  Value is the discontinuity sequence number
+     * of the first segment in the playlist.
+     *
+     * No discontinuity sequence class is required.
+     *
+     * <pre>
+     * Format:
+     *   #EXT-X-DISCONTINUITY-SEQUENCE:&lt;number&gt;
+     * </pre>
+     */
+    public static final String EXTXDISCONTINUITYSEQUENCE = "EXT-X-DISCONTINUITY-SEQUENCE";
+    static {
+        TagFactory.registerTagName(EXTXDISCONTINUITYSEQUENCE);
+    }
+
+    /**
+     * End list tag.
+     *
+     * No end list class is required.
+     *
+     * <pre>
+     * Format:
+     *   #EXT-X-ENDLIST
+     * </pre>
+     */
+    public static final String EXTXENDLIST = "EXT-X-ENDLIST";
+    static {
+        TagFactory.registerTagName(EXTXENDLIST);
+    }
 
     /**
      * Key tag.
@@ -182,6 +241,9 @@ public class TagNames {
      * </pre>
      */
     public static final String EXTXPROGRAMDATETIME = "EXT-X-PROGRAM-DATE-TIME";
+    static {
+        TagFactory.registerTagName(EXTXPROGRAMDATETIME);
+    }
 
     /**
      * Allow cache tag.
@@ -243,4 +305,185 @@ public class TagNames {
     static {
         TagFactory.registerTag(EXTXIFRAMESSTREAMINF, IFrameStreamInf.class);
     }
+
+    /**
+     * Media initialization section tag.  Applies to every segment that
+     * follows it, up to the next map tag.
+     *
+     * No map class is required.
+     *
+     * <pre>
+     * Format:
+     *   #EXT-X-MAP:&lt;attribute-list&gt;
+     *
+     * Example:
+     *   #EXT-X-MAP:URI="init.mp4"
+     * </pre>
+     */
+    public static final String EXTXMAP = "EXT-X-MAP";
+    static {
+        TagFactory.registerTagName(EXTXMAP);
+    }
+
+    /**
+     * Cue out tag.  Marks the start of an ad break at the media segment that
+     * follows it.
+     *
+     * <pre>
+     * Format:
+     *   #EXT-X-CUE-OUT:&lt;duration&gt;
+     *
+     * Example:
+     *   #EXT-X-CUE-OUT:30.000
+     * </pre>
+     */
+    public static final String EXTXCUEOUT = "EXT-X-CUE-OUT";
+    static {
+        TagFactory.registerTag(EXTXCUEOUT, CueOut.class);
+    }
+
+    /**
+     * Cue out continuation tag.  Precedes each following media segment of an
+     * ad break.
+     *
+     * <pre>
+     * Format:
+     *   #EXT-X-CUE-OUT-CONT:&lt;elapsed&gt;/&lt;duration&gt;
+     *
+     * Example:
+     *   #EXT-X-CUE-OUT-CONT:ElapsedTime=12.000,Duration=30.000
+     * </pre>
+     */
+    public static final String EXTXCUEOUTCONT = "EXT-X-CUE-OUT-CONT";
+    static {
+        TagFactory.registerTag(EXTXCUEOUTCONT, CueOutCont.class);
+    }
+
+    /**
+     * Cue in tag.  Marks the end of an ad break at the media segment that
+     * follows it.
+     *
+     * <pre>
+     * Format:
+     *   #EXT-X-CUE-IN
+     * </pre>
+     */
+    public static final String EXTXCUEIN = "EXT-X-CUE-IN";
+    static {
+        TagFactory.registerTag(EXTXCUEIN, CueIn.class);
+    }
+
+    /**
+     * Date range tag.
+     *
+     * <pre>
+     * Format:
+     *   #EXT-X-DATERANGE:&lt;attribute-list&gt;
+     *
+     * Example:
+     *   #EXT-X-DATERANGE:ID="splice-6FFFFFF0",START-DATE="2014-03-05T11:15:00Z",PLANNED-DURATION=59.993,SCTE35-OUT=0xFC002F0000000000FF0
+     * </pre>
+     */
+    public static final String EXTXDATERANGE = "EXT-X-DATERANGE";
+    static {
+        TagFactory.registerTag(EXTXDATERANGE, DateRange.class);
+    }
+
+    /**
+     * Partial segment tag.  The partial segments of a media segment precede
+     * its EXTINF tag.
+     *
+     * <pre>
+     * Format:
+     *   #EXT-X-PART:&lt;attribute-list&gt;
+     *
+     * Example:
+     *   #EXT-X-PART:DURATION=0.33334,URI="segment100.part0.mp4",INDEPENDENT=YES
+     * </pre>
+     */
+    public static final String EXTXPART = "EXT-X-PART";
+    static {
+        TagFactory.registerTag(EXTXPART, Part.class);
+    }
+
+    /**
+     * Partial segment information tag.
+     *
+     * <pre>
+     * Format:
+     *   #EXT-X-PART-INF:PART-TARGET=&lt;s&gt;
+     *
+     * Example:
+     *   #EXT-X-PART-INF:PART-TARGET=0.33334
+     * </pre>
+     */
+    public static final String EXTXPARTINF = "EXT-X-PART-INF";
+    static {
+        TagFactory.registerTag(EXTXPARTINF, PartInf.class);
+    }
+
+    /**
+     * Preload hint tag.
+     *
+     * <pre>
+     * Format:
+     *   #EXT-X-PRELOAD-HINT:&lt;attribute-list&gt;
+     *
+     * Example:
+     *   #EXT-X-PRELOAD-HINT:TYPE=PART,URI="segment101.part2.mp4"
+     * </pre>
+     */
+    public static final String EXTXPRELOADHINT = "EXT-X-PRELOAD-HINT";
+    static {
+        TagFactory.registerTag(EXTXPRELOADHINT, PreloadHint.class);
+    }
+
+    /**
+     * Server control tag.
+     *
+     * <pre>
+     * Format:
+     *   #EXT-X-SERVER-CONTROL:&lt;attribute-list&gt;
+     *
+     * Example:
+     *   #EXT-X-SERVER-CONTROL:CAN-BLOCK-RELOAD=YES,PART-HOLD-BACK=1.0,CAN-SKIP-UNTIL=12.0
+     * </pre>
+     */
+    public static final String EXTXSERVERCONTROL = "EXT-X-SERVER-CONTROL";
+    static {
+        TagFactory.registerTag(EXTXSERVERCONTROL, ServerControl.class);
+    }
+
+    /**
+     * Rendition report tag.
+     *
+     * <pre>
+     * Format:
+     *   #EXT-X-RENDITION-REPORT:&lt;attribute-list&gt;
+     *
+     * Example:
+     *   #EXT-X-RENDITION-REPORT:URI="../1M/waitForMSN.php",LAST-MSN=273,LAST-PART=2
+     * </pre>
+     */
+    public static final String EXTXRENDITIONREPORT = "EXT-X-RENDITION-REPORT";
+    static {
+        TagFactory.registerTag(EXTXRENDITIONREPORT, RenditionReport.class);
+    }
+
+    /**
+     * Skip tag.  Stands in for the older segments of a playlist delta
+     * update.
+     *
+     * <pre>
+     * Format:
+     *   #EXT-X-SKIP:&lt;attribute-list&gt;
+     *
+     * Example:
+     *   #EXT-X-SKIP:SKIPPED-SEGMENTS=3
+     * </pre>
+     */
+    public static final String EXTXSKIP = "EXT-X-SKIP";
+    static {
+        TagFactory.registerTag(EXTXSKIP, Skip.class);
+    }
 }
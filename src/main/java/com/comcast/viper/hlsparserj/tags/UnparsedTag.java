@@ -15,26 +15,58 @@
  */
 package com.comcast.viper.hlsparserj.tags;
 
-import java.io.IOException;
-import java.io.StreamTokenizer;
-import java.io.StringReader;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * UnparsedTag represents a generic tag in the playlist.
+ *
+ * Only the tag name is extracted when the tag is created.  The attribute
+ * list is parsed the first time the attributes, or a URI given as an
+ * attribute, are requested, so tags that are never inspected cost no more
+ * than their line.
+ *
+ * A tag can be frozen, after which its setters throw
+ * UnsupportedOperationException and its attribute map is unmodifiable.
+ * Frozen tags can be shared between playlists and threads.
  */
 public class UnparsedTag {
 
-    private static final Pattern TAGPATTERN = Pattern.compile("^#(EXT.*?):(.*)");
+    private static final String TAGPREFIX = "#EXT";
     private static final String URI_ATTR = "URI";
 
+    /**
+     * Names of the common tags, most frequent first.  A tag with one of these
+     * names shares the constant instead of holding a copy of the name.
+     */
+    private static final String[] COMMON_TAG_NAMES = {
+        TagNames.EXTINF,
+        TagNames.EXTXBYTERANGE,
+        TagNames.EXTXPROGRAMDATETIME,
+        TagNames.EXTXKEY,
+        TagNames.EXTXDISCONTINUITY,
+        TagNames.EXTXSTREAMINF,
+        TagNames.EXTXMEDIA,
+        TagNames.EXTXIFRAMESSTREAMINF,
+        TagNames.EXTM3U,
+        TagNames.EXTXVERSION,
+        TagNames.EXTXTARGETDURATION,
+        TagNames.EXTXMEDIASEQUENCE,
+        TagNames.EXTXDISCONTINUITYSEQUENCE,
+        TagNames.EXTXPLAYLISTTYPE,
+        TagNames.EXTXALLOWCACHE,
+        TagNames.EXTXIFRAMESONLY,
+        TagNames.EXTXENDLIST,
+    };
+
     private String tagName;
-    private Map<String, String> attributes;
+    private volatile Map<String, String> attributes;
     private String uri;
+    private boolean uriSet;
     private String rawTag;
+    private int attributeStart;
+    private volatile boolean frozen;
 
     /**
      * Constructor.
@@ -43,14 +75,29 @@ public class UnparsedTag {
         attributes = new HashMap<String, String>();
     }
 
+    /**
+     * Copy constructor.  The copy is not frozen.
+     * @param other tag to copy
+     */
+    public UnparsedTag(final UnparsedTag other) {
+        tagName = other.tagName;
+        final Map<String, String> otherAttributes = other.attributes;
+        if (otherAttributes != null) {
+            attributes = new HashMap<String, String>(otherAttributes);
+        }
+        uri = other.uri;
+        uriSet = other.uriSet;
+        rawTag = other.rawTag;
+        attributeStart = other.attributeStart;
+    }
+
     /**
      * Constructor.
      * @param line playlist line item
      */
     public UnparsedTag(final String line) {
         rawTag = line;
-        attributes = new HashMap<String, String>();
-        parseTagLine(line);
+        parseTagName(line);
     }
 
     /**
@@ -66,6 +113,7 @@ public class UnparsedTag {
      * @param tagName tag name
      */
     public void setTagName(final String tagName) {
+        checkNotFrozen();
         this.tagName = tagName;
     }
 
@@ -74,7 +122,17 @@ public class UnparsedTag {
      * @return list of attributes
      */
     public Map<String, String> getAttributes() {
-        return attributes;
+        final Map<String, String> result = attributes;
+        if (result != null) {
+            return result;
+        }
+        synchronized (this) {
+            if (attributes == null) {
+                final Map<String, String> parsed = parseAttributes();
+                attributes = frozen ? Collections.unmodifiableMap(parsed) : parsed;
+            }
+            return attributes;
+        }
     }
 
     /**
@@ -82,15 +140,34 @@ public class UnparsedTag {
      * @param attributes list of attributes
      */
     public void setAttributes(final Map<String, String> attributes) {
+        checkNotFrozen();
         this.attributes = attributes;
     }
 
     /**
-     * Returns the URI for this tag.
+     * Returns the URI for this tag.  This is the URI line that follows the
+     * tag, or the URI attribute of the tag.
      * @return URI
      */
     public String getURI() {
-        return uri;
+        if (uriSet) {
+            return uri;
+        }
+        if (attributes == null && (attributeStart < 0 || rawTag.indexOf(URI_ATTR, attributeStart) < 0)) {
+            // No URI attribute, so the attributes need not be parsed
+            return null;
+        }
+        return getAttributes().get(URI_ATTR);
+    }
+
+    /**
+     * Returns the URI line that follows the tag, or null if there is none.
+     * Unlike {@link #getURI()}, the URI attribute of the tag is not
+     * returned.
+     * @return URI line
+     */
+    public String getURILine() {
+        return uriSet ? uri : null;
     }
 
     /**
@@ -98,7 +175,9 @@ public class UnparsedTag {
      * @param uriString URI
      */
     public void setURI(final String uriString) {
+        checkNotFrozen();
         this.uri = uriString;
+        this.uriSet = true;
     }
 
     /**
@@ -110,65 +189,139 @@ public class UnparsedTag {
     }
 
     /**
-     * Parses the tag line.
+     * Freezes the tag.  The setters throw UnsupportedOperationException and
+     * the attribute map becomes unmodifiable.
+     */
+    public synchronized void freeze() {
+        if (!frozen) {
+            if (attributes != null) {
+                attributes = Collections.unmodifiableMap(attributes);
+            }
+            frozen = true;
+        }
+    }
+
+    /**
+     * Returns true if the tag has been frozen.
+     * @return boolean
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new UnsupportedOperationException("Tag is frozen");
+        }
+    }
+
+    /**
+     * Extracts the tag name from the tag line.  The name runs from the "#"
+     * to the first colon; a line without a colon is a tag with no
+     * attributes.
      * @param line playlist line item
      */
-    private void parseTagLine(final String line) {
-        final Matcher lineMatcher = TAGPATTERN.matcher(line);
-
-        // Create a matcher that uses the TAGPATTERN
-        if (lineMatcher.find()) {
-            tagName = lineMatcher.group(1);
-
-            final String attributeList = lineMatcher.group(2);
-
-            final StreamTokenizer tokenizer = new StreamTokenizer(new StringReader(attributeList));
-            tokenizer.resetSyntax();
-            tokenizer.wordChars(' ', 255);
-            tokenizer.quoteChar('"');
-            tokenizer.ordinaryChar(',');
-            tokenizer.ordinaryChar('=');
-
-            String attributeName = null;
-            String attributeValue = null;
-            int noNameCount = 0;
-            do {
-                int ttype;
-                try {
-                    ttype = tokenizer.nextToken();
-                } catch (IOException e) {
-                    // Should never get here because reading from String
-                    throw new IllegalStateException(e);
+    private void parseTagName(final String line) {
+        final int colon = line.startsWith(TAGPREFIX) ? line.indexOf(':') : -1;
+        if (colon >= 0) {
+            tagName = tagName(line, colon);
+            attributeStart = colon + 1;
+        } else {
+            // If the line starts with #EXT but does not contain a colon it is a
+            // tag with no attributes
+            tagName = tagName(line, line.length());
+            attributeStart = -1;
+        }
+    }
+
+    /**
+     * Returns the tag name between the "#" and the given end of the line.
+     * @param line playlist line item
+     * @param end end of the name (exclusive)
+     * @return tag name
+     */
+    private static String tagName(final String line, final int end) {
+        final int length = end - 1;
+        for (String name : COMMON_TAG_NAMES) {
+            if (name.length() == length && line.regionMatches(1, name, 0, length)) {
+                return name;
+            }
+        }
+        return line.substring(1, end);
+    }
+
+    /**
+     * Parses the attribute list that follows the colon of the tag line.
+     * Attributes are separated by commas, and names from values by an equals
+     * sign.  Values may be quoted to contain commas and equals signs.  A
+     * value without a name is stored as NONAME0, NONAME1 and so on.
+     * Characters below the space character separate tokens and are
+     * otherwise ignored.
+     * @return attributes
+     */
+    private Map<String, String> parseAttributes() {
+        final Map<String, String> parsed = new HashMap<String, String>();
+        if (rawTag == null || attributeStart < 0) {
+            return parsed;
+        }
+
+        final String line = rawTag;
+        final int length = line.length();
+        String attributeName = null;
+        String attributeValue = null;
+        int noNameCount = 0;
+        int i = attributeStart;
+        while (true) {
+            final char c = i < length ? line.charAt(i) : 0;
+            if (i >= length || c == ',') {
+                if (attributeValue == null) {
+                    // Not actually an attribute - just a single value
+                    parsed.put("NONAME" + noNameCount, attributeName);
+                    noNameCount++;
+                } else {
+                    parsed.put(attributeName, attributeValue);
+                    attributeValue = null;
+                }
+                attributeName = null;
+                if (i >= length) {
+                    break;
                 }
+                i++;
+                continue;
+            }
 
-                if (ttype == ',' || ttype == StreamTokenizer.TT_EOF) {
-                    if (attributeValue == null) {
-                        // Not actually an attribute - just a single value
-                        attributes.put("NONAME" + noNameCount, attributeName);
-                        noNameCount++;
-                        attributeName = null;
-                    } else {
-                        attributes.put(attributeName, attributeValue);
-                        attributeName = null;
-                        attributeValue = null;
-                    }
-                } else if (ttype == StreamTokenizer.TT_WORD || ttype == '"') {
-                    if (attributeName == null) {
-                        attributeName = tokenizer.sval;
-                    } else {
-                        attributeValue = tokenizer.sval;
-                    }
+            final String token;
+            if (c == '"') {
+                int end = i + 1;
+                while (end < length && line.charAt(end) != '"' && line.charAt(end) != '\n'
+                        && line.charAt(end) != '\r') {
+                    end++;
                 }
-            } while (tokenizer.ttype != StreamTokenizer.TT_EOF);
+                token = line.substring(i + 1, end);
+                i = end < length && line.charAt(end) == '"' ? end + 1 : end;
+            } else if (c >= ' ' && c != '=') {
+                int end = i + 1;
+                while (end < length && isWordChar(line.charAt(end))) {
+                    end++;
+                }
+                token = line.substring(i, end);
+                i = end;
+            } else {
+                i++;
+                continue;
+            }
 
-            // Set the URI if a URI attribute is present
-            if (attributes.containsKey(URI_ATTR)) {
-                uri = attributes.get(URI_ATTR);
+            if (attributeName == null) {
+                attributeName = token;
+            } else {
+                attributeValue = token;
             }
-        } else {
-            // If the line startex with #EXT but does not contain a colon it is a
-            // tag with no attributes
-            tagName = line.substring(1);
         }
+
+        return parsed;
+    }
+
+    private static boolean isWordChar(final char c) {
+        return c >= ' ' && c != '"' && c != ',' && c != '=';
     }
 }
@@ -0,0 +1,34 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.tags.media;
+
+import com.comcast.viper.hlsparserj.tags.Tag;
+
+/**
+ * <pre>
+ * Represents the EXT-X-CUE-IN tag.
+ *
+ * The EXT-X-CUE-IN tag marks the end of an ad break (a splice back into
+ * the content) at the media segment that follows it.  It is not part of
+ * the HLS specification, but is widely emitted by packagers together with
+ * the EXT-X-CUE-OUT tag.  Its format is:
+ *
+ *   #EXT-X-CUE-IN
+ * </pre>
+ */
+public class CueIn extends Tag {
+
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.tags.media;
+
+import com.comcast.viper.hlsparserj.tags.Tag;
+
+/**
+ * <pre>
+ * Represents the EXT-X-CUE-OUT tag.
+ *
+ * The EXT-X-CUE-OUT tag marks the start of an ad break (a splice out of
+ * the content) at the media segment that follows it.  It is not part of
+ * the HLS specification, but is widely emitted by packagers from SCTE-35
+ * splice_insert and time_signal messages.  Its format is one of:
+ *
+ *   #EXT-X-CUE-OUT
+ *   #EXT-X-CUE-OUT:&lt;duration&gt;
+ *   #EXT-X-CUE-OUT:DURATION=&lt;duration&gt;
+ *
+ * where duration is the planned duration of the break in seconds.
+ * </pre>
+ */
+public class CueOut extends Tag {
+
+    private static final String DURATION = "DURATION";
+
+    /**
+     * Returns the planned duration of the break, in seconds.
+     * @return duration, or null if the tag does not have one
+     */
+    public Float getDuration() {
+        String duration = tag.getAttributes().get(DURATION);
+        if (duration == null) {
+            duration = tag.getAttributes().get(UNNAMEDATTR0);
+        }
+        return duration == null ? null : Float.valueOf(duration.trim());
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.tags.media;
+
+import com.comcast.viper.hlsparserj.tags.Tag;
+
+/**
+ * <pre>
+ * Represents the EXT-X-CUE-OUT-CONT tag.
+ *
+ * The EXT-X-CUE-OUT-CONT tag precedes each media segment of an ad break
+ * after the first one, so that a client joining a live playlist in the
+ * middle of a break can tell that it is in one.  Its format is one of:
+ *
+ *   #EXT-X-CUE-OUT-CONT:&lt;elapsed&gt;/&lt;duration&gt;
+ *   #EXT-X-CUE-OUT-CONT:ElapsedTime=&lt;elapsed&gt;,Duration=&lt;duration&gt;,SCTE35=&lt;cue&gt;
+ *
+ * where elapsed is the time in seconds since the start of the break,
+ * duration is the planned duration of the break in seconds, and cue is
+ * the base64 encoded SCTE-35 message that started the break.
+ * </pre>
+ */
+public class CueOutCont extends Tag {
+
+    private static final String ELAPSEDTIME = "ElapsedTime";
+    private static final String DURATION = "Duration";
+    private static final String SCTE35 = "SCTE35";
+
+    /**
+     * Returns the time elapsed since the start of the break, in seconds.
+     * @return elapsed time, or null if the tag does not have one
+     */
+    public Float getElapsedTime() {
+        final String elapsed = tag.getAttributes().get(ELAPSEDTIME);
+        if (elapsed != null) {
+            return Float.valueOf(elapsed.trim());
+        }
+        return fraction(0);
+    }
+
+    /**
+     * Returns the planned duration of the break, in seconds.
+     * @return duration, or null if the tag does not have one
+     */
+    public Float getDuration() {
+        final String duration = tag.getAttributes().get(DURATION);
+        if (duration != null) {
+            return Float.valueOf(duration.trim());
+        }
+        return fraction(1);
+    }
+
+    /**
+     * Returns the base64 encoded SCTE-35 message that started the break.
+     * @return SCTE-35 message, or null if the tag does not have one
+     */
+    public String getSCTE35() {
+        return tag.getAttributes().get(SCTE35);
+    }
+
+    /**
+     * Returns one side of the &lt;elapsed&gt;/&lt;duration&gt; form of the tag.
+     * @param part 0 for the elapsed time, 1 for the duration
+     * @return value, or null if the tag does not use that form
+     */
+    private Float fraction(final int part) {
+        final String value = tag.getAttributes().get(UNNAMEDATTR0);
+        if (value == null) {
+            return null;
+        }
+        final int slash = value.indexOf('/');
+        if (slash < 0) {
+            return part == 0 ? Float.valueOf(value.trim()) : null;
+        }
+        return Float.valueOf((part == 0 ? value.substring(0, slash) : value.substring(slash + 1)).trim());
+    }
+}
@@ -0,0 +1,333 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.tags.media;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.comcast.viper.hlsparserj.tags.Tag;
+import com.comcast.viper.hlsparserj.tags.UnparsedTag;
+
+/**
+ * <pre>
+ * Represents the EXT-X-DATERANGE tag.
+ *
+ * The EXT-X-DATERANGE tag associates a Date Range (i.e. a range of time
+ * defined by a starting and ending date) with a set of attribute /
+ * value pairs.  Its format is:
+ *
+ *   #EXT-X-DATERANGE:&lt;attribute-list&gt;
+ *
+ * The following attributes are defined:
+ *
+ * ID
+ *
+ * A quoted-string that uniquely identifies a Date Range in the
+ * Playlist.  This attribute is REQUIRED.
+ *
+ * CLASS
+ *
+ * A client-defined quoted-string that specifies some set of attributes
+ * and their associated value semantics.  This attribute is OPTIONAL.
+ *
+ * START-DATE
+ *
+ * A quoted-string containing the ISO-8601 date at which the Date Range
+ * begins.  This attribute is REQUIRED.
+ *
+ * END-DATE
+ *
+ * A quoted-string containing the ISO-8601 date at which the Date Range
+ * ends.  This attribute is OPTIONAL.
+ *
+ * DURATION
+ *
+ * The duration of the Date Range expressed as a decimal-floating-point
+ * number of seconds.  This attribute is OPTIONAL.
+ *
+ * PLANNED-DURATION
+ *
+ * The expected duration of the Date Range expressed as a decimal-
+ * floating-point number of seconds.  This attribute SHOULD be used to
+ * indicate the expected duration of a Date Range whose actual duration
+ * is not yet known.  It is OPTIONAL.
+ *
+ * SCTE35-CMD, SCTE35-OUT, SCTE35-IN
+ *
+ * Used to carry SCTE-35 data as hexadecimal-sequences.  These attributes
+ * are OPTIONAL.
+ *
+ * END-ON-NEXT
+ *
+ * An enumerated-string whose value MUST be YES.  This attribute
+ * indicates that the end of the range containing it is equal to the
+ * START-DATE of its Following Range.  This attribute is OPTIONAL.
+ *
+ * Attributes whose names begin with "X-" are reserved for client-defined
+ * attributes.
+ *
+ * The EXT-X-DATERANGE tag appeared in version 7 of the protocol.
+ * </pre>
+ *
+ * The dates, durations and client attributes are parsed on first use and
+ * kept, so a date range that is queried repeatedly is parsed once.
+ */
+public class DateRange extends Tag {
+
+    private static final String ID = "ID";
+    private static final String CLASS = "CLASS";
+    private static final String STARTDATE = "START-DATE";
+    private static final String ENDDATE = "END-DATE";
+    private static final String DURATION = "DURATION";
+    private static final String PLANNEDDURATION = "PLANNED-DURATION";
+    private static final String SCTE35CMD = "SCTE35-CMD";
+    private static final String SCTE35OUT = "SCTE35-OUT";
+    private static final String SCTE35IN = "SCTE35-IN";
+    private static final String ENDONNEXT = "END-ON-NEXT";
+    private static final String CLIENTATTRIBUTEPREFIX = "X-";
+
+    /**
+     * ISO-8601 date and time with an optional fraction of a second and an
+     * optional offset, with or without a colon.  A date without an offset is
+     * taken as UTC.
+     */
+    private static final DateTimeFormatter DATE_FORMAT = new DateTimeFormatterBuilder()
+            .append(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+            .optionalStart().appendOffset("+HH:MM", "Z").optionalEnd()
+            .optionalStart().appendOffset("+HHMM", "Z").optionalEnd()
+            .toFormatter();
+
+    private volatile Parsed parsed;
+
+    @Override
+    public void setTag(final UnparsedTag tag) {
+        super.setTag(tag);
+        parsed = null;
+    }
+
+    /**
+     * Returns the ID attribute value, which uniquely identifies the Date
+     * Range in the playlist.
+     * @return ID
+     */
+    public String getId() {
+        return tag.getAttributes().get(ID);
+    }
+
+    /**
+     * Returns the START-DATE attribute value as a time.
+     * @return milliseconds since the epoch, or null if the tag does not have
+     * a valid start date
+     */
+    public Long getStartTime() {
+        return parsed().startTime;
+    }
+
+    /**
+     * Returns the END-DATE attribute value as a time.
+     * @return milliseconds since the epoch, or null if the tag does not have
+     * a valid end date
+     */
+    public Long getEndTime() {
+        return parsed().endTime;
+    }
+
+    /**
+     * Returns the client-defined attributes, those whose names begin with
+     * "X-".  Quoted-string values are returned without their quotes.
+     * @return unmodifiable map of attribute names to values
+     */
+    public Map<String, String> getClientAttributes() {
+        return parsed().clientAttributes;
+    }
+
+    /**
+     * Returns a client-defined attribute value.
+     * @param name attribute name, beginning with "X-"
+     * @return value, or null
+     */
+    public String getClientAttribute(final String name) {
+        return parsed().clientAttributes.get(name);
+    }
+
+    /**
+     * Returns the CLASS attribute value, a client-defined string that
+     * specifies the semantics of the other attributes.
+     * @return class, or null
+     */
+    public String getDateRangeClass() {
+        return tag.getAttributes().get(CLASS);
+    }
+
+    /**
+     * Returns the START-DATE attribute value, the ISO-8601 date at which the
+     * Date Range begins.
+     * @return start date
+     */
+    public String getStartDate() {
+        return tag.getAttributes().get(STARTDATE);
+    }
+
+    /**
+     * Returns the END-DATE attribute value, the ISO-8601 date at which the
+     * Date Range ends.
+     * @return end date, or null
+     */
+    public String getEndDate() {
+        return tag.getAttributes().get(ENDDATE);
+    }
+
+    /**
+     * Returns the DURATION attribute value, in seconds.
+     * @return duration, or null if the tag does not have a valid duration
+     */
+    public Float getDuration() {
+        return parsed().duration;
+    }
+
+    /**
+     * Returns the PLANNED-DURATION attribute value, the expected duration in
+     * seconds of a Date Range whose actual duration is not yet known.
+     * @return planned duration, or null if the tag does not have a valid one
+     */
+    public Float getPlannedDuration() {
+        return parsed().plannedDuration;
+    }
+
+    /**
+     * Returns the SCTE35-CMD attribute value, a hexadecimal-sequence holding
+     * a SCTE-35 splice_info_section.
+     * @return SCTE-35 command, or null
+     */
+    public String getSCTE35Cmd() {
+        return tag.getAttributes().get(SCTE35CMD);
+    }
+
+    /**
+     * Returns the SCTE35-OUT attribute value, a hexadecimal-sequence holding
+     * the SCTE-35 message that splices out of the content.
+     * @return SCTE-35 out message, or null
+     */
+    public String getSCTE35Out() {
+        return tag.getAttributes().get(SCTE35OUT);
+    }
+
+    /**
+     * Returns the SCTE35-IN attribute value, a hexadecimal-sequence holding
+     * the SCTE-35 message that splices back into the content.
+     * @return SCTE-35 in message, or null
+     */
+    public String getSCTE35In() {
+        return tag.getAttributes().get(SCTE35IN);
+    }
+
+    /**
+     * Returns true if the END-ON-NEXT attribute is YES, meaning the range
+     * ends at the START-DATE of the following range of the same class.
+     * @return boolean
+     */
+    public boolean getEndOnNext() {
+        return yesNoBoolean(tag.getAttributes().get(ENDONNEXT));
+    }
+
+    /**
+     * Returns the parsed attribute values, parsing them on first use.
+     * @return parsed values
+     */
+    private Parsed parsed() {
+        Parsed values = parsed;
+        if (values == null) {
+            values = new Parsed(tag.getAttributes());
+            parsed = values;
+        }
+        return values;
+    }
+
+    /**
+     * Parses an ISO-8601 date.
+     * @param date date string
+     * @return milliseconds since the epoch, or null if the date is null or
+     * not an ISO-8601 date
+     */
+    static Long parseDate(final String date) {
+        if (date == null) {
+            return null;
+        }
+        try {
+            final TemporalAccessor parsedDate = DATE_FORMAT.parse(date.trim());
+            final ZoneOffset offset = parsedDate.isSupported(ChronoField.OFFSET_SECONDS)
+                    ? ZoneOffset.ofTotalSeconds(parsedDate.get(ChronoField.OFFSET_SECONDS)) : ZoneOffset.UTC;
+            return LocalDateTime.from(parsedDate).toInstant(offset).toEpochMilli();
+        } catch (DateTimeParseException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a decimal-floating-point duration.
+     * @param duration duration string
+     * @return duration, or null if the duration is null or not a number
+     */
+    private static Float parseDuration(final String duration) {
+        if (duration == null) {
+            return null;
+        }
+        try {
+            return Float.valueOf(duration.trim());
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Attribute values of the tag, parsed once.
+     */
+    private static final class Parsed {
+
+        private final Long startTime;
+        private final Long endTime;
+        private final Float duration;
+        private final Float plannedDuration;
+        private final Map<String, String> clientAttributes;
+
+        Parsed(final Map<String, String> attributes) {
+            startTime = parseDate(attributes.get(STARTDATE));
+            endTime = parseDate(attributes.get(ENDDATE));
+            duration = parseDuration(attributes.get(DURATION));
+            plannedDuration = parseDuration(attributes.get(PLANNEDDURATION));
+
+            Map<String, String> clientAttributeMap = null;
+            for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                if (attribute.getKey() != null && attribute.getKey().startsWith(CLIENTATTRIBUTEPREFIX)) {
+                    if (clientAttributeMap == null) {
+                        clientAttributeMap = new HashMap<String, String>();
+                    }
+                    clientAttributeMap.put(attribute.getKey(), attribute.getValue());
+                }
+            }
+            clientAttributes = clientAttributeMap == null ? Collections.<String, String>emptyMap()
+                    : Collections.unmodifiableMap(clientAttributeMap);
+        }
+    }
+}
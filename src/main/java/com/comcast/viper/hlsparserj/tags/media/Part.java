@@ -0,0 +1,110 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.tags.media;
+
+import com.comcast.viper.hlsparserj.tags.Tag;
+
+/**
+ * <pre>
+ * Represents the EXT-X-PART tag.
+ *
+ * The EXT-X-PART tag identifies a Partial Segment.  A Partial Segment
+ * is a portion of a Media Segment.  Each Partial Segment has a Part Index,
+ * which is an integer indicating the position of the Partial Segment
+ * within its Parent Segment.  The first Partial Segment has a Part Index
+ * of zero.  The EXT-X-PART tags of a Parent Segment precede its EXTINF
+ * tag.  Its format is:
+ *
+ *   #EXT-X-PART:&lt;attribute-list&gt;
+ *
+ * The following attributes are defined:
+ *
+ * URI
+ *
+ * The value is a quoted-string containing the URI for the Partial
+ * Segment.  This attribute is REQUIRED.
+ *
+ * DURATION
+ *
+ * The value is a decimal-floating-point number of seconds indicating
+ * the duration of the Partial Segment.  This attribute is REQUIRED.
+ *
+ * INDEPENDENT
+ *
+ * The value is an enumerated-string whose value MUST be YES if the
+ * Partial Segment contains an independent frame.  This attribute is
+ * OPTIONAL.
+ *
+ * BYTERANGE
+ *
+ * The value is a quoted-string of the form &lt;n&gt;[@&lt;o&gt;] that
+ * indicates that the Partial Segment is a sub-range of the resource
+ * specified by the URI attribute.  This attribute is OPTIONAL.
+ *
+ * GAP
+ *
+ * The value is an enumerated-string whose value MUST be YES if the
+ * Partial Segment is not available.  This attribute is OPTIONAL.
+ * </pre>
+ */
+public class Part extends Tag {
+
+    private static final String URI = "URI";
+    private static final String DURATION = "DURATION";
+    private static final String INDEPENDENT = "INDEPENDENT";
+    private static final String BYTERANGE = "BYTERANGE";
+    private static final String GAP = "GAP";
+
+    /**
+     * Returns the URI attribute value.
+     * @return URI
+     */
+    public String getURI() {
+        return tag.getAttributes().get(URI);
+    }
+
+    /**
+     * Returns the duration of the partial segment.
+     * @return duration in seconds
+     */
+    public float getDuration() {
+        return Float.valueOf(tag.getAttributes().get(DURATION));
+    }
+
+    /**
+     * Returns true if the partial segment contains an independent frame.
+     * @return boolean
+     */
+    public boolean getIndependent() {
+        return yesNoBoolean(tag.getAttributes().get(INDEPENDENT));
+    }
+
+    /**
+     * Returns true if the partial segment is not available.
+     * @return boolean
+     */
+    public boolean getGap() {
+        return yesNoBoolean(tag.getAttributes().get(GAP));
+    }
+
+    /**
+     * Returns the BYTERANGE attribute value, of the form &lt;n&gt;[@&lt;o&gt;].
+     * @return byte range, or null
+     */
+    public String getByteRange() {
+        return tag.getAttributes().get(BYTERANGE);
+    }
+}
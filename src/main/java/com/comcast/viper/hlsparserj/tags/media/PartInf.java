@@ -0,0 +1,46 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.tags.media;
+
+import com.comcast.viper.hlsparserj.tags.Tag;
+
+/**
+ * <pre>
+ * Represents the EXT-X-PART-INF tag.
+ *
+ * The EXT-X-PART-INF tag provides information about the Partial
+ * Segments in the Playlist.  It is REQUIRED if a Playlist contains one
+ * or more EXT-X-PART tags.  Its format is:
+ *
+ *   #EXT-X-PART-INF:PART-TARGET=&lt;s&gt;
+ *
+ * where PART-TARGET is a decimal-floating-point number of seconds
+ * indicating the Part Target Duration; the maximum duration of any
+ * Partial Segment.
+ * </pre>
+ */
+public class PartInf extends Tag {
+
+    private static final String PARTTARGET = "PART-TARGET";
+
+    /**
+     * Returns the part target duration.
+     * @return duration in seconds
+     */
+    public float getPartTarget() {
+        return Float.valueOf(tag.getAttributes().get(PARTTARGET));
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.tags.media;
+
+import com.comcast.viper.hlsparserj.tags.Tag;
+
+/**
+ * <pre>
+ * Represents the EXT-X-PRELOAD-HINT tag.
+ *
+ * The EXT-X-PRELOAD-HINT tag allows a Client loading media from a live
+ * stream to reduce the time to obtain a resource from the Server by
+ * issuing its request before the resource is available to be delivered.
+ * Its format is:
+ *
+ *   #EXT-X-PRELOAD-HINT:&lt;attribute-list&gt;
+ *
+ * The following attributes are defined:
+ *
+ * TYPE
+ *
+ * The value is an enumerated-string that specifies the type of the
+ * hinted resource: PART or MAP.  This attribute is REQUIRED.
+ *
+ * URI
+ *
+ * The value is a quoted-string containing a URI identifying the hinted
+ * resource.  This attribute is REQUIRED.
+ *
+ * BYTERANGE-START
+ *
+ * The value is a decimal-integer specifying the byte offset of the
+ * first byte of the hinted resource.  This attribute is OPTIONAL; its
+ * absence indicates an offset of zero.
+ *
+ * BYTERANGE-LENGTH
+ *
+ * The value is a decimal-integer specifying the number of bytes of the
+ * hinted resource.  This attribute is OPTIONAL; its absence indicates
+ * that the resource extends to its end.
+ * </pre>
+ */
+public class PreloadHint extends Tag {
+
+    private static final String TYPE = "TYPE";
+    private static final String URI = "URI";
+    private static final String BYTERANGESTART = "BYTERANGE-START";
+    private static final String BYTERANGELENGTH = "BYTERANGE-LENGTH";
+
+    /**
+     * Returns the type of the hinted resource.  Possible values:
+     *   - PART
+     *   - MAP
+     * @return type
+     */
+    public String getType() {
+        return tag.getAttributes().get(TYPE);
+    }
+
+    /**
+     * Returns the URI attribute value.
+     * @return URI
+     */
+    public String getURI() {
+        return tag.getAttributes().get(URI);
+    }
+
+    /**
+     * Returns the byte offset of the hinted resource.
+     * @return offset, or 0 if the tag does not have one
+     */
+    public long getByteRangeStart() {
+        final String start = tag.getAttributes().get(BYTERANGESTART);
+        return start == null ? 0 : Long.parseLong(start.trim());
+    }
+
+    /**
+     * Returns the length of the hinted resource.
+     * @return length, or -1 if the resource extends to its end
+     */
+    public long getByteRangeLength() {
+        final String length = tag.getAttributes().get(BYTERANGELENGTH);
+        return length == null ? -1 : Long.parseLong(length.trim());
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.tags.media;
+
+import com.comcast.viper.hlsparserj.tags.Tag;
+
+/**
+ * <pre>
+ * Represents the EXT-X-RENDITION-REPORT tag.
+ *
+ * The EXT-X-RENDITION-REPORT tag carries information about an associated
+ * Rendition that is as up-to-date as the Playlist that contains it.
+ * Its format is:
+ *
+ *   #EXT-X-RENDITION-REPORT:&lt;attribute-list&gt;
+ *
+ * The following attributes are defined:
+ *
+ * URI
+ *
+ * The value is a quoted-string containing the URI for the Media
+ * Playlist of the specified Rendition.  This attribute is REQUIRED.
+ *
+ * LAST-MSN
+ *
+ * The value is a decimal-integer specifying the Media Sequence Number
+ * of the last Media Segment currently in the specified Rendition.
+ *
+ * LAST-PART
+ *
+ * The value is a decimal-integer that indicates the Part Index of the
+ * last Partial Segment currently in the specified Rendition.
+ * </pre>
+ */
+public class RenditionReport extends Tag {
+
+    private static final String URI = "URI";
+    private static final String LASTMSN = "LAST-MSN";
+    private static final String LASTPART = "LAST-PART";
+
+    /**
+     * Returns the URI of the media playlist of the rendition.
+     * @return URI
+     */
+    public String getURI() {
+        return tag.getAttributes().get(URI);
+    }
+
+    /**
+     * Returns the media sequence number of the last segment of the rendition.
+     * @return media sequence number, or -1 if the tag does not have one
+     */
+    public long getLastMsn() {
+        final String lastMsn = tag.getAttributes().get(LASTMSN);
+        return lastMsn == null ? -1 : Long.parseLong(lastMsn.trim());
+    }
+
+    /**
+     * Returns the part index of the last partial segment of the rendition.
+     * @return part index, or -1 if the tag does not have one
+     */
+    public int getLastPart() {
+        final String lastPart = tag.getAttributes().get(LASTPART);
+        return lastPart == null ? -1 : Integer.parseInt(lastPart.trim());
+    }
+}
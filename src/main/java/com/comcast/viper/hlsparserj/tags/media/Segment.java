@@ -15,6 +15,9 @@
  */
 package com.comcast.viper.hlsparserj.tags.media;
 
+import java.util.Collections;
+import java.util.List;
+
 import com.comcast.viper.hlsparserj.tags.Tag;
 
 /**
@@ -25,6 +28,7 @@ public abstract class Segment extends Tag {
     private boolean discontinuity = false;
     private Key key;
     private String dateTime;
+    private List<Part> parts;
 
     /**
      * Returns the URI tag.
@@ -74,6 +78,16 @@ public abstract class Segment extends Tag {
         return dateTime;
     }
 
+    /**
+     * Returns the date and time of the segment, from the
+     * EXT-X-PROGRAM-DATE-TIME tag that precedes it.
+     * @return milliseconds since the epoch, or null if the segment has no
+     * date and time or it is not an ISO-8601 date
+     */
+    public Long getDateTimeMillis() {
+        return DateRange.parseDate(dateTime);
+    }
+
     /**
      * Sets the date and time string.
      * @param dateTime date and time string
@@ -81,4 +95,21 @@ public abstract class Segment extends Tag {
     public void setDateTime(final String dateTime) {
         this.dateTime = dateTime;
     }
+
+    /**
+     * Returns the partial segments of this media segment, in part index
+     * order.
+     * @return list of partial segments, empty if the segment has none
+     */
+    public List<Part> getParts() {
+        return parts == null ? Collections.<Part>emptyList() : parts;
+    }
+
+    /**
+     * Sets the partial segments.
+     * @param parts list of partial segments
+     */
+    public void setParts(final List<Part> parts) {
+        this.parts = parts;
+    }
 }
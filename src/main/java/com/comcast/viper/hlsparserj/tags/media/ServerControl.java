@@ -0,0 +1,125 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.tags.media;
+
+import com.comcast.viper.hlsparserj.tags.Tag;
+
+/**
+ * <pre>
+ * Represents the EXT-X-SERVER-CONTROL tag.
+ *
+ * The EXT-X-SERVER-CONTROL tag allows the Server to indicate support for
+ * Delivery Directives.  Its format is:
+ *
+ *   #EXT-X-SERVER-CONTROL:&lt;attribute-list&gt;
+ *
+ * The following attributes are defined:
+ *
+ * CAN-SKIP-UNTIL
+ *
+ * Indicates that the Server can produce Playlist Delta Updates in
+ * response to the _HLS_skip Delivery Directive.  Its value is a
+ * decimal-floating-point number of seconds that specifies the Skip
+ * Boundary.  This attribute is OPTIONAL.
+ *
+ * CAN-SKIP-DATERANGES
+ *
+ * The value is an enumerated-string whose value is YES if the Server
+ * can produce Playlist Delta Updates that skip older EXT-X-DATERANGE
+ * tags in addition to Media Segments.  This attribute is OPTIONAL.
+ *
+ * HOLD-BACK
+ *
+ * The value is a decimal-floating-point number of seconds that
+ * indicates the server-recommended minimum distance from the end of the
+ * Playlist at which clients should begin to play.  This attribute is
+ * OPTIONAL.
+ *
+ * PART-HOLD-BACK
+ *
+ * The value is a decimal-floating-point number of seconds that
+ * indicates the server-recommended minimum distance from the end of the
+ * Playlist at which clients should begin to play in Low-Latency Mode.
+ * This attribute is REQUIRED if the Playlist contains one or more
+ * EXT-X-PART tags.
+ *
+ * CAN-BLOCK-RELOAD
+ *
+ * The value is an enumerated-string whose value is YES if the server
+ * supports Blocking Playlist Reload.  This attribute is OPTIONAL.
+ * </pre>
+ */
+public class ServerControl extends Tag {
+
+    private static final String CANSKIPUNTIL = "CAN-SKIP-UNTIL";
+    private static final String CANSKIPDATERANGES = "CAN-SKIP-DATERANGES";
+    private static final String HOLDBACK = "HOLD-BACK";
+    private static final String PARTHOLDBACK = "PART-HOLD-BACK";
+    private static final String CANBLOCKRELOAD = "CAN-BLOCK-RELOAD";
+
+    /**
+     * Returns the skip boundary of playlist delta updates.
+     * @return skip boundary in seconds, or null if the server can not
+     * produce delta updates
+     */
+    public Float getCanSkipUntil() {
+        return floatValue(CANSKIPUNTIL);
+    }
+
+    /**
+     * Returns true if delta updates can skip older date range tags too.
+     * @return boolean
+     */
+    public boolean getCanSkipDateRanges() {
+        return yesNoBoolean(tag.getAttributes().get(CANSKIPDATERANGES));
+    }
+
+    /**
+     * Returns the recommended minimum distance from the end of the playlist
+     * at which to begin playback.
+     * @return hold back in seconds, or null
+     */
+    public Float getHoldBack() {
+        return floatValue(HOLDBACK);
+    }
+
+    /**
+     * Returns the recommended minimum distance from the end of the playlist
+     * at which to begin playback in low-latency mode.
+     * @return part hold back in seconds, or null
+     */
+    public Float getPartHoldBack() {
+        return floatValue(PARTHOLDBACK);
+    }
+
+    /**
+     * Returns true if the server supports blocking playlist reload.
+     * @return boolean
+     */
+    public boolean getCanBlockReload() {
+        return yesNoBoolean(tag.getAttributes().get(CANBLOCKRELOAD));
+    }
+
+    /**
+     * Returns a decimal-floating-point attribute value.
+     * @param name attribute name
+     * @return value, or null if the tag does not have the attribute
+     */
+    private Float floatValue(final String name) {
+        final String value = tag.getAttributes().get(name);
+        return value == null ? null : Float.valueOf(value.trim());
+    }
+}
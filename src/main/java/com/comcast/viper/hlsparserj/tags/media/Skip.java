@@ -0,0 +1,75 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.tags.media;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.comcast.viper.hlsparserj.tags.Tag;
+
+/**
+ * <pre>
+ * Represents the EXT-X-SKIP tag.
+ *
+ * A server produces a Playlist Delta Update by replacing tags earlier
+ * than the Skip Boundary with an EXT-X-SKIP tag.  When replacing Media
+ * Segments, the server replaces their URI lines and all Media Segment
+ * Tags that apply only to those segments.  Its format is:
+ *
+ *   #EXT-X-SKIP:&lt;attribute-list&gt;
+ *
+ * The following attributes are defined:
+ *
+ * SKIPPED-SEGMENTS
+ *
+ * The value is a decimal-integer specifying the number of Media
+ * Segments replaced by the EXT-X-SKIP tag.  This attribute is REQUIRED.
+ *
+ * RECENTLY-REMOVED-DATERANGES
+ *
+ * The value is a quoted-string consisting of a tab-delimited list of
+ * EXT-X-DATERANGE IDs that have been removed from the Playlist
+ * recently.  This attribute is REQUIRED if the Client requested an
+ * update that skips EXT-X-DATERANGE tags.
+ * </pre>
+ */
+public class Skip extends Tag {
+
+    private static final String SKIPPEDSEGMENTS = "SKIPPED-SEGMENTS";
+    private static final String RECENTLYREMOVEDDATERANGES = "RECENTLY-REMOVED-DATERANGES";
+
+    /**
+     * Returns the number of skipped media segments.
+     * @return skipped segment count
+     */
+    public int getSkippedSegments() {
+        return Integer.parseInt(tag.getAttributes().get(SKIPPEDSEGMENTS).trim());
+    }
+
+    /**
+     * Returns the IDs of the date ranges that were recently removed from the
+     * playlist.
+     * @return list of date range IDs, empty if the tag has none
+     */
+    public List<String> getRecentlyRemovedDateRanges() {
+        final String ids = tag.getAttributes().get(RECENTLYREMOVEDDATERANGES);
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(ids.split("\t"));
+    }
+}
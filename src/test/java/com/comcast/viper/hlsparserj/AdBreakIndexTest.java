@@ -0,0 +1,154 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import static com.comcast.viper.hlsparserj.TestPlaylists.parseMedia;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.comcast.viper.hlsparserj.AdBreakIndex.Break;
+import com.comcast.viper.hlsparserj.tags.TagFactory;
+import com.comcast.viper.hlsparserj.tags.TagNames;
+import com.comcast.viper.hlsparserj.tags.media.CueOutCont;
+import com.comcast.viper.hlsparserj.tags.media.DateRange;
+
+public class AdBreakIndexTest {
+
+    private static final String HEADER = "#EXTM3U\n#EXT-X-VERSION:3\n#EXT-X-TARGETDURATION:6\n#EXT-X-MEDIA-SEQUENCE:0\n";
+
+    @Test
+    public void indexesCueOutAndCueInBreaks() {
+        MediaPlaylist playlist = parseMedia(HEADER
+                + "#EXTINF:6,\nc0.ts\n#EXTINF:6,\nc1.ts\n"
+                + "#EXT-X-CUE-OUT:12\n#EXTINF:6,\na0.ts\n#EXT-X-CUE-OUT-CONT:6/12\n#EXTINF:6,\na1.ts\n"
+                + "#EXT-X-CUE-IN\n#EXTINF:6,\nc2.ts\n"
+                + "#EXT-X-CUE-OUT:DURATION=6\n#EXTINF:4,\nb0.ts\n#EXTINF:2,\nb1.ts\n#EXT-X-CUE-IN\n"
+                + "#EXTINF:6,\nc3.ts\n#EXT-X-ENDLIST\n");
+
+        AdBreakIndex index = playlist.getAdBreaks();
+        assertSame(index, playlist.getAdBreaks());
+        assertEquals(2, index.size());
+
+        Break first = index.getBreaks().get(0);
+        assertEquals(2, first.getStartSegment());
+        assertEquals(4, first.getEndSegment());
+        assertEquals(12.0, first.getStartTime(), 0.001);
+        assertEquals(12.0, first.getDuration(), 0.001);
+        assertEquals(12.0, first.getPlannedDuration(), 0.001);
+        assertEquals(TagNames.EXTXCUEOUT, first.getStartTag().getTagName());
+        assertEquals(TagNames.EXTXCUEIN, first.getEndTag().getTagName());
+        assertFalse(first.isOpen());
+        assertFalse(first.isContinued());
+
+        Break second = index.getBreaks().get(1);
+        assertEquals(5, second.getStartSegment());
+        assertEquals(2, second.getSegmentCount());
+        assertEquals(6.0, second.getDuration(), 0.001);
+
+        assertNull(index.findBySegment(1));
+        assertSame(first, index.findBySegment(2));
+        assertSame(first, index.findBySegment(3));
+        assertNull(index.findBySegment(4));
+        assertSame(second, index.findBySegment(6));
+        assertNull(index.findBySegment(7));
+
+        assertNull(index.findByTime(11.9));
+        assertSame(first, index.findByTime(12.0));
+        assertSame(first, index.findByTime(23.9));
+        assertNull(index.findByTime(24.0));
+        assertSame(second, index.findByTime(33.0));
+
+        assertSame(first, index.nextBreak(0));
+        assertSame(first, index.nextBreak(2));
+        assertSame(second, index.nextBreak(3));
+        assertNull(index.nextBreak(6));
+    }
+
+    @Test
+    public void opensBreakForWindowStartingInsideIt() {
+        MediaPlaylist playlist = parseMedia(HEADER
+                + "#EXT-X-CUE-OUT-CONT:ElapsedTime=18.0,Duration=30.0,SCTE35=/DAlAAAAAAAAAP/wFAUAAAABf+/+\n"
+                + "#EXTINF:6,\na3.ts\n#EXT-X-CUE-OUT-CONT:ElapsedTime=24.0,Duration=30.0\n#EXTINF:6,\na4.ts\n"
+                + "#EXT-X-CUE-IN\n#EXTINF:6,\nc0.ts\n#EXT-X-CUE-OUT:30\n#EXTINF:6,\na0.ts\n");
+
+        AdBreakIndex index = playlist.getAdBreaks();
+        assertEquals(2, index.size());
+        Break continued = index.getBreaks().get(0);
+        assertTrue(continued.isContinued());
+        assertEquals(0, continued.getStartSegment());
+        assertEquals(2, continued.getEndSegment());
+        assertEquals(30.0, continued.getPlannedDuration(), 0.001);
+
+        Break live = index.getBreaks().get(1);
+        assertTrue(live.isOpen());
+        assertEquals(3, live.getStartSegment());
+        assertEquals(4, live.getEndSegment());
+        assertEquals(6.0, live.getDuration(), 0.001);
+
+        CueOutCont cueOutCont = new CueOutCont();
+        cueOutCont.setTag(continued.getStartTag());
+        assertEquals(18.0f, cueOutCont.getElapsedTime(), 0.001f);
+        assertEquals("/DAlAAAAAAAAAP/wFAUAAAABf+/+", cueOutCont.getSCTE35());
+    }
+
+    @Test
+    public void indexesScte35DateRanges() {
+        MediaPlaylist playlist = parseMedia(HEADER
+                + "#EXTINF:6,\nc0.ts\n"
+                + "#EXT-X-CUE-OUT:30\n"
+                + "#EXT-X-DATERANGE:ID=\"splice-1\",START-DATE=\"2024-01-01T00:00:06Z\",PLANNED-DURATION=29.97,"
+                + "SCTE35-OUT=0xFC302000\n"
+                + "#EXTINF:6,\na0.ts\n#EXTINF:6,\na1.ts\n"
+                + "#EXT-X-DATERANGE:ID=\"splice-1\",START-DATE=\"2024-01-01T00:00:06Z\",DURATION=12.0,"
+                + "SCTE35-IN=0xFC302001\n"
+                + "#EXTINF:6,\nc1.ts\n");
+
+        AdBreakIndex index = playlist.getAdBreaks();
+        assertEquals(1, index.size());
+        Break adBreak = index.getBreaks().get(0);
+        assertEquals("splice-1", adBreak.getId());
+        assertEquals(1, adBreak.getStartSegment());
+        assertEquals(3, adBreak.getEndSegment());
+        assertEquals(30.0, adBreak.getPlannedDuration(), 0.001);
+        assertEquals(TagNames.EXTXDATERANGE, adBreak.getEndTag().getTagName());
+
+        DateRange dateRange = (DateRange) TagFactory.createTag(TagNames.EXTXDATERANGE);
+        dateRange.setTag(playlist.getTags().get(6));
+        assertEquals("2024-01-01T00:00:06Z", dateRange.getStartDate());
+        assertEquals(29.97f, dateRange.getPlannedDuration(), 0.001f);
+        assertEquals("0xFC302000", dateRange.getSCTE35Out());
+        assertNull(dateRange.getDuration());
+    }
+
+    @Test
+    public void keepsMarkersWithTheirSegments() {
+        MediaPlaylist playlist = parseMedia(HEADER
+                + "#EXT-X-CUE-OUT:12\n#EXTINF:6,\na0.ts\n#EXTINF:6,\na1.ts\n#EXT-X-CUE-IN\n#EXTINF:6,\nc0.ts\n");
+        assertEquals(4, playlist.getHeaderEnd());
+        assertTrue(playlist.getAdBreaks().findBySegment(0) != null);
+
+        MediaPlaylist tail = playlist.withSegments(2, 3);
+        assertTrue(tail.toString().contains("#EXT-X-CUE-IN"));
+        assertFalse(tail.toString().contains("#EXT-X-CUE-OUT"));
+        assertEquals(0, tail.getAdBreaks().size());
+        assertEquals(0, parseMedia(HEADER + "#EXTINF:6,\nc0.ts\n").getAdBreaks().size());
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncPlaylistFetcherTest {
+
+    private static final String MEDIA_PLAYLIST = "#EXTM3U\n"
+            + "#EXT-X-VERSION:3\n"
+            + "#EXT-X-TARGETDURATION:2\n"
+            + "#EXT-X-MEDIA-SEQUENCE:100\n"
+            + "#EXTINF:2.000,\n"
+            + "segment100.ts\n"
+            + "#EXTINF:2.000,\n"
+            + "segment101.ts\n";
+
+    private static final String MASTER_PLAYLIST = "#EXTM3U\n"
+            + "#EXT-X-STREAM-INF:BANDWIDTH=200000\n"
+            + "low.m3u8\n"
+            + "#EXT-X-STREAM-INF:BANDWIDTH=800000\n"
+            + "high.m3u8\n";
+
+    private StubOriginServer origin;
+    private AsyncPlaylistFetcher fetcher;
+
+    @Before
+    public void before() throws Exception {
+        origin = new StubOriginServer();
+        origin.start();
+        origin.setPlaylist("/media.m3u8", MEDIA_PLAYLIST);
+        origin.setPlaylist("/master.m3u8", MASTER_PLAYLIST);
+        fetcher = new AsyncPlaylistFetcher(2000, 5000, 5000, 5000, 2);
+    }
+
+    @After
+    public void after() throws Exception {
+        fetcher.close();
+        origin.stop();
+    }
+
+    @Test
+    public void fetchMediaPlaylist() throws Exception {
+        AbstractPlaylist playlist = fetcher.fetchAndParse(PlaylistVersion.TWELVE, origin.url("/media.m3u8"))
+                .get(5, TimeUnit.SECONDS);
+
+        assertFalse(playlist.isMasterPlaylist());
+        MediaPlaylist mediaPlaylist = (MediaPlaylist) playlist;
+        assertEquals(2, mediaPlaylist.getSegments().size());
+        assertEquals("segment101.ts", mediaPlaylist.getSegments().get(1).getURI());
+        assertEquals(100, mediaPlaylist.getMediaSequence().getSequenceNumber());
+        assertEquals(MEDIA_PLAYLIST, playlist.toString());
+    }
+
+    @Test
+    public void fetchMasterPlaylist() throws Exception {
+        AbstractPlaylist playlist = PlaylistFactory.fetchAndParseAsync(origin.url("/master.m3u8"))
+                .get(5, TimeUnit.SECONDS);
+
+        assertTrue(playlist.isMasterPlaylist());
+        assertEquals(2, ((MasterPlaylist) playlist).getVariantStreams().size());
+    }
+
+    @Test
+    public void fetchMissingPlaylist() throws Exception {
+        try {
+            fetcher.fetchAndParse(PlaylistVersion.TWELVE, origin.url("/missing.m3u8")).get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IOException);
+            assertEquals("Request returned a status code of 404", ex.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void manySlowFetchesInFlight() throws Exception {
+
+        // Scenario: every response is held by the origin for 500ms. Two I/O threads
+        // must be able to keep all requests in flight at once, so the whole batch
+        // completes in a small multiple of the origin delay.
+        final int fetches = 2000;
+        final long delay = 500;
+        origin.setDelay(delay);
+
+        long start = System.currentTimeMillis();
+        List<CompletableFuture<AbstractPlaylist>> futures = new ArrayList<CompletableFuture<AbstractPlaylist>>();
+        for (int i = 0; i < fetches; i++) {
+            futures.add(fetcher.fetchAndParse(PlaylistVersion.TWELVE, origin.url("/media.m3u8")));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[fetches])).get(30, TimeUnit.SECONDS);
+        long elapsed = System.currentTimeMillis() - start;
+
+        for (CompletableFuture<AbstractPlaylist> future : futures) {
+            assertEquals(2, ((MediaPlaylist) future.get()).getSegments().size());
+        }
+        assertEquals(fetches, origin.getRequestCount("/media.m3u8"));
+        assertTrue("Fetches took " + elapsed + "ms", elapsed < 20 * delay);
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import static com.comcast.viper.hlsparserj.TestPlaylists.parseMedia;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.comcast.viper.hlsparserj.DateRangeIndex.Range;
+import com.comcast.viper.hlsparserj.tags.media.DateRange;
+
+public class DateRangeIndexTest {
+
+    private static final String HEADER = "#EXTM3U\n#EXT-X-VERSION:7\n#EXT-X-TARGETDURATION:6\n";
+    private static final long T0 = 1704067200000L; // 2024-01-01T00:00:00Z
+
+    @Test
+    public void parsesDatesDurationsAndClientAttributes() {
+        MediaPlaylist playlist = parseMedia(HEADER
+                + "#EXT-X-DATERANGE:ID=\"p1\",CLASS=\"com.example.program\",START-DATE=\"2024-01-01T01:00:00.500+01:00\","
+                + "END-DATE=\"2024-01-01T00:30:00Z\",DURATION=1799.5,X-TITLE=\"News, at noon\",X-COM-EXAMPLE-ID=0x1F\n"
+                + "#EXTINF:6,\ns0.ts\n"
+                + "#EXT-X-DATERANGE:ID=\"p2\",START-DATE=\"2024-01-01T00:30:00+0000\",PLANNED-DURATION=oops\n"
+                + "#EXTINF:6,\ns1.ts\n");
+
+        List<DateRange> dateRanges = playlist.getDateRanges();
+        assertEquals(2, dateRanges.size());
+        DateRange program = dateRanges.get(0);
+        assertEquals(Long.valueOf(T0 + 500), program.getStartTime());
+        assertEquals(Long.valueOf(T0 + 1800000), program.getEndTime());
+        assertEquals(1799.5f, program.getDuration(), 0.001f);
+        assertEquals("com.example.program", program.getDateRangeClass());
+        assertEquals(2, program.getClientAttributes().size());
+        assertEquals("News, at noon", program.getClientAttribute("X-TITLE"));
+        assertEquals("0x1F", program.getClientAttribute("X-COM-EXAMPLE-ID"));
+
+        DateRange next = dateRanges.get(1);
+        assertEquals(Long.valueOf(T0 + 1800000), next.getStartTime());
+        assertNull(next.getEndTime());
+        assertNull(next.getPlannedDuration());
+        assertTrue(next.getClientAttributes().isEmpty());
+    }
+
+    @Test
+    public void mergesTagsAndResolvesEnds() {
+        MediaPlaylist playlist = parseMedia(HEADER
+                + range("ad", null, 60, ",PLANNED-DURATION=30,SCTE35-OUT=0xFC01")
+                + range("a", "show", 0, ",END-ON-NEXT=YES")
+                + range("b", "show", 120, ",END-ON-NEXT=YES")
+                + "#EXTINF:6,\ns0.ts\n"
+                + range("ad", null, 60, ",DURATION=45,SCTE35-IN=0xFC02,X-AD=\"x\"")
+                + range("marker", null, 100, ""));
+
+        DateRangeIndex index = playlist.getDateRangeIndex();
+        assertEquals(4, index.size());
+
+        Range ad = index.findById("ad");
+        assertEquals(2, ad.getTags().size());
+        assertEquals(T0 + 60000, ad.getStartTime());
+        assertEquals(T0 + 105000, ad.getEndTime());
+        assertFalse(ad.isOpen());
+        assertEquals("x", ad.getClientAttribute("X-AD"));
+
+        assertEquals(T0 + 120000, index.findById("a").getEndTime());
+        assertFalse(index.findById("a").isOpen());
+        assertTrue(index.findById("b").isOpen());
+        assertTrue(index.findById("marker").isOpen());
+        assertEquals(T0 + 100000, index.findById("marker").getEndTime());
+
+        assertEquals(ids("a", "ad"), ids(index.findAt(T0 + 70000)));
+        assertEquals(ids("a", "ad", "marker"), ids(index.findOverlapping(T0 + 90000, T0 + 110000)));
+        assertEquals(ids("a", "ad", "marker"), ids(index.findAt(T0 + 100000)));
+        assertEquals(ids("b"), ids(index.findAt(T0 + 120000)));
+        assertEquals(ids(), ids(index.findAt(T0 - 1)));
+        assertEquals(ids(), ids(index.findOverlapping(T0 + 10, T0 + 10)));
+    }
+
+    @Test
+    public void matchesLinearScan() {
+        Random random = new Random(42);
+        StringBuilder body = new StringBuilder(HEADER);
+        for (int i = 0; i < 2000; i++) {
+            long start = random.nextInt(100000);
+            String end = random.nextInt(10) == 0 ? "" : ",DURATION=" + random.nextInt(random.nextBoolean() ? 50 : 5000);
+            body.append(range("r" + i, null, start, end));
+        }
+        DateRangeIndex index = parseMedia(body.toString()).getDateRangeIndex();
+        assertEquals(2000, index.size());
+
+        for (int query = 0; query < 2000; query++) {
+            long from = T0 + random.nextInt(110000) * 1000L;
+            long to = from + random.nextInt(3) * random.nextInt(200000);
+            List<Range> expected = new ArrayList<Range>();
+            for (Range range : index.getRanges()) {
+                boolean overlaps = range.getStartTime() < to
+                        && (range.getEndTime() > from || range.getStartTime() >= from);
+                if (to > from && overlaps) {
+                    expected.add(range);
+                }
+            }
+            assertEquals(expected, index.findOverlapping(from, to));
+        }
+    }
+
+    private static String range(final String id, final String dateRangeClass, final long startSeconds,
+            final String attributes) {
+        String date = Instant.ofEpochMilli(T0 + startSeconds * 1000).toString();
+        return "#EXT-X-DATERANGE:ID=\"" + id + "\"" + (dateRangeClass == null ? "" : ",CLASS=\"" + dateRangeClass + "\"")
+                + ",START-DATE=\"" + date + "\"" + attributes + "\n";
+    }
+
+    private static List<String> ids(final String... ids) {
+        return Arrays.asList(ids);
+    }
+
+    private static List<String> ids(final List<Range> ranges) {
+        List<String> ids = new ArrayList<String>();
+        for (Range range : ranges) {
+            ids.add(range.getId());
+        }
+        return ids;
+    }
+}
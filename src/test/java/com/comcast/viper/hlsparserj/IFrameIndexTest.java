@@ -0,0 +1,127 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import static com.comcast.viper.hlsparserj.TestPlaylists.parseMedia;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IFrameIndexTest {
+
+    private static final String IFRAME_PLAYLIST = "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-VERSION:4\n"
+            + "#EXT-X-I-FRAMES-ONLY\n"
+            + "#EXTINF:1.0,\n"
+            + "#EXT-X-BYTERANGE:1000@3000000000\n"
+            + "main.ts\n"
+            + "#EXTINF:0.5,\n"
+            + "#EXT-X-BYTERANGE:500\n"
+            + "main.ts\n"
+            + "#EXT-X-BYTERANGE:700\n"
+            + "#EXTINF:2.0,\n"
+            + "main.ts\n"
+            + "#EXTINF:1.5,\n"
+            + "#EXT-X-BYTERANGE:800\n"
+            + "next.ts\n"
+            + "#EXTINF:1.0,\n"
+            + "whole.ts\n"
+            + "#EXT-X-ENDLIST\n";
+
+    @Test
+    public void resolvesByteRanges() {
+        MediaPlaylist playlist = parseMedia(IFRAME_PLAYLIST);
+        IFrameIndex index = playlist.getIFrameIndex();
+        assertSame(index, playlist.getIFrameIndex());
+        assertEquals(5, index.size());
+
+        // Offsets beyond 2 GB, carried forward from the previous range
+        assertEquals(3000000000L, index.getOffset(0));
+        assertEquals(1000, index.getLength(0));
+        assertEquals(3000001000L, index.getOffset(1));
+        assertEquals(3000001500L, index.getOffset(2));
+        assertEquals(700, index.getLength(2));
+
+        // A range of another resource without an offset starts at 0
+        assertEquals("next.ts", index.getURI(3));
+        assertEquals(0, index.getOffset(3));
+        assertEquals(800, index.getLength(3));
+
+        // No byte range: the entire resource
+        assertEquals(0, index.getOffset(4));
+        assertEquals(-1, index.getLength(4));
+    }
+
+    @Test
+    public void findsIFramesByTime() {
+        IFrameIndex index = parseMedia(IFRAME_PLAYLIST).getIFrameIndex();
+        assertEquals(1.5, index.getStartTime(2), 0.0001);
+        assertEquals(2.0, index.getDuration(2), 0.0001);
+        assertEquals(6.0, index.getTotalDuration(), 0.0001);
+
+        assertEquals(1, index.nearestIFrame(1.2));
+        assertEquals(1, index.nearestIFrame(1.25));
+        assertEquals(2, index.nearestIFrame(1.3));
+        assertEquals(0, index.nearestIFrame(-3));
+        assertEquals(4, index.nearestIFrame(100));
+
+        assertEquals(1, index.findByTime(1.4));
+        assertEquals(4, index.findByTime(5.9));
+        assertEquals(-1, index.findByTime(6.0));
+        assertEquals(-1, index.findByTime(-0.1));
+    }
+
+    @Test
+    public void emptyPlaylist() {
+        IFrameIndex index = parseMedia("#EXTM3U\n#EXT-X-TARGETDURATION:4\n#EXT-X-I-FRAMES-ONLY\n").getIFrameIndex();
+        assertEquals(0, index.size());
+        assertEquals(-1, index.nearestIFrame(1));
+        assertEquals(-1, index.findByTime(0));
+        assertEquals(0.0, index.getTotalDuration(), 0.0);
+    }
+
+    @Test
+    public void lookupsMatchLinearScan() {
+        Random random = new Random(50);
+        StringBuilder builder = new StringBuilder("#EXTM3U\n#EXT-X-TARGETDURATION:4\n#EXT-X-I-FRAMES-ONLY\n");
+        for (int i = 0; i < 300; i++) {
+            builder.append("#EXTINF:").append(0.04 * (1 + random.nextInt(100))).append(",\n");
+            builder.append("#EXT-X-BYTERANGE:").append(188 * (1 + random.nextInt(50))).append('\n');
+            builder.append("main.ts\n");
+        }
+        IFrameIndex index = parseMedia(builder.toString()).getIFrameIndex();
+
+        long offset = 0;
+        for (int i = 0; i < index.size(); i++) {
+            assertEquals(offset, index.getOffset(i));
+            offset += index.getLength(i);
+        }
+        for (int probe = 0; probe < 2000; probe++) {
+            double time = -5 + random.nextDouble() * (index.getTotalDuration() + 10);
+            int nearest = 0;
+            for (int i = 1; i < index.size(); i++) {
+                if (Math.abs(index.getStartTime(i) - time) < Math.abs(index.getStartTime(nearest) - time)) {
+                    nearest = i;
+                }
+            }
+            assertEquals(nearest, index.nearestIFrame(time));
+        }
+    }
+}
@@ -178,6 +178,34 @@ public class MasterPlaylistTest {
         assertTrue(masterPlaylist.toString().contains("395000"));
     }
 
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRemoveStreamInfFrozen() {
+        masterPlaylist.freeze();
+        masterPlaylist.removeVariantStream(masterPlaylist.getVariantStreams().get(0));
+    }
+
+    @Test
+    public void testFrozenListsAreUnmodifiable() {
+        List<StreamInf> variantStreams = masterPlaylist.getVariantStreams();
+        masterPlaylist.freeze();
+
+        assertTrue(masterPlaylist.isFrozen());
+        try {
+            masterPlaylist.getVariantStreams().clear();
+            fail();
+        } catch (UnsupportedOperationException ex) {
+            // expected
+        }
+        try {
+            masterPlaylist.getTags().clear();
+            fail();
+        } catch (UnsupportedOperationException ex) {
+            // expected
+        }
+        assertEquals(variantStreams, masterPlaylist.getVariantStreams());
+        assertEquals(3, masterPlaylist.getIFrameStreams().size());
+    }
+
     @Test
     public void testToString() throws Exception {
         assertEquals(masterPlaylistString(), masterPlaylist.toString());
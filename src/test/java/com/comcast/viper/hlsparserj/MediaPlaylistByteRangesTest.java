@@ -22,6 +22,7 @@ import org.junit.Test;
 import java.io.InputStream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class MediaPlaylistByteRangesTest {
@@ -69,4 +70,9 @@ public class MediaPlaylistByteRangesTest {
         assertEquals(0, mediaPlaylist.getByteRanges().get(0).getOffset());
         assertEquals("main.aac", mediaPlaylist.getByteRanges().get(0).getURI());
     }
+
+    @Test
+    public void endList() {
+        assertTrue(mediaPlaylist.getEndList());
+    }
 }
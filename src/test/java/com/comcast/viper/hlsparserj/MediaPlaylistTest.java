@@ -16,6 +16,7 @@
 package com.comcast.viper.hlsparserj;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -101,4 +102,9 @@ public class MediaPlaylistTest {
     public void version() {
         assertEquals(mediaPlaylist.getVersion().getVersion(), 4);
     }
+
+    @Test
+    public void endList() {
+        assertFalse(mediaPlaylist.getEndList());
+    }
 }
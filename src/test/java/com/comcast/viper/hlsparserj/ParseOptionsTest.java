@@ -0,0 +1,138 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.comcast.viper.hlsparserj.tags.TagNames;
+import com.comcast.viper.hlsparserj.tags.UnparsedTag;
+import com.comcast.viper.hlsparserj.tags.media.ExtInf;
+
+public class ParseOptionsTest {
+
+    private static final String MEDIA_PLAYLIST = "#EXTM3U\n"
+            + "#EXT-X-VERSION:3\n"
+            + "#EXT-X-TARGETDURATION:10\n"
+            + "#EXT-X-MEDIA-SEQUENCE:100\n"
+            + "#EXT-X-KEY:METHOD=AES-128,URI=\"key1\"\n"
+            + "#EXTINF:9.000,\n"
+            + "#EXT-X-BITRATE:800\n"
+            + "segment0.ts\n"
+            + "#EXT-X-DISCONTINUITY\n"
+            + "#EXTINF:8.000,\n"
+            + "segment1.ts\n"
+            + "#EXT-X-ENDLIST\n";
+
+    private static final String MASTER_PLAYLIST = "#EXTM3U\n"
+            + "#EXT-X-MEDIA:TYPE=AUDIO,GROUP-ID=\"aac\",NAME=\"en\",URI=\"en.m3u8\"\n"
+            + "#EXT-X-STREAM-INF:BANDWIDTH=800000,AUDIO=\"aac\"\n"
+            + "low.m3u8\n"
+            + "#EXT-X-STREAM-INF:BANDWIDTH=2000000,AUDIO=\"aac\"\n"
+            + "high.m3u8\n";
+
+    @Test
+    public void segmentTagsKeepTheirContext() throws IOException {
+        ParseOptions options = ParseOptions.tags(TagNames.EXTINF);
+        assertTrue(options.includes(TagNames.EXTXKEY));
+        assertFalse(options.includes(TagNames.EXTXTARGETDURATION));
+
+        for (MediaPlaylist playlist : parseBoth(MEDIA_PLAYLIST, options)) {
+            assertEquals(names(TagNames.EXTXKEY, TagNames.EXTINF, TagNames.EXTXDISCONTINUITY, TagNames.EXTINF),
+                    tagNames(playlist));
+            List<ExtInf> segments = playlist.getSegments();
+            assertEquals(2, segments.size());
+            assertEquals(9.0, segments.get(0).getDuration(), 0.0);
+            assertEquals("key1", segments.get(1).getKey().getURI());
+            assertTrue(segments.get(1).getDiscontinuity());
+            // The URI of EXT-X-BITRATE goes with it, as it would in a full parse
+            assertNull(segments.get(0).getURI());
+            assertEquals("segment1.ts", segments.get(1).getURI());
+        }
+    }
+
+    @Test
+    public void headerTagsOnly() throws IOException {
+        ParseOptions options = ParseOptions.tags(TagNames.EXTXMEDIASEQUENCE, TagNames.EXTXTARGETDURATION);
+
+        for (MediaPlaylist playlist : parseBoth(MEDIA_PLAYLIST, options)) {
+            assertEquals(names(TagNames.EXTXTARGETDURATION, TagNames.EXTXMEDIASEQUENCE), tagNames(playlist));
+            assertEquals(100, playlist.getMediaSequence().getSequenceNumber());
+            assertEquals(10, playlist.getTargetDuration().getDuration());
+            assertTrue(playlist.getSegments().isEmpty());
+        }
+    }
+
+    @Test
+    public void masterPlaylistIsRecognizedWithoutVariantStreams() throws IOException {
+        ParseOptions options = ParseOptions.tags(TagNames.EXTXMEDIA);
+        AbstractPlaylist playlist = PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE,
+                new ByteArrayInputStream(MASTER_PLAYLIST.getBytes(StandardCharsets.UTF_8)), options);
+
+        assertTrue(playlist.isMasterPlaylist());
+        assertEquals(names(TagNames.EXTXMEDIA), tagNames(playlist));
+        assertEquals("en.m3u8", ((MasterPlaylist) playlist).getAlternateRenditions().get(0).getURI());
+
+        MasterPlaylist variants = (MasterPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE,
+                MASTER_PLAYLIST, ParseOptions.tags(TagNames.EXTXSTREAMINF));
+        assertEquals(2, variants.getVariantStreams().size());
+        assertEquals("high.m3u8", variants.getVariantStreams().get(1).getURI());
+    }
+
+    @Test
+    public void allTags() {
+        assertTrue(ParseOptions.ALL.includesAllTags());
+        assertNull(ParseOptions.ALL.getTagNames());
+        AbstractPlaylist playlist = PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, MEDIA_PLAYLIST,
+                ParseOptions.ALL);
+        assertEquals(10, playlist.getTags().size());
+    }
+
+    private static List<MediaPlaylist> parseBoth(final String playlist, final ParseOptions options)
+            throws IOException {
+        List<MediaPlaylist> playlists = new ArrayList<MediaPlaylist>();
+        playlists.add((MediaPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, playlist, options));
+        playlists.add((MediaPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE,
+                new ByteArrayInputStream(playlist.getBytes(StandardCharsets.UTF_8)), options));
+        return playlists;
+    }
+
+    private static List<String> names(final String... tagNames) {
+        List<String> names = new ArrayList<String>();
+        for (String tagName : tagNames) {
+            names.add(tagName);
+        }
+        return names;
+    }
+
+    private static List<String> tagNames(final AbstractPlaylist playlist) {
+        List<String> names = new ArrayList<String>();
+        for (UnparsedTag tag : playlist.getTags()) {
+            names.add(tag.getTagName());
+        }
+        return names;
+    }
+}
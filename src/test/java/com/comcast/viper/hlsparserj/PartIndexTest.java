@@ -0,0 +1,142 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import static com.comcast.viper.hlsparserj.TestPlaylists.parseMedia;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.comcast.viper.hlsparserj.tags.media.ExtInf;
+import com.comcast.viper.hlsparserj.tags.media.Part;
+import com.comcast.viper.hlsparserj.tags.media.PreloadHint;
+import com.comcast.viper.hlsparserj.tags.media.RenditionReport;
+import com.comcast.viper.hlsparserj.tags.media.ServerControl;
+
+public class PartIndexTest {
+
+    private static final String PLAYLIST = "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-VERSION:6\n"
+            + "#EXT-X-SERVER-CONTROL:CAN-BLOCK-RELOAD=YES,PART-HOLD-BACK=1.0,CAN-SKIP-UNTIL=12.0\n"
+            + "#EXT-X-PART-INF:PART-TARGET=0.33334\n"
+            + "#EXT-X-MEDIA-SEQUENCE:266\n"
+            + "#EXT-X-PROGRAM-DATE-TIME:2019-02-14T02:13:36.106Z\n"
+            + "#EXT-X-MAP:URI=\"init.mp4\"\n"
+            + "#EXTINF:4.00008,\nfileSequence266.mp4\n"
+            + "#EXTINF:4.00008,\nfileSequence267.mp4\n"
+            + "#EXT-X-PART:DURATION=0.33334,URI=\"filePart268.0.mp4\",INDEPENDENT=YES\n"
+            + "#EXT-X-PART:DURATION=0.33334,URI=\"filePart268.1.mp4\"\n"
+            + "#EXT-X-PART:DURATION=0.33334,URI=\"filePart268.2.mp4\",BYTERANGE=\"1000@2000\"\n"
+            + "#EXTINF:1.00002,\nfileSequence268.mp4\n"
+            + "#EXT-X-PART:DURATION=0.33334,URI=\"filePart269.0.mp4\",INDEPENDENT=YES\n"
+            + "#EXT-X-PART:DURATION=0.33334,URI=\"filePart269.1.mp4\",GAP=YES\n"
+            + "#EXT-X-PRELOAD-HINT:TYPE=PART,URI=\"filePart269.2.mp4\",BYTERANGE-START=5000\n"
+            + "#EXT-X-RENDITION-REPORT:URI=\"../1M/waitForMSN.php\",LAST-MSN=269,LAST-PART=1\n"
+            + "#EXT-X-RENDITION-REPORT:URI=\"../4M/waitForMSN.php\",LAST-MSN=269,LAST-PART=1\n";
+
+    @Test
+    public void parsesLowLatencyTags() {
+        MediaPlaylist playlist = parseMedia(PLAYLIST);
+
+        ServerControl serverControl = playlist.getServerControl();
+        assertTrue(serverControl.getCanBlockReload());
+        assertEquals(1.0f, serverControl.getPartHoldBack(), 0.0001f);
+        assertEquals(12.0f, serverControl.getCanSkipUntil(), 0.0001f);
+        assertNull(serverControl.getHoldBack());
+        assertFalse(serverControl.getCanSkipDateRanges());
+        assertEquals(0.33334f, playlist.getPartInf().getPartTarget(), 0.00001f);
+
+        List<PreloadHint> hints = playlist.getPreloadHints();
+        assertEquals(1, hints.size());
+        assertEquals("PART", hints.get(0).getType());
+        assertEquals("filePart269.2.mp4", hints.get(0).getURI());
+        assertEquals(5000, hints.get(0).getByteRangeStart());
+        assertEquals(-1, hints.get(0).getByteRangeLength());
+
+        List<RenditionReport> reports = playlist.getRenditionReports();
+        assertEquals(2, reports.size());
+        assertEquals("../4M/waitForMSN.php", reports.get(1).getURI());
+        assertEquals(269, reports.get(1).getLastMsn());
+        assertEquals(1, reports.get(1).getLastPart());
+    }
+
+    @Test
+    public void attachesPartsToTheirSegments() {
+        MediaPlaylist playlist = parseMedia(PLAYLIST);
+        List<ExtInf> segments = playlist.getSegments();
+        assertEquals(3, segments.size());
+        assertTrue(segments.get(0).getParts().isEmpty());
+        assertTrue(segments.get(1).getParts().isEmpty());
+
+        List<Part> parts = segments.get(2).getParts();
+        assertEquals(3, parts.size());
+        assertEquals("filePart268.0.mp4", parts.get(0).getURI());
+        assertTrue(parts.get(0).getIndependent());
+        assertFalse(parts.get(1).getIndependent());
+        assertEquals("1000@2000", parts.get(2).getByteRange());
+        assertEquals(0.33334f, parts.get(2).getDuration(), 0.00001f);
+
+        assertEquals(5, playlist.getParts().size());
+        assertSame(playlist.getParts().get(0), parts.get(0));
+        assertTrue(playlist.getParts().get(4).getGap());
+    }
+
+    @Test
+    public void indexesPartsByMediaSequenceAndPartIndex() {
+        MediaPlaylist playlist = parseMedia(PLAYLIST);
+        PartIndex index = playlist.getPartIndex();
+        assertSame(index, playlist.getPartIndex());
+
+        assertEquals(5, index.size());
+        assertEquals(266, index.getFirstMsn());
+        assertEquals(0, index.getPartCount(266));
+        assertEquals(3, index.getPartCount(268));
+        assertEquals(2, index.getPartCount(269));
+        assertEquals(0, index.getPartCount(270));
+
+        assertSame(playlist.getSegments().get(2).getParts().get(1), index.getPart(268, 1));
+        assertEquals("filePart269.1.mp4", index.getPart(269, 1).getURI());
+        assertNull(index.getPart(267, 0));
+        assertNull(index.getPart(268, 3));
+        assertNull(index.getPart(269, 2));
+        assertNull(index.getPart(265, 0));
+        assertNull(index.getPart(268, -1));
+
+        assertEquals(269, index.getLastMsn());
+        assertEquals(1, index.getLastPart());
+    }
+
+    @Test
+    public void reportsLastCompleteSegmentWithoutTrailingParts() {
+        MediaPlaylist playlist = parseMedia(PLAYLIST.substring(0, PLAYLIST.indexOf("#EXT-X-PART:DURATION=0.33334,URI=\"filePart269.0")));
+        PartIndex index = playlist.getPartIndex();
+        assertEquals(3, index.size());
+        assertEquals(268, index.getLastMsn());
+        assertEquals(2, index.getLastPart());
+
+        PartIndex empty = parseMedia("#EXTM3U\n#EXT-X-TARGETDURATION:4\n#EXTINF:4,\ns0.ts\n").getPartIndex();
+        assertEquals(0, empty.size());
+        assertEquals(0, empty.getLastMsn());
+        assertNull(empty.getPart(0, 0));
+    }
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import static com.comcast.viper.hlsparserj.TestPlaylists.parseMedia;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PlaylistDeltaMergerTest {
+
+    private static final int WINDOW = 20;
+
+    @Test
+    public void matchesFullPlaylistsOverManyReloads() {
+        Random random = new Random(7);
+        int sequence = 3;
+        MediaPlaylist merged = parseMedia(full(sequence));
+        for (int reload = 0; reload < 200; reload++) {
+            sequence += random.nextInt(4);
+            int skipped = random.nextInt(WINDOW - 2);
+            MediaPlaylist delta = parseMedia(delta(sequence, skipped, ""));
+            assertTrue(PlaylistDeltaMerger.isDeltaUpdate(delta));
+
+            merged = PlaylistDeltaMerger.merge(merged, delta);
+            assertTrue(merged.isFrozen());
+            assertFalse(PlaylistDeltaMerger.isDeltaUpdate(merged));
+            assertEquals("reload " + reload, parseMedia(full(sequence)).toString(), merged.toString());
+        }
+    }
+
+    @Test
+    public void reusesPriorSegmentTags() {
+        MediaPlaylist prior = PlaylistDeltaMerger.merge(parseMedia(full(7)), parseMedia(delta(10, 5, "")));
+        MediaPlaylist merged = PlaylistDeltaMerger.merge(prior, parseMedia(delta(14, 10, "")));
+        assertEquals(parseMedia(full(14)).toString(), merged.toString());
+        assertEquals(WINDOW, merged.getSegmentCount());
+
+        // The skipped segments start with a key of their own, so the tag
+        // store of the prior playlist is shared
+        int priorIndex = indexOf(prior, "segment17.ts");
+        int mergedIndex = indexOf(merged, "segment17.ts");
+        assertSame(prior.getTags().get(priorIndex), merged.getTags().get(mergedIndex));
+    }
+
+    @Test
+    public void dropsRecentlyRemovedDateRanges() {
+        MediaPlaylist prior = parseMedia(full(10));
+        MediaPlaylist merged = PlaylistDeltaMerger.merge(prior,
+                parseMedia(delta(10, 12, ",RECENTLY-REMOVED-DATERANGES=\"range15\trange20\"")));
+        String expected = parseMedia(full(10)).toString()
+                .replaceAll("#EXT-X-DATERANGE:ID=\"range(15|20)\"[^\n]*\n", "");
+        assertEquals(expected, merged.toString());
+        assertEquals(2, merged.getDateRanges().size());
+    }
+
+    @Test
+    public void returnsFullPlaylistsAsTheyAre() {
+        MediaPlaylist prior = parseMedia(full(10));
+        MediaPlaylist merged = PlaylistDeltaMerger.merge(prior, parseMedia(full(11)));
+        assertEquals(parseMedia(full(11)).toString(), merged.toString());
+        assertTrue(merged.isFrozen());
+    }
+
+    @Test
+    public void carriesMapOfExpiredSegments() {
+        String header = "#EXTM3U\n#EXT-X-VERSION:9\n#EXT-X-TARGETDURATION:4\n"
+                + "#EXT-X-SERVER-CONTROL:CAN-SKIP-UNTIL=24.0\n";
+        MediaPlaylist prior = parseMedia(header
+                + "#EXT-X-MEDIA-SEQUENCE:0\n"
+                + "#EXT-X-MAP:URI=\"init1.mp4\"\n"
+                + "#EXTINF:4.0,\ns0.mp4\n"
+                + "#EXT-X-DISCONTINUITY\n"
+                + "#EXT-X-MAP:URI=\"init2.mp4\"\n"
+                + "#EXTINF:4.0,\ns1.mp4\n#EXTINF:4.0,\ns2.mp4\n#EXTINF:4.0,\ns3.mp4\n");
+        MediaPlaylist delta = parseMedia(header
+                + "#EXT-X-MEDIA-SEQUENCE:2\n#EXT-X-DISCONTINUITY-SEQUENCE:1\n"
+                + "#EXT-X-SKIP:SKIPPED-SEGMENTS=1\n"
+                + "#EXTINF:4.0,\ns3.mp4\n#EXTINF:4.0,\ns4.mp4\n");
+
+        MediaPlaylist merged = PlaylistDeltaMerger.merge(prior, delta);
+        assertEquals(parseMedia(header
+                + "#EXT-X-MEDIA-SEQUENCE:2\n#EXT-X-DISCONTINUITY-SEQUENCE:1\n"
+                + "#EXT-X-MAP:URI=\"init2.mp4\"\n"
+                + "#EXTINF:4.0,\ns2.mp4\n#EXTINF:4.0,\ns3.mp4\n#EXTINF:4.0,\ns4.mp4\n").toString(),
+                merged.toString());
+    }
+
+    @Test
+    public void resolvesByteRangeOffsetOfExpiredSegments() {
+        String header = "#EXTM3U\n#EXT-X-VERSION:9\n#EXT-X-TARGETDURATION:4\n"
+                + "#EXT-X-SERVER-CONTROL:CAN-SKIP-UNTIL=24.0\n";
+        MediaPlaylist prior = parseMedia(header
+                + "#EXT-X-MEDIA-SEQUENCE:0\n"
+                + "#EXTINF:4.0,\n#EXT-X-BYTERANGE:1000@0\nmain.ts\n"
+                + "#EXTINF:4.0,\n#EXT-X-BYTERANGE:1000\nmain.ts\n"
+                + "#EXTINF:4.0,\n#EXT-X-BYTERANGE:1000\nmain.ts\n");
+        MediaPlaylist delta = parseMedia(header
+                + "#EXT-X-MEDIA-SEQUENCE:2\n"
+                + "#EXT-X-SKIP:SKIPPED-SEGMENTS=1\n"
+                + "#EXTINF:4.0,\n#EXT-X-BYTERANGE:1000\nmain.ts\n");
+
+        MediaPlaylist merged = PlaylistDeltaMerger.merge(prior, delta);
+        assertEquals(parseMedia(header
+                + "#EXT-X-MEDIA-SEQUENCE:2\n"
+                + "#EXTINF:4.0,\n#EXT-X-BYTERANGE:1000@2000\nmain.ts\n"
+                + "#EXTINF:4.0,\n#EXT-X-BYTERANGE:1000\nmain.ts\n").toString(),
+                merged.toString());
+        assertEquals(2000, merged.getByteRanges().get(0).getOffset());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPriorPlaylistWithoutSkippedSegments() {
+        PlaylistDeltaMerger.merge(parseMedia(full(10)), parseMedia(delta(25, 10, "")));
+    }
+
+    /**
+     * Full playlist of the segments from the given media sequence number.
+     * Keys rotate every 7 segments, and the current key is repeated before
+     * the first segment.
+     */
+    private static String full(final int sequence) {
+        StringBuilder builder = header(sequence);
+        if (sequence % 7 != 0) {
+            builder.append(key(sequence));
+        }
+        for (int segment = sequence; segment < sequence + WINDOW; segment++) {
+            appendSegment(builder, segment);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Delta update of the full playlist with the given number of segments
+     * skipped.
+     */
+    private static String delta(final int sequence, final int skipped, final String skipAttributes) {
+        StringBuilder builder = header(sequence);
+        builder.append("#EXT-X-SKIP:SKIPPED-SEGMENTS=").append(skipped).append(skipAttributes).append('\n');
+        if (skipped == 0 && sequence % 7 != 0) {
+            builder.append(key(sequence));
+        }
+        for (int segment = sequence + skipped; segment < sequence + WINDOW; segment++) {
+            appendSegment(builder, segment);
+        }
+        return builder.toString();
+    }
+
+    private static StringBuilder header(final int sequence) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("#EXTM3U\n#EXT-X-VERSION:9\n#EXT-X-TARGETDURATION:4\n");
+        builder.append("#EXT-X-SERVER-CONTROL:CAN-SKIP-UNTIL=24.0\n");
+        builder.append("#EXT-X-MEDIA-SEQUENCE:").append(sequence).append('\n');
+        builder.append("#EXT-X-DISCONTINUITY-SEQUENCE:").append(sequence / 11).append('\n');
+        return builder;
+    }
+
+    private static void appendSegment(final StringBuilder builder, final int segment) {
+        if (segment % 7 == 0) {
+            builder.append(key(segment));
+        }
+        if (segment % 11 == 0) {
+            builder.append("#EXT-X-DISCONTINUITY\n");
+        }
+        if (segment % 5 == 0) {
+            builder.append("#EXT-X-DATERANGE:ID=\"range").append(segment)
+                    .append("\",START-DATE=\"2024-01-01T00:00:00Z\",DURATION=4.0\n");
+        }
+        builder.append("#EXTINF:4.0,\nsegment").append(segment).append(".ts\n");
+    }
+
+    private static String key(final int segment) {
+        return "#EXT-X-KEY:METHOD=AES-128,URI=\"key" + (segment / 7) + "\"\n";
+    }
+
+    private static int indexOf(final MediaPlaylist playlist, final String uri) {
+        for (int i = 0; i < playlist.getTags().size(); i++) {
+            if (uri.equals(playlist.getTags().get(i).getURILine())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
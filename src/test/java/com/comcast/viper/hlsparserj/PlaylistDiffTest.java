@@ -0,0 +1,132 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import static com.comcast.viper.hlsparserj.TestPlaylists.liveWindow;
+import static com.comcast.viper.hlsparserj.TestPlaylists.parseMedia;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+
+import org.junit.Test;
+
+import com.comcast.viper.hlsparserj.PlaylistDiff.Anomaly;
+import com.comcast.viper.hlsparserj.tags.UnparsedTag;
+
+public class PlaylistDiffTest {
+
+    @Test
+    public void reportsAddedAndRemovedSegments() {
+        PlaylistDiff diff = PlaylistDiff.compute(live(10, 5, false), live(12, 5, false));
+        assertEquals(10, diff.getRemovedFrom());
+        assertEquals(12, diff.getRemovedTo());
+        assertEquals(2, diff.getRemovedCount());
+        assertEquals(15, diff.getAddedFrom());
+        assertEquals(17, diff.getAddedTo());
+        assertEquals(Arrays.asList("segment15.ts", "segment16.ts"), diff.getAddedURIs());
+        assertFalse(diff.isDiscontinuityAdded());
+        assertFalse(diff.isKeyChanged());
+        assertTrue(diff.getChangedTags().isEmpty());
+        assertTrue(diff.getAnomalies().isEmpty());
+        assertFalse(diff.isUnchanged());
+    }
+
+    @Test
+    public void reportsStallForUnchangedPlaylist() {
+        PlaylistDiff diff = PlaylistDiff.compute(live(10, 5, false), live(10, 5, false));
+        assertEquals(0, diff.getRemovedCount());
+        assertEquals(0, diff.getAddedCount());
+        assertEquals(Collections.emptyList(), diff.getAddedURIs());
+        assertEquals(EnumSet.of(Anomaly.STALL), diff.getAnomalies());
+        assertTrue(diff.isUnchanged());
+    }
+
+    @Test
+    public void reportsRewindAndGap() {
+        PlaylistDiff rewind = PlaylistDiff.compute(live(10, 5, false), live(3, 5, false));
+        assertEquals(EnumSet.of(Anomaly.REWIND), rewind.getAnomalies());
+        assertEquals(0, rewind.getRemovedCount());
+        assertFalse(rewind.isUnchanged());
+
+        PlaylistDiff gap = PlaylistDiff.compute(live(10, 5, false), live(20, 5, false));
+        assertEquals(EnumSet.of(Anomaly.GAP), gap.getAnomalies());
+        assertEquals(5, gap.getRemovedCount());
+        assertEquals(20, gap.getAddedFrom());
+        assertEquals(5, gap.getAddedURIs().size());
+        assertEquals("segment20.ts", gap.getAddedURIs().get(0));
+    }
+
+    @Test
+    public void reportsDiscontinuitiesAndKeys() {
+        String key1 = "#EXT-X-KEY:METHOD=AES-128,URI=\"k1\"\n";
+        String key2 = "#EXT-X-KEY:METHOD=AES-128,URI=\"k2\"\n";
+        MediaPlaylist previous = parseMedia("#EXTM3U\n#EXT-X-TARGETDURATION:6\n#EXT-X-MEDIA-SEQUENCE:0\n" + key1
+                + "#EXTINF:6,\ns0.ts\n#EXT-X-DISCONTINUITY\n#EXTINF:6,\ns1.ts\n#EXTINF:6,\ns2.ts\n");
+        MediaPlaylist current = parseMedia("#EXTM3U\n#EXT-X-TARGETDURATION:6\n#EXT-X-MEDIA-SEQUENCE:2\n"
+                + "#EXT-X-DISCONTINUITY-SEQUENCE:1\n" + key1 + "#EXTINF:6,\ns2.ts\n"
+                + "#EXT-X-DISCONTINUITY\n" + key2 + "#EXTINF:6,\ns3.ts\n" + key2 + "#EXTINF:6,\ns4.ts\n");
+
+        PlaylistDiff diff = PlaylistDiff.compute(previous, current);
+        assertEquals(2, diff.getRemovedCount());
+        assertEquals(Arrays.asList("s3.ts", "s4.ts"), diff.getAddedURIs());
+        assertTrue(diff.isDiscontinuityAdded());
+        assertTrue(diff.isKeyChanged());
+        assertTrue(diff.getAnomalies().isEmpty());
+
+        MediaPlaylist sameKey = parseMedia("#EXTM3U\n#EXT-X-TARGETDURATION:6\n#EXT-X-MEDIA-SEQUENCE:2\n"
+                + key1 + "#EXTINF:6,\ns2.ts\n" + key1 + "#EXTINF:6,\ns3.ts\n");
+        diff = PlaylistDiff.compute(previous, sameKey);
+        assertFalse(diff.isKeyChanged());
+        assertEquals(EnumSet.of(Anomaly.DISCONTINUITY_SEQUENCE), diff.getAnomalies());
+    }
+
+    @Test
+    public void reportsChangedPlaylistTags() {
+        PlaylistDiff diff = PlaylistDiff.compute(live(10, 5, false), live(11, 5, true)
+                .sharingSegmentsWith(null));
+        assertEquals(Collections.singleton("EXT-X-ENDLIST"), diff.getChangedTags());
+        assertTrue(diff.getAnomalies().isEmpty());
+
+        MediaPlaylist retargeted = parseMedia(liveWindow(6, 11, 5, false)
+                .replace("TARGETDURATION:6", "TARGETDURATION:4"));
+        diff = PlaylistDiff.compute(live(10, 5, false), retargeted);
+        assertEquals(Collections.singleton("EXT-X-TARGETDURATION"), diff.getChangedTags());
+    }
+
+    @Test
+    public void usesSegmentCountsOfTheParser() {
+        MediaPlaylist current = live(12, 5, false);
+        assertEquals(5, current.getSegmentCount());
+        assertEquals(5, current.snapshot().getSegmentCount());
+        assertEquals(3, current.withSegments(1, 4).getSegmentCount());
+        assertEquals(5, current.sharingSegmentsWith(live(10, 5, false)).getSegmentCount());
+
+        // Tags changed directly are not counted again
+        current.getTags().add(new UnparsedTag("#EXTINF:6,"));
+        current.getTags().get(current.getTags().size() - 1).setURI("segment17.ts");
+        assertEquals(5, current.getSegmentCount());
+        PlaylistDiff diff = PlaylistDiff.compute(live(10, 5, false), current);
+        assertEquals(17, diff.getAddedTo());
+    }
+
+    private static MediaPlaylist live(final int sequence, final int segmentCount, final boolean endList) {
+        return parseMedia(liveWindow(6, sequence, segmentCount, endList));
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.comcast.viper.hlsparserj.tags.TagNames;
+
+public class PlaylistFingerprintTest {
+
+    private static final String MEDIA = "#EXTM3U\n#EXT-X-VERSION:3\n#EXT-X-TARGETDURATION:6\n"
+            + "#EXT-X-MEDIA-SEQUENCE:0\n#EXTINF:6,café\nseg0.ts\n#EXTINF:6,\nseg1.ts\n";
+
+    private static final String MASTER = "#EXTM3U\n"
+            + "#EXT-X-STREAM-INF:BANDWIDTH=1000000\nlow.m3u8\n"
+            + "#EXT-X-STREAM-INF:BANDWIDTH=3000000\nhigh.m3u8\n";
+
+    @Test
+    public void fingerprintIsHashOfBody() throws Exception {
+        byte[] bytes = MEDIA.getBytes(StandardCharsets.UTF_8);
+        long expected = XxHash64.hash(bytes, 0, bytes.length);
+
+        assertEquals(expected, PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, MEDIA).getFingerprint());
+        assertEquals(expected, PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE,
+                new ByteArrayInputStream(bytes)).getFingerprint());
+
+        PlaylistParser parser = new PlaylistParser();
+        parser.parseChunk(ByteBuffer.wrap(bytes, 0, 10));
+        parser.parseChunk(ByteBuffer.wrap(bytes, 10, bytes.length - 10));
+        parser.finish();
+        assertEquals(expected, parser.getFingerprint());
+
+        parser.reset();
+        parser.parseTail(ByteBuffer.wrap(bytes), 1);
+        assertEquals(expected, parser.getFingerprint());
+
+        PlaylistParser filtered = new PlaylistParser(ParseOptions.tags(TagNames.EXTXTARGETDURATION));
+        filtered.parse(MEDIA);
+        assertEquals(expected, filtered.getFingerprint());
+    }
+
+    @Test
+    public void reusesPreviousPlaylistForUnchangedBody() throws Exception {
+        byte[] bytes = MEDIA.getBytes(StandardCharsets.UTF_8);
+        AbstractPlaylist previous = PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, MEDIA);
+
+        assertSame(previous, PlaylistFactory.parsePlaylistIfChanged(PlaylistVersion.TWELVE,
+                new ByteArrayInputStream(bytes), previous));
+        assertSame(previous, PlaylistFactory.parsePlaylistIfChanged(PlaylistVersion.TWELVE, bytes, previous));
+        assertSame(previous, PlaylistFactory.parsePlaylistIfChanged(PlaylistVersion.TWELVE, MEDIA, previous));
+
+        String changed = MEDIA + "#EXTINF:6,\nseg2.ts\n";
+        AbstractPlaylist current = PlaylistFactory.parsePlaylistIfChanged(PlaylistVersion.TWELVE,
+                new ByteArrayInputStream(changed.getBytes(StandardCharsets.UTF_8)), previous);
+        assertNotSame(previous, current);
+        assertEquals(3, ((MediaPlaylist) current).getSegments().size());
+        assertEquals(XxHash64.hashUtf8(changed), current.getFingerprint());
+
+        AbstractPlaylist first = PlaylistFactory.parsePlaylistIfChanged(PlaylistVersion.TWELVE,
+                new ByteArrayInputStream(bytes), null);
+        assertEquals(previous.toString(), first.toString());
+    }
+
+    @Test
+    public void readsBodiesLargerThanTheReadBuffer() throws Exception {
+        StringBuilder builder = new StringBuilder("#EXTM3U\n#EXT-X-TARGETDURATION:6\n");
+        for (int i = 0; i < 2000; i++) {
+            builder.append("#EXTINF:6,\nsegment").append(i).append(".ts\n");
+        }
+        byte[] bytes = builder.toString().getBytes(StandardCharsets.UTF_8);
+        MediaPlaylist playlist = (MediaPlaylist) PlaylistFactory.parsePlaylistIfChanged(PlaylistVersion.TWELVE,
+                new ByteArrayInputStream(bytes), null);
+        assertEquals(2000, playlist.getSegments().size());
+        assertEquals(XxHash64.hash(bytes, 0, bytes.length), playlist.getFingerprint());
+    }
+
+    @Test
+    public void derivedPlaylistsAreFingerprintedByTheirText() {
+        MasterPlaylist master = (MasterPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, MASTER);
+        long parsed = master.getFingerprint();
+        assertEquals(parsed, master.snapshot().getFingerprint());
+
+        MasterPlaylist derived = master.withVariantStreamClosestToBitrate(1000000);
+        assertEquals(XxHash64.hashUtf8(derived.toString()), derived.getFingerprint());
+
+        master.removeVariantStream(master.getVariantStreams().get(1));
+        assertNotEquals(parsed, master.getFingerprint());
+        assertEquals(derived.getFingerprint(), master.getFingerprint());
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.comcast.viper.hlsparserj.tags.UnparsedTag;
+
+public class PlaylistParserTest {
+
+    private static final String PLAYLIST = "#EXTM3U\r\n"
+            + "#EXT-X-TARGETDURATION:2\r\n"
+            + "#EXT-X-KEY:METHOD=AES-128,URI=\"https://secure.domain.com/kéy\"\r\n"
+            + "#EXTINF:2.000,Première\r\n"
+            + "segment0.ts\r\n"
+            + "#EXTINF:2.000,\r\n"
+            + "segment1.ts";
+
+    @Test
+    public void parseChunksOfEverySize() {
+        byte[] bytes = PLAYLIST.getBytes(StandardCharsets.UTF_8);
+        PlaylistParser expected = new PlaylistParser();
+        expected.parse(PLAYLIST.replace("\r", ""));
+
+        for (int chunkSize = 1; chunkSize <= bytes.length; chunkSize++) {
+            PlaylistParser parser = new PlaylistParser();
+            for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+                parser.parseChunk(ByteBuffer.wrap(bytes, offset, Math.min(chunkSize, bytes.length - offset)));
+            }
+            parser.finish();
+
+            assertFalse(parser.isMasterPlaylist());
+            assertTags(expected.getTags(), parser.getTags());
+        }
+    }
+
+    @Test
+    public void parseStringWithCarriageReturns() {
+        PlaylistParser expected = new PlaylistParser();
+        expected.parse(PLAYLIST.replace("\r", ""));
+        PlaylistParser parser = new PlaylistParser();
+        parser.parse(PLAYLIST);
+
+        assertEquals(5, parser.getTags().size());
+        assertTags(expected.getTags(), parser.getTags());
+    }
+
+    @Test
+    public void parseInputStreamWithLongLines() throws IOException {
+        StringBuilder builder = new StringBuilder("#EXTM3U\n#EXT-X-TARGETDURATION:2\n");
+        for (int i = 0; i < 500; i++) {
+            builder.append("#EXTINF:2.000,").append(longTitle(i)).append("\nsegment").append(i).append(".ts\n");
+        }
+        String playlist = builder.toString();
+        PlaylistParser expected = new PlaylistParser();
+        expected.parse(playlist);
+        PlaylistParser parser = new PlaylistParser();
+        parser.parse(new ByteArrayInputStream(playlist.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(502, parser.getTags().size());
+        assertTags(expected.getTags(), parser.getTags());
+    }
+
+    @Test
+    public void resetParserForAnotherPlaylist() throws IOException {
+        byte[] bytes = PLAYLIST.getBytes(StandardCharsets.UTF_8);
+        PlaylistParser expected = new PlaylistParser();
+        expected.parse(PLAYLIST);
+        PlaylistParser parser = new PlaylistParser();
+
+        parser.parse("#EXTM3U\n#EXT-X-STREAM-INF:BANDWIDTH=800000\nlow.m3u8\n");
+        List<UnparsedTag> masterTags = parser.getTags();
+        assertTrue(parser.isMasterPlaylist());
+
+        parser.reset();
+        parser.parse(new ByteArrayInputStream(bytes));
+        assertFalse(parser.isMasterPlaylist());
+        assertEquals(bytes.length, parser.getByteCount());
+        assertTags(expected.getTags(), parser.getTags());
+        assertNotSame(masterTags, parser.getTags());
+        assertEquals(2, masterTags.size());
+
+        parser.reset();
+        parser.parseChunk(ByteBuffer.wrap(bytes, 0, 40));
+        parser.parseChunk(ByteBuffer.wrap(bytes, 40, bytes.length - 40));
+        parser.finish();
+        assertTags(expected.getTags(), parser.getTags());
+    }
+
+    @Test
+    public void decodeNonAsciiLinesAsUtf8() throws IOException {
+        PlaylistParser parser = new PlaylistParser();
+        parser.parse(new ByteArrayInputStream(PLAYLIST.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("#EXTINF:2.000,Première", parser.getTags().get(3).getRawTag());
+        assertEquals("https://secure.domain.com/kéy", parser.getTags().get(2).getURI());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectMalformedUtf8InInputStream() throws IOException {
+        PlaylistParser parser = new PlaylistParser();
+        parser.parse(new ByteArrayInputStream(malformedPlaylist()));
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void rejectMalformedUtf8InChunks() {
+        PlaylistParser parser = new PlaylistParser();
+        parser.parseChunk(ByteBuffer.wrap(malformedPlaylist()));
+        parser.finish();
+    }
+
+    private static byte[] malformedPlaylist() {
+        byte[] title = "#EXTM3U\n#EXTINF:2.000,Premi".getBytes(StandardCharsets.US_ASCII);
+        byte[] bytes = Arrays.copyOf(title, title.length + 2);
+        // Latin-1 'e' with grave accent, which is not valid UTF-8
+        bytes[title.length] = (byte) 0xE8;
+        bytes[title.length + 1] = 'n';
+        return bytes;
+    }
+
+    private static String longTitle(final int index) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < index % 7; i++) {
+            builder.append("A rather long segment title ").append(index).append(' ');
+        }
+        for (int i = 0; i < index % 3 * 2000; i++) {
+            builder.append('x');
+        }
+        return builder.toString();
+    }
+
+    private void assertTags(final List<UnparsedTag> expected, final List<UnparsedTag> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getRawTag(), actual.get(i).getRawTag());
+            assertEquals(expected.get(i).getURI(), actual.get(i).getURI());
+            assertEquals(expected.get(i).getAttributes(), actual.get(i).getAttributes());
+        }
+    }
+}
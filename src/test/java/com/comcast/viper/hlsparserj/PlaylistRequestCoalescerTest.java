@@ -0,0 +1,189 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PlaylistRequestCoalescerTest {
+
+    private static final String MEDIA_PLAYLIST = "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:2\n"
+            + "#EXTINF:2.000,\n"
+            + "segment0.ts\n";
+
+    private static final int THREADS = 200;
+
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduler;
+    private AtomicInteger loads;
+
+    @Before
+    public void before() {
+        executor = Executors.newFixedThreadPool(THREADS);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        loads = new AtomicInteger();
+    }
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void concurrentCallersShareOneLoad() throws Exception {
+        final PlaylistRequestCoalescer coalescer = new PlaylistRequestCoalescer(slowLoader(200));
+        final URL url = new URL("http://origin/live.m3u8");
+
+        List<Future<AbstractPlaylist>> results = callConcurrently(() -> coalescer.parsePlaylist(url));
+
+        AbstractPlaylist first = results.get(0).get();
+        for (Future<AbstractPlaylist> result : results) {
+            assertSame(first, result.get());
+        }
+        assertTrue(first.isFrozen());
+        assertEquals(1, loads.get());
+        assertEquals(1, coalescer.getExecutedCount());
+        assertEquals(THREADS - 1, coalescer.getCoalescedCount());
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    @Test
+    public void differentURLsAreNotCoalesced() throws Exception {
+        final PlaylistRequestCoalescer coalescer = new PlaylistRequestCoalescer(slowLoader(200));
+        final AtomicInteger next = new AtomicInteger();
+
+        List<Future<AbstractPlaylist>> results = callConcurrently(
+                () -> coalescer.parsePlaylist(new URL("http://origin/live" + (next.getAndIncrement() % 4) + ".m3u8")));
+        for (Future<AbstractPlaylist> result : results) {
+            result.get();
+        }
+
+        assertEquals(4, loads.get());
+        assertEquals(4, coalescer.getExecutedCount());
+        assertEquals(THREADS - 4, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void completedRequestIsNotReused() throws Exception {
+        PlaylistRequestCoalescer coalescer = new PlaylistRequestCoalescer(slowLoader(0));
+        URL url = new URL("http://origin/live.m3u8");
+
+        AbstractPlaylist first = coalescer.parsePlaylist(url);
+        AbstractPlaylist second = coalescer.parsePlaylist(url);
+
+        assertTrue(first != second);
+        assertEquals(2, coalescer.getExecutedCount());
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void failureIsReportedToEveryCaller() throws Exception {
+        final PlaylistRequestCoalescer coalescer = new PlaylistRequestCoalescer(playlistURL -> {
+            loads.incrementAndGet();
+            CompletableFuture<AbstractPlaylist> result = new CompletableFuture<AbstractPlaylist>();
+            scheduler.schedule(
+                    () -> result.completeExceptionally(new IOException("Request returned a status code of 503")),
+                    200, TimeUnit.MILLISECONDS);
+            return result;
+        });
+        final URL url = new URL("http://origin/live.m3u8");
+
+        List<Future<AbstractPlaylist>> results = callConcurrently(() -> coalescer.parsePlaylist(url));
+        for (Future<AbstractPlaylist> result : results) {
+            try {
+                result.get();
+            } catch (ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof IOException);
+            }
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void coalesceBlockingFetchesFromOrigin() throws Exception {
+        StubOriginServer origin = new StubOriginServer();
+        origin.start();
+        try {
+            origin.setPlaylist("/live.m3u8", MEDIA_PLAYLIST);
+            origin.setDelay(300);
+            final URL url = origin.url("/live.m3u8");
+            final PlaylistRequestCoalescer coalescer = new PlaylistRequestCoalescer(PlaylistVersion.TWELVE, 2000, 2000, 5000);
+
+            List<Future<AbstractPlaylist>> results = callConcurrently(() -> coalescer.parsePlaylist(url));
+            for (Future<AbstractPlaylist> result : results) {
+                assertEquals(1, ((MediaPlaylist) result.get()).getSegments().size());
+            }
+            assertEquals(coalescer.getExecutedCount(), origin.getRequestCount("/live.m3u8"));
+            assertEquals(THREADS, coalescer.getExecutedCount() + coalescer.getCoalescedCount());
+            assertTrue(coalescer.getExecutedCount() < THREADS / 10);
+        } finally {
+            origin.stop();
+        }
+    }
+
+    /**
+     * Starts THREADS callers at the same moment.
+     */
+    private List<Future<AbstractPlaylist>> callConcurrently(final Callable<AbstractPlaylist> call) {
+        final CyclicBarrier barrier = new CyclicBarrier(THREADS);
+        List<Future<AbstractPlaylist>> results = new ArrayList<Future<AbstractPlaylist>>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(() -> {
+                barrier.await();
+                return call.call();
+            }));
+        }
+        return results;
+    }
+
+    /**
+     * Returns a loader that parses MEDIA_PLAYLIST in the calling thread after a delay.
+     */
+    private PlaylistRequestCoalescer.Loader slowLoader(final long delayMillis) {
+        return playlistURL -> {
+            loads.incrementAndGet();
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return CompletableFuture.completedFuture(PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE,
+                    MEDIA_PLAYLIST));
+        };
+    }
+}
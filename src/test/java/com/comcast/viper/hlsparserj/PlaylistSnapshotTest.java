@@ -0,0 +1,278 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.comcast.viper.hlsparserj.tags.UnparsedTag;
+import com.comcast.viper.hlsparserj.tags.master.StreamInf;
+import com.comcast.viper.hlsparserj.tags.media.ExtInf;
+
+public class PlaylistSnapshotTest {
+
+    private static final String MASTER_PLAYLIST = "#EXTM3U\n"
+            + "#EXT-X-STREAM-INF:BANDWIDTH=800000\n"
+            + "low.m3u8\n"
+            + "#EXT-X-STREAM-INF:BANDWIDTH=2000000\n"
+            + "mid.m3u8\n"
+            + "#EXT-X-STREAM-INF:BANDWIDTH=5000000\n"
+            + "high.m3u8\n";
+
+    private static final String MEDIA_PLAYLIST = "#EXTM3U\n"
+            + "#EXT-X-VERSION:3\n"
+            + "#EXT-X-TARGETDURATION:10\n"
+            + "#EXT-X-MEDIA-SEQUENCE:100\n"
+            + "#EXT-X-KEY:METHOD=AES-128,URI=\"key1\"\n"
+            + "#EXTINF:10.000,\n"
+            + "segment0.ts\n"
+            + "#EXT-X-DISCONTINUITY\n"
+            + "#EXTINF:10.000,\n"
+            + "segment1.ts\n"
+            + "#EXTINF:10.000,\n"
+            + "segment2.ts\n"
+            + "#EXT-X-KEY:METHOD=AES-128,URI=\"key2\"\n"
+            + "#EXTINF:10.000,\n"
+            + "segment3.ts\n"
+            + "#EXT-X-ENDLIST\n";
+
+    @Test
+    public void snapshotIsIsolatedFromLaterChanges() throws IOException {
+        MasterPlaylist playlist = (MasterPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, MASTER_PLAYLIST);
+        MasterPlaylist snapshot = playlist.snapshot();
+
+        playlist.removeVariantStream(playlist.getVariantStreams().get(0));
+        playlist.getTags().get(1).setURI("changed.m3u8");
+
+        assertTrue(snapshot.isFrozen());
+        assertFalse(playlist.isFrozen());
+        assertEquals(3, snapshot.getVariantStreams().size());
+        assertEquals("low.m3u8", snapshot.getVariantStreams().get(0).getURI());
+        assertEquals(MASTER_PLAYLIST, snapshot.toString());
+        assertSame(snapshot, snapshot.snapshot());
+    }
+
+    @Test
+    public void frozenTagsRejectChanges() throws IOException {
+        MasterPlaylist snapshot = ((MasterPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE,
+                MASTER_PLAYLIST)).snapshot();
+        UnparsedTag tag = snapshot.getTags().get(1);
+        try {
+            tag.setURI("changed.m3u8");
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException ex) {
+            // expected
+        }
+        try {
+            tag.getAttributes().put("BANDWIDTH", "1");
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void withoutVariantStreamSharesUnchangedTags() throws IOException {
+        MasterPlaylist snapshot = ((MasterPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE,
+                MASTER_PLAYLIST)).snapshot();
+        StreamInf mid = snapshot.getVariantStreams().get(1);
+
+        MasterPlaylist derived = snapshot.withoutVariantStream(mid);
+
+        assertTrue(derived.isFrozen());
+        assertEquals(3, snapshot.getVariantStreams().size());
+        assertEquals(2, derived.getVariantStreams().size());
+        assertSame(snapshot.getTags().get(0), derived.getTags().get(0));
+        assertSame(snapshot.getTags().get(3), derived.getTags().get(2));
+
+        MasterPlaylist closest = snapshot.withVariantStreamClosestToBitrate(1900000);
+        assertEquals(1, closest.getVariantStreams().size());
+        assertEquals("mid.m3u8", closest.getVariantStreams().get(0).getURI());
+    }
+
+    @Test
+    public void withoutVariantStreamOfMutablePlaylist() throws IOException {
+        MasterPlaylist playlist = (MasterPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, MASTER_PLAYLIST);
+
+        MasterPlaylist derived = playlist.withoutVariantStream(playlist.getVariantStreams().get(2));
+
+        assertEquals(3, playlist.getVariantStreams().size());
+        assertEquals(2, derived.getVariantStreams().size());
+        assertEquals("mid.m3u8", derived.getVariantStreams().get(1).getURI());
+    }
+
+    @Test
+    public void withSegmentsAdjustsSequenceNumbersAndKey() throws IOException {
+        MediaPlaylist playlist = (MediaPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, MEDIA_PLAYLIST);
+
+        MediaPlaylist derived = playlist.withSegments(2, 4);
+
+        assertEquals(Arrays.asList("#EXTM3U",
+                "#EXT-X-VERSION:3",
+                "#EXT-X-TARGETDURATION:10",
+                "#EXT-X-MEDIA-SEQUENCE:102",
+                "#EXT-X-DISCONTINUITY-SEQUENCE:1",
+                "#EXT-X-KEY:METHOD=AES-128,URI=\"key1\"",
+                "#EXTINF:10.000,",
+                "#EXT-X-KEY:METHOD=AES-128,URI=\"key2\"",
+                "#EXTINF:10.000,",
+                "#EXT-X-ENDLIST"), rawTags(derived));
+        assertEquals(102, derived.getMediaSequence().getSequenceNumber());
+        List<ExtInf> segments = derived.getSegments();
+        assertEquals(2, segments.size());
+        assertEquals("key1", segments.get(0).getKey().getURI());
+        assertTrue(derived.getEndList());
+        assertEquals(4, playlist.getSegments().size());
+    }
+
+    @Test
+    public void withSegmentsKeepsOwnKey() throws IOException {
+        MediaPlaylist playlist = (MediaPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, MEDIA_PLAYLIST);
+
+        MediaPlaylist derived = playlist.withSegments(3, 4);
+
+        assertEquals(103, derived.getMediaSequence().getSequenceNumber());
+        assertEquals(1, derived.getSegments().size());
+        assertEquals("key2", derived.getSegments().get(0).getKey().getURI());
+        assertEquals(1, countTags(derived, "EXT-X-KEY"));
+
+        MediaPlaylist empty = playlist.withSegments(4, 4);
+        assertEquals(0, empty.getSegments().size());
+        assertTrue(empty.getEndList());
+        assertNotSame(playlist, playlist.withSegments(0, 4));
+        assertEquals(rawTags(playlist), rawTags(playlist.withSegments(0, 4)));
+    }
+
+    @Test
+    public void withSegmentsCarriesMap() throws IOException {
+        MediaPlaylist playlist = (MediaPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, "#EXTM3U\n"
+                + "#EXT-X-TARGETDURATION:4\n"
+                + "#EXT-X-MAP:URI=\"init1.mp4\"\n"
+                + "#EXTINF:4.000,\n"
+                + "s0.mp4\n"
+                + "#EXT-X-DISCONTINUITY\n"
+                + "#EXT-X-MAP:URI=\"init2.mp4\"\n"
+                + "#EXTINF:4.000,\n"
+                + "s1.mp4\n"
+                + "#EXTINF:4.000,\n"
+                + "s2.mp4\n"
+                + "#EXTINF:4.000,\n"
+                + "s3.mp4\n");
+
+        assertEquals(Arrays.asList("#EXTM3U",
+                "#EXT-X-TARGETDURATION:4",
+                "#EXT-X-MAP:URI=\"init1.mp4\"",
+                "#EXT-X-MEDIA-SEQUENCE:2",
+                "#EXT-X-DISCONTINUITY-SEQUENCE:1",
+                "#EXT-X-MAP:URI=\"init2.mp4\"",
+                "#EXTINF:4.000,",
+                "#EXTINF:4.000,"), rawTags(playlist.withSegments(2, 4)));
+
+        // The first kept segment has its own map, next to the one of the header
+        assertEquals(2, countTags(playlist.withSegments(1, 4), "EXT-X-MAP"));
+    }
+
+    @Test
+    public void withSegmentsResolvesByteRangeOffset() throws IOException {
+        MediaPlaylist playlist = (MediaPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, "#EXTM3U\n"
+                + "#EXT-X-TARGETDURATION:4\n"
+                + "#EXTINF:4.000,\n"
+                + "#EXT-X-BYTERANGE:1000@0\n"
+                + "main.ts\n"
+                + "#EXTINF:4.000,\n"
+                + "#EXT-X-BYTERANGE:1000\n"
+                + "main.ts\n"
+                + "#EXTINF:4.000,\n"
+                + "#EXT-X-BYTERANGE:1000\n"
+                + "main.ts\n");
+
+        MediaPlaylist kept = playlist.withSegments(2, 3);
+        assertEquals(Arrays.asList("#EXTM3U",
+                "#EXT-X-TARGETDURATION:4",
+                "#EXT-X-MEDIA-SEQUENCE:2",
+                "#EXTINF:4.000,",
+                "#EXT-X-BYTERANGE:1000@2000"), rawTags(kept));
+        assertEquals("main.ts", kept.getByteRanges().get(0).getURI());
+        assertEquals(2000, kept.getByteRanges().get(0).getOffset());
+
+        // Ranges with an offset and the first segment are kept as they are
+        assertEquals(rawTags(playlist), rawTags(playlist.withSegments(0, 3)));
+        assertEquals("#EXT-X-BYTERANGE:1000@1000", rawTags(playlist.withSegments(1, 3)).get(4));
+        assertEquals("#EXT-X-BYTERANGE:1000", rawTags(playlist.withSegments(1, 3)).get(6));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void withSegmentsRejectsInvalidRange() throws IOException {
+        MediaPlaylist playlist = (MediaPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, MEDIA_PLAYLIST);
+        playlist.withSegments(1, 5);
+    }
+
+    @Test
+    public void snapshotCanBeReadConcurrently() throws Exception {
+        final MediaPlaylist snapshot = ((MediaPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE,
+                MEDIA_PLAYLIST)).snapshot();
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < 64; i++) {
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return snapshot.getSegments().size() + snapshot.withSegments(1, 3).getSegments().size();
+                    }
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(Integer.valueOf(6), result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<String> rawTags(final AbstractPlaylist playlist) {
+        final List<String> rawTags = new ArrayList<String>();
+        for (UnparsedTag tag : playlist.getTags()) {
+            rawTags.add(tag.getRawTag());
+        }
+        return rawTags;
+    }
+
+    private static int countTags(final AbstractPlaylist playlist, final String tagName) {
+        int count = 0;
+        for (UnparsedTag tag : playlist.getTags()) {
+            if (tag.getTagName().equals(tagName)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.comcast.viper.hlsparserj.generator.MediaPlaylistGenerator;
+import com.comcast.viper.hlsparserj.tags.UnparsedTag;
+
+public class PlaylistTailTest {
+
+    @Test
+    public void tailMatchesFullParse() throws IOException {
+        String[] playlists = {
+            new MediaPlaylistGenerator(1).setSegmentCount(200).setKeyRotationInterval(7)
+                    .setDiscontinuityInterval(11).setProgramDateTime(1500000000000L).generate(),
+            new MediaPlaylistGenerator(2).setSegmentCount(200).setByteRanges(true).setLiveWindow(5000)
+                    .setDiscontinuityInterval(13).generate(),
+            new MediaPlaylistGenerator(3).setSegmentCount(50).generate().replace("\n", "\r\n"),
+        };
+        for (String playlist : playlists) {
+            MediaPlaylist full = (MediaPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, playlist);
+            int total = full.getSegments().size();
+            byte[] bytes = playlist.getBytes(StandardCharsets.UTF_8);
+            for (int segmentCount : new int[] {0, 1, 3, 8, total - 1, total, total + 5}) {
+                List<String> expected = rawTags(full.withSegments(Math.max(total - segmentCount, 0), total));
+
+                assertEquals(expected, rawTags(PlaylistFactory.parsePlaylistTail(PlaylistVersion.TWELVE,
+                        ByteBuffer.wrap(bytes), segmentCount)));
+                ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+                direct.put(bytes).flip();
+                assertEquals(expected, rawTags(PlaylistFactory.parsePlaylistTail(PlaylistVersion.TWELVE,
+                        direct, segmentCount)));
+                assertEquals(0, direct.position());
+            }
+        }
+    }
+
+    @Test
+    public void tailCarriesKeyAndSequenceNumbers() throws IOException {
+        String playlist = "#EXTM3U\n"
+                + "#EXT-X-TARGETDURATION:10\n"
+                + "#EXT-X-MEDIA-SEQUENCE:100\n"
+                + "#EXT-X-KEY:METHOD=AES-128,URI=\"key1\"\n"
+                + "#EXTINF:10.000,\n"
+                + "segment0.ts\n"
+                + "#EXT-X-DISCONTINUITY\n"
+                + "#EXTINF:10.000,\n"
+                + "segment1.ts\n"
+                + "#EXTINF:10.000,\n"
+                + "segment2.ts\n";
+        MediaPlaylist tail = (MediaPlaylist) PlaylistFactory.parsePlaylistTail(PlaylistVersion.TWELVE,
+                ByteBuffer.wrap(playlist.getBytes(StandardCharsets.UTF_8)), 1);
+
+        assertFalse(tail.isMasterPlaylist());
+        assertEquals(102, tail.getMediaSequence().getSequenceNumber());
+        assertEquals(1, tail.getSegments().size());
+        assertEquals("segment2.ts", tail.getSegments().get(0).getURI());
+        assertEquals("key1", tail.getSegments().get(0).getKey().getURI());
+        assertTrue(rawTags(tail).contains("#EXT-X-DISCONTINUITY-SEQUENCE:1 null"));
+    }
+
+    @Test
+    public void tailResolvesByteRangeOffset() throws IOException {
+        String playlist = "#EXTM3U\n"
+                + "#EXT-X-TARGETDURATION:4\n"
+                + "#EXT-X-VERSION:4\n"
+                + "#EXTINF:4.000,\n"
+                + "#EXT-X-BYTERANGE:1000@0\n"
+                + "main.ts\n"
+                + "#EXTINF:4.000,\n"
+                + "#EXT-X-BYTERANGE:1000\n"
+                + "main.ts\n"
+                + "#EXTINF:4.000,\n"
+                + "#EXT-X-BYTERANGE:1000\n"
+                + "main.ts\n"
+                + "#EXTINF:4.000,\n"
+                + "#EXT-X-BYTERANGE:500\n"
+                + "main.ts\n";
+        byte[] bytes = playlist.getBytes(StandardCharsets.UTF_8);
+
+        MediaPlaylist tail = (MediaPlaylist) PlaylistFactory.parsePlaylistTail(PlaylistVersion.TWELVE,
+                ByteBuffer.wrap(bytes), 2);
+        assertEquals(Arrays.asList("#EXTM3U null", "#EXT-X-TARGETDURATION:4 null", "#EXT-X-VERSION:4 null",
+                "#EXT-X-MEDIA-SEQUENCE:2 null", "#EXTINF:4.000, null", "#EXT-X-BYTERANGE:1000@2000 main.ts",
+                "#EXTINF:4.000, null", "#EXT-X-BYTERANGE:500 main.ts"), rawTags(tail));
+        assertEquals(rawTags(((MediaPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, playlist))
+                .withSegments(2, 4)), rawTags(tail));
+        assertEquals(2000, tail.getByteRanges().get(0).getOffset());
+
+        // Ranges of another resource are not continued
+        String other = playlist.replaceFirst("main.ts", "other.ts").replace("1000@0", "1000@5000");
+        tail = (MediaPlaylist) PlaylistFactory.parsePlaylistTail(PlaylistVersion.TWELVE,
+                ByteBuffer.wrap(other.getBytes(StandardCharsets.UTF_8)), 1);
+        assertTrue(rawTags(tail).contains("#EXT-X-BYTERANGE:500@2000 main.ts"));
+        assertEquals(rawTags(((MediaPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, other))
+                .withSegments(3, 4)), rawTags(tail));
+    }
+
+    @Test
+    public void tailCarriesMap() throws IOException {
+        String playlist = "#EXTM3U\n"
+                + "#EXT-X-TARGETDURATION:4\n"
+                + "#EXT-X-VERSION:7\n"
+                + "#EXT-X-MAP:URI=\"init1.mp4\"\n"
+                + "#EXTINF:4.000,\n"
+                + "s0.mp4\n"
+                + "#EXT-X-DISCONTINUITY\n"
+                + "#EXT-X-MAP:URI=\"init2.mp4\"\n"
+                + "#EXTINF:4.000,\n"
+                + "s1.mp4\n"
+                + "#EXTINF:4.000,\n"
+                + "s2.mp4\n"
+                + "#EXTINF:4.000,\n"
+                + "s3.mp4\n";
+        MediaPlaylist full = (MediaPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, playlist);
+        byte[] bytes = playlist.getBytes(StandardCharsets.UTF_8);
+
+        MediaPlaylist tail = (MediaPlaylist) PlaylistFactory.parsePlaylistTail(PlaylistVersion.TWELVE,
+                ByteBuffer.wrap(bytes), 2);
+        List<String> tags = rawTags(tail);
+        assertEquals(rawTags(full.withSegments(2, 4)), tags);
+        assertEquals("#EXT-X-MAP:URI=\"init2.mp4\" init2.mp4",
+                tags.get(tags.indexOf("#EXTINF:4.000, s2.mp4") - 1));
+
+        // The first kept segment has its own map
+        tail = (MediaPlaylist) PlaylistFactory.parsePlaylistTail(PlaylistVersion.TWELVE, ByteBuffer.wrap(bytes), 3);
+        assertEquals(rawTags(full.withSegments(1, 4)), rawTags(tail));
+        assertEquals(1, Collections.frequency(rawTags(tail), "#EXT-X-MAP:URI=\"init2.mp4\" init2.mp4"));
+    }
+
+    @Test
+    public void tailOfMappedFile() throws IOException {
+        String playlist = new MediaPlaylistGenerator(4).setSegmentCount(1000).setKeyRotationInterval(10).generate();
+        Path file = Files.createTempFile("playlist", ".m3u8");
+        try {
+            Files.write(file, playlist.getBytes(StandardCharsets.UTF_8));
+            MediaPlaylist full = (MediaPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, playlist);
+
+            MediaPlaylist tail = (MediaPlaylist) PlaylistFactory.parsePlaylistTail(PlaylistVersion.TWELVE, file, 5);
+
+            assertEquals(rawTags(full.withSegments(995, 1000)), rawTags(tail));
+            assertEquals(5, tail.getSegments().size());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void masterPlaylistIsParsedInFull() throws IOException {
+        String playlist = "#EXTM3U\n"
+                + "#EXT-X-STREAM-INF:BANDWIDTH=800000\n"
+                + "low.m3u8\n"
+                + "#EXT-X-STREAM-INF:BANDWIDTH=2000000\n"
+                + "high.m3u8\n";
+        AbstractPlaylist tail = PlaylistFactory.parsePlaylistTail(PlaylistVersion.TWELVE,
+                ByteBuffer.wrap(playlist.getBytes(StandardCharsets.UTF_8)), 1);
+
+        assertTrue(tail.isMasterPlaylist());
+        assertEquals(2, ((MasterPlaylist) tail).getVariantStreams().size());
+    }
+
+    private static List<String> rawTags(final AbstractPlaylist playlist) {
+        List<String> rawTags = new ArrayList<String>();
+        for (UnparsedTag tag : playlist.getTags()) {
+            rawTags.add(tag.getRawTag() + " " + tag.getURI());
+        }
+        return rawTags;
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import static com.comcast.viper.hlsparserj.TestPlaylists.liveWindow;
+import static com.comcast.viper.hlsparserj.TestPlaylists.parseMedia;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.comcast.viper.hlsparserj.tags.UnparsedTag;
+
+public class SegmentStoreTest {
+
+    private static final int WINDOW = 1000;
+    private static final int STEP = 3;
+
+    @Test
+    public void historySharesSegmentsBetweenSnapshots() {
+        List<MediaPlaylist> history = new ArrayList<MediaPlaylist>();
+        MediaPlaylist previous = null;
+        for (int i = 0; i < 60; i++) {
+            MediaPlaylist parsed = parseMedia(liveWindow(6, i * STEP, WINDOW, false));
+            MediaPlaylist snapshot = parsed.sharingSegmentsWith(previous);
+            assertTrue(snapshot.isFrozen());
+            assertEquals(parsed.toString(), snapshot.toString());
+            assertEquals(parsed.getFingerprint(), snapshot.getFingerprint());
+            assertEquals(WINDOW, snapshot.getSegments().size());
+            assertEquals(i * STEP, snapshot.getMediaSequence().getSequenceNumber());
+            history.add(snapshot);
+            previous = snapshot;
+        }
+
+        // The segments the snapshots have in common are the same tags, in the same chunks
+        List<UnparsedTag> first = history.get(0).getTags();
+        List<UnparsedTag> second = history.get(1).getTags();
+        int headerSize = history.get(0).getSegmentStore().getHeaderSize();
+        assertSame(first.get(headerSize + STEP), second.get(headerSize));
+
+        Map<Object, Boolean> tags = new IdentityHashMap<Object, Boolean>();
+        Map<Object, Boolean> chunks = new IdentityHashMap<Object, Boolean>();
+        for (MediaPlaylist snapshot : history) {
+            for (UnparsedTag tag : snapshot.getTags()) {
+                tags.put(tag, Boolean.TRUE);
+            }
+            for (UnparsedTag[] chunk : snapshot.getSegmentStore().getChunks()) {
+                chunks.put(chunk, Boolean.TRUE);
+            }
+        }
+        int distinctSegments = WINDOW + 59 * STEP;
+        assertTrue("tags " + tags.size(), tags.size() <= distinctSegments + 60 * headerSize);
+        int distinctChunks = (distinctSegments + SegmentStore.CHUNK_SIZE - 1) / SegmentStore.CHUNK_SIZE;
+        assertTrue("chunks " + chunks.size(), chunks.size() <= distinctChunks + 60);
+    }
+
+    @Test
+    public void sharingStopsAtFirstDifference() {
+        MediaPlaylist first = parseMedia(liveWindow(6, 0, 10, false)).sharingSegmentsWith(null);
+        String changed = liveWindow(6, 2, 10, true).replace("segment5.ts", "segment5-replaced.ts");
+        MediaPlaylist parsed = parseMedia(changed);
+        MediaPlaylist second = parsed.sharingSegmentsWith(first);
+
+        assertEquals(parsed.toString(), second.toString());
+        assertTrue(second.getEndList());
+        int header = first.getSegmentStore().getHeaderSize();
+        assertSame(first.getTags().get(header + 2), second.getTags().get(header));
+        assertNotSame(first.getTags().get(header + 5), second.getTags().get(header + 3));
+    }
+
+    @Test
+    public void unfrozenOrUnrelatedPredecessorIsNotShared() {
+        MediaPlaylist unfrozen = parseMedia(liveWindow(6, 0, 10, false));
+        MediaPlaylist parsed = parseMedia(liveWindow(6, 1, 10, false));
+        MediaPlaylist snapshot = parsed.sharingSegmentsWith(unfrozen);
+        assertEquals(parsed.toString(), snapshot.toString());
+        for (UnparsedTag tag : snapshot.getTags()) {
+            assertTrue(!unfrozen.getTags().contains(tag) || tag.isFrozen());
+            assertNotSame(unfrozen.getTags().get(unfrozen.getTags().size() - 1), tag);
+        }
+
+        // Older media sequence than the predecessor
+        MediaPlaylist later = parseMedia(liveWindow(6, 20, 10, false)).sharingSegmentsWith(null);
+        MediaPlaylist older = parsed.sharingSegmentsWith(later);
+        assertEquals(parsed.toString(), older.toString());
+        assertTrue(Collections.disjoint(new ArrayList<UnparsedTag>(older.getTags()),
+                new ArrayList<UnparsedTag>(later.getTags())));
+    }
+
+    @Test
+    public void storeSharesAndAppendsChunks() {
+        List<UnparsedTag> header = tags("#EXTM3U", 1);
+        List<UnparsedTag> segments = tags("#EXTINF:6,", 100);
+        SegmentStore store = SegmentStore.of(header, segments, Collections.<UnparsedTag>emptyList());
+        assertEquals(101, store.size());
+        assertEquals(4, store.getChunks().length);
+
+        List<UnparsedTag> appended = tags("#EXTINF:4,", 10);
+        SegmentStore next = store.share(header, 40, 100, appended, tags("#EXT-X-ENDLIST", 1));
+        assertEquals(1 + 60 + 10 + 1, next.size());
+        assertSame(segments.get(40), next.get(1));
+        assertSame(segments.get(99), next.get(60));
+        assertSame(appended.get(0), next.get(61));
+        assertEquals("#EXT-X-ENDLIST0", next.get(next.size() - 1).getRawTag());
+        assertSame(store.getChunks()[1], next.getChunks()[0]);
+        assertSame(store.getChunks()[2], next.getChunks()[1]);
+        assertNotSame(store.getChunks()[3], next.getChunks()[2]);
+
+        SegmentStore empty = next.share(header, 70, 70, Collections.<UnparsedTag>emptyList(),
+                Collections.<UnparsedTag>emptyList());
+        assertEquals(1, empty.size());
+        assertEquals(0, empty.getChunks().length);
+        assertNull(parseMedia(liveWindow(6, 0, 1, false)).getSegmentStore());
+    }
+
+    private static List<UnparsedTag> tags(final String prefix, final int count) {
+        List<UnparsedTag> tags = new ArrayList<UnparsedTag>();
+        for (int i = 0; i < count; i++) {
+            UnparsedTag tag = new UnparsedTag(prefix + i);
+            tag.freeze();
+            tags.add(tag);
+        }
+        return tags;
+    }
+}
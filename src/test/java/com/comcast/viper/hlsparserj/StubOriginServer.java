@@ -0,0 +1,317 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.bootstrap.HttpServer;
+import org.apache.http.impl.nio.bootstrap.ServerBootstrap;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.nio.protocol.BasicAsyncRequestConsumer;
+import org.apache.http.nio.protocol.HttpAsyncExchange;
+import org.apache.http.nio.protocol.HttpAsyncRequestConsumer;
+import org.apache.http.nio.protocol.HttpAsyncRequestHandler;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Non-blocking HTTP server that serves playlists from memory, for tests.
+ *
+ * Responses can be delayed to simulate a slow origin.  Delayed responses
+ * are released by a timer rather than a sleeping thread, so thousands of
+ * requests can be held open at once.
+ *
+ * Playlists are looked up by the request path without its query.  When
+ * blocking reload is enabled, requests with an _HLS_msn delivery directive
+ * are held until the next playlist is published at their path, or until
+ * the hold time passes if one is set, and requests with an _HLS_skip
+ * directive are answered with the delta update of the path if one is set.
+ */
+public class StubOriginServer {
+
+    private final ConcurrentHashMap<String, String> playlists = new ConcurrentHashMap<String, String>();
+    private final ConcurrentHashMap<String, String> deltaPlaylists = new ConcurrentHashMap<String, String>();
+    private final ConcurrentHashMap<String, AtomicInteger> requestCounts =
+            new ConcurrentHashMap<String, AtomicInteger>();
+    private final ConcurrentHashMap<String, String> lastQueries = new ConcurrentHashMap<String, String>();
+    private final ConcurrentHashMap<String, List<Runnable>> heldRequests =
+            new ConcurrentHashMap<String, List<Runnable>>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private volatile long delayMillis;
+    private volatile boolean blockingReload;
+    private volatile long holdMillis;
+    private HttpServer server;
+    private int port;
+
+    /**
+     * Starts the server on an ephemeral port.
+     * @throws Exception if the server can not be started
+     */
+    public void start() throws Exception {
+        server = ServerBootstrap.bootstrap()
+                .setListenerPort(0)
+                .setIOReactorConfig(IOReactorConfig.custom().setIoThreadCount(2).setSoReuseAddress(true).build())
+                .registerHandler("*", new PlaylistHandler())
+                .create();
+        server.start();
+        server.getEndpoint().waitFor();
+        port = ((InetSocketAddress) server.getEndpoint().getAddress()).getPort();
+    }
+
+    /**
+     * Stops the server.
+     */
+    public void stop() {
+        timer.shutdownNow();
+        if (server != null) {
+            server.shutdown(0, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Serves a playlist body at the given path.
+     * @param path request path
+     * @param body playlist body
+     */
+    public void setPlaylist(final String path, final String body) {
+        final List<Runnable> held;
+        synchronized (heldRequests) {
+            playlists.put(path, body);
+            held = heldRequests.remove(path);
+        }
+        if (held != null) {
+            for (Runnable respond : held) {
+                respond.run();
+            }
+        }
+    }
+
+    /**
+     * Serves a playlist delta update at the given path to requests with an
+     * _HLS_skip delivery directive.
+     * @param path request path
+     * @param body playlist delta update body, or null to serve the playlist
+     */
+    public void setDeltaPlaylist(final String path, final String body) {
+        if (body == null) {
+            deltaPlaylists.remove(path);
+        } else {
+            deltaPlaylists.put(path, body);
+        }
+    }
+
+    /**
+     * Enables holding requests with an _HLS_msn delivery directive until the
+     * next playlist is published at their path.
+     * @param blockingReload true to hold blocking reload requests
+     */
+    public void setBlockingReload(final boolean blockingReload) {
+        this.blockingReload = blockingReload;
+    }
+
+    /**
+     * Releases held blocking reload requests after the given time, if no
+     * playlist is published at their path before then.
+     * @param holdMillis hold time (ms), or 0 to hold until a playlist is published
+     */
+    public void setHoldTime(final long holdMillis) {
+        this.holdMillis = holdMillis;
+    }
+
+    /**
+     * Delays every response by the given time.
+     * @param delayMillis delay (ms)
+     */
+    public void setDelay(final long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    /**
+     * Returns the number of requests received for the given path.
+     * @param path request path
+     * @return request count
+     */
+    public int getRequestCount(final String path) {
+        final AtomicInteger count = requestCounts.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Returns the query of the last request received for the given path.
+     * @param path request path
+     * @return query, or null if the last request had none
+     */
+    public String getLastQuery(final String path) {
+        return lastQueries.get(path);
+    }
+
+    /**
+     * Returns the number of blocking reload requests held for the given path.
+     * @param path request path
+     * @return held request count
+     */
+    public int getHeldRequestCount(final String path) {
+        synchronized (heldRequests) {
+            final List<Runnable> held = heldRequests.get(path);
+            return held == null ? 0 : held.size();
+        }
+    }
+
+    /**
+     * Waits until the given number of blocking reload requests are held for
+     * the given path.
+     * @param path request path
+     * @param count held request count to wait for
+     * @param timeoutMillis maximum time to wait (ms)
+     * @return true if the requests are held, false if the wait timed out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitHeldRequests(final String path, final int count, final long timeoutMillis)
+            throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (heldRequests) {
+            while (getHeldRequestCount(path) < count) {
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                heldRequests.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Returns the highest number of requests that were held open at once.
+     * @return maximum concurrent request count
+     */
+    public int getMaxConcurrentRequests() {
+        return maxInFlight.get();
+    }
+
+    /**
+     * Returns the URL of the given path on this server.
+     * @param path request path
+     * @return URL
+     * @throws MalformedURLException never
+     */
+    public URL url(final String path) throws MalformedURLException {
+        return new URL("http://127.0.0.1:" + port + path);
+    }
+
+    private class PlaylistHandler implements HttpAsyncRequestHandler<HttpRequest> {
+
+        @Override
+        public HttpAsyncRequestConsumer<HttpRequest> processRequest(final HttpRequest request,
+                final HttpContext context) {
+            return new BasicAsyncRequestConsumer();
+        }
+
+        @Override
+        public void handle(final HttpRequest request, final HttpAsyncExchange exchange,
+                final HttpContext context) {
+            final String uri = request.getRequestLine().getUri();
+            final int queryStart = uri.indexOf('?');
+            final String path = queryStart < 0 ? uri : uri.substring(0, queryStart);
+            final String query = queryStart < 0 ? null : uri.substring(queryStart + 1);
+            if (query == null) {
+                lastQueries.remove(path);
+            } else {
+                lastQueries.put(path, query);
+            }
+            final boolean delta = query != null && query.contains("_HLS_skip=");
+            AtomicInteger count = requestCounts.get(path);
+            if (count == null) {
+                requestCounts.putIfAbsent(path, new AtomicInteger());
+                count = requestCounts.get(path);
+            }
+            count.incrementAndGet();
+
+            final int current = inFlight.incrementAndGet();
+            int max;
+            while ((max = maxInFlight.get()) < current && !maxInFlight.compareAndSet(max, current)) {
+                continue;
+            }
+
+            final AtomicBoolean responded = new AtomicBoolean();
+            final Runnable respond = new Runnable() {
+                @Override
+                public void run() {
+                    if (!responded.compareAndSet(false, true)) {
+                        return;
+                    }
+                    final HttpResponse response = exchange.getResponse();
+                    final String deltaBody = delta ? deltaPlaylists.get(path) : null;
+                    final String body = deltaBody != null ? deltaBody : playlists.get(path);
+                    if (body == null) {
+                        response.setStatusCode(HttpStatus.SC_NOT_FOUND);
+                    } else {
+                        response.setStatusCode(HttpStatus.SC_OK);
+                        response.setEntity(new NStringEntity(body, ContentType.create("application/vnd.apple.mpegurl", "UTF-8")));
+                    }
+                    inFlight.decrementAndGet();
+                    exchange.submitResponse();
+                }
+            };
+
+            if (blockingReload && query != null && query.contains("_HLS_msn=")) {
+                synchronized (heldRequests) {
+                    List<Runnable> held = heldRequests.get(path);
+                    if (held == null) {
+                        held = new ArrayList<Runnable>();
+                        heldRequests.put(path, held);
+                    }
+                    held.add(respond);
+                    heldRequests.notifyAll();
+                }
+                if (holdMillis > 0) {
+                    timer.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            synchronized (heldRequests) {
+                                final List<Runnable> held = heldRequests.get(path);
+                                if (held != null && held.remove(respond) && held.isEmpty()) {
+                                    heldRequests.remove(path);
+                                }
+                            }
+                            respond.run();
+                        }
+                    }, holdMillis, TimeUnit.MILLISECONDS);
+                }
+            } else if (delayMillis > 0) {
+                timer.schedule(respond, delayMillis, TimeUnit.MILLISECONDS);
+            } else {
+                respond.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+/**
+ * Playlist helpers shared by the tests.
+ */
+public final class TestPlaylists {
+
+    private TestPlaylists() {
+    }
+
+    /**
+     * Parses a media playlist.
+     * @param body playlist body
+     * @return media playlist
+     */
+    public static MediaPlaylist parseMedia(final String body) {
+        return (MediaPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, body);
+    }
+
+    /**
+     * Returns the body of a live playlist window, with segments of one
+     * target duration named segment&lt;sequence number&gt;.ts.
+     * @param targetDuration target duration (s)
+     * @param sequence media sequence number of the first segment
+     * @param segmentCount number of segments
+     * @param endList true to end the playlist with EXT-X-ENDLIST
+     * @return playlist body
+     */
+    public static String liveWindow(final int targetDuration, final int sequence, final int segmentCount,
+            final boolean endList) {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("#EXTM3U\n#EXT-X-VERSION:3\n#EXT-X-TARGETDURATION:").append(targetDuration).append('\n');
+        builder.append("#EXT-X-MEDIA-SEQUENCE:").append(sequence).append('\n');
+        for (int i = sequence; i < sequence + segmentCount; i++) {
+            builder.append("#EXTINF:").append(targetDuration).append(",\nsegment").append(i).append(".ts\n");
+        }
+        if (endList) {
+            builder.append("#EXT-X-ENDLIST\n");
+        }
+        return builder.toString();
+    }
+}
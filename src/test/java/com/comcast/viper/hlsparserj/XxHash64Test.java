@@ -0,0 +1,85 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class XxHash64Test {
+
+    @Test
+    public void matchesReferenceValues() {
+        assertEquals(0xEF46DB3751D8E999L, XxHash64.hashUtf8(""));
+        assertEquals(0xD24EC4F1A98C6E5BL, XxHash64.hashUtf8("a"));
+        assertEquals(0x44BC2CF5AD770999L, XxHash64.hashUtf8("abc"));
+    }
+
+    @Test
+    public void streamingMatchesOneShot() {
+        byte[] bytes = new byte[1000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i * 31 + 7);
+        }
+        for (int length : new int[] {0, 3, 4, 8, 31, 32, 33, 64, 100, 1000}) {
+            long expected = XxHash64.hash(bytes, 0, length);
+            for (int split = 0; split <= length; split += 7) {
+                XxHash64 hash = new XxHash64();
+                hash.update(bytes, 0, split);
+                hash.update(bytes, split, length - split);
+                assertEquals("length " + length + " split " + split, expected, hash.getValue());
+            }
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(length);
+            direct.put(bytes, 0, length).flip();
+            XxHash64 hash = new XxHash64();
+            hash.update(direct);
+            assertEquals(expected, hash.getValue());
+            assertEquals(0, direct.position());
+        }
+    }
+
+    @Test
+    public void utf8MatchesEncodedBytes() {
+        String string = "#EXTINF:6,café € 🎬 bad \ud800 end";
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        assertEquals(XxHash64.hash(bytes, 0, bytes.length), XxHash64.hashUtf8(string));
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            builder.append("seg").append(i).append(".ts é\n");
+        }
+        bytes = builder.toString().getBytes(StandardCharsets.UTF_8);
+        assertEquals(XxHash64.hash(bytes, 0, bytes.length), XxHash64.hashUtf8(builder));
+    }
+
+    @Test
+    public void resetAndSeed() {
+        XxHash64 hash = new XxHash64();
+        hash.updateUtf8("something else");
+        hash.reset();
+        hash.updateUtf8("abc");
+        assertEquals(0x44BC2CF5AD770999L, hash.getValue());
+
+        XxHash64 seeded = new XxHash64(1);
+        seeded.updateUtf8("abc");
+        assertNotEquals(hash.getValue(), seeded.getValue());
+    }
+}
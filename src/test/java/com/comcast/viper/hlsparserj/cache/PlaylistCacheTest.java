@@ -0,0 +1,199 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.cache;
+
+import static com.comcast.viper.hlsparserj.TestPlaylists.liveWindow;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.comcast.viper.hlsparserj.AbstractPlaylist;
+import com.comcast.viper.hlsparserj.PlaylistFactory;
+import com.comcast.viper.hlsparserj.PlaylistVersion;
+
+public class PlaylistCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private PlaylistCache newCache(final int maxEntries, final long maxWeight) {
+        return new PlaylistCache(maxEntries, maxWeight, 1, TimeUnit.HOURS, 1, now::get);
+    }
+
+    @Test
+    public void returnsFrozenPlaylistUntilLiveEntryExpires() throws Exception {
+        PlaylistCache cache = newCache(10, Long.MAX_VALUE);
+        URL url = new URL("http://example.com/live.m3u8");
+        AbstractPlaylist playlist = PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, liveWindow(6, 0, 3, false));
+
+        assertNull(cache.get(url));
+        assertSame(playlist, cache.put(url, playlist));
+        assertTrue(playlist.isFrozen());
+        assertSame(playlist, cache.get(url));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        assertSame(playlist, cache.get(url));
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertNull(cache.get(url));
+        assertEquals(0, cache.size());
+
+        CacheStats stats = cache.getStats();
+        assertEquals(2, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(1, stats.getExpirationCount());
+    }
+
+    @Test
+    public void vodEntriesUseVodTimeToLive() throws Exception {
+        PlaylistCache cache = newCache(10, Long.MAX_VALUE);
+        URL endListURL = new URL("http://example.com/endlist.m3u8");
+        URL vodURL = new URL("http://example.com/vod.m3u8");
+        cache.put(endListURL, PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, liveWindow(6, 0, 3, true)));
+        cache.put(vodURL, PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE,
+                "#EXTM3U\n#EXT-X-PLAYLIST-TYPE:VOD\n#EXT-X-TARGETDURATION:6\n#EXTINF:6,\nseg0.ts\n"));
+
+        now.addAndGet(TimeUnit.MINUTES.toNanos(59));
+        assertNotNull(cache.get(endListURL));
+        assertNotNull(cache.get(vodURL));
+        now.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        assertNull(cache.get(endListURL));
+        assertNull(cache.get(vodURL));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntry() throws Exception {
+        PlaylistCache cache = newCache(2, Long.MAX_VALUE);
+        URL first = new URL("http://example.com/1.m3u8");
+        URL second = new URL("http://example.com/2.m3u8");
+        URL third = new URL("http://example.com/3.m3u8");
+        cache.put(first, PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, liveWindow(6, 0, 3, true)));
+        cache.put(second, PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, liveWindow(6, 1, 3, true)));
+        assertNotNull(cache.get(first));
+        cache.put(third, PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, liveWindow(6, 2, 3, true)));
+
+        assertNotNull(cache.get(first));
+        assertNull(cache.get(second));
+        assertNotNull(cache.get(third));
+        assertEquals(1, cache.getStats().getEvictionCount());
+    }
+
+    @Test
+    public void evictsByWeight() throws Exception {
+        AbstractPlaylist playlist = PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, liveWindow(6, 0, 3, true));
+        long weight = PlaylistCache.estimateWeight(playlist);
+        PlaylistCache cache = newCache(100, weight * 2);
+        for (int i = 0; i < 5; i++) {
+            cache.put(new URL("http://example.com/" + i + ".m3u8"),
+                    PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, liveWindow(6, 0, 3, true)));
+        }
+
+        assertEquals(2, cache.size());
+        assertEquals(weight * 2, cache.getWeight());
+        assertEquals(3, cache.getStats().getEvictionCount());
+
+        PlaylistCache tinyCache = newCache(100, weight - 1);
+        tinyCache.put(new URL("http://example.com/big.m3u8"), playlist);
+        assertEquals(0, tinyCache.size());
+        assertEquals(0, tinyCache.getWeight());
+    }
+
+    @Test
+    public void reusesPlaylistForUnchangedBody() throws Exception {
+        PlaylistCache cache = newCache(10, Long.MAX_VALUE);
+        URL url = new URL("http://example.com/live.m3u8");
+        String body = liveWindow(6, 0, 3, false);
+
+        AbstractPlaylist first = cache.parsePlaylist(PlaylistVersion.TWELVE, url, body);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        AbstractPlaylist second = cache.parsePlaylist(PlaylistVersion.TWELVE, url, body);
+        assertSame(first, second);
+        assertSame(first, cache.get(url));
+
+        AbstractPlaylist third = cache.parsePlaylist(PlaylistVersion.TWELVE, url, liveWindow(6, 1, 3, false));
+        assertNotSame(first, third);
+        assertSame(third, cache.get(url));
+        assertEquals(3, cache.getStats().getHitCount());
+        assertEquals(2, cache.getStats().getMissCount());
+    }
+
+    @Test
+    public void reusesPlaylistForUnchangedBytes() throws Exception {
+        PlaylistCache cache = newCache(10, Long.MAX_VALUE);
+        URL url = new URL("http://example.com/live.m3u8");
+        String body = liveWindow(6, 0, 3, false);
+
+        AbstractPlaylist first = cache.parsePlaylist(PlaylistVersion.TWELVE, url, body);
+        AbstractPlaylist second = cache.parsePlaylist(PlaylistVersion.TWELVE, url,
+                body.getBytes(StandardCharsets.UTF_8));
+        assertSame(first, second);
+
+        AbstractPlaylist third = cache.parsePlaylist(PlaylistVersion.TWELVE, url,
+                liveWindow(6, 1, 3, false).getBytes(StandardCharsets.UTF_8));
+        assertNotSame(first, third);
+        assertTrue(third.isFrozen());
+        assertSame(third, cache.parsePlaylist(PlaylistVersion.TWELVE, url, liveWindow(6, 1, 3, false)));
+    }
+
+    @Test
+    public void concurrentAccessKeepsBounds() throws Exception {
+        final PlaylistCache cache = new PlaylistCache(64, Long.MAX_VALUE);
+        final String body = liveWindow(6, 0, 3, true);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int t = 0; t < 8; t++) {
+                final int thread = t;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int i = 0; i < 2000; i++) {
+                            URL url = new URL("http://example.com/" + ((i * 7 + thread) % 256) + ".m3u8");
+                            AbstractPlaylist playlist = cache.parsePlaylist(PlaylistVersion.TWELVE, url, body);
+                            assertTrue(playlist.isFrozen());
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertTrue(cache.size() <= 64);
+        CacheStats stats = cache.getStats();
+        assertEquals(16000, stats.getHitCount() + stats.getMissCount());
+        assertTrue(stats.getEvictionCount() > 0);
+    }
+
+}
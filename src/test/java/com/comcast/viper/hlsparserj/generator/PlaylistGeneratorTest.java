@@ -0,0 +1,207 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.comcast.viper.hlsparserj.MasterPlaylist;
+import com.comcast.viper.hlsparserj.MediaPlaylist;
+import com.comcast.viper.hlsparserj.PlaylistFactory;
+import com.comcast.viper.hlsparserj.PlaylistVersion;
+import com.comcast.viper.hlsparserj.tags.master.StreamInf;
+import com.comcast.viper.hlsparserj.tags.media.ByteRange;
+import com.comcast.viper.hlsparserj.tags.media.ExtInf;
+
+public class PlaylistGeneratorTest {
+
+    @Test
+    public void sameSeedGeneratesSamePlaylist() {
+        String first = new MediaPlaylistGenerator(42).setSegmentCount(100).setKeyRotationInterval(10).generate();
+        String second = new MediaPlaylistGenerator(42).setSegmentCount(100).setKeyRotationInterval(10).generate();
+        String other = new MediaPlaylistGenerator(43).setSegmentCount(100).setKeyRotationInterval(10).generate();
+
+        assertEquals(first, second);
+        assertNotEquals(first, other);
+    }
+
+    @Test
+    public void generatesVodPlaylistWithFeatures() {
+        String text = new MediaPlaylistGenerator(1)
+                .setSegmentCount(100)
+                .setTargetDuration(6, 0.2)
+                .setDiscontinuityInterval(25)
+                .setKeyRotationInterval(10)
+                .setProgramDateTime(1420070400000L)
+                .generate();
+        MediaPlaylist playlist = (MediaPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, text);
+
+        List<ExtInf> segments = playlist.getSegments();
+        assertEquals(100, segments.size());
+        assertTrue(playlist.getEndList());
+        assertEquals("VOD", playlist.getPlaylistType().getType());
+        assertEquals(6, playlist.getTargetDuration().getDuration());
+        assertEquals("2015-01-01T00:00:00Z", segments.get(0).getDateTime());
+
+        int discontinuities = 0;
+        for (ExtInf segment : segments) {
+            assertTrue(segment.getDuration() > 4.7f && segment.getDuration() <= 6.0f);
+            if (segment.getDiscontinuity()) {
+                discontinuities++;
+            }
+        }
+        assertEquals(3, discontinuities);
+        assertTrue(segments.get(25).getDiscontinuity());
+        assertTrue(segments.get(9).getKey().getURI().endsWith("?id=0"));
+        assertTrue(segments.get(10).getKey().getURI().endsWith("?id=1"));
+        assertEquals("0x00000000000000000000000000000009", segments.get(99).getKey().getIV());
+    }
+
+    @Test
+    public void generatesContiguousByteRanges() {
+        String text = new MediaPlaylistGenerator(7).setSegmentCount(50).setByteRanges(true).generate();
+        MediaPlaylist playlist = (MediaPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, text);
+
+        List<ByteRange> byteRanges = playlist.getByteRanges();
+        assertEquals(50, byteRanges.size());
+        long offset = 0;
+        for (ByteRange byteRange : byteRanges) {
+            assertEquals(offset, byteRange.getOffset());
+            assertEquals(0, byteRange.getLength() % 188);
+            assertEquals("segment.ts", byteRange.getURI());
+            offset += byteRange.getLength();
+        }
+    }
+
+    @Test
+    public void generatesIFramePlaylist() {
+        String text = new MediaPlaylistGenerator(7).setSegmentCount(20).setIFramesOnly(true).generate();
+        MediaPlaylist playlist = (MediaPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, text);
+
+        assertTrue(playlist.getIFramesOnly());
+        assertEquals(20, playlist.getByteRanges().size());
+        assertEquals("segment_19.ts", playlist.getByteRanges().get(19).getURI());
+    }
+
+    @Test
+    public void liveWindowsSlideOverTheSameSegments() {
+        MediaPlaylistGenerator generator = new MediaPlaylistGenerator(3)
+                .setSegmentCount(5)
+                .setKeyRotationInterval(4)
+                .setDiscontinuityInterval(3)
+                .setProgramDateTime(0);
+        MediaPlaylist window = (MediaPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE,
+                generator.setLiveWindow(10).generate());
+        MediaPlaylist nextWindow = (MediaPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE,
+                generator.setLiveWindow(11).generate());
+        MediaPlaylist vod = (MediaPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE,
+                new MediaPlaylistGenerator(3).setSegmentCount(20).setKeyRotationInterval(4)
+                        .setDiscontinuityInterval(3).setProgramDateTime(0).generate());
+
+        assertFalse(window.getEndList());
+        assertEquals(10, window.getMediaSequence().getSequenceNumber());
+        assertEquals(11, nextWindow.getMediaSequence().getSequenceNumber());
+        assertEquals(5, window.getSegments().size());
+        for (int i = 1; i < 5; i++) {
+            ExtInf segment = window.getSegments().get(i);
+            ExtInf nextSegment = nextWindow.getSegments().get(i - 1);
+            ExtInf vodSegment = vod.getSegments().get(10 + i);
+            assertEquals(vodSegment.getURI(), segment.getURI());
+            assertEquals(vodSegment.getURI(), nextSegment.getURI());
+            assertEquals(vodSegment.getDuration(), segment.getDuration(), 0);
+            assertEquals(vodSegment.getDateTime(), nextSegment.getDateTime());
+            assertEquals(vodSegment.getKey().getURI(), nextSegment.getKey().getURI());
+        }
+        // The window starts in the middle of a key period, so it restates the key
+        assertTrue(window.getSegments().get(0).getKey().getURI().endsWith("?id=2"));
+        assertTrue(generator.setLiveWindow(10).generate().contains("#EXT-X-DISCONTINUITY-SEQUENCE:3\n"));
+    }
+
+    @Test
+    public void generatesMasterPlaylist() {
+        MasterPlaylistGenerator generator = new MasterPlaylistGenerator(5)
+                .setVariants(8, 300000, 12000000)
+                .setAudioLanguages("en", "es")
+                .setIFrameStreams(true);
+        MasterPlaylist playlist = (MasterPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE,
+                generator.generate());
+
+        List<StreamInf> variants = playlist.getVariantStreams();
+        assertEquals(8, variants.size());
+        assertEquals(8, playlist.getIFrameStreams().size());
+        assertEquals(2, playlist.getAlternateRenditions().size());
+        assertEquals("320x180", variants.get(0).getResolution());
+        assertEquals("1920x1080", variants.get(7).getResolution());
+        for (int i = 0; i < variants.size(); i++) {
+            assertEquals(generator.getBandwidth(i), variants.get(i).getBandwidth());
+            if (i > 0) {
+                assertTrue(variants.get(i).getBandwidth() > variants.get(i - 1).getBandwidth());
+            }
+        }
+        assertEquals(generator.generate(), new MasterPlaylistGenerator(5).setVariants(8, 300000, 12000000)
+                .setAudioLanguages("en", "es").setIFrameStreams(true).generate());
+    }
+
+    @Test
+    public void streamsToWriter() throws IOException {
+        CountingWriter writer = new CountingWriter();
+        new MediaPlaylistGenerator(9).setSegmentCount(200000).setProgramDateTime(0).write(writer);
+
+        assertEquals(new MediaPlaylistGenerator(9).setSegmentCount(200000).setProgramDateTime(0).generate().length(),
+                writer.count);
+    }
+
+    /**
+     * Writer that only counts characters.
+     */
+    private static class CountingWriter extends Writer {
+
+        private long count;
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) {
+            count += len;
+        }
+
+        @Override
+        public Writer append(final CharSequence csq) {
+            count += csq.length();
+            return this;
+        }
+
+        @Override
+        public Writer append(final char c) {
+            count++;
+            return this;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
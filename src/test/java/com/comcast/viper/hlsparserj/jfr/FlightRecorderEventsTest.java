@@ -0,0 +1,112 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+
+import com.comcast.viper.hlsparserj.AbstractPlaylist;
+import com.comcast.viper.hlsparserj.PlaylistFactory;
+import com.comcast.viper.hlsparserj.PlaylistVersion;
+import com.comcast.viper.hlsparserj.StubOriginServer;
+
+public class FlightRecorderEventsTest {
+
+    private static final String PLAYLIST = "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:6\n"
+            + "#EXTINF:6.0,\n"
+            + "segment0.ts\n"
+            + "#EXTINF:6.0,\n"
+            + "segment1.ts\n"
+            + "#EXT-X-ENDLIST\n";
+
+    @Test
+    public void recordsFetchParseAndSerializeEvents() throws Exception {
+        StubOriginServer origin = new StubOriginServer();
+        origin.start();
+        List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+        File file = File.createTempFile("hlsparserj", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(PlaylistFetchEvent.class).withThreshold(Duration.ZERO);
+            recording.enable(PlaylistParseEvent.class).withThreshold(Duration.ZERO);
+            recording.enable(PlaylistSerializeEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+
+            origin.setPlaylist("/media.m3u8", PLAYLIST);
+            AbstractPlaylist playlist = PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE,
+                    origin.url("/media.m3u8"), 2000, 2000, 2000);
+            playlist.toString();
+            try {
+                PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, origin.url("/missing.m3u8"), 2000, 2000, 2000);
+            } catch (Exception ex) {
+                // expected
+            }
+
+            recording.stop();
+            recording.dump(file.toPath());
+            events.addAll(RecordingFile.readAllEvents(file.toPath()));
+        } finally {
+            file.delete();
+            origin.stop();
+        }
+
+        List<RecordedEvent> fetches = eventsNamed(events, "com.comcast.viper.hlsparserj.PlaylistFetch");
+        assertEquals(2, fetches.size());
+        assertEquals(origin.url("/media.m3u8").toString(), fetches.get(0).getString("url"));
+        assertEquals(200, fetches.get(0).getInt("statusCode"));
+        assertEquals(PLAYLIST.length(), fetches.get(0).getLong("bytes"));
+        assertEquals(404, fetches.get(1).getInt("statusCode"));
+
+        List<RecordedEvent> parses = eventsNamed(events, "com.comcast.viper.hlsparserj.PlaylistParse");
+        assertEquals(1, parses.size());
+        assertEquals(5, parses.get(0).getInt("tagCount"));
+        assertEquals(2, parses.get(0).getInt("segmentCount"));
+        assertEquals(false, parses.get(0).getBoolean("masterPlaylist"));
+
+        List<RecordedEvent> serializes = eventsNamed(events, "com.comcast.viper.hlsparserj.PlaylistSerialize");
+        assertEquals(1, serializes.size());
+        assertEquals(PLAYLIST.length(), serializes.get(0).getLong("characters"));
+    }
+
+    @Test
+    public void eventsAreSkippedWhenNotRecording() {
+        assertNull(FlightRecorderEvents.beginParse());
+        FlightRecorderEvents.commitParse(null, null, false);
+        assertTrue(PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, PLAYLIST).toString().length() > 0);
+    }
+
+    private static List<RecordedEvent> eventsNamed(final List<RecordedEvent> events, final String name) {
+        List<RecordedEvent> named = new ArrayList<RecordedEvent>();
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name)) {
+                named.add(event);
+            }
+        }
+        return named;
+    }
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.live;
+
+import static com.comcast.viper.hlsparserj.TestPlaylists.parseMedia;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.comcast.viper.hlsparserj.AsyncPlaylistFetcher;
+import com.comcast.viper.hlsparserj.MediaPlaylist;
+import com.comcast.viper.hlsparserj.PlaylistVersion;
+import com.comcast.viper.hlsparserj.StubOriginServer;
+import com.comcast.viper.hlsparserj.tags.media.ExtInf;
+
+public class BlockingPlaylistReloaderTest {
+
+    private static final String BLOCKING = "#EXT-X-SERVER-CONTROL:CAN-BLOCK-RELOAD=YES,PART-HOLD-BACK=1.0\n";
+    private static final int SOCKET_TIMEOUT = 200;
+    private static final long WAIT = 5000;
+
+    private StubOriginServer origin;
+    private AsyncPlaylistFetcher fetcher;
+    private BlockingPlaylistReloader reloader;
+
+    @Before
+    public void before() throws Exception {
+        origin = new StubOriginServer();
+        origin.start();
+        origin.setBlockingReload(true);
+        fetcher = new AsyncPlaylistFetcher(2000, 5000, SOCKET_TIMEOUT, 100, 2);
+        reloader = new BlockingPlaylistReloader(fetcher, PlaylistVersion.TWELVE);
+    }
+
+    @After
+    public void after() throws Exception {
+        fetcher.close();
+        origin.stop();
+    }
+
+    @Test
+    public void reloadURLAsksForNextPartOrSegment() throws Exception {
+        URL url = new URL("http://example.com/live.m3u8");
+
+        // No parts: the next segment
+        assertEquals("http://example.com/live.m3u8?_HLS_msn=13",
+                BlockingPlaylistReloader.reloadURL(url, parseMedia(playlist(BLOCKING, 10, 3, 0)), true).toString());
+
+        // Parts of the segment being produced: the next part of it
+        assertEquals("http://example.com/live.m3u8?_HLS_msn=13&_HLS_part=2",
+                BlockingPlaylistReloader.reloadURL(url, parseMedia(playlist(BLOCKING, 10, 3, 2)), true).toString());
+
+        // Parts of a complete last segment only: the first part of the next one
+        String complete = playlist(BLOCKING, 10, 3, 2).replace("#EXT-X-PART:DURATION=0.5,URI=\"part13.1.ts\"\n",
+                "#EXT-X-PART:DURATION=0.5,URI=\"part13.1.ts\"\n#EXTINF:1.0,\nsegment13.ts\n");
+        assertEquals("http://example.com/live.m3u8?_HLS_msn=14&_HLS_part=0",
+                BlockingPlaylistReloader.reloadURL(url, parseMedia(complete), true).toString());
+
+        // Parts without PART-HOLD-BACK are not asked for
+        String noHoldBack = "#EXT-X-SERVER-CONTROL:CAN-BLOCK-RELOAD=YES\n";
+        assertEquals("http://example.com/live.m3u8?_HLS_msn=13",
+                BlockingPlaylistReloader.reloadURL(url, parseMedia(playlist(noHoldBack, 10, 3, 2)), true).toString());
+
+        // Delta updates, appended to an existing query
+        String skip = "#EXT-X-SERVER-CONTROL:CAN-BLOCK-RELOAD=YES,CAN-SKIP-UNTIL=12.0\n";
+        URL query = new URL("http://example.com/live.m3u8?token=abc#start");
+        assertEquals("http://example.com/live.m3u8?token=abc&_HLS_msn=13&_HLS_skip=YES",
+                BlockingPlaylistReloader.reloadURL(query, parseMedia(playlist(skip, 10, 3, 0)), true).toString());
+        assertEquals("http://example.com/live.m3u8?token=abc&_HLS_msn=13",
+                BlockingPlaylistReloader.reloadURL(query, parseMedia(playlist(skip, 10, 3, 0)), false).toString());
+        String skipDateRanges = "#EXT-X-SERVER-CONTROL:CAN-SKIP-UNTIL=12.0,CAN-SKIP-DATERANGES=YES\n";
+        assertEquals("http://example.com/live.m3u8?_HLS_skip=v2",
+                BlockingPlaylistReloader.reloadURL(url, parseMedia(playlist(skipDateRanges, 10, 3, 0)), true)
+                        .toString());
+
+        // No server control: a plain reload
+        assertEquals(url, BlockingPlaylistReloader.reloadURL(url, parseMedia(playlist("", 10, 3, 2)), true));
+    }
+
+    @Test
+    public void blockingTimeoutCoversThreeTargetDurations() throws Exception {
+        assertEquals(3 * 1000 + BlockingPlaylistReloader.TIMEOUT_MARGIN,
+                BlockingPlaylistReloader.blockingTimeout(parseMedia(playlist(BLOCKING, 0, 3, 0))));
+        assertEquals(0, BlockingPlaylistReloader.blockingTimeout(parseMedia(playlist("", 0, 3, 0))));
+    }
+
+    @Test
+    public void heldReloadCompletesWhenServerReleasesIt() throws Exception {
+        origin.setPlaylist("/live.m3u8", playlist(BLOCKING, 0, 3, 1));
+        MediaPlaylist current = parseMedia(playlist(BLOCKING, 0, 3, 1));
+
+        CompletableFuture<MediaPlaylist> next = reloader.reload(origin.url("/live.m3u8"), current);
+        assertTrue(origin.awaitHeldRequests("/live.m3u8", 1, WAIT));
+        assertEquals(1, origin.getHeldRequestCount("/live.m3u8"));
+        assertEquals("_HLS_msn=3&_HLS_part=1", origin.getLastQuery("/live.m3u8"));
+        assertFalse(next.isDone());
+        origin.setPlaylist("/live.m3u8", playlist(BLOCKING, 0, 3, 2));
+        MediaPlaylist reloaded = next.get(WAIT, TimeUnit.MILLISECONDS);
+        assertEquals(2, reloaded.getPartIndex().getPartCount(3));
+        assertTrue(reloaded.isFrozen());
+        assertEquals(1, origin.getRequestCount("/live.m3u8"));
+    }
+
+    @Test
+    public void heldReloadOutlivesSocketTimeout() throws Exception {
+        // Held for longer than the fetcher's socket timeout, but not the
+        // blocking reload timeout of three target durations
+        origin.setHoldTime(3 * SOCKET_TIMEOUT);
+        origin.setPlaylist("/live.m3u8", playlist(BLOCKING, 0, 3, 1));
+        MediaPlaylist current = parseMedia(playlist(BLOCKING, 0, 3, 1));
+
+        MediaPlaylist reloaded = reloader.reload(origin.url("/live.m3u8"), current).get(WAIT, TimeUnit.MILLISECONDS);
+        assertEquals(1, reloaded.getPartIndex().getPartCount(3));
+        assertEquals(1, origin.getRequestCount("/live.m3u8"));
+    }
+
+    @Test
+    public void deltaUpdateIsMerged() throws Exception {
+        String serverControl = "#EXT-X-SERVER-CONTROL:CAN-BLOCK-RELOAD=YES,CAN-SKIP-UNTIL=4.0\n";
+        origin.setPlaylist("/live.m3u8", playlist(serverControl, 0, 6, 0));
+        MediaPlaylist current = parseMedia(playlist(serverControl, 0, 6, 0));
+
+        CompletableFuture<MediaPlaylist> next = reloader.reload(origin.url("/live.m3u8"), current);
+        assertTrue(origin.awaitHeldRequests("/live.m3u8", 1, WAIT));
+        assertEquals("_HLS_msn=6&_HLS_skip=YES", origin.getLastQuery("/live.m3u8"));
+
+        // Segments 1 to 3 are skipped; segments 4 to 6 are listed
+        String full = playlist(serverControl, 1, 6, 0);
+        String delta = full.replaceFirst("(?s)#EXTINF:1.0,\nsegment1.ts\n.*segment3.ts\n",
+                "#EXT-X-SKIP:SKIPPED-SEGMENTS=3\n");
+        origin.setDeltaPlaylist("/live.m3u8", delta);
+        origin.setPlaylist("/live.m3u8", full);
+
+        MediaPlaylist merged = next.get(WAIT, TimeUnit.MILLISECONDS);
+        assertNull(merged.getSkip());
+        List<ExtInf> segments = merged.getSegments();
+        assertEquals(6, segments.size());
+        assertEquals(parseMedia(full).getSegments().size(), segments.size());
+        assertEquals("segment1.ts", segments.get(0).getURI());
+        assertEquals("segment6.ts", segments.get(5).getURI());
+    }
+
+    @Test
+    public void plainReloadWithoutBlockingSupport() throws Exception {
+        origin.setPlaylist("/live.m3u8", playlist("", 1, 3, 0));
+        MediaPlaylist current = parseMedia(playlist("", 0, 3, 0));
+
+        MediaPlaylist reloaded = reloader.reload(origin.url("/live.m3u8"), current).get(5, TimeUnit.SECONDS);
+        assertNull(origin.getLastQuery("/live.m3u8"));
+        assertEquals(1, reloaded.getMediaSequence().getSequenceNumber());
+    }
+
+    /**
+     * Returns a live playlist with one second segments, followed by the
+     * given number of parts of the segment being produced.
+     */
+    private static String playlist(final String serverControl, final int mediaSequence, final int segments,
+            final int parts) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("#EXTM3U\n");
+        builder.append("#EXT-X-TARGETDURATION:1\n");
+        builder.append("#EXT-X-VERSION:9\n");
+        builder.append(serverControl);
+        if (parts > 0) {
+            builder.append("#EXT-X-PART-INF:PART-TARGET=0.5\n");
+        }
+        builder.append("#EXT-X-MEDIA-SEQUENCE:").append(mediaSequence).append('\n');
+        for (int i = mediaSequence; i < mediaSequence + segments; i++) {
+            builder.append("#EXTINF:1.0,\n");
+            builder.append("segment").append(i).append(".ts\n");
+        }
+        int producing = mediaSequence + segments;
+        for (int i = 0; i < parts; i++) {
+            builder.append("#EXT-X-PART:DURATION=0.5,URI=\"part").append(producing).append('.').append(i)
+                    .append(".ts\"\n");
+        }
+        return builder.toString();
+    }
+}
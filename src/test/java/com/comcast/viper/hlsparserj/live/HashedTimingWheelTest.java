@@ -0,0 +1,86 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.live;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HashedTimingWheelTest {
+
+    private HashedTimingWheel timer;
+
+    @Before
+    public void before() {
+        // Small wheel so that delays span several rotations
+        timer = new HashedTimingWheel(10, TimeUnit.MILLISECONDS, 8, "test-timer");
+    }
+
+    @After
+    public void after() {
+        timer.close();
+    }
+
+    @Test
+    public void tasksRunInDeadlineOrder() throws Exception {
+        final List<Integer> order = new CopyOnWriteArrayList<Integer>();
+        final CountDownLatch latch = new CountDownLatch(3);
+        final int[] delays = {250, 30, 120};
+        for (final int delay : delays) {
+            timer.schedule(() -> {
+                order.add(delay);
+                latch.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertEquals(30, (int) order.get(0));
+        assertEquals(120, (int) order.get(1));
+        assertEquals(250, (int) order.get(2));
+    }
+
+    @Test
+    public void taskDoesNotRunEarly() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final long start = System.nanoTime();
+        timer.schedule(() -> latch.countDown(), 200, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 190);
+    }
+
+    @Test
+    public void cancelledTaskDoesNotRun() throws Exception {
+        final CountDownLatch cancelledRan = new CountDownLatch(1);
+        final CountDownLatch otherRan = new CountDownLatch(1);
+        HashedTimingWheel.Timeout timeout = timer.schedule(() -> cancelledRan.countDown(), 50, TimeUnit.MILLISECONDS);
+        timer.schedule(() -> otherRan.countDown(), 100, TimeUnit.MILLISECONDS);
+        timeout.cancel();
+
+        assertTrue(timeout.isCancelled());
+        assertTrue(otherRan.await(2, TimeUnit.SECONDS));
+        assertFalse(cancelledRan.await(100, TimeUnit.MILLISECONDS));
+    }
+}
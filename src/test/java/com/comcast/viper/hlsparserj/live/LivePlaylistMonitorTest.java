@@ -0,0 +1,242 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.live;
+
+import static com.comcast.viper.hlsparserj.TestPlaylists.liveWindow;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.comcast.viper.hlsparserj.AsyncPlaylistFetcher;
+import com.comcast.viper.hlsparserj.MediaPlaylist;
+import com.comcast.viper.hlsparserj.PlaylistVersion;
+import com.comcast.viper.hlsparserj.StubOriginServer;
+
+public class LivePlaylistMonitorTest {
+
+    private StubOriginServer origin;
+    private AsyncPlaylistFetcher fetcher;
+    private ManualTimer timer;
+    private LivePlaylistMonitor monitor;
+
+    @Before
+    public void before() throws Exception {
+        origin = new StubOriginServer();
+        origin.start();
+        fetcher = new AsyncPlaylistFetcher(2000, 5000, 5000, 5000, 2);
+        timer = new ManualTimer();
+        monitor = new LivePlaylistMonitor(fetcher, PlaylistVersion.TWELVE, null, 0, timer);
+    }
+
+    @After
+    public void after() throws Exception {
+        monitor.close();
+        fetcher.close();
+        origin.stop();
+    }
+
+    @Test
+    public void deliversNewSnapshotsUntilEndList() throws Exception {
+        origin.setPlaylist("/live.m3u8", liveWindow(1, 0, 3, false));
+        RecordingListener listener = new RecordingListener();
+        LiveSubscription subscription = monitor.subscribe(origin.url("/live.m3u8"), listener);
+
+        // A changed playlist is reloaded one target duration later
+        ScheduledReload reload = timer.next();
+        assertEquals(1000, reload.delayMillis);
+        assertEquals(1, listener.updates.size());
+        origin.setPlaylist("/live.m3u8", liveWindow(1, 1, 3, false));
+        reload.run();
+        reload = timer.next();
+        assertEquals(1000, reload.delayMillis);
+        assertEquals(2, listener.updates.size());
+
+        origin.setPlaylist("/live.m3u8", liveWindow(1, 2, 3, true));
+        reload.run();
+        assertTrue(listener.ended.await(5, TimeUnit.SECONDS));
+
+        assertEquals(3, listener.updates.size());
+        assertEquals(1, listener.updates.get(1).getMediaSequence().getSequenceNumber());
+        assertTrue(listener.updates.get(2).getEndList());
+        assertTrue(subscription.isCancelled());
+        assertEquals(0, monitor.getSubscriptionCount());
+        assertTrue(timer.scheduled.isEmpty());
+        assertEquals(3, origin.getRequestCount("/live.m3u8"));
+    }
+
+    @Test
+    public void unchangedReloadWaitsHalfTargetDuration() throws Exception {
+        origin.setPlaylist("/live.m3u8", liveWindow(2, 0, 3, false));
+        RecordingListener listener = new RecordingListener();
+        monitor.subscribe(origin.url("/live.m3u8"), listener);
+
+        ScheduledReload reload = timer.next();
+        assertEquals(2000, reload.delayMillis);
+        reload.run();
+        reload = timer.next();
+        assertEquals(1000, reload.delayMillis);
+
+        assertEquals(2, origin.getRequestCount("/live.m3u8"));
+        assertEquals(1, listener.updates.size());
+    }
+
+    @Test
+    public void failedReloadIsRetried() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        monitor.subscribe(origin.url("/missing.m3u8"), listener);
+
+        // Without a playlist, half the default reload delay
+        ScheduledReload reload = timer.next();
+        assertEquals(500, reload.delayMillis);
+        reload.run();
+        reload = timer.next();
+        assertEquals(500, reload.delayMillis);
+
+        assertEquals(2, listener.failures.size());
+        assertTrue(listener.updates.isEmpty());
+    }
+
+    @Test
+    public void cancelStopsReloads() throws Exception {
+        origin.setPlaylist("/live.m3u8", liveWindow(1, 0, 3, false));
+        RecordingListener listener = new RecordingListener();
+        LiveSubscription subscription = monitor.subscribe(origin.url("/live.m3u8"), listener);
+        ScheduledReload reload = timer.next();
+
+        // The timeout may be handed over after it is queued, so run the task
+        // even if cancelling it raced with scheduling
+        subscription.cancel();
+        reload.task.run();
+        assertEquals(1, origin.getRequestCount("/live.m3u8"));
+        assertEquals(0, monitor.getSubscriptionCount());
+        assertTrue(timer.scheduled.isEmpty());
+    }
+
+    @Test
+    public void manyStreams() throws Exception {
+        final int streams = 2000;
+        final CountDownLatch firstRound = new CountDownLatch(streams);
+        final CountDownLatch secondRound = new CountDownLatch(streams);
+        LivePlaylistListener listener = new LivePlaylistListener() {
+            @Override
+            public void playlistUpdated(final LiveSubscription subscription, final MediaPlaylist playlist) {
+                if (playlist.getMediaSequence().getSequenceNumber() == 0) {
+                    firstRound.countDown();
+                } else {
+                    secondRound.countDown();
+                }
+            }
+
+            @Override
+            public void reloadFailed(final LiveSubscription subscription, final Throwable cause) {
+            }
+        };
+
+        for (int i = 0; i < streams; i++) {
+            origin.setPlaylist("/live" + i + ".m3u8", liveWindow(1, 0, 3, false));
+        }
+        for (int i = 0; i < streams; i++) {
+            monitor.subscribe(origin.url("/live" + i + ".m3u8"), listener);
+        }
+        assertTrue(firstRound.await(10, TimeUnit.SECONDS));
+
+        for (int i = 0; i < streams; i++) {
+            origin.setPlaylist("/live" + i + ".m3u8", liveWindow(1, 1, 3, false));
+        }
+        for (int i = 0; i < streams; i++) {
+            timer.next().run();
+        }
+        assertTrue(secondRound.await(10, TimeUnit.SECONDS));
+        assertEquals(streams, monitor.getSubscriptionCount());
+    }
+
+    /**
+     * Timer that records the reloads and runs them when the test asks.  The
+     * monitor schedules a reload after it has notified the listener, so
+     * taking the next reload also waits for the previous one to be delivered.
+     */
+    private static class ManualTimer implements ReloadTimer {
+
+        private final BlockingQueue<ScheduledReload> scheduled = new LinkedBlockingQueue<ScheduledReload>();
+
+        @Override
+        public HashedTimingWheel.Timeout schedule(final Runnable task, final long delay, final TimeUnit unit) {
+            HashedTimingWheel.Timeout timeout = new HashedTimingWheel.Timeout(task, 0);
+            scheduled.add(new ScheduledReload(task, unit.toMillis(delay), timeout));
+            return timeout;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        ScheduledReload next() throws InterruptedException {
+            ScheduledReload reload = scheduled.poll(5, TimeUnit.SECONDS);
+            assertNotNull(reload);
+            return reload;
+        }
+    }
+
+    private static class ScheduledReload {
+
+        private final Runnable task;
+        private final long delayMillis;
+        private final HashedTimingWheel.Timeout timeout;
+
+        ScheduledReload(final Runnable task, final long delayMillis, final HashedTimingWheel.Timeout timeout) {
+            this.task = task;
+            this.delayMillis = delayMillis;
+            this.timeout = timeout;
+        }
+
+        void run() {
+            if (!timeout.isCancelled()) {
+                task.run();
+            }
+        }
+    }
+
+    private static class RecordingListener implements LivePlaylistListener {
+
+        private final List<MediaPlaylist> updates = new CopyOnWriteArrayList<MediaPlaylist>();
+        private final List<Throwable> failures = new CopyOnWriteArrayList<Throwable>();
+        private final CountDownLatch ended = new CountDownLatch(1);
+
+        @Override
+        public void playlistUpdated(final LiveSubscription subscription, final MediaPlaylist playlist) {
+            updates.add(playlist);
+            if (playlist.getEndList()) {
+                ended.countDown();
+            }
+        }
+
+        @Override
+        public void reloadFailed(final LiveSubscription subscription, final Throwable cause) {
+            failures.add(cause);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatencyRecorderTest {
+
+    @Test
+    public void indexesCoverEveryValue() {
+        long[] values = {0, 1, 127, 128, 129, 255, 256, 1000, 123456789L, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = LatencyRecorder.index(value);
+            assertTrue(LatencyRecorder.lowestValue(index) <= value);
+            assertTrue(LatencyRecorder.highestValue(index) >= value);
+        }
+        for (int index = 1; index < LatencyRecorder.index(Long.MAX_VALUE); index++) {
+            assertEquals(LatencyRecorder.highestValue(index - 1) + 1, LatencyRecorder.lowestValue(index));
+        }
+    }
+
+    @Test
+    public void percentilesAreWithinPrecision() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        Random random = new Random(1);
+        List<Long> values = new ArrayList<Long>();
+        for (int i = 0; i < 100000; i++) {
+            long value = (long) Math.exp(random.nextDouble() * 20);
+            values.add(value);
+            recorder.record(value);
+        }
+        Collections.sort(values);
+
+        assertEquals(100000, recorder.getCount());
+        assertEquals(values.get(values.size() - 1).longValue(), recorder.getMax());
+        for (double percentile : new double[] {50, 90, 99, 99.9}) {
+            long expected = values.get((int) Math.ceil(percentile / 100 * values.size()) - 1);
+            long actual = recorder.getValueAtPercentile(percentile);
+            assertTrue(percentile + ": " + actual + " vs " + expected,
+                    actual >= expected && actual <= expected + expected / 60 + 1);
+        }
+    }
+
+    @Test
+    public void recordsDurationsAndResets() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        recorder.record(3, TimeUnit.MILLISECONDS);
+        recorder.record(-5);
+        assertEquals(2, recorder.getCount());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(3), recorder.getMax());
+        assertEquals(0, recorder.getValueAtPercentile(50));
+        assertTrue(recorder.getMean() > 1400000);
+
+        recorder.reset();
+        assertEquals(0, recorder.getCount());
+        assertEquals(0, recorder.getValueAtPercentile(99));
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.comcast.viper.hlsparserj.AsyncPlaylistFetcher;
+import com.comcast.viper.hlsparserj.PlaylistFactory;
+import com.comcast.viper.hlsparserj.PlaylistVersion;
+import com.comcast.viper.hlsparserj.StubOriginServer;
+
+public class PlaylistMetricsTest {
+
+    private static final String PLAYLIST = "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:6\n"
+            + "#EXT-X-CUSTOM-TAG:1\n"
+            + "\n"
+            + "#EXTINF:6.0,\n"
+            + "segment0.ts\n"
+            + "#EXT-X-DISCONTINUITY\n"
+            + "#EXTINF:6.0,\n"
+            + "segment1.ts\n"
+            + "#EXT-X-ENDLIST\n";
+
+    private PlaylistMetrics metrics;
+
+    @Before
+    public void before() {
+        metrics = new PlaylistMetrics();
+        PlaylistFactory.setParseListener(metrics);
+    }
+
+    @After
+    public void after() {
+        PlaylistFactory.setParseListener(null);
+    }
+
+    @Test
+    public void countsLinesAndTags() throws IOException {
+        PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, PLAYLIST);
+        PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE,
+                new ByteArrayInputStream(PLAYLIST.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(2 * PLAYLIST.length(), metrics.getBytes());
+        // The tokenizer used for strings skips the blank line
+        assertEquals(9 + 10, metrics.getLines());
+        assertEquals(2, metrics.getMediaPlaylists());
+        assertEquals(0, metrics.getMasterPlaylists());
+        assertEquals(2, metrics.getParseLatency().getCount());
+        assertEquals(2, metrics.getModelBuildLatency().getCount());
+
+        Map<String, Long> tagCounts = metrics.getTagCounts();
+        assertEquals(Long.valueOf(4), tagCounts.get("EXTINF"));
+        assertEquals(Long.valueOf(2), tagCounts.get("EXTM3U"));
+        assertEquals(Long.valueOf(2), tagCounts.get("EXT-X-DISCONTINUITY"));
+        assertEquals(Long.valueOf(2), tagCounts.get("EXT-X-ENDLIST"));
+        assertEquals(1, metrics.getUnknownTagCounts().size());
+        assertEquals(Long.valueOf(2), metrics.getUnknownTagCounts().get("EXT-X-CUSTOM-TAG"));
+    }
+
+    @Test
+    public void measuresFetches() throws Exception {
+        StubOriginServer origin = new StubOriginServer();
+        origin.start();
+        try {
+            origin.setPlaylist("/media.m3u8", PLAYLIST);
+            origin.setDelay(50);
+            PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, origin.url("/media.m3u8"), 2000, 2000, 2000);
+
+            assertEquals(1, metrics.getConnectLatency().getCount());
+            assertEquals(1, metrics.getFirstByteLatency().getCount());
+            assertTrue(metrics.getFirstByteLatency().getMax() >= 50000000L);
+            assertEquals(1, metrics.getBodyLatency().getCount());
+
+            try (AsyncPlaylistFetcher fetcher = new AsyncPlaylistFetcher()) {
+                fetcher.fetchAndParse(PlaylistVersion.TWELVE, origin.url("/media.m3u8")).get();
+                try {
+                    fetcher.fetchAndParse(PlaylistVersion.TWELVE, origin.url("/missing.m3u8")).get();
+                } catch (Exception ex) {
+                    // expected
+                }
+            }
+            assertEquals(2, metrics.getFirstByteLatency().getCount());
+            assertEquals(1, metrics.getConnectLatency().getCount());
+            assertEquals(1, metrics.getFetchFailures());
+            assertEquals(2, metrics.getMediaPlaylists());
+        } finally {
+            origin.stop();
+        }
+    }
+
+    @Test
+    public void nullListenerRestoresDefault() {
+        PlaylistFactory.setParseListener(null);
+        assertSame(ParseListener.NONE, PlaylistFactory.getParseListener());
+        PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE, PLAYLIST);
+        assertEquals(0, metrics.getLines());
+    }
+}
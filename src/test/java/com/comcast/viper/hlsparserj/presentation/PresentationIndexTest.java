@@ -0,0 +1,187 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.presentation;
+
+import static com.comcast.viper.hlsparserj.TestPlaylists.parseMedia;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.comcast.viper.hlsparserj.MasterPlaylist;
+import com.comcast.viper.hlsparserj.MediaPlaylist;
+import com.comcast.viper.hlsparserj.PlaylistFactory;
+import com.comcast.viper.hlsparserj.PlaylistVersion;
+import com.comcast.viper.hlsparserj.tags.master.StreamInf;
+
+public class PresentationIndexTest {
+
+    private static final long EPOCH = 1700000000000L;
+
+    @Test
+    public void alignsVariantsByMediaSequence() {
+
+        // The high variant was loaded two segments later
+        MediaPlaylist low = parseMedia(playlist(10, new float[] {2, 2, 2, 2, 2, 2}, null));
+        MediaPlaylist high = parseMedia(playlist(12, new float[] {2, 2, 2, 2, 2, 2}, null));
+        PresentationIndex index = PresentationIndex.build(Arrays.asList(low, high, null));
+
+        assertEquals(3, index.getTrackCount());
+        assertEquals(0, index.getSegmentCount(2));
+        assertEquals(12, index.getFirstMediaSequence(1));
+        assertEquals(2, index.findByMediaSequence(0, 12));
+        assertEquals(0, index.findByMediaSequence(1, 12));
+        assertEquals(-1, index.findByMediaSequence(1, 11));
+        assertEquals(-1, index.findByMediaSequence(0, 16));
+
+        // Segment 12 starts at 0 in both tracks
+        assertEquals(-4.0, index.getStartTime(0, 0), 0.0001);
+        assertEquals(0.0, index.getStartTime(0, 2), 0.0001);
+        assertEquals(0.0, index.getStartTime(1, 0), 0.0001);
+        assertEquals(8.0, index.getEndTime(0, 5), 0.0001);
+        assertEquals(12.0, index.getEndTime(1, 5), 0.0001);
+        assertEquals(0, index.findByTime(0, -4.0));
+        assertEquals(-1, index.findByTime(0, -4.5));
+        assertEquals(2, index.findByTime(1, 5.9));
+        assertEquals(-1, index.findByTime(0, 8.0));
+        assertEquals(PresentationIndex.NO_DATE_TIME, index.getDateTime(0, 0));
+        assertEquals(-1, index.findByDateTime(0, EPOCH));
+
+        assertEquals(3, index.findSwitchSegment(0, 5, 1));
+        assertEquals(5, index.findSwitchSegment(1, 3, 0));
+        assertEquals(-1, index.findSwitchSegment(1, 5, 0));
+        assertEquals(-1, index.findSwitchSegment(0, 0, 2));
+    }
+
+    @Test
+    public void alignsTrackThatEndsBeforeTheReferenceSegment() {
+        MediaPlaylist stale = parseMedia(playlist(10, new float[] {2, 2, 2, 2, 2}, null));
+        MediaPlaylist current = parseMedia(playlist(20, new float[] {2, 2, 2, 2, 2}, null));
+        PresentationIndex index = PresentationIndex.build(Arrays.asList(stale, current));
+
+        // Segments 15 to 19 are missing from both, and last 2 seconds each
+        assertEquals(-20.0, index.getStartTime(0, 0), 0.0001);
+        assertEquals(-10.0, index.getEndTime(0, 4), 0.0001);
+        assertEquals(-1, index.findSwitchSegment(1, 0, 0));
+        assertEquals(4, index.findByTime(0, -10.5));
+    }
+
+    @Test
+    public void alignsVariantsByProgramDateTime() {
+
+        // Media sequence numbers do not match, but dates do; the second
+        // track is dated from its third segment only
+        String[] lowDates = {"2023-11-14T22:13:20.000Z", null, null, "2023-11-14T22:13:26.000Z", null};
+        String[] highDates = {null, null, "2023-11-14T23:13:26.000+01:00", null, null};
+        MediaPlaylist low = parseMedia(playlist(0, new float[] {2, 2, 2, 2, 2}, lowDates));
+        MediaPlaylist high = parseMedia(playlist(100, new float[] {2, 2, 2, 2, 2}, highDates));
+        PresentationIndex index = PresentationIndex.build(Arrays.asList(low, high));
+
+        assertEquals(EPOCH, index.getDateTime(0, 0));
+        assertEquals(EPOCH + 4000, index.getDateTime(0, 2));
+        assertEquals(EPOCH + 2000, index.getDateTime(1, 0));
+        assertEquals(EPOCH + 10000, index.getDateTime(1, 4));
+        assertEquals(2, index.findByDateTime(0, EPOCH + 5999));
+        assertEquals(-1, index.findByDateTime(0, EPOCH + 10000));
+        assertEquals(-1, index.findByDateTime(1, EPOCH + 1999));
+
+        assertEquals(0, index.findSwitchSegment(0, 1, 1));
+        assertEquals(4, index.findSwitchSegment(1, 3, 0));
+    }
+
+    @Test
+    public void lookupsMatchLinearScan() {
+        Random random = new Random(49);
+        List<MediaPlaylist> playlists = new ArrayList<MediaPlaylist>();
+        for (int track = 0; track < 4; track++) {
+            int count = 1 + random.nextInt(60);
+            float[] durations = new float[count];
+            for (int i = 0; i < count; i++) {
+                durations[i] = 0.5f + random.nextInt(8) * 0.25f;
+            }
+            String[] dates = new String[count];
+            dates[random.nextInt(count)] = "2023-11-14T22:13:20.000Z";
+            playlists.add(parseMedia(playlist(random.nextInt(10), durations, dates)));
+        }
+        PresentationIndex index = PresentationIndex.build(playlists);
+
+        for (int track = 0; track < playlists.size(); track++) {
+            for (int probe = 0; probe < 500; probe++) {
+                double time = -40 + random.nextDouble() * 200;
+                int expected = -1;
+                for (int i = 0; i < index.getSegmentCount(track); i++) {
+                    if (index.getStartTime(track, i) <= time && time < index.getEndTime(track, i)) {
+                        expected = i;
+                    }
+                }
+                assertEquals(expected, index.findByTime(track, time));
+
+                long dateTime = EPOCH - 100000 + random.nextInt(300000);
+                expected = -1;
+                for (int i = 0; i < index.getSegmentCount(track); i++) {
+                    long start = index.getDateTime(track, i);
+                    long end = start + Math.round((index.getEndTime(track, i) - index.getStartTime(track, i)) * 1000);
+                    if (start <= dateTime && dateTime < end) {
+                        expected = i;
+                    }
+                }
+                assertEquals(expected, index.findByDateTime(track, dateTime));
+            }
+        }
+    }
+
+    @Test
+    public void presentationIndexesItsVariantStreams() {
+        MasterPlaylist master = (MasterPlaylist) PlaylistFactory.parsePlaylist(PlaylistVersion.TWELVE,
+                "#EXTM3U\n#EXT-X-STREAM-INF:BANDWIDTH=200000\nlow.m3u8\n"
+                + "#EXT-X-STREAM-INF:BANDWIDTH=800000\nhigh.m3u8\n");
+        List<StreamInf> streams = master.getVariantStreams();
+        List<ChildPlaylist> variants = new ArrayList<ChildPlaylist>();
+        variants.add(new ChildPlaylist(streams.get(0), null,
+                parseMedia(playlist(5, new float[] {4, 4, 4}, null)), null, 0));
+        variants.add(new ChildPlaylist(streams.get(1), null, null, new Exception("failed"), 0));
+        Presentation presentation = new Presentation(null, master, variants,
+                Collections.<ChildPlaylist>emptyList(), Collections.<ChildPlaylist>emptyList());
+
+        PresentationIndex index = presentation.getVariantIndex();
+        assertSame(index, presentation.getVariantIndex());
+        assertEquals(2, index.getTrackCount());
+        assertEquals(3, index.getSegmentCount(0));
+        assertEquals(0, index.getSegmentCount(1));
+        assertEquals(1, index.findByTime(0, 4.0));
+    }
+
+    private static String playlist(final int mediaSequence, final float[] durations, final String[] dates) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("#EXTM3U\n");
+        builder.append("#EXT-X-TARGETDURATION:2\n");
+        builder.append("#EXT-X-MEDIA-SEQUENCE:").append(mediaSequence).append('\n');
+        for (int i = 0; i < durations.length; i++) {
+            if (dates != null && dates[i] != null) {
+                builder.append("#EXT-X-PROGRAM-DATE-TIME:").append(dates[i]).append('\n');
+            }
+            builder.append("#EXTINF:").append(durations[i]).append(",\n");
+            builder.append("segment").append(mediaSequence + i).append(".ts\n");
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.presentation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.comcast.viper.hlsparserj.AsyncPlaylistFetcher;
+import com.comcast.viper.hlsparserj.PlaylistVersion;
+import com.comcast.viper.hlsparserj.StubOriginServer;
+
+public class PresentationLoaderTest {
+
+    private static final String MASTER_PLAYLIST = "#EXTM3U\n"
+            + "#EXT-X-MEDIA:TYPE=AUDIO,GROUP-ID=\"aac\",NAME=\"en\",URI=\"../audio/en.m3u8\"\n"
+            + "#EXT-X-MEDIA:TYPE=CLOSED-CAPTIONS,GROUP-ID=\"cc\",NAME=\"en\",INSTREAM-ID=\"CC1\"\n"
+            + "#EXT-X-STREAM-INF:BANDWIDTH=200000,AUDIO=\"aac\"\n"
+            + "low/index.m3u8\n"
+            + "#EXT-X-STREAM-INF:BANDWIDTH=800000,AUDIO=\"aac\"\n"
+            + "high/index.m3u8\n"
+            + "#EXT-X-STREAM-INF:BANDWIDTH=1600000,AUDIO=\"aac\"\n"
+            + "missing/index.m3u8\n"
+            + "#EXT-X-I-FRAME-STREAM-INF:BANDWIDTH=50000,URI=\"low/iframe.m3u8\"\n";
+
+    private StubOriginServer origin;
+    private AsyncPlaylistFetcher fetcher;
+
+    @Before
+    public void before() throws Exception {
+        origin = new StubOriginServer();
+        origin.start();
+        origin.setPlaylist("/asset/master.m3u8", MASTER_PLAYLIST);
+        origin.setPlaylist("/asset/low/index.m3u8", mediaPlaylist("low"));
+        origin.setPlaylist("/asset/high/index.m3u8", mediaPlaylist("high"));
+        origin.setPlaylist("/audio/en.m3u8", mediaPlaylist("en"));
+        origin.setPlaylist("/asset/low/iframe.m3u8", mediaPlaylist("iframe"));
+        fetcher = new AsyncPlaylistFetcher(2000, 5000, 5000, 100, 2);
+    }
+
+    @After
+    public void after() throws Exception {
+        fetcher.close();
+        origin.stop();
+    }
+
+    @Test
+    public void loadPresentation() throws Exception {
+        PresentationLoader loader = new PresentationLoader(fetcher, PlaylistVersion.TWELVE, 4);
+        Presentation presentation = loader.load(origin.url("/asset/master.m3u8")).get(5, TimeUnit.SECONDS);
+
+        assertEquals(3, presentation.getMasterPlaylist().getVariantStreams().size());
+        assertEquals(3, presentation.getVariantStreams().size());
+        assertEquals(1, presentation.getAlternateRenditions().size());
+        assertEquals(1, presentation.getIFrameStreams().size());
+        assertEquals(5, presentation.getChildPlaylists().size());
+
+        ChildPlaylist low = presentation.getVariantStreams().get(0);
+        assertTrue(low.isLoaded());
+        assertEquals(origin.url("/asset/low/index.m3u8"), low.getURL());
+        assertEquals("low0.ts", low.getPlaylist().getSegments().get(0).getURI());
+        assertTrue(low.getPlaylist().isFrozen());
+        assertTrue(low.getLatency(TimeUnit.NANOSECONDS) > 0);
+        assertSame(low, presentation.getChildPlaylist(presentation.getMasterPlaylist().getVariantStreams().get(0)));
+
+        ChildPlaylist audio = presentation.getAlternateRenditions().get(0);
+        assertEquals(origin.url("/audio/en.m3u8"), audio.getURL());
+        assertEquals("en0.ts", audio.getPlaylist().getSegments().get(0).getURI());
+
+        assertEquals("iframe0.ts", presentation.getIFrameStreams().get(0).getPlaylist().getSegments().get(0).getURI());
+    }
+
+    @Test
+    public void failedChildDoesNotFailPresentation() throws Exception {
+        PresentationLoader loader = new PresentationLoader(fetcher, PlaylistVersion.TWELVE, 4);
+        Presentation presentation = loader.load(origin.url("/asset/master.m3u8")).get(5, TimeUnit.SECONDS);
+
+        ChildPlaylist missing = presentation.getVariantStreams().get(2);
+        assertFalse(missing.isLoaded());
+        assertNotNull(missing.getFailure());
+        assertTrue(presentation.getVariantStreams().get(1).isLoaded());
+    }
+
+    @Test
+    public void failedMasterFailsPresentation() throws Exception {
+        PresentationLoader loader = new PresentationLoader(fetcher, PlaylistVersion.TWELVE, 4);
+        try {
+            loader.load(origin.url("/asset/low/index.m3u8")).get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void childrenAreLoadedConcurrentlyUpToTheLimit() throws Exception {
+        StringBuilder master = new StringBuilder("#EXTM3U\n");
+        for (int i = 0; i < 20; i++) {
+            master.append("#EXT-X-STREAM-INF:BANDWIDTH=").append(100000 * (i + 1)).append('\n');
+            master.append("v").append(i).append(".m3u8\n");
+            origin.setPlaylist("/ladder/v" + i + ".m3u8", mediaPlaylist("v" + i));
+        }
+        origin.setPlaylist("/ladder/master.m3u8", master.toString());
+        origin.setDelay(200);
+
+        PresentationLoader loader = new PresentationLoader(fetcher, PlaylistVersion.TWELVE, 5);
+        long start = System.currentTimeMillis();
+        Presentation presentation = loader.load(origin.url("/ladder/master.m3u8")).get(10, TimeUnit.SECONDS);
+        long elapsed = System.currentTimeMillis() - start;
+
+        for (ChildPlaylist child : presentation.getVariantStreams()) {
+            assertTrue(child.isLoaded());
+            assertTrue(child.getLatency(TimeUnit.MILLISECONDS) >= 150);
+        }
+        assertEquals(5, origin.getMaxConcurrentRequests());
+
+        // One round trip for the master and four rounds of five children
+        assertTrue("Load took " + elapsed + "ms", elapsed < 2500);
+    }
+
+    private static String mediaPlaylist(final String name) {
+        return "#EXTM3U\n"
+                + "#EXT-X-TARGETDURATION:2\n"
+                + "#EXTINF:2.000,\n"
+                + name + "0.ts\n"
+                + "#EXT-X-ENDLIST\n";
+    }
+}
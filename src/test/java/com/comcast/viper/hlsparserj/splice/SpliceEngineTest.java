@@ -0,0 +1,135 @@
+/**
+ * Copyright 2015 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.comcast.viper.hlsparserj.splice;
+
+import static com.comcast.viper.hlsparserj.TestPlaylists.parseMedia;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.comcast.viper.hlsparserj.MediaPlaylist;
+
+public class SpliceEngineTest {
+
+    private static final String CONTENT = "#EXTM3U\n#EXT-X-VERSION:3\n#EXT-X-TARGETDURATION:6\n"
+            + "#EXT-X-MEDIA-SEQUENCE:100\n"
+            + "#EXT-X-KEY:METHOD=AES-128,URI=\"key1\"\n"
+            + "#EXTINF:6,\nc0.ts\n#EXTINF:6,\nc1.ts\n#EXTINF:6,\nc2.ts\n#EXTINF:6,\nc3.ts\n";
+
+    private static final String AD = "#EXTM3U\n#EXT-X-VERSION:4\n#EXT-X-TARGETDURATION:10\n"
+            + "#EXTINF:10,\nad0.ts\n#EXTINF:5,\nad1.ts\n#EXT-X-ENDLIST\n";
+
+    @Test
+    public void insertsPodWithBoundariesAndKeySwitch() {
+        AdPod pod = new AdPod(parseMedia(AD), URI.create("http://ads.example.com/pod/ad.m3u8"));
+        assertEquals(2, pod.getSegmentCount());
+
+        String merged = SpliceEngine.splice(parseMedia(CONTENT), Collections.singletonList(AdBreak.insert(2, pod)));
+        assertEquals("#EXTM3U\n#EXT-X-VERSION:4\n#EXT-X-TARGETDURATION:10\n#EXT-X-MEDIA-SEQUENCE:100\n"
+                + "#EXT-X-KEY:METHOD=AES-128,URI=\"key1\"\n"
+                + "#EXTINF:6,\nc0.ts\n#EXTINF:6,\nc1.ts\n"
+                + "#EXT-X-DISCONTINUITY\n#EXT-X-KEY:METHOD=NONE\n"
+                + "#EXTINF:10,\nhttp://ads.example.com/pod/ad0.ts\n#EXTINF:5,\nhttp://ads.example.com/pod/ad1.ts\n"
+                + "#EXT-X-DISCONTINUITY\n#EXT-X-KEY:METHOD=AES-128,URI=\"key1\"\n"
+                + "#EXTINF:6,\nc2.ts\n#EXTINF:6,\nc3.ts\n", merged);
+
+        MediaPlaylist reparsed = parseMedia(merged);
+        assertEquals(6, reparsed.getSegmentCount());
+        assertEquals(10, reparsed.getTargetDuration().getDuration());
+    }
+
+    @Test
+    public void replacesSegmentsAndCarriesTheirKeysAndDiscontinuities() {
+        String content = "#EXTM3U\n#EXT-X-TARGETDURATION:6\n#EXT-X-MEDIA-SEQUENCE:7\n"
+                + "#EXT-X-DISCONTINUITY-SEQUENCE:2\n"
+                + "#EXTINF:6,\nc0.ts\n#EXT-X-DISCONTINUITY\n#EXTINF:6,\nc1.ts\n"
+                + "#EXT-X-KEY:METHOD=AES-128,URI=\"key2\"\n#EXTINF:6,\nc2.ts\n#EXTINF:6,\nc3.ts\n#EXT-X-ENDLIST\n";
+        String ad = "#EXTM3U\n#EXT-X-TARGETDURATION:6\n#EXT-X-KEY:METHOD=AES-128,URI=\"adkey\"\n"
+                + "#EXTINF:6,\nad0.ts\n#EXT-X-ENDLIST\n";
+        AdBreak adBreak = AdBreak.replace(1, 2, new AdPod(parseMedia(ad)));
+        assertEquals(-1, adBreak.getSegmentDelta());
+        assertEquals(2, adBreak.getDiscontinuityDelta());
+
+        String merged = SpliceEngine.splice(parseMedia(content), Collections.singletonList(adBreak), 5, 3);
+        assertEquals("#EXTM3U\n#EXT-X-TARGETDURATION:6\n#EXT-X-MEDIA-SEQUENCE:12\n"
+                + "#EXT-X-DISCONTINUITY-SEQUENCE:5\n"
+                + "#EXTINF:6,\nc0.ts\n"
+                + "#EXT-X-DISCONTINUITY\n#EXT-X-KEY:METHOD=AES-128,URI=\"adkey\"\n#EXTINF:6,\nad0.ts\n"
+                + "#EXT-X-DISCONTINUITY\n#EXT-X-DISCONTINUITY\n#EXT-X-KEY:METHOD=AES-128,URI=\"key2\"\n"
+                + "#EXTINF:6,\nc3.ts\n#EXT-X-ENDLIST\n", merged);
+    }
+
+    @Test
+    public void splicesPreRollPostRollAndMaps() {
+        String content = "#EXTM3U\n#EXT-X-TARGETDURATION:6\n#EXT-X-MAP:URI=\"init.mp4\"\n"
+                + "#EXTINF:6,\nc0.m4s\n#EXTINF:6,\nc1.m4s\n";
+        String ad = "#EXTM3U\n#EXT-X-TARGETDURATION:4\n#EXT-X-MAP:URI=\"adinit.mp4\"\n"
+                + "#EXTINF:4,\nad0.m4s\n#EXT-X-ENDLIST\n";
+        AdPod pod = new AdPod(parseMedia(ad), URI.create("http://ads.example.com/x/ad.m3u8"));
+
+        String merged = SpliceEngine.splice(parseMedia(content), Arrays.asList(AdBreak.insert(2, pod),
+                AdBreak.insert(0, pod)));
+        assertEquals("#EXTM3U\n#EXT-X-TARGETDURATION:6\n#EXT-X-MAP:URI=\"init.mp4\"\n"
+                + "#EXT-X-DISCONTINUITY\n#EXT-X-MAP:URI=\"http://ads.example.com/x/adinit.mp4\"\n"
+                + "#EXTINF:4,\nhttp://ads.example.com/x/ad0.m4s\n"
+                + "#EXT-X-DISCONTINUITY\n#EXT-X-MAP:URI=\"init.mp4\"\n"
+                + "#EXTINF:6,\nc0.m4s\n#EXTINF:6,\nc1.m4s\n"
+                + "#EXT-X-DISCONTINUITY\n#EXT-X-MAP:URI=\"http://ads.example.com/x/adinit.mp4\"\n"
+                + "#EXTINF:4,\nhttp://ads.example.com/x/ad0.m4s\n", merged);
+    }
+
+    @Test
+    public void writesByteRangeOffsetsAfterPods() {
+        String content = "#EXTM3U\n#EXT-X-VERSION:4\n#EXT-X-TARGETDURATION:6\n"
+                + "#EXTINF:6,\n#EXT-X-BYTERANGE:1000@0\nmain.ts\n#EXTINF:6,\n#EXT-X-BYTERANGE:1000\nmain.ts\n"
+                + "#EXTINF:6,\n#EXT-X-BYTERANGE:1000\nmain.ts\n#EXTINF:6,\n#EXT-X-BYTERANGE:1000\nmain.ts\n";
+        String ad = "#EXTM3U\n#EXT-X-TARGETDURATION:6\n#EXTINF:6,\nad0.ts\n#EXT-X-ENDLIST\n";
+        AdPod pod = new AdPod(parseMedia(ad));
+
+        String merged = SpliceEngine.splice(parseMedia(content), Arrays.asList(AdBreak.replace(1, 1, pod),
+                AdBreak.insert(3, pod)));
+        assertEquals("#EXTM3U\n#EXT-X-VERSION:4\n#EXT-X-TARGETDURATION:6\n"
+                + "#EXTINF:6,\n#EXT-X-BYTERANGE:1000@0\nmain.ts\n"
+                + "#EXT-X-DISCONTINUITY\n#EXTINF:6,\nad0.ts\n#EXT-X-DISCONTINUITY\n"
+                + "#EXTINF:6,\n#EXT-X-BYTERANGE:1000@2000\nmain.ts\n"
+                + "#EXT-X-DISCONTINUITY\n#EXTINF:6,\nad0.ts\n#EXT-X-DISCONTINUITY\n"
+                + "#EXTINF:6,\n#EXT-X-BYTERANGE:1000@3000\nmain.ts\n", merged);
+        assertEquals(2000, parseMedia(merged).getByteRanges().get(1).getOffset());
+    }
+
+    @Test
+    public void rejectsOverlappingBreaks() {
+        AdPod pod = new AdPod(parseMedia(AD));
+        MediaPlaylist content = parseMedia(CONTENT);
+        try {
+            SpliceEngine.splice(content, Arrays.asList(AdBreak.replace(0, 2, pod), AdBreak.insert(1, pod)));
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+        try {
+            SpliceEngine.splice(content, Collections.singletonList(AdBreak.replace(3, 2, pod)));
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+}
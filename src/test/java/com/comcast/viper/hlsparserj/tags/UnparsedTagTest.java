@@ -46,4 +46,37 @@ public class UnparsedTagTest {
 		Assert.assertEquals("group, subgroup", tag.getAttributes().get("GROUP-ID"));
 		Assert.assertEquals("https://example.org/playlist.m3u8", tag.getAttributes().get("URI"));
 	}
+
+	@Test
+	public void testParsingQuotedValueWithEqualsSign() {
+		UnparsedTag tag = new UnparsedTag("#EXT-X-SESSION-DATA:DATA-ID=\"com.example.title\",VALUE=\"a=b\"");
+
+		Assert.assertEquals("EXT-X-SESSION-DATA", tag.getTagName());
+		Assert.assertEquals("com.example.title", tag.getAttributes().get("DATA-ID"));
+		Assert.assertEquals("a=b", tag.getAttributes().get("VALUE"));
+	}
+
+	@Test
+	public void testURIFromAttribute() {
+		UnparsedTag tag = new UnparsedTag("#EXT-X-KEY:METHOD=AES-128,URI=\"key.bin\"");
+
+		Assert.assertEquals("key.bin", tag.getURI());
+		tag.setURI("other.bin");
+		Assert.assertEquals("other.bin", tag.getURI());
+		Assert.assertNull(new UnparsedTag("#EXT-X-TARGETDURATION:10").getURI());
+	}
+
+	@Test
+	public void testFrozenTagParsesAttributesUnmodifiable() {
+		UnparsedTag tag = new UnparsedTag("#EXT-X-MEDIA-SEQUENCE:7");
+		tag.freeze();
+
+		Assert.assertEquals("7", tag.getAttributes().get(Tag.UNNAMEDATTR0));
+		try {
+			tag.getAttributes().put(Tag.UNNAMEDATTR0, "8");
+			Assert.fail("Expected UnsupportedOperationException");
+		} catch (UnsupportedOperationException ex) {
+			// expected
+		}
+	}
 }